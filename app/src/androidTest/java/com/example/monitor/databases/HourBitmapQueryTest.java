@@ -0,0 +1,109 @@
+package com.example.monitor.databases;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.models.DayHourBitmap;
+import com.example.monitor.models.SeriesGaps;
+import com.example.monitor.models.Weather;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/* WeatherDao.getHourBitmaps as SQLite runs it, against an in-memory Room database: the per-day
+ * bitmaps across UTC midnight, with repeated hours, other series and rows outside the window.
+ * ./gradlew connectedAndroidTest
+ *     -Pandroid.testInstrumentationRunnerArguments.class=com.example.monitor.databases.HourBitmapQueryTest */
+@RunWith(AndroidJUnit4.class)
+public class HourBitmapQueryTest {
+    private static final long HOUR = MonitorConstants.ONE_HOUR;
+    private static final long DAY = MonitorConstants.ONE_DAY;
+    private static final long EPOCH_DAY = 19000; // 2022-01-08
+    private static final long MIDNIGHT = EPOCH_DAY * DAY;
+    private static final String LOCATION = "Belgrade";
+
+    private WeatherDatabase database;
+    private WeatherDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, WeatherDatabase.class).build();
+        dao = database.weatherDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void bitmapsPerUtcDay() {
+        List<Weather> rows = new ArrayList<>();
+        /* day 0: hours 0, 22 and 23, the last twice within the hour */
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT));
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT + 22 * HOUR));
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT + 23 * HOUR));
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT + 23 * HOUR + 59 * 60000L));
+        /* day 1: hour 1, off the hour */
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT + DAY + HOUR + 30 * 60000L));
+        /* day 3 only: day 2 has nothing */
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT + 3 * DAY + 5 * HOUR));
+        /* other series and times outside the window aren't counted */
+        rows.add(point("Novi Sad", MonitorEnums.HOME_SENSOR, MIDNIGHT + DAY + 2 * HOUR));
+        rows.add(point(LOCATION, MonitorEnums.SINGLE_HOUR_DATA, MIDNIGHT + DAY + 3 * HOUR));
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT - HOUR));
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT + 4 * DAY));
+        dao.insertWeatherList(rows);
+
+        List<DayHourBitmap> bitmaps = dao.getHourBitmaps(LOCATION, MonitorEnums.HOME_SENSOR,
+                MIDNIGHT, MIDNIGHT + 4 * DAY);
+
+        assertEquals(3, bitmaps.size());
+        assertBitmap(bitmaps.get(0), EPOCH_DAY, (1 << 0) | (1 << 22) | (1 << 23));
+        assertBitmap(bitmaps.get(1), EPOCH_DAY + 1, 1 << 1);
+        assertBitmap(bitmaps.get(2), EPOCH_DAY + 3, 1 << 5);
+    }
+
+    /* the window as gap detection asks for it, from 22:00 to 02:00 over midnight */
+    @Test
+    public void gapsFromTheQueriedBitmaps() {
+        List<Weather> rows = new ArrayList<>();
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT - 2 * HOUR));
+        rows.add(point(LOCATION, MonitorEnums.HOME_SENSOR, MIDNIGHT + HOUR));
+        dao.insertWeatherList(rows);
+
+        long from = MIDNIGHT - 2 * HOUR;
+        long to = MIDNIGHT + 2 * HOUR;
+        SeriesGaps gaps = SeriesGaps.fromBitmaps(dao.getHourBitmaps(LOCATION,
+                MonitorEnums.HOME_SENSOR, from, to), from, to);
+
+        assertEquals(4, gaps.getExpectedHours());
+        assertEquals(1, gaps.getGaps().size());
+        assertEquals(MIDNIGHT - HOUR, gaps.getGaps().get(0).getStart());
+        assertEquals(MIDNIGHT + HOUR, gaps.getGaps().get(0).getEnd());
+        assertEquals(50, gaps.getCompletenessPercent());
+    }
+
+    private static void assertBitmap(DayHourBitmap bitmap, long day, int hours) {
+        assertEquals(day, bitmap.day);
+        assertEquals(Integer.toBinaryString(hours), Integer.toBinaryString(bitmap.hours));
+    }
+
+    private static Weather point(String location, Integer category, long time) {
+        return new Weather("21.5", "45", null, String.valueOf(time), location,
+                MonitorEnums.UNDER_48H, category, time);
+    }
+}
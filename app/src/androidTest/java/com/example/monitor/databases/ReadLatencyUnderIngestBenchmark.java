@@ -0,0 +1,169 @@
+package com.example.monitor.databases;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.LatencyHistogram;
+import com.example.monitor.backgroundutil.PriorityDatabaseExecutor;
+import com.example.monitor.models.Weather;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+/* Read latency of a full chart load while another thread ingests continuously, for the old setup
+ * (rollback journal, reads and writes on one thread) and the split one (WAL, one writer, a
+ * reader pool). The split setup must keep the read tail at or below the old one's while both
+ * keep ingesting. It runs for seconds per setup, so it is skipped unless asked for; the reports
+ * are logged under the tag below. Run on a device:
+ * ./gradlew connectedAndroidTest
+ *     -Pandroid.testInstrumentationRunnerArguments.class=com.example.monitor.databases.ReadLatencyUnderIngestBenchmark
+ *     -Pandroid.testInstrumentationRunnerArguments.monitor.bench=true
+ *     -Pandroid.testInstrumentationRunnerArguments.monitor.bench.durationMs=10000 */
+@RunWith(AndroidJUnit4.class)
+public class ReadLatencyUnderIngestBenchmark {
+    private static final String TAG = "ReadLatencyBenchmark";
+    private static final int SEED_ROWS = 5000;
+    private static final int INGEST_BATCH = 20;
+    private static final long READ_INTERVAL_MILLIS = 25;
+    /* the tail the chart load is judged by */
+    private static final double READ_PERCENTILE = 95;
+
+    private Bundle arguments;
+
+    @Before
+    public void setUp() {
+        arguments = InstrumentationRegistry.getArguments();
+        Assume.assumeTrue("benchmark; run with the instrumentation argument monitor.bench=true",
+                "true".equals(arguments.getString("monitor.bench")));
+    }
+
+    @Test
+    public void splitWalKeepsReadsFastUnderIngest() throws Exception {
+        long durationMillis = Long.parseLong(
+                arguments.getString("monitor.bench.durationMs", "5000"));
+
+        PriorityDatabaseExecutor shared = new PriorityDatabaseExecutor("bench-shared", 1);
+        RunResult sharedRun = run("shared", RoomDatabase.JournalMode.TRUNCATE, shared, shared,
+                durationMillis);
+
+        PriorityDatabaseExecutor writer = new PriorityDatabaseExecutor("bench-writer", 1);
+        PriorityDatabaseExecutor readers = new PriorityDatabaseExecutor("bench-readers", 2);
+        RunResult splitRun = run("split", RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING, writer,
+                readers, durationMillis);
+
+        String report = sharedRun.report + "\n" + splitRun.report;
+        for (RunResult result : new RunResult[]{sharedRun, splitRun}) {
+            assertTrue(report, result.readLatency.getCount() > 0);
+            assertTrue(report, result.rowsIngested > 0);
+        }
+        assertTrue(report, splitRun.readLatency.getPercentileMicros(READ_PERCENTILE)
+                <= sharedRun.readLatency.getPercentileMicros(READ_PERCENTILE));
+    }
+
+    private static class RunResult {
+        final LatencyHistogram readLatency;
+        final long rowsIngested;
+        final String report;
+
+        RunResult(LatencyHistogram readLatency, long rowsIngested, String report) {
+            this.readLatency = readLatency;
+            this.rowsIngested = rowsIngested;
+            this.report = report;
+        }
+    }
+
+    private RunResult run(String name, RoomDatabase.JournalMode journalMode,
+                          PriorityDatabaseExecutor writer, PriorityDatabaseExecutor readers,
+                          long durationMillis) throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String fileName = "bench_" + name + ".db";
+        context.deleteDatabase(fileName);
+        WeatherDatabase database = Room.databaseBuilder(context, WeatherDatabase.class, fileName)
+                .setJournalMode(journalMode)
+                .build();
+        WeatherDao dao = database.weatherDao();
+        writer.submit(() -> {
+            dao.insertWeatherList(points(SEED_ROWS, 0));
+            return null;
+        }, MonitorEnums.DB_PRIORITY_INGEST).get();
+
+        /* one batch in flight at a time, back to back, like a busy ingest */
+        AtomicBoolean ingesting = new AtomicBoolean(true);
+        AtomicLong inserted = new AtomicLong();
+        Thread producer = new Thread(() -> {
+            while (ingesting.get()) {
+                try {
+                    long offset = SEED_ROWS + inserted.get();
+                    writer.submit(() -> {
+                        dao.insertWeatherList(points(INGEST_BATCH, offset));
+                        return null;
+                    }, MonitorEnums.DB_PRIORITY_INGEST).get();
+                    inserted.addAndGet(INGEST_BATCH);
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        }, "bench-producer");
+        producer.start();
+
+        LatencyHistogram readLatency = new LatencyHistogram();
+        long end = System.currentTimeMillis() + durationMillis;
+        while (System.currentTimeMillis() < end) {
+            long start = System.nanoTime();
+            Future<List<Weather>> read = readers.submit(dao::getAllWeatherPointsNonLive,
+                    MonitorEnums.DB_PRIORITY_INTERACTIVE);
+            read.get();
+            readLatency.recordNanos(System.nanoTime() - start);
+            Thread.sleep(READ_INTERVAL_MILLIS);
+        }
+        ingesting.set(false);
+        producer.join();
+
+        String report = String.format(Locale.US,
+                "%s (%s): read %s, p%.0f %.2f ms; rows ingested during run %d", name,
+                journalMode, readLatency, READ_PERCENTILE,
+                readLatency.getPercentileMicros(READ_PERCENTILE) / 1000.0, inserted.get());
+        Log.i(TAG, report);
+        shutdown(writer);
+        shutdown(readers);
+        database.close();
+        context.deleteDatabase(fileName);
+        return new RunResult(readLatency, inserted.get(), report);
+    }
+
+    private static void shutdown(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static List<Weather> points(int count, long offset) {
+        long base = System.currentTimeMillis();
+        List<Weather> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long time = base - (offset + i) * 60000L;
+            points.add(new Weather("21.5", "45", "bench", String.valueOf(time), "Belgrade",
+                    MonitorEnums.UNDER_48H, MonitorEnums.HOME_SENSOR, time));
+        }
+        return points;
+    }
+}
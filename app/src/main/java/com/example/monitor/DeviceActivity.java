@@ -2,6 +2,7 @@ package com.example.monitor;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 
 import android.content.Context;
@@ -21,11 +22,9 @@ import android.widget.Toast;
 
 import com.example.monitor.repositories.networkutils.MQTTConnection;
 import com.example.monitor.repositories.networkutils.TopicData;
-import com.example.monitor.repositories.parseutils.ParseUtils;
 import com.example.monitor.viewmodels.DeviceActivityViewModel;
-import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
 
-import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 public class DeviceActivity extends AppCompatActivity {
     private static final String TAG = "DeviceActivity";
@@ -150,10 +149,19 @@ public class DeviceActivity extends AppCompatActivity {
                 } else {
                     currentDeviceIndex = MonitorEnums.NO_DEVICE_SELECTED;
                 }
+                displayDeviceStatus(deviceViewModel.getDeviceStates().getValue());
 
             }
         });
 
+        /* liveness changes are pushed from the tracker; no per-tap subscription needed */
+        deviceViewModel.getDeviceStates().observe(this, new Observer<Map<Integer, Integer>>() {
+            @Override
+            public void onChanged(Map<Integer, Integer> states) {
+                displayDeviceStatus(states);
+            }
+        });
+
         ledLdrSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             @Override
             public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
@@ -163,7 +171,7 @@ public class DeviceActivity extends AppCompatActivity {
                         Log.d(TAG, "ledLdrSwitch, onCheckedChanged: NO MQTT CONNECTION");
                         Toast.makeText(appContext,
                                 "Client not connected to MQTT", Toast.LENGTH_SHORT).show();
-                        MQTTConnection.connectAsync();
+                        MQTTConnection.connectInBackground();
                     } /*else { // connected
                         MQTTConnection.publishAsync("M0=1;", TopicData.getDeviceModeTopics(0));
                     }*/
@@ -177,7 +185,7 @@ public class DeviceActivity extends AppCompatActivity {
                        Log.d(TAG, "ledLdrSwitch, onCheckedChanged: NO MQTT CONNECTION");
                        Toast.makeText(appContext,
                                "Client not connected to MQTT", Toast.LENGTH_SHORT).show();
-                       MQTTConnection.connectAsync();
+                       MQTTConnection.connectInBackground();
                    } /*else {
                        MQTTConnection.publishAsync("M0=0;", TopicData.getDeviceModeTopics(0));
                    }*/
@@ -207,7 +215,7 @@ public class DeviceActivity extends AppCompatActivity {
                     Log.d(TAG, "seekBar: NO MQTT CONNECTION");
                     Toast.makeText(appContext,
                             "Client not connected to MQTT", Toast.LENGTH_SHORT).show();
-                    MQTTConnection.connectAsync();
+                    MQTTConnection.connectInBackground();
                 }
                 LEDIntensity = seekBar.getProgress();
             }
@@ -222,49 +230,27 @@ public class DeviceActivity extends AppCompatActivity {
                             "No device selected", Toast.LENGTH_SHORT).show();
                 } else {
                     Log.d(TAG, "onClick: valid device selected, index "+ currentDeviceIndex);
-                    checkIfDeviceOnline();
+                    displayDeviceStatus(deviceViewModel.getDeviceStates().getValue());
                 }
             }
         });
 
     }
 
-    /* criterium for device being online is if its timestamp is within 2 minutes */
-    private void checkIfDeviceOnline() {
-
-        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
-        String topic = TopicData.getDeviceStatusTopics(currentDeviceIndex);
-        mqtt5Client.toAsync().subscribeWith().topicFilter(topic)/*.qos(MqttQos.AT_LEAST_ONCE)*/
-                .callback(publish -> {
-                    String payload = new String(publish.getPayloadAsBytes(), StandardCharsets.UTF_8);
-                    System.out.println("Received data; topic: " + topic + ", payload: " + payload);
-                    mqtt5Client.toBlocking().unsubscribeWith().topicFilter(topic).send();
-                    long deviceTimestamp = ParseUtils.parseDeviceJsonTimestamp(payload)
-                            - MonitorConstants.TIMEZONE_OFFSET;
-                    long currentTime = System.currentTimeMillis();
-
-                    Log.d(TAG, "checkIfDeviceOnline: deviceTimestamp: "
-                            + deviceTimestamp+ ", currentTime: " + currentTime
-                            + " difference: "+Math.abs(deviceTimestamp - currentTime));
-                    if (Math.abs(deviceTimestamp - currentTime) < MonitorConstants.TWO_MINUTES) {
-                        deviceStatus.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                deviceStatus.setText("ONLINE");
-                            }
-                        });
-                        Log.d(TAG, "checkIfDeviceOnline: device is online");
-                    } else {
-                        deviceStatus.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                deviceStatus.setText("OFFLINE");
-                            }
-                        });
-                        Log.d(TAG, "checkIfDeviceOnline: device is offline");
-                    }
-
-                }).send();
+    /* device state is tracked from heartbeats in the background; this only reads it */
+    private void displayDeviceStatus(Map<Integer, Integer> states) {
+        if (states == null || currentDeviceIndex == MonitorEnums.NO_DEVICE_SELECTED) {
+            deviceStatus.setText("N/A");
+            return;
+        }
+        Integer state = states.get(currentDeviceIndex);
+        if (MonitorEnums.DEVICE_ONLINE.equals(state)) {
+            deviceStatus.setText("ONLINE");
+        } else if (MonitorEnums.DEVICE_OFFLINE.equals(state)) {
+            deviceStatus.setText("OFFLINE");
+        } else {
+            deviceStatus.setText("UNKNOWN");
+        }
     }
 
     public void hideDeviceControlElements() {
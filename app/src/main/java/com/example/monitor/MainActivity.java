@@ -8,13 +8,16 @@ package com.example.monitor;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.FileProvider;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 
 import android.Manifest;
 import android.content.Intent;
 import android.graphics.Color;
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
@@ -23,26 +26,22 @@ import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.CompoundButton;
+import android.widget.RadioGroup;
 import android.widget.Switch;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import com.example.monitor.charts.SensorStreamChartFeed;
+import com.example.monitor.charts.TimeSeriesChartView;
+import com.example.monitor.charts.WeatherChartController;
 import com.example.monitor.models.MonitorLocation;
-import com.example.monitor.models.Weather;
+import com.example.monitor.models.SeriesGaps;
+import com.example.monitor.repositories.exportutil.WeatherExportOptions;
+import com.example.monitor.repositories.importutil.ImportProgress;
+import com.example.monitor.viewmodels.ChartState;
 import com.example.monitor.viewmodels.MainActivityViewModel;
 import com.github.mikephil.charting.charts.LineChart;
-import com.github.mikephil.charting.components.LimitLine;
-import com.github.mikephil.charting.components.XAxis;
-import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.Entry;
-import com.github.mikephil.charting.data.LineData;
-import com.github.mikephil.charting.data.LineDataSet;
-import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
-import com.github.mikephil.charting.utils.EntryXComparator;
-
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Iterator;
+
 import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
@@ -56,15 +55,27 @@ public class MainActivity extends AppCompatActivity {
     private TextView locationDisplay;
     private Button sensorQuery;
     private Button navigateToDevices;
+    private Button exportHistory;
+    private Button importHistory;
     private Switch weather12hrSwitch;
     private Switch weather1hrSwitch;
     private Switch sensor1hrSwitch;
+    private RadioGroup chartRangeGroup;
+    private TextView sensorCompleteness;
     private TextView sensorQueryOutput;
     private TextView sensorQueryTimestamp;
     private TextView sensorQueryOutputTitle;
     private LineChart weatherLineChart;
+    private WeatherChartController chartController;
+    private TimeSeriesChartView sensorStreamChart;
+    private SensorStreamChartFeed sensorStreamFeed;
     private AutoCompleteTextView dropDownListParams;
 
+    /* export format picked in the dialog, an index into R.array.export_formats, and the export
+     * waiting for the document picker */
+    private int selectedExportFormat = 0;
+    private WeatherExportOptions pendingExport;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -81,14 +92,39 @@ public class MainActivity extends AppCompatActivity {
         homeLocation = findViewById(R.id.homeLocation);
         locationDisplay = findViewById(R.id.locationDisplay);
         weatherLineChart = (LineChart) findViewById(R.id.idTemperatureLineChart1);
+        sensorStreamChart = findViewById(R.id.sensorStreamChart);
         sensorQuery = findViewById(R.id.getSensorReading);
         sensorQueryOutput = findViewById(R.id.instantSensorReading);
         sensorQueryTimestamp = findViewById(R.id.sensorReadingTimestamp);
         sensorQueryOutputTitle = findViewById(R.id.sensorReadingHeader2);
         navigateToDevices = findViewById(R.id.idNavigateToDevices);
+        exportHistory = findViewById(R.id.exportHistory);
+        importHistory = findViewById(R.id.importHistory);
         weather12hrSwitch = findViewById(R.id.switch1);
         weather1hrSwitch = findViewById(R.id.switch2);
         sensor1hrSwitch = findViewById(R.id.switch3);
+        chartRangeGroup = findViewById(R.id.chartRangeGroup);
+        sensorCompleteness = findViewById(R.id.sensorCompleteness);
+
+        /* datasets are created once; later chart states only update the points that changed */
+        chartController = new WeatherChartController(weatherLineChart,
+                getResources().getColor(R.color.yellowish_orange));
+        chartController.setSeriesVisible(MonitorEnums.TWELVE_HOURS_DATA,
+                weather12hrSwitch.isChecked());
+        chartController.setSeriesVisible(MonitorEnums.SINGLE_HOUR_DATA,
+                weather1hrSwitch.isChecked());
+        chartController.setSeriesVisible(MonitorEnums.HOME_SENSOR, sensor1hrSwitch.isChecked());
+
+        /* the point budget of each series follows the chart's width */
+        weatherLineChart.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                if (right - left != oldRight - oldLeft) {
+                    weatherViewModel.setChartWidth(right - left);
+                }
+            }
+        });
 
         /* permission granted slowly; everything is instantiated before the user can approve.*/
         requestPermissionLauncher.launch(Manifest.permission.ACCESS_COARSE_LOCATION);
@@ -97,13 +133,17 @@ public class MainActivity extends AppCompatActivity {
         /* initialize ViewModel scoped to lifecycle of mainactivity; android to destroy it at end */
         weatherViewModel = new ViewModelProvider(this).get(MainActivityViewModel.class);
 
+        /* the live range draws the raw sensor samples; the feed only runs while it is shown */
+        sensorStreamFeed = new SensorStreamChartFeed(sensorStreamChart,
+                weatherViewModel::getSensorSampleBuffer, Color.YELLOW);
+
         /*** LiveData observers ***/
-        /* observe() is a LiveData callback to weather data. When the data changes, redraw. */
-        weatherViewModel.getWeatherDataEntries().observe(this, new Observer<List<Weather>>(){
+        /* the ViewModel prepares the series in the background whenever the weather data, the
+         * location or the selected parameter changes; redraw when a new state is posted */
+        weatherViewModel.getChartState().observe(this, new Observer<ChartState>(){
             @Override
-            public void onChanged(@Nullable List<Weather> weathers) {
-//                weatherAdapter.setWeatherRecyclerEntries(weathers); // for debugging
-                redrawGraph(weathers);
+            public void onChanged(@Nullable ChartState chartState) {
+                redrawGraph();
             }
         });
 
@@ -120,14 +160,22 @@ public class MainActivity extends AppCompatActivity {
                 } else {
                     locationDisplay.setText(localizedHomeName);
                 }
+            }
+        });
 
-                /* request the execution model to fetch relevant data from the database */
-                List<Weather> weathers = weatherViewModel.getWeatherDataEntriesFromDb();
-                if (weathers == null) {
-                    Log.i(TAG, "onItemClick: requested parameter not in database.");
-                    return;
-                }
-                redrawGraph(weathers);
+        /* how much of the sensor series is stored for the selected range */
+        weatherViewModel.getSensorCompleteness().observe(this, new Observer<SeriesGaps>() {
+            @Override
+            public void onChanged(@Nullable SeriesGaps gaps) {
+                updateSensorCompleteness(gaps);
+            }
+        });
+
+        /* the import button doubles as the cancel button while an import runs */
+        weatherViewModel.getImportProgress().observe(this, new Observer<ImportProgress>() {
+            @Override
+            public void onChanged(@Nullable ImportProgress progress) {
+                updateImportButton(progress);
             }
         });
 
@@ -168,6 +216,26 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        /* export of the weather history to a picked document, or through a share intent */
+        exportHistory.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showExportDialog();
+            }
+        });
+
+        /* import of sensor history kept by the Pi; a second click cancels */
+        importHistory.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (weatherViewModel.isImportRunning()) {
+                    weatherViewModel.cancelImport();
+                } else {
+                    pickImportFile.launch("*/*");
+                }
+            }
+        });
+
         /* sets up instantaneous sensor reading */
         sensorQuery.setOnClickListener(new View.OnClickListener(){
             @Override
@@ -190,16 +258,12 @@ public class MainActivity extends AppCompatActivity {
         dropDownListParams.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                /* request the execution model to fetch relevant data from the database */
-                List<Weather> weathers = weatherViewModel.getWeatherDataEntriesFromDb();
-                if (weathers == null) {
-                    Log.i(TAG, "onItemClick: requested parameter not in database.");
-                    return;
-                }
-                redrawGraph(weathers);
+                /* the series for the new parameter are posted to the chart state once prepared */
+                String selectedParameter = dropDownListParams.getText().toString();
+                weatherViewModel.selectChartParameter(getParameterFromSelection(selectedParameter));
+                sensorStreamFeed.setParameter(getParameterFromSelection(selectedParameter));
 
                 /* change instantaneous sensor query display */
-                String selectedParameter = dropDownListParams.getText().toString();
                 sensorQueryOutputTitle.setText(selectedParameter);
                 sensorQueryOutput.setText("N/A");
                 sensorQueryTimestamp.setText("N/A");
@@ -209,191 +273,204 @@ public class MainActivity extends AppCompatActivity {
         weather12hrSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             @Override
             public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-                    List<Weather> weathers = weatherViewModel.getWeatherDataEntriesFromDb();
-                    redrawGraph(weathers);
+                chartController.setSeriesVisible(MonitorEnums.TWELVE_HOURS_DATA, isChecked);
             }
         });
         weather1hrSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             @Override
             public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-                List<Weather> weathers = weatherViewModel.getWeatherDataEntriesFromDb();
-                redrawGraph(weathers);
+                chartController.setSeriesVisible(MonitorEnums.SINGLE_HOUR_DATA, isChecked);
             }
         });
         sensor1hrSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             @Override
             public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-                List<Weather> weathers = weatherViewModel.getWeatherDataEntriesFromDb();
-                redrawGraph(weathers);
+                chartController.setSeriesVisible(MonitorEnums.HOME_SENSOR, isChecked);
             }
         });
-    }
 
-    /*** graphing utilities ***/
-    private void redrawGraph(List<Weather> weathers) {
-        String selectedParameter = dropDownListParams.getText().toString();
-        Integer selectedParam = 0;
-        long dailyTimeOrigin = getStartOfTimeUnitMillis("day");
+        /* longer ranges are downsampled to the same point budget */
+        chartRangeGroup.setOnCheckedChangeListener(new RadioGroup.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(RadioGroup group, int checkedId) {
+                showLiveChart(checkedId == R.id.chartRangeLive);
+                if (checkedId == R.id.chartRangeLive) {
+                    return;
+                } else if (checkedId == R.id.chartRange7d) {
+                    weatherViewModel.selectChartRange(MonitorEnums.CHART_RANGE_7D);
+                } else if (checkedId == R.id.chartRange30d) {
+                    weatherViewModel.selectChartRange(MonitorEnums.CHART_RANGE_30D);
+                } else {
+                    weatherViewModel.selectChartRange(MonitorEnums.CHART_RANGE_48H);
+                }
+            }
+        });
+    }
 
-        if (selectedParameter.equals("Temperature")) {
-            selectedParam = MonitorEnums.TEMPERATURE;
-        } else if (selectedParameter.equals("Humidity")) {
-            selectedParam = MonitorEnums.HUMIDITY;
-        } else { // unhandled selection, brightness comes here later
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (chartRangeGroup.getCheckedRadioButtonId() == R.id.chartRangeLive) {
+            sensorStreamFeed.start();
         }
+    }
 
-        /* draw the obtained data on the display */
-        bindDataToGraph(dailyTimeOrigin, weathers, selectedParam);
-
+    @Override
+    protected void onStop() {
+        sensorStreamFeed.stop();
+        super.onStop();
     }
 
-    private void bindDataToGraph(long dailyTimeOrigin, List<Weather> weathers, Integer selectedParam) {
-        /* create fixed chart: x-axis is 0 to 48 hours (yesterday and today) */
-        String graphText = "None selected";
-        if (selectedParam == MonitorEnums.TEMPERATURE) {
-            drawChartAxes(MonitorConstants.MINTEMP, MonitorConstants.MAXTEMP, 12, 12);
-            graphText = "Temperature in Celsius (yesterday, today)";
-        } else if (selectedParam == MonitorEnums.HUMIDITY) {
-            drawChartAxes(0, 100, 12, 12);
-            graphText = "Humidity in % (yesterday, today)";
+    /*** graphing utilities ***/
+    /* the stream chart replaces the line chart for the live range */
+    private void showLiveChart(boolean live) {
+        weatherLineChart.setVisibility(live ? View.GONE : View.VISIBLE);
+        sensorStreamChart.setVisibility(live ? View.VISIBLE : View.GONE);
+        sensorCompleteness.setVisibility(live ? View.GONE : View.VISIBLE);
+        if (live) {
+            sensorStreamFeed.start();
         } else {
-            Log.i(TAG, "bindDataToGraph: no recognized data provided.");
-            return;
+            sensorStreamFeed.stop();
         }
-        weatherLineChart.getDescription().setText(graphText);
-        weatherLineChart.getDescription().setTextColor(Color.WHITE);
-        weatherLineChart.getDescription().setTextSize(12f);
-
-        /* set up data to be drawn on the graph */
-        List<Entry> twelveHourList = new ArrayList<>();
-        List<Entry> hourlyList = new ArrayList<>();
-        List<Entry> sensorList = new ArrayList<>();
-
-        separateWeatherDataTrendsFixed(dailyTimeOrigin, weathers, twelveHourList,
-                hourlyList, sensorList, selectedParam);
-
-        /* sorting needed to avoid NegativeArraySizeException with MPAndroidChart library */
-        Collections.sort(twelveHourList, new EntryXComparator());
-        Collections.sort(hourlyList, new EntryXComparator());
-        Collections.sort(sensorList, new EntryXComparator());
-
-        /* bind the data to the temperatureLineChart */
-        ArrayList<ILineDataSet> lineDataSets = new ArrayList<>();
-        LineDataSet twelveHourDataSet = new LineDataSet(twelveHourList,"Weather API (12hr)");
-        LineDataSet oneHourDataSet = new LineDataSet(hourlyList,"Weather API (1hr)");
-        LineDataSet oneHourSensorDataSet = new LineDataSet(sensorList,"Sensor (1hr)");
-
-        twelveHourDataSet.setDrawCircles(true);twelveHourDataSet.setColor(Color.RED);
-        twelveHourDataSet.setValueTextColor(Color.WHITE);
-        oneHourDataSet.setDrawCircles(true); oneHourDataSet.setColor(Color.GREEN);
-        oneHourDataSet.setValueTextColor(Color.WHITE);
-        oneHourSensorDataSet.setDrawCircles(true); oneHourSensorDataSet.setColor(Color.YELLOW);
-        oneHourSensorDataSet.setValueTextColor(Color.WHITE);
-
-        if (weather12hrSwitch.isChecked()) {lineDataSets.add(twelveHourDataSet);}
-        if (weather1hrSwitch.isChecked()) {lineDataSets.add(oneHourDataSet);}
-        if (sensor1hrSwitch.isChecked()) {lineDataSets.add(oneHourSensorDataSet);}
-
-        weatherLineChart.setData(new LineData(lineDataSets));
-        weatherLineChart.getLegend().setTextColor(Color.WHITE);
     }
 
-    /* sort data points into sensor data and forecast types, and put into corresponding trends */
-    private void separateWeatherDataTrendsFixed(long dailyTimeOrigin, List<Weather> weathers,
-                                                List<Entry> twelveHourWeatherList,
-                                                List<Entry> hourlyWeatherList,
-                                                List<Entry> sensorWeatherList,
-                                                Integer selectedParam) {
-        long startOfYesterday = dailyTimeOrigin - MonitorConstants.ONE_DAY;
-        String currentSelectedLocation = (String) locationDisplay.getText();
-
-        Iterator iter = weathers.iterator();
-        while (iter.hasNext()) {
-            Weather weatherEntryInIter = (Weather) iter.next();
-
-            /* if data isn't younger than 48h, don't show it */
-            if (weatherEntryInIter.getPersistence() != MonitorEnums.UNDER_48H)
-                continue;
-
-            /* if data does not match current selected location as appears on button, don't show it */
-            if (!(weatherEntryInIter.getLocation().equals(currentSelectedLocation))) {
-                continue;
+    /* binds the latest prepared chart state; reads memory only, never the database */
+    private void redrawGraph() {
+        ChartState chartState = weatherViewModel.getChartState().getValue();
+        if (chartState == null) {
+            Log.i(TAG, "redrawGraph: chart state not prepared yet.");
+            return;
+        }
+        chartController.bind(chartState);
+
+        /* queued behind the redraw just requested, so it runs once the frame is out */
+        weatherLineChart.post(new Runnable() {
+            @Override
+            public void run() {
+                weatherViewModel.onChartFrameDrawn();
             }
+        });
+    }
 
-            /* get hours offset from start of yesterday; recalculated whenever drawn */
-            long dataPointTime = weatherEntryInIter.getTimeInMillis();
-            long hour = (dataPointTime - startOfYesterday)/MonitorConstants.ONE_HOUR; // 0 to 48
+    private Integer getParameterFromSelection(String selectedParameter) {
+        if (selectedParameter.equals("Temperature")) {
+            return MonitorEnums.TEMPERATURE;
+        } else if (selectedParameter.equals("Humidity")) {
+            return MonitorEnums.HUMIDITY;
+        } else { // unhandled selection, brightness comes here later
+            return MonitorEnums.TEMPERATURE;
+        }
+    }
 
-            float parameter;
-            if (selectedParam == MonitorEnums.TEMPERATURE) {
-                parameter = Float.parseFloat(weatherEntryInIter.getCelsius());
-            } else if (selectedParam == MonitorEnums.HUMIDITY) {
-                parameter = Float.parseFloat(weatherEntryInIter.getHumidity());
-            } else {
-                parameter = 0.01f;
+    /*** sensor history import ***/
+    private ActivityResultLauncher<String> pickImportFile =
+        registerForActivityResult(new ActivityResultContracts.GetContent(), uri -> {
+            if (uri == null) {
+                Log.d(TAG, "import cancelled in the file picker.");
+                return;
             }
+            importHistory.setText(R.string.importCancel);
+            weatherViewModel.importSensorHistory(uri).whenComplete((progress, throwable) ->
+                    runOnUiThread(() -> {
+                        updateImportButton(null);
+                        if (throwable != null) {
+                            Log.d(TAG, "import failed: " + throwable);
+                            Toast.makeText(getApplicationContext(), "Import failed",
+                                    Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(getApplicationContext(), progress.getHoursWritten()
+                                    + " hours imported" + (progress.isCancelled()
+                                    ? " before cancelling" : ""), Toast.LENGTH_LONG).show();
+                        }
+                    }));
+        });
 
-            Entry dataPoint = new Entry(hour, parameter);
-            Integer category = weatherEntryInIter.getCategory();
-            if (category == MonitorEnums.SINGLE_HOUR_DATA) {
-                hourlyWeatherList.add(dataPoint);
-            } else if (category == MonitorEnums.TWELVE_HOURS_DATA) {
-                twelveHourWeatherList.add(dataPoint);
-            } else if (category == MonitorEnums.HOME_SENSOR) {
-                sensorWeatherList.add(dataPoint);
-            } else {
-                continue;
-            }
+    private void updateSensorCompleteness(@Nullable SeriesGaps gaps) {
+        if (gaps == null) {
+            sensorCompleteness.setText("");
+        } else if (gaps.isComplete()) {
+            sensorCompleteness.setText(getString(R.string.sensorCompleteness,
+                    gaps.getCompletenessPercent()));
+        } else {
+            sensorCompleteness.setText(getString(R.string.sensorCompletenessGaps,
+                    gaps.getCompletenessPercent(), gaps.getMissingHours()));
         }
+    }
+
+    private void updateImportButton(@Nullable ImportProgress progress) {
+        if (!weatherViewModel.isImportRunning()) {
+            importHistory.setText(R.string.importHistory);
+        } else if (progress != null && progress.getPercent() >= 0) {
+            importHistory.setText(getString(R.string.importCancelPercent, progress.getPercent()));
+        } else {
+            importHistory.setText(R.string.importCancel);
+        }
+    }
 
+    /*** weather history export ***/
+    private void showExportDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.exportTitle)
+                .setSingleChoiceItems(R.array.export_formats, selectedExportFormat,
+                        (dialog, which) -> selectedExportFormat = which)
+                .setPositiveButton(R.string.exportSave, (dialog, which) -> {
+                    pendingExport = getSelectedExportOptions();
+                    createExportDocument.launch(pendingExport.getFileName());
+                })
+                .setNeutralButton(R.string.exportShare,
+                        (dialog, which) -> shareExport(getSelectedExportOptions()))
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
     }
 
-    private long getStartOfTimeUnitMillis(String unit) {
-        Calendar today = Calendar.getInstance();
-        today.set(Calendar.MILLISECOND, 0);
-        today.set(Calendar.SECOND, 0);
-        today.set(Calendar.MINUTE, 0);
-        if (unit.equals("day")){
-            today.set(Calendar.HOUR_OF_DAY, 0);
-        } else {}
-        long timeUnitOrigin = today.getTimeInMillis();
-        return timeUnitOrigin;
+    /* export_formats lists CSV, CSV gzipped, NDJSON and NDJSON gzipped; the ViewModel adds the
+     * selected location and chart range as filters */
+    private WeatherExportOptions getSelectedExportOptions() {
+        Integer format = selectedExportFormat < 2
+                ? MonitorEnums.EXPORT_FORMAT_CSV : MonitorEnums.EXPORT_FORMAT_NDJSON;
+        return weatherViewModel.getExportOptions(format, selectedExportFormat % 2 == 1);
     }
 
-    private void drawChartAxes(Integer yAxisMin, Integer yAxisMax, Integer yLabelCount,
-                               Integer xLabelCount) {
-        XAxis xAxis = weatherLineChart.getXAxis();
-        xAxis.setAxisMaximum(48);
-        xAxis.setAxisMinimum(0);
-        xAxis.setLabelCount(xLabelCount); // or enable granularity, and xAxis.setGranularity(48/4);
-        xAxis.setTextColor(Color.WHITE); // getResources().getColor(R.color.yellowish_orange);
-
-        YAxis yAxisLeft = weatherLineChart.getAxisLeft();
-        yAxisLeft.setAxisMaximum(yAxisMax);
-        yAxisLeft.setAxisMinimum(yAxisMin);
-        yAxisLeft.setLabelCount(yLabelCount);
-        yAxisLeft.setTextColor(Color.WHITE);
-
-        YAxis yAxisRight = weatherLineChart.getAxisRight();
-        yAxisRight.setAxisMaximum(yAxisMax);
-        yAxisRight.setAxisMinimum(yAxisMin);
-        yAxisRight.setLabelCount(yLabelCount);
-        yAxisRight.setTextColor(Color.WHITE);
-
-        /* draw line showing current time */
-        long dailyTimeOrigin = getStartOfTimeUnitMillis("day");
-        long currentTime = getStartOfTimeUnitMillis("hour");
-        long startOfYesterday = dailyTimeOrigin - MonitorConstants.ONE_DAY;
-        long currentHour = (currentTime - startOfYesterday)/MonitorConstants.ONE_HOUR;
-
-        xAxis.removeAllLimitLines();
-        LimitLine ll = new LimitLine(currentHour, "T: "+(currentHour%24)+"h");
-        ll.setLineColor(getResources().getColor(R.color.yellowish_orange));
-        ll.setLineWidth(2f);
-        ll.setTextColor(Color.WHITE);
-        ll.setTextSize(12f);
-        ll.setLabelPosition(LimitLine.LimitLabelPosition.LEFT_TOP); // or change when close to xmax
-        xAxis.addLimitLine(ll);
+    private ActivityResultLauncher<String> createExportDocument =
+        registerForActivityResult(new ActivityResultContracts.CreateDocument(), uri -> {
+            if (uri == null) {
+                Log.d(TAG, "export cancelled in the document picker.");
+                return;
+            }
+            /* the pending export doesn't survive a recreated activity; fall back to the selection */
+            WeatherExportOptions options = pendingExport != null
+                    ? pendingExport : getSelectedExportOptions();
+            pendingExport = null;
+            weatherViewModel.exportWeather(options, uri).whenComplete((rows, throwable) ->
+                    runOnUiThread(() -> {
+                        if (throwable != null) {
+                            Log.d(TAG, "export failed: " + throwable);
+                            Toast.makeText(getApplicationContext(), "Export failed",
+                                    Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(getApplicationContext(), rows + " rows exported",
+                                    Toast.LENGTH_SHORT).show();
+                        }
+                    }));
+        });
+
+    private void shareExport(WeatherExportOptions options) {
+        weatherViewModel.exportWeatherForSharing(options).whenComplete((file, throwable) ->
+                runOnUiThread(() -> {
+                    if (throwable != null) {
+                        Log.d(TAG, "export for sharing failed: " + throwable);
+                        Toast.makeText(getApplicationContext(), "Export failed",
+                                Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    Uri uri = FileProvider.getUriForFile(this,
+                            getPackageName() + ".fileprovider", file);
+                    Intent share = new Intent(Intent.ACTION_SEND);
+                    share.setType(options.getMimeType());
+                    share.putExtra(Intent.EXTRA_STREAM, uri);
+                    share.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    startActivity(Intent.createChooser(share, getString(R.string.exportShare)));
+                }));
     }
 
     /*** GPS permissions ***/
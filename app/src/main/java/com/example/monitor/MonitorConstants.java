@@ -14,13 +14,6 @@ public class MonitorConstants {
     public static final Integer VISIBILITY_DURATION = 170000; /* 172800 is 60 * 60 * 24 * 2 , 48H */
     public static final Integer STORAGE_DURATION = 600000; /* 604800 is 60 * 60 * 24 * 7, should be a week */
 
-    public static final Integer INITIAL_DELAY_HOURLY = 10;
-    public static final Integer INITIAL_DELAY_TWELVE_HOURS = 20;
-    public static final Integer INITIAL_DELAY_MAINTENANCE = 5;
-    public static final Integer PERIODIC_DELAY_HOURLY = 1200;
-    public static final Integer PERIODIC_DELAY_TWELVE_HOURS = 3600*12; // every 12 hrs 3600*12
-    public static final Integer PERIODIC_DELAY_MAINTENANCE = 3600; // make it once a day? 3600 for now
-
     /* duration in millis */
     public static final Integer TEN_SECONDS = 10000;
     public static final Integer TEN_MINUTES = 600000;
@@ -31,6 +24,70 @@ public class MonitorConstants {
     public static final Integer TWO_MINUTES = 120000;
     public static final Integer TIMEZONE_OFFSET = MonitorConstants.TWO_HOURS;
 
+    /* HTTP timeouts; below STD_TIMEOUT, so a stalled request frees its network thread before the
+     * caller gives up on it */
+    public static final Integer HTTP_CONNECT_TIMEOUT = 3000;
+    public static final Integer HTTP_READ_TIMEOUT = 3000;
+
+    /* wall-clock aligned jobs, in millis: period, offset past the boundary, and the retry delay
+     * while the current slot hasn't succeeded yet */
+    public static final Integer JOB_PERIOD_HOURLY = MonitorConstants.ONE_HOUR;
+    public static final Integer JOB_PERIOD_TWELVE_HOURS = MonitorConstants.ONE_HOUR * 12;
+    public static final Integer JOB_PERIOD_MAINTENANCE = MonitorConstants.ONE_HOUR; // make it once a day?
+    public static final Integer JOB_OFFSET_HOURLY = MonitorConstants.TWO_MINUTES;
+    public static final Integer JOB_OFFSET_TWELVE_HOURS = MonitorConstants.TWO_MINUTES * 2;
+    public static final Integer JOB_OFFSET_MAINTENANCE = MonitorConstants.TEN_MINUTES * 3;
+    public static final Integer JOB_RETRY_DELAY = MonitorConstants.TEN_MINUTES;
+    /* bulk fetches wait for an unmetered network, but at most this long past their slot */
+    public static final Integer JOB_METERED_MAX_DEFERRAL = MonitorConstants.ONE_HOUR * 6;
+    public static final String JOB_PREFERENCES = "monitor_jobs";
+
+    /* device liveness: a device is offline if no heartbeat arrives within the timeout */
+    public static final Integer DEVICE_HEARTBEAT_TIMEOUT = MonitorConstants.TWO_MINUTES;
+    public static final Integer LIVENESS_TICK = 1000;
+    public static final Integer LIVENESS_WHEEL_SIZE = 256;
+
+
+    /* raw samples kept from the continuous sensor stream; an hour at a few samples per second */
+    public static final Integer SENSOR_BUFFER_CAPACITY = 16384;
+
+    /* MQTT messages waiting to be parsed/persisted off the client's I/O threads */
+    public static final Integer INGESTION_QUEUE_CAPACITY = 1024;
+
+    /* concurrent database readers next to the single writer; SQLite in WAL mode allows this */
+    public static final Integer DB_READER_THREADS = 2;
+
+    /* maintenance works through the weather table in id ranges, yielding the database thread to
+     * waiting reads whenever its time slice is used up */
+    public static final Integer MAINTENANCE_CHUNK_ROWS = 256;
+    public static final Integer MAINTENANCE_SLICE_MILLIS = 8;
+
+    /* chart point budget per series: one point per this many pixels of chart width, and the
+     * budget used until the chart has been laid out */
+    public static final Integer CHART_PIXELS_PER_POINT = 2;
+    public static final Integer CHART_DEFAULT_POINT_BUDGET = 500;
+
+    /* the live chart copies the sensor ring buffer this often, in millis */
+    public static final Integer SENSOR_CHART_REFRESH_MILLIS = 1000;
+
+    /* weather history export: writer buffer size, and the cache subdirectory shared through the
+     * FileProvider (see res/xml/file_paths.xml) */
+    public static final Integer EXPORT_BUFFER_SIZE = 65536;
+    public static final String EXPORT_DIRECTORY = "exports";
+
+    /* sensor history import: records per parse chunk, chunks in flight per parser thread, and
+     * rows per write transaction */
+    public static final Integer IMPORT_CHUNK_RECORDS = 4096;
+    public static final Integer IMPORT_CHUNKS_PER_THREAD = 2;
+    public static final Integer IMPORT_BATCH_ROWS = 2000;
+
+    /* delta sync: how long to wait for the Pi's answer to a history request over MQTT, in millis */
+    public static final Integer SENSOR_SYNC_TIMEOUT = 30000;
+
+    /* in-memory window of the weather table: how far past the visibility duration rows are kept,
+     * in millis, to cover a late maintenance run, and the most rows held */
+    public static final Integer WINDOW_CACHE_MARGIN = MonitorConstants.TWO_HOURS;
+    public static final Integer WINDOW_CACHE_MAX_ROWS = 2048;
 
     public static final String SENSOR_READING_FORMAT = "VX;TX|";
     public static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ssXXX";
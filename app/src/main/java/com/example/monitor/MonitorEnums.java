@@ -3,6 +3,10 @@ package com.example.monitor;
 public class MonitorEnums {
     public static boolean USE_MQTT = true;
     public static boolean USE_NGROK = false;
+    /* aggregate the instant sensor stream on the device instead of using the retained hourly point */
+    public static boolean USE_MQTT_CONTINUOUS = true;
+    /* ask the Pi for a fresh instant reading instead of taking the retained one */
+    public static boolean USE_MQTT_REQUEST_RESPONSE = true;
 
     /* enumerated constants for data sources (sensor, API) */
     public static final Integer HOME_SENSOR_INSTANT = 3;
@@ -20,12 +24,41 @@ public class MonitorEnums {
     public static final Integer HUMIDITY = 1;
     public static final Integer BRIGHTNESS = 2;
 
+    /* selectable chart ranges */
+    public static final Integer CHART_RANGE_48H = 0;
+    public static final Integer CHART_RANGE_7D = 1;
+    public static final Integer CHART_RANGE_30D = 2;
+
+    /* weather history export formats */
+    public static final Integer EXPORT_FORMAT_CSV = 0;
+    public static final Integer EXPORT_FORMAT_NDJSON = 1;
+
     /* constants for MQTT connectivity */
     public static final Integer MQTT_CONNECTED = 0;
     public static final Integer MQTT_NOT_CONNECTED = 1;
 
+    /* state of the default network */
+    public static final Integer NETWORK_OFFLINE = 0;
+    public static final Integer NETWORK_UNMETERED = 1;
+    public static final Integer NETWORK_METERED = 2;
+
+    /* backpressure policies for the MQTT ingestion queue */
+    public static final Integer QUEUE_DROP_OLDEST = 0;
+    public static final Integer QUEUE_BLOCK = 1;
+    public static Integer INGESTION_QUEUE_POLICY = QUEUE_DROP_OLDEST;
+
+    /* priority classes on the database thread; lower runs first */
+    public static final Integer DB_PRIORITY_INTERACTIVE = 0;
+    public static final Integer DB_PRIORITY_INGEST = 1;
+    public static final Integer DB_PRIORITY_MAINTENANCE = 2;
+
     /* enums for devices */
     public static final Integer LED_DEVICE = 0;
     public static final Integer NO_DEVICE_SELECTED = -1;
 
+    /* enums for device liveness */
+    public static final Integer DEVICE_ONLINE = 0;
+    public static final Integer DEVICE_OFFLINE = 1;
+    public static final Integer DEVICE_UNKNOWN = 2;
+
 }
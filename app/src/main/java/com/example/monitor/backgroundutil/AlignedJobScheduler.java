@@ -0,0 +1,218 @@
+package com.example.monitor.backgroundutil;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/* Runs periodic jobs on wall-clock boundaries (e.g. two minutes past every hour) instead of at a
+ * fixed rate from app start. The last successful slot of each job is persisted, so after a
+ * restart only the jobs whose current slot hasn't run yet are caught up, once each. A trigger
+ * that arrives while the same job is still running is folded into a single rerun. A paused job
+ * (e.g. a fetch while offline) isn't triggered or retried at all; resuming it catches up its
+ * missed slot at once. */
+public class AlignedJobScheduler {
+    private static final String TAG = "AlignedJobScheduler";
+    private static final String KEY_PREFIX = "lastRun_";
+
+    /* a job completes its future when done; completing exceptionally marks the slot as failed */
+    public interface Job {
+        CompletableFuture<?> run(long slotTime);
+    }
+
+    private static class JobEntry {
+        final String name;
+        final long periodMillis;
+        final long offsetMillis;
+        final long retryMillis;
+        final Job job;
+
+        long lastSuccessSlot;
+        boolean running = false;
+        boolean triggerPending = false;
+        boolean paused = false;
+        ScheduledFuture<?> nextTrigger;
+
+        JobEntry(String name, long periodMillis, long offsetMillis, long retryMillis, Job job) {
+            this.name = name;
+            this.periodMillis = periodMillis;
+            this.offsetMillis = offsetMillis;
+            this.retryMillis = retryMillis;
+            this.job = job;
+        }
+    }
+
+    private final ScheduledExecutorService scheduledExecutor;
+    private final SharedPreferences preferences;
+    private final MonitorClock clock;
+    private final Map<String, JobEntry> jobs = new LinkedHashMap<>();
+    private boolean started = false;
+
+    public AlignedJobScheduler(ScheduledExecutorService scheduledExecutor,
+                               SharedPreferences preferences) {
+        this(scheduledExecutor, preferences, MonitorClock.SYSTEM);
+    }
+
+    /* the executor's delays must run on the same timeline as the clock, e.g. both virtual */
+    public AlignedJobScheduler(ScheduledExecutorService scheduledExecutor,
+                               SharedPreferences preferences, MonitorClock clock) {
+        this.scheduledExecutor = scheduledExecutor;
+        this.preferences = preferences;
+        this.clock = clock;
+    }
+
+    /* slots start at offset + k * period in epoch millis; a failed slot is retried after retryMillis
+     * for as long as it is still the current slot */
+    public synchronized void register(String name, long periodMillis, long offsetMillis,
+                                      long retryMillis, Job job) {
+        JobEntry entry = new JobEntry(name, periodMillis, offsetMillis, retryMillis, job);
+        entry.lastSuccessSlot = preferences.getLong(KEY_PREFIX + name, 0);
+        jobs.put(name, entry);
+        if (started) {
+            catchUpOrSchedule(entry);
+        }
+    }
+
+    /* runs every job whose current slot was missed, then arms the next boundary of each */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        for (JobEntry entry : jobs.values()) {
+            catchUpOrSchedule(entry);
+        }
+    }
+
+    /* e.g. when connectivity returns: run whatever is due now instead of at the next boundary */
+    public synchronized void runMissedJobs() {
+        for (JobEntry entry : jobs.values()) {
+            if (isSlotMissed(entry, clock.currentTimeMillis())) {
+                trigger(entry);
+            }
+        }
+    }
+
+    /* pausing cancels the armed trigger; resuming runs the job now if its slot was missed */
+    public synchronized void setPaused(String name, boolean paused) {
+        JobEntry entry = jobs.get(name);
+        if (entry == null || entry.paused == paused) {
+            return;
+        }
+        entry.paused = paused;
+        Log.d(TAG, name + (paused ? ": paused" : ": resumed"));
+        if (paused) {
+            if (entry.nextTrigger != null) {
+                entry.nextTrigger.cancel(false);
+                entry.nextTrigger = null;
+            }
+        } else if (started && !entry.running) {
+            catchUpOrSchedule(entry);
+        }
+    }
+
+    public synchronized boolean isPaused(String name) {
+        JobEntry entry = jobs.get(name);
+        return entry != null && entry.paused;
+    }
+
+    public synchronized long getLastSuccessSlot(String name) {
+        JobEntry entry = jobs.get(name);
+        return entry == null ? 0 : entry.lastSuccessSlot;
+    }
+
+    private void catchUpOrSchedule(JobEntry entry) {
+        if (entry.paused) {
+            return;
+        }
+        if (isSlotMissed(entry, clock.currentTimeMillis())) {
+            Log.d(TAG, entry.name + ": slot missed while not running; catching up");
+            trigger(entry);
+        } else {
+            scheduleAt(entry, nextSlot(entry, clock.currentTimeMillis()));
+        }
+    }
+
+    private boolean isSlotMissed(JobEntry entry, long now) {
+        return entry.lastSuccessSlot < currentSlot(entry, now);
+    }
+
+    private long currentSlot(JobEntry entry, long now) {
+        return Math.floorDiv(now - entry.offsetMillis, entry.periodMillis) * entry.periodMillis
+                + entry.offsetMillis;
+    }
+
+    private long nextSlot(JobEntry entry, long now) {
+        return currentSlot(entry, now) + entry.periodMillis;
+    }
+
+    private void scheduleAt(JobEntry entry, long time) {
+        if (entry.nextTrigger != null) {
+            entry.nextTrigger.cancel(false);
+        }
+        long delay = Math.max(0, time - clock.currentTimeMillis());
+        entry.nextTrigger = scheduledExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (AlignedJobScheduler.this) {
+                    trigger(entry);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /* called with the lock held; overlapping triggers of a running job coalesce into one rerun */
+    private void trigger(JobEntry entry) {
+        if (entry.paused) {
+            return; /* the slot stays missed until the job is resumed */
+        }
+        if (entry.running) {
+            entry.triggerPending = true;
+            return;
+        }
+        entry.running = true;
+        long slot = currentSlot(entry, clock.currentTimeMillis());
+        CompletableFuture<?> result;
+        try {
+            result = entry.job.run(slot);
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        result.whenComplete((ignored, throwable) -> onJobDone(entry, slot, throwable));
+    }
+
+    private synchronized void onJobDone(JobEntry entry, long slot, Throwable throwable) {
+        entry.running = false;
+        long now = clock.currentTimeMillis();
+        if (throwable == null) {
+            entry.lastSuccessSlot = Math.max(entry.lastSuccessSlot, slot);
+            preferences.edit().putLong(KEY_PREFIX + entry.name, entry.lastSuccessSlot).apply();
+        } else {
+            Log.d(TAG, entry.name + ": run for slot " + slot + " failed: " + throwable);
+        }
+
+        if (entry.paused) {
+            entry.triggerPending = false;
+            return;
+        }
+        if (entry.triggerPending) {
+            entry.triggerPending = false;
+            if (isSlotMissed(entry, now)) {
+                trigger(entry);
+                return;
+            }
+        }
+
+        long next = nextSlot(entry, now);
+        if (isSlotMissed(entry, now) && now + entry.retryMillis < next) {
+            next = now + entry.retryMillis;
+        }
+        scheduleAt(entry, next);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.monitor.backgroundutil;
+
+import android.util.Log;
+
+import com.example.monitor.MonitorEnums;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Bounded handoff between producer threads (e.g. the MQTT client's I/O threads) and a single
+ * consumer that runs the handlers. Items and their handlers are kept in parallel ring arrays, so
+ * an offer doesn't allocate. When full, the queue either drops its oldest item
+ * (MonitorEnums.QUEUE_DROP_OLDEST) or blocks the producer until there is room
+ * (MonitorEnums.QUEUE_BLOCK). */
+public class BoundedHandoffQueue<T> {
+    private static final String TAG = "BoundedHandoffQueue";
+
+    public interface Handler<T> {
+        void handle(T item);
+    }
+
+    private final String name;
+    private final Object[] items;
+    private final Handler<T>[] handlers;
+    private final Integer policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private int head = 0;
+    private int count = 0;
+
+    /* metrics, guarded by the lock */
+    private int maxDepth = 0;
+    private long enqueued = 0;
+    private long dropped = 0;
+    private long processed = 0;
+    private long failed = 0;
+
+    @SuppressWarnings("unchecked")
+    public BoundedHandoffQueue(String name, int capacity, Integer policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.name = name;
+        this.items = new Object[capacity];
+        this.handlers = (Handler<T>[]) new Handler[capacity];
+        this.policy = policy;
+    }
+
+    /* returns false if the item was not queued (interrupted while blocked) */
+    public boolean offer(T item, Handler<T> handler) {
+        lock.lock();
+        try {
+            while (count == items.length) {
+                if (MonitorEnums.QUEUE_BLOCK.equals(policy)) {
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped++;
+                        return false;
+                    }
+                } else {
+                    removeHead();
+                    dropped++;
+                }
+            }
+            int tail = (head + count) % items.length;
+            items[tail] = item;
+            handlers[tail] = handler;
+            count++;
+            enqueued++;
+            maxDepth = Math.max(maxDepth, count);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* consumer loop; runs the handlers one at a time until the thread is interrupted */
+    public void runConsumer() {
+        while (!Thread.currentThread().isInterrupted()) {
+            T item;
+            Handler<T> handler;
+            lock.lock();
+            try {
+                while (count == 0) {
+                    notEmpty.await();
+                }
+                @SuppressWarnings("unchecked")
+                T headItem = (T) items[head];
+                item = headItem;
+                handler = handlers[head];
+                removeHead();
+                notFull.signal();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean succeeded = true;
+            try {
+                handler.handle(item);
+            } catch (RuntimeException e) {
+                succeeded = false;
+                Log.d(TAG, name + ": handler failed: " + e.getMessage());
+            }
+            lock.lock();
+            try {
+                processed++;
+                if (!succeeded) {
+                    failed++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void removeHead() {
+        items[head] = null;
+        handlers[head] = null;
+        head = (head + 1) % items.length;
+        count--;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return items.length;
+    }
+
+    public int getDepth() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxDepth() {
+        lock.lock();
+        try {
+            return maxDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEnqueued() {
+        lock.lock();
+        try {
+            return enqueued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getProcessed() {
+        lock.lock();
+        try {
+            return processed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFailed() {
+        lock.lock();
+        try {
+            return failed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return name + ": depth " + count + "/" + items.length + ", max depth " + maxDepth
+                    + ", enqueued " + enqueued + ", processed " + processed
+                    + ", dropped " + dropped + ", failed " + failed;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
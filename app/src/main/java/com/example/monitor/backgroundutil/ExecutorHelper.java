@@ -2,9 +2,24 @@ package com.example.monitor.backgroundutil;
 
 import android.util.Log;
 
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /* helper class for creating threads to do background tasks */
 public class ExecutorHelper {
@@ -13,54 +28,200 @@ public class ExecutorHelper {
     /* singletons */
     private static ScheduledExecutorService scheduledExecutorInstance;
     private static ExecutorService networkRequestExecutorInstance;
-    private static ExecutorService databaseExecutorInstance;
+    private static PriorityDatabaseExecutor databaseExecutorInstance;
+    private static PriorityDatabaseExecutor databaseReaderPoolInstance;
     private static ExecutorService gpsExecutorInstance;
     private static ExecutorService serviceExecutor;
+    private static ExecutorService ingestionExecutorInstance;
+    private static ExecutorService startupExecutorInstance;
+    private static ExecutorService importExecutorInstance;
+    private static ExecutorService importParserPoolInstance;
+    private static BoundedHandoffQueue<Mqtt5Publish> mqttIngestionQueueInstance;
+
+    /* every pool created here, for diagnostics */
+    private static final List<InstrumentedThreadPoolExecutor> pools = new CopyOnWriteArrayList<>();
+    private static final List<InstrumentedScheduledThreadPoolExecutor> scheduledPools =
+            new CopyOnWriteArrayList<>();
 
     public static synchronized ScheduledExecutorService getScheduledPoolInstance(){
         if(scheduledExecutorInstance == null){
             int coreCount = Runtime.getRuntime().availableProcessors();
             Log.d(TAG, "scheduledExecutor created. # of threads (== # of cores): "+ coreCount);
             /* decide on thread qty based on nr of expected IO tasks instead */
-            scheduledExecutorInstance = Executors.newScheduledThreadPool(coreCount);
+            InstrumentedScheduledThreadPoolExecutor pool =
+                    new InstrumentedScheduledThreadPoolExecutor("scheduled", coreCount);
+            scheduledPools.add(pool);
+            scheduledExecutorInstance = pool;
         }
         return scheduledExecutorInstance;
     }
 
     public static synchronized ExecutorService getNetworkRequestExecutorInstance(){
         if(networkRequestExecutorInstance == null){
-            networkRequestExecutorInstance = Executors.newSingleThreadExecutor();
+            networkRequestExecutorInstance = newSingleThreadPool("network");
             return networkRequestExecutorInstance;
         }
         return networkRequestExecutorInstance;
     }
 
-    public static synchronized ExecutorService getDatabaseExecutorInstance(){
+    /* the single serialized writer; the queue is ordered by priority class */
+    public static synchronized PriorityDatabaseExecutor getDatabaseExecutorInstance(){
         if(databaseExecutorInstance == null){
-            databaseExecutorInstance = Executors.newSingleThreadExecutor();
+            databaseExecutorInstance = new PriorityDatabaseExecutor("database", 1);
+            pools.add(databaseExecutorInstance);
             return databaseExecutorInstance;
         }
         return databaseExecutorInstance;
     }
 
+    /* concurrent readers; with WAL each query reads its own snapshot while the writer commits */
+    public static synchronized PriorityDatabaseExecutor getDatabaseReaderPoolInstance(){
+        if(databaseReaderPoolInstance == null){
+            databaseReaderPoolInstance = new PriorityDatabaseExecutor("database-read",
+                    MonitorConstants.DB_READER_THREADS);
+            pools.add(databaseReaderPoolInstance);
+        }
+        return databaseReaderPoolInstance;
+    }
+
     public static synchronized ExecutorService getServiceExecutorInstance(){
         if(serviceExecutor == null){
-            serviceExecutor = Executors.newSingleThreadExecutor();
+            serviceExecutor = newSingleThreadPool("service");
             return serviceExecutor;
         }
         return serviceExecutor;
     }
 
+    /* dedicated consumer thread for the MQTT ingestion queue */
+    public static synchronized ExecutorService getIngestionExecutorInstance(){
+        if(ingestionExecutorInstance == null){
+            ingestionExecutorInstance = newSingleThreadPool("ingestion");
+        }
+        return ingestionExecutorInstance;
+    }
+
+    /* MQTT callbacks only enqueue here; parsing and persistence run on the ingestion thread */
+    public static synchronized BoundedHandoffQueue<Mqtt5Publish> getMqttIngestionQueueInstance(){
+        if(mqttIngestionQueueInstance == null){
+            final BoundedHandoffQueue<Mqtt5Publish> queue = new BoundedHandoffQueue<>(
+                    "mqttIngestion", MonitorConstants.INGESTION_QUEUE_CAPACITY,
+                    MonitorEnums.INGESTION_QUEUE_POLICY);
+            getIngestionExecutorInstance().execute(new Runnable() {
+                @Override
+                public void run() {
+                    queue.runConsumer();
+                }
+            });
+            mqttIngestionQueueInstance = queue;
+        }
+        return mqttIngestionQueueInstance;
+    }
+
     public static synchronized ExecutorService getGpsExecutorInstance(){
         if(gpsExecutorInstance == null){
-            gpsExecutorInstance = Executors.newCachedThreadPool();
+            /* the same shape as Executors.newCachedThreadPool() */
+            InstrumentedThreadPoolExecutor pool = new InstrumentedThreadPoolExecutor("gps", 0,
+                    Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+            pools.add(pool);
+            gpsExecutorInstance = pool;
             return gpsExecutorInstance;
         }
         return gpsExecutorInstance;
     }
 
+    /* runs independent cold-start steps in parallel; the threads time out once startup is over */
+    public static synchronized ExecutorService getStartupExecutorInstance(){
+        if(startupExecutorInstance == null){
+            int coreCount = Runtime.getRuntime().availableProcessors();
+            InstrumentedThreadPoolExecutor pool = new InstrumentedThreadPoolExecutor("startup",
+                    coreCount, coreCount, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            pool.allowCoreThreadTimeOut(true);
+            pools.add(pool);
+            startupExecutorInstance = pool;
+        }
+        return startupExecutorInstance;
+    }
+
+    /* runs one history import at a time: reading, hourly aggregation and handing off batches */
+    public static synchronized ExecutorService getImportExecutorInstance(){
+        if(importExecutorInstance == null){
+            importExecutorInstance = newSingleThreadPool("import");
+        }
+        return importExecutorInstance;
+    }
+
+    /* parses import chunks in parallel; CPU bound, so one thread per core, idle ones time out */
+    public static synchronized ExecutorService getImportParserPoolInstance(){
+        if(importParserPoolInstance == null){
+            int coreCount = Runtime.getRuntime().availableProcessors();
+            InstrumentedThreadPoolExecutor pool = new InstrumentedThreadPoolExecutor("import-parse",
+                    coreCount, coreCount, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            pool.allowCoreThreadTimeOut(true);
+            pools.add(pool);
+            importParserPoolInstance = pool;
+        }
+        return importParserPoolInstance;
+    }
+
+    private static InstrumentedThreadPoolExecutor newSingleThreadPool(String name) {
+        InstrumentedThreadPoolExecutor pool = InstrumentedThreadPoolExecutor.newSingleThread(name,
+                new LinkedBlockingQueue<Runnable>());
+        pools.add(pool);
+        return pool;
+    }
 
+    /*** diagnostics ***/
+    public static List<PoolStats> getPoolStats() {
+        List<PoolStats> stats = new ArrayList<>();
+        for (InstrumentedThreadPoolExecutor pool : pools) {
+            stats.add(pool.getStats());
+        }
+        for (InstrumentedScheduledThreadPoolExecutor pool : scheduledPools) {
+            stats.add(pool.getStats());
+        }
+        return stats;
+    }
 
+    /* one line block per pool, plus the MQTT ingestion queue */
+    public static String getDiagnosticsReport() {
+        StringBuilder report = new StringBuilder();
+        for (PoolStats stats : getPoolStats()) {
+            report.append(stats).append('\n');
+        }
+        BoundedHandoffQueue<Mqtt5Publish> queue;
+        synchronized (ExecutorHelper.class) {
+            queue = mqttIngestionQueueInstance;
+        }
+        if (queue != null) {
+            report.append(queue).append('\n');
+        }
+        return report.toString();
+    }
 
+    /*** composable stages on the executors above ***/
+    /* runs a task as a pipeline stage; checked exceptions complete the stage exceptionally */
+    public static <T> CompletableFuture<T> supplyAsync(final Callable<T> task, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
 
-}
\ No newline at end of file
+    /* fails the stage after the timeout without parking a thread on it (no orTimeout on Java 8);
+     * the task itself keeps its executor thread until it returns */
+    public static <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> stage,
+                                                       final long timeoutMillis) {
+        final ScheduledFuture<?> timer = getScheduledPoolInstance().schedule(new Runnable() {
+            @Override
+            public void run() {
+                stage.completeExceptionally(
+                        new TimeoutException("stage timed out after " + timeoutMillis + " ms"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        stage.whenComplete((result, throwable) -> timer.cancel(false));
+        return stage;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.monitor.backgroundutil;
+
+/* Hashed timing wheel: deadlines are hashed by tick into a fixed ring of buckets, so scheduling,
+ * rescheduling and cancelling are O(1) and each tick only visits one bucket. Timeouts are
+ * caller-owned and reused, so rescheduling a deadline (e.g. on every heartbeat) doesn't allocate.
+ * Not thread-safe on its own; callers serialize access. */
+public class HashedTimingWheel {
+
+    public interface ExpiryHandler {
+        void onExpired(Timeout timeout);
+    }
+
+    /* a reusable node; extend it to attach the caller's state */
+    public static class Timeout {
+        private long deadlineTick;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        public boolean isScheduled() {
+            return bucket >= 0;
+        }
+    }
+
+    private final long tickMillis;
+    private final long startTime;
+    private final Timeout[] buckets;
+    private long currentTick = 0; /* next tick to be processed */
+    private int scheduledCount = 0;
+
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startTime) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tick and wheel size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.startTime = startTime;
+        this.buckets = new Timeout[wheelSize];
+    }
+
+    /* (re)schedules the timeout to expire on the first tick at or after the deadline */
+    public void schedule(Timeout timeout, long deadlineMillis) {
+        cancel(timeout);
+        long tick = (deadlineMillis - startTime + tickMillis - 1) / tickMillis;
+        timeout.deadlineTick = Math.max(tick, currentTick);
+        timeout.bucket = (int) (timeout.deadlineTick % buckets.length);
+
+        Timeout head = buckets[timeout.bucket];
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        scheduledCount++;
+    }
+
+    public void cancel(Timeout timeout) {
+        if (!timeout.isScheduled()) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        scheduledCount--;
+    }
+
+    /* processes every tick up to the given time, expiring the timeouts that are due */
+    public void advanceTo(long nowMillis, ExpiryHandler handler) {
+        long targetTick = (nowMillis - startTime) / tickMillis;
+        while (currentTick <= targetTick) {
+            Timeout timeout = buckets[(int) (currentTick % buckets.length)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineTick <= currentTick) {
+                    cancel(timeout);
+                    handler.onExpired(timeout);
+                }
+                timeout = next;
+            }
+            currentTick++;
+        }
+    }
+
+    public int getScheduledCount() {
+        return scheduledCount;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.monitor.backgroundutil;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Scheduled pool with the same measurements as InstrumentedThreadPoolExecutor. For a delayed
+ * task, "queue wait" is how late it started after its trigger time, i.e. time spent waiting for
+ * a free thread. */
+public class InstrumentedScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor {
+    private final String name;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public InstrumentedScheduledThreadPoolExecutor(String name, int corePoolSize) {
+        super(corePoolSize, new NamedThreadFactory(name));
+        this.name = name;
+        /* stage timeouts are cancelled on almost every completion; don't keep them queued */
+        setRemoveOnCancelPolicy(true);
+        /* schedule() doesn't go through execute(), so rejections are counted in the handler */
+        setRejectedExecutionHandler((runnable, executor) -> {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(name + ": task rejected");
+        });
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable,
+                                                          RunnableScheduledFuture<V> task) {
+        recordQueueDepth(getQueue().size() + 1);
+        return new TimedScheduledTask<>(task);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> callable,
+                                                          RunnableScheduledFuture<V> task) {
+        recordQueueDepth(getQueue().size() + 1);
+        return new TimedScheduledTask<>(task);
+    }
+
+    private void recordQueueDepth(int depth) {
+        int max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+            /* retry; another producer raised the max */
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /* queue depth counts delayed tasks that aren't due yet, e.g. every pending timeout */
+    public PoolStats getStats() {
+        return new PoolStats(name, getActiveCount(), getPoolSize(), getQueue().size(),
+                maxQueueDepth.get(), getCompletedTaskCount(), rejected.get(), queueWait, runTime);
+    }
+
+    /* delegates everything to the pool's own task; run() is timed on every (periodic) execution */
+    private class TimedScheduledTask<V> implements RunnableScheduledFuture<V> {
+        private final RunnableScheduledFuture<V> task;
+
+        TimedScheduledTask(RunnableScheduledFuture<V> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            queueWait.recordNanos(Math.max(0, -task.getDelay(TimeUnit.NANOSECONDS)));
+            try {
+                task.run();
+            } finally {
+                runTime.recordNanos(System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return task.isPeriodic();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return task.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof TimedScheduledTask) {
+                return task.compareTo(((TimedScheduledTask<?>) other).task);
+            }
+            return task.compareTo(other);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return task.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+    }
+}
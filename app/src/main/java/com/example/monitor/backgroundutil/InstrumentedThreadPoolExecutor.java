@@ -0,0 +1,57 @@
+package com.example.monitor.backgroundutil;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* ThreadPoolExecutor that times every task through TimedTask and counts rejections. Everything
+ * goes through execute(), including submit() and CompletableFuture stages, so nothing escapes
+ * the measurements. */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+    private final String name;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public InstrumentedThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize,
+                                          long keepAliveTime, TimeUnit unit,
+                                          BlockingQueue<Runnable> workQueue) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+                new NamedThreadFactory(name));
+        this.name = name;
+    }
+
+    /* the same shape as Executors.newSingleThreadExecutor() */
+    public static InstrumentedThreadPoolExecutor newSingleThread(String name,
+                                                                 BlockingQueue<Runnable> workQueue) {
+        return new InstrumentedThreadPoolExecutor(name, 1, 1, 0L, TimeUnit.MILLISECONDS, workQueue);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        try {
+            super.execute(new TimedTask(command, queueWait, runTime));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+        int depth = getQueue().size();
+        int max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+            /* retry; another producer raised the max */
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PoolStats getStats() {
+        return new PoolStats(name, getActiveCount(), getPoolSize(), getQueue().size(),
+                maxQueueDepth.get(), getCompletedTaskCount(), rejected.get(), queueWait, runTime);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.monitor.backgroundutil;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* Lock-free latency histogram with power-of-two microsecond buckets: bucket i holds values below
+ * 2^i us. Recording is a few atomic increments, so it can sit on every task's hot path;
+ * percentiles are reported as the upper bound of the bucket they fall in. */
+public class LatencyHistogram {
+    private static final int BUCKET_COUNT = 40; /* 2^39 us is about six days */
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            /* retry; another thread raised the max */
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public long getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : totalMicros.get() / n;
+    }
+
+    /* upper bound of the bucket holding the given percentile, capped at the recorded max */
+    public long getPercentileMicros(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(i == 0 ? 0 : 1L << i, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n %d, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                getCount(), getMeanMicros() / 1000.0, getPercentileMicros(50) / 1000.0,
+                getPercentileMicros(99) / 1000.0, getMaxMicros() / 1000.0);
+    }
+}
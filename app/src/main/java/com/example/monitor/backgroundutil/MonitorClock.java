@@ -0,0 +1,14 @@
+package com.example.monitor.backgroundutil;
+
+/* Source of wall-clock time for scheduling and data aging. Production code uses SYSTEM; tests
+ * pass a virtual clock so that weeks of scheduled work can be simulated in seconds. */
+public interface MonitorClock {
+    MonitorClock SYSTEM = new MonitorClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long currentTimeMillis();
+}
@@ -0,0 +1,22 @@
+package com.example.monitor.backgroundutil;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* names pool threads "monitor-<pool>-<n>" so they are recognizable in traces and thread dumps */
+public class NamedThreadFactory implements ThreadFactory {
+    private final String poolName;
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    public NamedThreadFactory(String poolName) {
+        this.poolName = poolName;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "monitor-" + poolName + "-"
+                + threadNumber.getAndIncrement());
+        thread.setDaemon(false);
+        return thread;
+    }
+}
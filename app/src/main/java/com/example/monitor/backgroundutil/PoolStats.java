@@ -0,0 +1,65 @@
+package com.example.monitor.backgroundutil;
+
+import java.util.Locale;
+
+/* point-in-time view of one instrumented pool, for the diagnostics API */
+public class PoolStats {
+    private final String name;
+    private final int activeThreads;
+    private final int poolSize;
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final long completed;
+    private final long rejected;
+    private final String queueWait;
+    private final String runTime;
+
+    public PoolStats(String name, int activeThreads, int poolSize, int queueDepth,
+                     int maxQueueDepth, long completed, long rejected,
+                     LatencyHistogram queueWait, LatencyHistogram runTime) {
+        this.name = name;
+        this.activeThreads = activeThreads;
+        this.poolSize = poolSize;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.completed = completed;
+        this.rejected = rejected;
+        this.queueWait = queueWait.toString();
+        this.runTime = runTime.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s: active %d/%d, queue %d (max %d), completed %d, "
+                        + "rejected %d\n  wait: %s\n  run:  %s", name, activeThreads, poolSize,
+                queueDepth, maxQueueDepth, completed, rejected, queueWait, runTime);
+    }
+}
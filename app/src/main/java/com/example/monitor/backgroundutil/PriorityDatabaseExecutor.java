@@ -0,0 +1,80 @@
+package com.example.monitor.backgroundutil;
+
+import com.example.monitor.MonitorEnums;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Database pool whose queue is ordered by priority class (MonitorEnums.DB_PRIORITY_*) and then
+ * by submission order, so an interactive task never waits behind queued ingest or maintenance
+ * work, only behind tasks already running. Plain execute()/submit() calls, including
+ * CompletableFuture stages, are treated as ingest. Used with one thread as the serialized
+ * writer, and with a few threads as the reader pool. */
+public class PriorityDatabaseExecutor extends InstrumentedThreadPoolExecutor {
+    private final AtomicLong sequence = new AtomicLong();
+
+    /* what the queue actually orders; TimedTask delegates compareTo to it */
+    private static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        final Runnable task;
+        final int priority;
+        final long sequence;
+
+        PrioritizedTask(Runnable task, int priority, long sequence) {
+            this.task = task;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public PriorityDatabaseExecutor(String name, int threadCount) {
+        super(name, threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command instanceof PrioritizedTask) {
+            super.execute(command);
+        } else {
+            execute(command, MonitorEnums.DB_PRIORITY_INGEST);
+        }
+    }
+
+    public void execute(Runnable command, Integer priority) {
+        super.execute(new PrioritizedTask(command, priority, sequence.getAndIncrement()));
+    }
+
+    public <T> Future<T> submit(Callable<T> task, Integer priority) {
+        FutureTask<T> futureTask = new FutureTask<>(task);
+        execute(futureTask, priority);
+        return futureTask;
+    }
+
+    /* an Executor view for composing stages of one priority class */
+    public Executor withPriority(final Integer priority) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                PriorityDatabaseExecutor.this.execute(command, priority);
+            }
+        };
+    }
+}
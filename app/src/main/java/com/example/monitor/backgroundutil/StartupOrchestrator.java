@@ -0,0 +1,184 @@
+package com.example.monitor.backgroundutil;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/* Runs cold-start work as a dependency graph off the main thread. Each step starts on the executor
+ * as soon as the steps it depends on have finished, so independent steps run in parallel; a step
+ * whose dependency failed is skipped. Wait, run and finish times of every step are recorded
+ * relative to the orchestrator's creation, together with milestones such as the first chart
+ * frame. */
+public class StartupOrchestrator {
+    private static final String TAG = "StartupOrchestrator";
+
+    /* a step may finish synchronously (return null) or hand back the future of its async work */
+    public interface Step {
+        CompletableFuture<?> run() throws Exception;
+    }
+
+    private static class StepEntry {
+        final String name;
+        final String[] dependsOn;
+        final Step step;
+
+        CompletableFuture<Void> done;
+        long readyNanos = -1;
+        long startNanos = -1;
+        long endNanos = -1;
+        Throwable failure;
+
+        StepEntry(String name, String[] dependsOn, Step step) {
+            this.name = name;
+            this.dependsOn = dependsOn;
+            this.step = step;
+        }
+    }
+
+    private final String name;
+    private final Executor executor;
+    private final long originNanos = System.nanoTime();
+    private final Map<String, StepEntry> steps = new LinkedHashMap<>();
+    private final Map<String, Long> milestones = new LinkedHashMap<>();
+    private CompletableFuture<Void> allDone;
+
+    public StartupOrchestrator(String name, Executor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /* dependencies must be added first, which also keeps the graph acyclic */
+    public synchronized StartupOrchestrator addStep(String stepName, Step step,
+                                                    String... dependsOn) {
+        if (allDone != null) {
+            throw new IllegalStateException(name + ": already started");
+        }
+        if (steps.containsKey(stepName)) {
+            throw new IllegalArgumentException(name + ": duplicate step " + stepName);
+        }
+        for (String dependency : dependsOn) {
+            if (!steps.containsKey(dependency)) {
+                throw new IllegalArgumentException(name + ": step " + stepName
+                        + " depends on unknown step " + dependency);
+            }
+        }
+        steps.put(stepName, new StepEntry(stepName, dependsOn, step));
+        return this;
+    }
+
+    /* returns at once; the future completes when every step has finished or been skipped */
+    public synchronized CompletableFuture<Void> start() {
+        if (allDone != null) {
+            return allDone;
+        }
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        for (StepEntry entry : steps.values()) {
+            CompletableFuture<?>[] dependencies = new CompletableFuture<?>[entry.dependsOn.length];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = steps.get(entry.dependsOn[i]).done;
+            }
+            entry.done = CompletableFuture.allOf(dependencies)
+                    .whenComplete((ignored, throwable) -> onStepReady(entry))
+                    .thenComposeAsync(ignored -> runStep(entry), executor)
+                    .whenComplete((ignored, throwable) -> onStepDone(entry, throwable));
+            all.add(entry.done);
+        }
+        allDone = CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, throwable) -> {
+                    Log.d(TAG, getReport());
+                    return null;
+                });
+        return allDone;
+    }
+
+    private synchronized void onStepReady(StepEntry entry) {
+        entry.readyNanos = System.nanoTime();
+    }
+
+    private CompletableFuture<Void> runStep(StepEntry entry) {
+        synchronized (this) {
+            entry.startNanos = System.nanoTime();
+        }
+        CompletableFuture<?> work;
+        try {
+            work = entry.step.run();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+        if (work == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return work.thenApply(result -> null);
+    }
+
+    private synchronized void onStepDone(StepEntry entry, Throwable throwable) {
+        entry.endNanos = System.nanoTime();
+        if (throwable != null) {
+            entry.failure = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+            Log.d(TAG, name + ": " + entry.name + " failed or skipped: " + entry.failure);
+        }
+    }
+
+    /* completes when the step has finished; null for an unknown step or before start() */
+    public synchronized CompletableFuture<Void> whenDone(String stepName) {
+        StepEntry entry = steps.get(stepName);
+        return entry == null ? null : entry.done;
+    }
+
+    /* records a milestone the first time it is reached; returns false on repeats */
+    public synchronized boolean mark(String milestone) {
+        if (milestones.containsKey(milestone)) {
+            return false;
+        }
+        milestones.put(milestone, System.nanoTime());
+        return true;
+    }
+
+    /* milliseconds from creation to the milestone, or -1 if not reached yet */
+    public synchronized long getMilestoneMillis(String milestone) {
+        Long nanos = milestones.get(milestone);
+        return nanos == null ? -1 : sinceOrigin(nanos);
+    }
+
+    /* milliseconds the step spent running (including its async work), or -1 if not finished */
+    public synchronized long getStepMillis(String stepName) {
+        StepEntry entry = steps.get(stepName);
+        if (entry == null || entry.startNanos < 0 || entry.endNanos < 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(entry.endNanos - entry.startNanos);
+    }
+
+    private long sinceOrigin(long nanos) {
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos - originNanos);
+    }
+
+    /* one line per step: when it became ready, started and finished, in ms since creation */
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder(name).append(":\n");
+        for (StepEntry entry : steps.values()) {
+            report.append("  ").append(entry.name)
+                    .append(": ready ").append(sinceOrigin(entry.readyNanos))
+                    .append(" ms, started ").append(sinceOrigin(entry.startNanos))
+                    .append(" ms, done ").append(sinceOrigin(entry.endNanos))
+                    .append(" ms (ran ").append(getStepMillis(entry.name)).append(" ms)");
+            if (entry.failure != null) {
+                report.append(", failed: ").append(entry.failure);
+            }
+            report.append('\n');
+        }
+        for (Map.Entry<String, Long> milestone : milestones.entrySet()) {
+            report.append("  ").append(milestone.getKey()).append(" at ")
+                    .append(sinceOrigin(milestone.getValue())).append(" ms\n");
+        }
+        return report.toString();
+    }
+}
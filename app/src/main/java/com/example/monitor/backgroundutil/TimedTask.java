@@ -0,0 +1,42 @@
+package com.example.monitor.backgroundutil;
+
+/* Wraps a task handed to an instrumented pool: records how long it waited in the queue and how
+ * long it ran. Ordering is delegated to the wrapped task, so priority queues still see the
+ * task's own priority through the wrapper. */
+public class TimedTask implements Runnable, Comparable<TimedTask> {
+    private final Runnable task;
+    private final long enqueuedNanos;
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram runTime;
+
+    public TimedTask(Runnable task, LatencyHistogram queueWait, LatencyHistogram runTime) {
+        this.task = task;
+        this.enqueuedNanos = System.nanoTime();
+        this.queueWait = queueWait;
+        this.runTime = runTime;
+    }
+
+    public Runnable getTask() {
+        return task;
+    }
+
+    @Override
+    public void run() {
+        long startNanos = System.nanoTime();
+        queueWait.recordNanos(startNanos - enqueuedNanos);
+        try {
+            task.run();
+        } finally {
+            runTime.recordNanos(System.nanoTime() - startNanos);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public int compareTo(TimedTask other) {
+        if (task instanceof Comparable && other.task instanceof Comparable) {
+            return ((Comparable) task).compareTo(other.task);
+        }
+        return 0;
+    }
+}
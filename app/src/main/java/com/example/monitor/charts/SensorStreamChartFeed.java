@@ -0,0 +1,107 @@
+package com.example.monitor.charts;
+
+import android.util.Log;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.repositories.execmodel.SensorSampleBuffer;
+
+/* Feeds a TimeSeriesChartView from the raw sensor ring buffer while started. Every
+ * SENSOR_CHART_REFRESH_MILLIS the buffer is copied, oldest first, into arrays owned here and sized
+ * to its capacity once; the view draws straight from them. Nothing is copied if no sample arrived
+ * since the last copy. To be used on the main thread. */
+public class SensorStreamChartFeed {
+    private static final String TAG = "SensorStreamChartFeed";
+    private static final int SERIES_INDEX = 0;
+
+    /* the buffer exists once the sensor streams are started; until then this returns null */
+    public interface BufferSource {
+        SensorSampleBuffer getSensorSampleBuffer();
+    }
+
+    private final TimeSeriesChartView chartView;
+    private final BufferSource bufferSource;
+    private final int color;
+
+    private long[] times = new long[0];
+    private float[] celsiusValues = new float[0];
+    private float[] humidityValues = new float[0];
+    private int count = 0;
+    private long copiedLatestTime = -1;
+    private int copiedSize = -1;
+
+    private Integer parameter = MonitorEnums.TEMPERATURE;
+    private boolean started = false;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            if (!started) {
+                return;
+            }
+            copyFromBuffer();
+            chartView.postDelayed(this, MonitorConstants.SENSOR_CHART_REFRESH_MILLIS);
+        }
+    };
+
+    public SensorStreamChartFeed(TimeSeriesChartView chartView, BufferSource bufferSource,
+                                 int color) {
+        this.chartView = chartView;
+        this.bufferSource = bufferSource;
+        this.color = color;
+        chartView.setValueRange(MonitorConstants.MINTEMP, MonitorConstants.MAXTEMP);
+    }
+
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        refresh.run();
+    }
+
+    public void stop() {
+        started = false;
+        chartView.removeCallbacks(refresh);
+    }
+
+    /* MonitorEnums.TEMPERATURE or HUMIDITY; others keep the current parameter */
+    public void setParameter(Integer parameter) {
+        if (MonitorEnums.TEMPERATURE.equals(parameter)) {
+            chartView.setValueRange(MonitorConstants.MINTEMP, MonitorConstants.MAXTEMP);
+        } else if (MonitorEnums.HUMIDITY.equals(parameter)) {
+            chartView.setValueRange(0, 100);
+        } else {
+            Log.i(TAG, "setParameter: parameter " + parameter + " is not streamed.");
+            return;
+        }
+        this.parameter = parameter;
+        bindSeries();
+    }
+
+    private void copyFromBuffer() {
+        SensorSampleBuffer buffer = bufferSource.getSensorSampleBuffer();
+        if (buffer == null) {
+            return;
+        }
+        long latestTime = buffer.getLatestTime();
+        int size = buffer.size();
+        if (latestTime == copiedLatestTime && size == copiedSize) {
+            return;
+        }
+        if (times.length != buffer.getCapacity()) {
+            times = new long[buffer.getCapacity()];
+            celsiusValues = new float[buffer.getCapacity()];
+            humidityValues = new float[buffer.getCapacity()];
+        }
+        count = buffer.copyInto(times, celsiusValues, humidityValues);
+        copiedLatestTime = latestTime;
+        copiedSize = size;
+        bindSeries();
+    }
+
+    private void bindSeries() {
+        float[] values = MonitorEnums.HUMIDITY.equals(parameter) ? humidityValues : celsiusValues;
+        chartView.setSeries(SERIES_INDEX, times, values, count, color);
+    }
+}
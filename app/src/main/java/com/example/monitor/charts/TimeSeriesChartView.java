@@ -0,0 +1,437 @@
+package com.example.monitor.charts;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.backgroundutil.LatencyHistogram;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+/* Lightweight line chart for dense time series, e.g. the raw sensor stream. Series are drawn
+ * straight from the caller's primitive arrays: no Entry objects and no layout pass per update.
+ * Each frame only walks the visible points, found by binary search, and brings every pixel column
+ * down to its first, lowest, highest and last point, so a frame costs about four path points per
+ * pixel of width however many samples are visible, and peaks stay visible. The Path, paints and
+ * label buffers are reused across frames. Pinch zooms the time axis around the fingers, dragging
+ * pans, a double tap shows everything again; while the latest sample is in view, the view follows
+ * new samples. To be used on the main thread. */
+public class TimeSeriesChartView extends View {
+    private static final String TAG = "TimeSeriesChartView";
+
+    private static final int MAX_SERIES = 4;
+    private static final int VALUE_GRID_LINES = 5;
+    private static final int TIME_GRID_LINES = 4;
+    private static final long MIN_VISIBLE_SPAN = MonitorConstants.TEN_SECONDS;
+
+    /* the caller's arrays, read on every draw; times sorted ascending */
+    private final long[][] seriesTimes = new long[MAX_SERIES][];
+    private final float[][] seriesValues = new float[MAX_SERIES][];
+    private final int[] seriesCounts = new int[MAX_SERIES];
+    private final boolean[] seriesVisible = new boolean[MAX_SERIES];
+    private final Paint[] seriesPaints = new Paint[MAX_SERIES];
+
+    private final Path path = new Path();
+    private final Paint gridPaint = new Paint();
+    private final Paint valueLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint timeLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final String[] valueLabels = new String[VALUE_GRID_LINES];
+    private final char[] timeLabel = new char[8]; /* HH:mm:ss */
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    private float valueMin = MonitorConstants.MINTEMP;
+    private float valueMax = MonitorConstants.MAXTEMP;
+
+    /* visible window, in millis */
+    private long viewStart;
+    private long viewEnd;
+    private boolean viewportSet = false;
+    private boolean followLatest = true;
+
+    private boolean hasData = false;
+    private long dataStart;
+    private long dataEnd;
+
+    private float plotLeft, plotTop, plotRight, plotBottom;
+
+    /* pixel column being decimated in drawSeries() */
+    private int columnPoints;
+    private float columnFirstX, columnFirstY, columnLastX, columnLastY;
+    private float columnTopY, columnBottomY; /* screen y, so top is the highest value */
+    private boolean columnTopFirst;
+    private boolean pathStarted;
+
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final LatencyHistogram drawTimes = new LatencyHistogram();
+
+    public TimeSeriesChartView(Context context) {
+        this(context, null);
+    }
+
+    public TimeSeriesChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = context.getResources().getDisplayMetrics().density;
+        float textSize = 12 * context.getResources().getDisplayMetrics().scaledDensity;
+
+        for (int i = 0; i < MAX_SERIES; i++) {
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeJoin(Paint.Join.ROUND);
+            paint.setStrokeWidth(1.5f * density);
+            paint.setColor(Color.YELLOW);
+            seriesPaints[i] = paint;
+            seriesVisible[i] = true;
+        }
+        gridPaint.setColor(Color.GRAY);
+        gridPaint.setStrokeWidth(density);
+        valueLabelPaint.setColor(Color.WHITE);
+        valueLabelPaint.setTextSize(textSize);
+        valueLabelPaint.setTextAlign(Paint.Align.RIGHT);
+        timeLabelPaint.setColor(Color.WHITE);
+        timeLabelPaint.setTextSize(textSize);
+        timeLabelPaint.setTextAlign(Paint.Align.CENTER);
+        updateValueLabels();
+
+        scaleDetector = new ScaleGestureDetector(context,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoom(detector.getFocusX(), detector.getScaleFactor());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX,
+                                    float distanceY) {
+                if (scaleDetector.isInProgress()) {
+                    return false;
+                }
+                pan(distanceX);
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                resetViewport();
+                return true;
+            }
+        });
+    }
+
+    /* Shows count points of the arrays as series index (0 to 3). The arrays are not copied: they
+     * are read on every draw, so change them on the main thread only and call this again after
+     * changing them. */
+    public void setSeries(int index, long[] timesInMillis, float[] values, int count, int color) {
+        checkSeriesIndex(index);
+        if (count < 0 || count > timesInMillis.length || count > values.length) {
+            throw new IllegalArgumentException("count " + count + " exceeds the arrays");
+        }
+        seriesTimes[index] = timesInMillis;
+        seriesValues[index] = values;
+        seriesCounts[index] = count;
+        seriesPaints[index].setColor(color);
+        onDataChanged();
+    }
+
+    public void clearSeries(int index) {
+        checkSeriesIndex(index);
+        seriesTimes[index] = null;
+        seriesValues[index] = null;
+        seriesCounts[index] = 0;
+        onDataChanged();
+    }
+
+    public void setSeriesVisible(int index, boolean visible) {
+        checkSeriesIndex(index);
+        if (seriesVisible[index] != visible) {
+            seriesVisible[index] = visible;
+            invalidate();
+        }
+    }
+
+    /* value axis bounds; values outside are clipped */
+    public void setValueRange(float min, float max) {
+        if (!(max > min)) {
+            throw new IllegalArgumentException("empty value range: " + min + " to " + max);
+        }
+        valueMin = min;
+        valueMax = max;
+        updateValueLabels();
+        invalidate();
+    }
+
+    /* shows all the data and follows new samples again */
+    public void resetViewport() {
+        viewportSet = false;
+        onDataChanged();
+    }
+
+    /* how long onDraw takes; a frame at 60 fps has 16 ms for everything */
+    public LatencyHistogram getDrawTimes() {
+        return drawTimes;
+    }
+
+    private static void checkSeriesIndex(int index) {
+        if (index < 0 || index >= MAX_SERIES) {
+            throw new IllegalArgumentException("series index " + index + " out of 0.."
+                    + (MAX_SERIES - 1));
+        }
+    }
+
+    private void updateValueLabels() {
+        for (int i = 0; i < VALUE_GRID_LINES; i++) {
+            float value = valueMin + i * (valueMax - valueMin) / (VALUE_GRID_LINES - 1);
+            valueLabels[i] = String.format(Locale.US, "%.1f", value);
+        }
+    }
+
+    /*** viewport ***/
+    private void onDataChanged() {
+        hasData = false;
+        for (int i = 0; i < MAX_SERIES; i++) {
+            int count = seriesCounts[i];
+            if (count == 0) {
+                continue;
+            }
+            long first = seriesTimes[i][0];
+            long last = seriesTimes[i][count - 1];
+            dataStart = hasData ? Math.min(dataStart, first) : first;
+            dataEnd = hasData ? Math.max(dataEnd, last) : last;
+            hasData = true;
+        }
+        if (hasData) {
+            if (!viewportSet) {
+                viewportSet = true;
+                setViewport(dataStart, Math.max(MIN_VISIBLE_SPAN, dataEnd - dataStart));
+            } else {
+                long span = viewEnd - viewStart;
+                setViewport(followLatest ? dataEnd - span : viewStart, span);
+            }
+        }
+        invalidate();
+    }
+
+    /* keeps the window within the data where possible; the window reaching the latest sample
+     * makes the view follow new samples */
+    private void setViewport(long start, long span) {
+        if (start + span > dataEnd) {
+            start = dataEnd - span;
+        }
+        if (start < dataStart) {
+            start = dataStart;
+        }
+        viewStart = start;
+        viewEnd = start + span;
+        followLatest = viewEnd >= dataEnd;
+    }
+
+    private void zoom(float focusX, float scaleFactor) {
+        if (!hasData || scaleFactor <= 0 || plotRight <= plotLeft) {
+            return;
+        }
+        long span = viewEnd - viewStart;
+        long maxSpan = Math.max(MIN_VISIBLE_SPAN, dataEnd - dataStart);
+        long newSpan = Math.max(MIN_VISIBLE_SPAN, Math.min(maxSpan, (long) (span / scaleFactor)));
+        float fraction = Math.max(0f, Math.min(1f, (focusX - plotLeft) / (plotRight - plotLeft)));
+        long focusTime = viewStart + (long) (span * fraction);
+        setViewport(focusTime - (long) (newSpan * fraction), newSpan);
+        postInvalidateOnAnimation();
+    }
+
+    private void pan(float distanceX) {
+        if (!hasData || plotRight <= plotLeft) {
+            return;
+        }
+        long span = viewEnd - viewStart;
+        setViewport(viewStart + (long) (distanceX * span / (plotRight - plotLeft)), span);
+        postInvalidateOnAnimation();
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        /* keep a scrolling parent from taking over the pan */
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN && getParent() != null) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled = gestureDetector.onTouchEvent(event) || handled;
+        return handled || super.onTouchEvent(event);
+    }
+
+    /*** drawing ***/
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        float textSize = valueLabelPaint.getTextSize();
+        plotLeft = getPaddingLeft() + valueLabelPaint.measureText("-000.0") + textSize / 2;
+        plotRight = width - getPaddingRight() - timeLabelPaint.measureText("00:00:00") / 2;
+        plotTop = getPaddingTop() + textSize / 2;
+        plotBottom = height - getPaddingBottom() - textSize * 1.5f;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (plotRight <= plotLeft || plotBottom <= plotTop) {
+            return;
+        }
+        long begin = System.nanoTime();
+        drawGrid(canvas);
+        if (hasData) {
+            canvas.save();
+            canvas.clipRect(plotLeft, plotTop, plotRight, plotBottom);
+            for (int i = 0; i < MAX_SERIES; i++) {
+                if (seriesVisible[i] && seriesCounts[i] > 0) {
+                    drawSeries(canvas, seriesTimes[i], seriesValues[i], seriesCounts[i],
+                            seriesPaints[i]);
+                }
+            }
+            canvas.restore();
+        }
+        drawTimes.recordNanos(System.nanoTime() - begin);
+    }
+
+    private void drawGrid(Canvas canvas) {
+        float textOffset = -(valueLabelPaint.ascent() + valueLabelPaint.descent()) / 2;
+        for (int i = 0; i < VALUE_GRID_LINES; i++) {
+            float y = plotBottom - i * (plotBottom - plotTop) / (VALUE_GRID_LINES - 1);
+            canvas.drawLine(plotLeft, y, plotRight, y, gridPaint);
+            canvas.drawText(valueLabels[i], plotLeft - valueLabelPaint.getTextSize() / 4,
+                    y + textOffset, valueLabelPaint);
+        }
+        if (!hasData) {
+            return;
+        }
+        float labelY = plotBottom + timeLabelPaint.getTextSize() * 1.2f;
+        for (int i = 0; i < TIME_GRID_LINES; i++) {
+            float x = plotLeft + i * (plotRight - plotLeft) / (TIME_GRID_LINES - 1);
+            long time = viewStart + (viewEnd - viewStart) * i / (TIME_GRID_LINES - 1);
+            canvas.drawLine(x, plotTop, x, plotBottom, gridPaint);
+            formatTimeOfDay(time);
+            canvas.drawText(timeLabel, 0, timeLabel.length, x, labelY, timeLabelPaint);
+        }
+    }
+
+    /* local HH:mm:ss into timeLabel, without allocating */
+    private void formatTimeOfDay(long timeInMillis) {
+        long local = timeInMillis + timeZone.getOffset(timeInMillis);
+        long day = MonitorConstants.ONE_DAY;
+        int seconds = (int) ((local % day + day) % day / 1000);
+        writeTwoDigits(0, seconds / 3600);
+        timeLabel[2] = ':';
+        writeTwoDigits(3, seconds / 60 % 60);
+        timeLabel[5] = ':';
+        writeTwoDigits(6, seconds % 60);
+    }
+
+    private void writeTwoDigits(int offset, int value) {
+        timeLabel[offset] = (char) ('0' + value / 10);
+        timeLabel[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    /* Walks the visible points plus one on either side, so the line runs to the edges. Points
+     * falling in the same pixel column become at most four path points: the first, the lowest
+     * and highest in the order they occurred, and the last. NaN values are skipped. */
+    private void drawSeries(Canvas canvas, long[] times, float[] values, int count, Paint paint) {
+        int from = Math.max(0, lowerBound(times, count, viewStart) - 1);
+        int to = Math.min(count, lowerBound(times, count, viewEnd) + 1);
+        if (to - from < 2) {
+            return;
+        }
+        float xScale = (plotRight - plotLeft) / (float) (viewEnd - viewStart);
+        float yScale = (plotBottom - plotTop) / (valueMax - valueMin);
+
+        path.rewind();
+        pathStarted = false;
+        columnPoints = 0;
+        int column = 0;
+        for (int i = from; i < to; i++) {
+            float value = values[i];
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            float x = plotLeft + (times[i] - viewStart) * xScale;
+            float y = plotBottom - (value - valueMin) * yScale;
+            int pixel = (int) Math.floor(x);
+            if (columnPoints == 0 || pixel != column) {
+                emitColumn();
+                column = pixel;
+                columnFirstX = x;
+                columnFirstY = y;
+                columnTopY = y;
+                columnBottomY = y;
+                columnTopFirst = true;
+            } else if (y < columnTopY) {
+                columnTopY = y;
+                columnTopFirst = false;
+            } else if (y > columnBottomY) {
+                columnBottomY = y;
+                columnTopFirst = true;
+            }
+            columnLastX = x;
+            columnLastY = y;
+            columnPoints++;
+        }
+        emitColumn();
+        if (pathStarted) {
+            canvas.drawPath(path, paint);
+        }
+    }
+
+    private void emitColumn() {
+        if (columnPoints == 0) {
+            return;
+        }
+        addPathPoint(columnFirstX, columnFirstY);
+        if (columnPoints > 2) {
+            addPathPoint(columnFirstX, columnTopFirst ? columnTopY : columnBottomY);
+            addPathPoint(columnFirstX, columnTopFirst ? columnBottomY : columnTopY);
+        }
+        if (columnPoints > 1) {
+            addPathPoint(columnLastX, columnLastY);
+        }
+        columnPoints = 0;
+    }
+
+    private void addPathPoint(float x, float y) {
+        if (pathStarted) {
+            path.lineTo(x, y);
+        } else {
+            path.moveTo(x, y);
+            pathStarted = true;
+        }
+    }
+
+    /* index of the first of the count times at or after the time; count if there is none */
+    private static int lowerBound(long[] times, int count, long timeInMillis) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < timeInMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.monitor.charts;
+
+import android.graphics.Color;
+import android.util.Log;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.viewmodels.ChartState;
+import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.components.LimitLine;
+import com.github.mikephil.charting.components.XAxis;
+import com.github.mikephil.charting.components.YAxis;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/* Owns the weather chart. The three datasets (12-hour forecast, hourly forecast, sensor) and
+ * their LineData are created once; each new chart state only removes and adds the points that
+ * changed, and axes are only redrawn when the parameter or the range changes. Hiding a series
+ * toggles its dataset's visibility. To be used on the main thread. */
+public class WeatherChartController {
+    private static final String TAG = "WeatherChartController";
+
+    private final LineChart chart;
+    private final int limitLineColor;
+    private final LineDataSet twelveHourDataSet;
+    private final LineDataSet oneHourDataSet;
+    private final LineDataSet oneHourSensorDataSet;
+    private final LineData lineData;
+
+    private Integer boundParameter;
+    private Integer boundRange;
+    private long boundWindowStart = -1;
+    private long boundCurrentHour = -1;
+
+    public WeatherChartController(LineChart chart, int limitLineColor) {
+        this.chart = chart;
+        this.limitLineColor = limitLineColor;
+
+        twelveHourDataSet = newDataSet("Weather API (12hr)", Color.RED);
+        oneHourDataSet = newDataSet("Weather API (1hr)", Color.GREEN);
+        oneHourSensorDataSet = newDataSet("Sensor (1hr)", Color.YELLOW);
+        lineData = new LineData(twelveHourDataSet, oneHourDataSet, oneHourSensorDataSet);
+        chart.setData(lineData);
+        chart.getLegend().setTextColor(Color.WHITE);
+        chart.getDescription().setTextColor(Color.WHITE);
+        chart.getDescription().setTextSize(12f);
+    }
+
+    private static LineDataSet newDataSet(String label, int color) {
+        LineDataSet dataSet = new LineDataSet(new ArrayList<Entry>(), label);
+        dataSet.setDrawCircles(true);
+        dataSet.setColor(color);
+        dataSet.setValueTextColor(Color.WHITE);
+        return dataSet;
+    }
+
+    /* category is MonitorEnums.TWELVE_HOURS_DATA, SINGLE_HOUR_DATA or HOME_SENSOR */
+    public void setSeriesVisible(Integer category, boolean visible) {
+        LineDataSet dataSet = getDataSet(category);
+        if (dataSet == null || dataSet.isVisible() == visible) {
+            return;
+        }
+        dataSet.setVisible(visible);
+        chart.invalidate();
+    }
+
+    private LineDataSet getDataSet(Integer category) {
+        if (MonitorEnums.TWELVE_HOURS_DATA.equals(category)) {
+            return twelveHourDataSet;
+        } else if (MonitorEnums.SINGLE_HOUR_DATA.equals(category)) {
+            return oneHourDataSet;
+        } else if (MonitorEnums.HOME_SENSOR.equals(category)) {
+            return oneHourSensorDataSet;
+        }
+        return null;
+    }
+
+    /* brings the datasets to the state's series; returns false if the parameter isn't charted */
+    public boolean bind(ChartState chartState) {
+        Integer parameter = chartState.getParameter();
+        Integer range = chartState.getRange();
+        if (!parameter.equals(boundParameter) || !range.equals(boundRange)) {
+            String period = MonitorEnums.CHART_RANGE_48H.equals(range) ? "yesterday, today"
+                    : "last " + ChartState.getRangeDays(range) + " days";
+            int xLabelCount = MonitorEnums.CHART_RANGE_48H.equals(range) ? 12
+                    : Math.min(ChartState.getRangeDays(range), 10);
+            if (MonitorEnums.TEMPERATURE.equals(parameter)) {
+                drawChartAxes(MonitorConstants.MINTEMP, MonitorConstants.MAXTEMP, 12,
+                        chartState.getWindowHours(), xLabelCount);
+                chart.getDescription().setText("Temperature in Celsius (" + period + ")");
+            } else if (MonitorEnums.HUMIDITY.equals(parameter)) {
+                drawChartAxes(0, 100, 12, chartState.getWindowHours(), xLabelCount);
+                chart.getDescription().setText("Humidity in % (" + period + ")");
+            } else {
+                Log.i(TAG, "bind: no recognized data provided.");
+                return false;
+            }
+
+            /* circles only where the points are hours apart */
+            boolean drawCircles = MonitorEnums.CHART_RANGE_48H.equals(range);
+            twelveHourDataSet.setDrawCircles(drawCircles);
+            oneHourDataSet.setDrawCircles(drawCircles);
+            oneHourSensorDataSet.setDrawCircles(drawCircles);
+        }
+        drawCurrentHourLine(chartState.getWindowStart());
+
+        /* another parameter, range or day moves every point; otherwise diff the series */
+        boolean replaceAll = !parameter.equals(boundParameter)
+                || chartState.getWindowStart() != boundWindowStart;
+        boundParameter = parameter;
+        boundRange = range;
+        boundWindowStart = chartState.getWindowStart();
+
+        int changes = update(twelveHourDataSet, chartState.getTwelveHourEntries(), replaceAll)
+                + update(oneHourDataSet, chartState.getHourlyEntries(), replaceAll)
+                + update(oneHourSensorDataSet, chartState.getSensorEntries(), replaceAll);
+        if (changes > 0) {
+            lineData.notifyDataChanged();
+            chart.notifyDataSetChanged();
+        }
+        chart.invalidate();
+        return true;
+    }
+
+    /* Both lists are sorted by x. Points that aged out at the front are removed from the front,
+     * the common prefix is kept, and the rest of the dataset is replaced by the rest of the
+     * series, which in the usual case is only the newly appended hours. Returns the number of
+     * points removed and added */
+    private static int update(LineDataSet dataSet, List<Entry> entries, boolean replaceAll) {
+        int changes = 0;
+        if (replaceAll) {
+            changes = dataSet.getEntryCount() + entries.size();
+            dataSet.clear();
+            for (Entry entry : entries) {
+                dataSet.addEntry(entry);
+            }
+            return changes;
+        }
+
+        float firstX = entries.isEmpty() ? Float.MAX_VALUE : entries.get(0).getX();
+        while (dataSet.getEntryCount() > 0 && dataSet.getEntryForIndex(0).getX() < firstX) {
+            dataSet.removeFirst();
+            changes++;
+        }
+
+        int common = 0;
+        int limit = Math.min(dataSet.getEntryCount(), entries.size());
+        while (common < limit && samePoint(dataSet.getEntryForIndex(common), entries.get(common))) {
+            common++;
+        }
+        while (dataSet.getEntryCount() > common) {
+            dataSet.removeLast();
+            changes++;
+        }
+        for (int i = common; i < entries.size(); i++) {
+            dataSet.addEntry(entries.get(i));
+            changes++;
+        }
+        return changes;
+    }
+
+    private static boolean samePoint(Entry a, Entry b) {
+        return a.getX() == b.getX() && a.getY() == b.getY();
+    }
+
+    private void drawChartAxes(Integer yAxisMin, Integer yAxisMax, Integer yLabelCount,
+                               int xAxisMax, int xLabelCount) {
+        XAxis xAxis = chart.getXAxis();
+        xAxis.setAxisMaximum(xAxisMax);
+        xAxis.setAxisMinimum(0);
+        xAxis.setLabelCount(xLabelCount); // or enable granularity, and xAxis.setGranularity(48/4);
+        xAxis.setTextColor(Color.WHITE); // getResources().getColor(R.color.yellowish_orange);
+
+        YAxis yAxisLeft = chart.getAxisLeft();
+        yAxisLeft.setAxisMaximum(yAxisMax);
+        yAxisLeft.setAxisMinimum(yAxisMin);
+        yAxisLeft.setLabelCount(yLabelCount);
+        yAxisLeft.setTextColor(Color.WHITE);
+
+        YAxis yAxisRight = chart.getAxisRight();
+        yAxisRight.setAxisMaximum(yAxisMax);
+        yAxisRight.setAxisMinimum(yAxisMin);
+        yAxisRight.setLabelCount(yLabelCount);
+        yAxisRight.setTextColor(Color.WHITE);
+    }
+
+    /* draw line showing current time; only replaced when the hour or the window changes */
+    private void drawCurrentHourLine(long windowStart) {
+        long currentTime = getStartOfHourMillis();
+        long currentHour = (currentTime - windowStart)/MonitorConstants.ONE_HOUR;
+        if (currentHour == boundCurrentHour && windowStart == boundWindowStart) {
+            return;
+        }
+        boundCurrentHour = currentHour;
+
+        XAxis xAxis = chart.getXAxis();
+        xAxis.removeAllLimitLines();
+        LimitLine ll = new LimitLine(currentHour, "T: "+(currentHour%24)+"h");
+        ll.setLineColor(limitLineColor);
+        ll.setLineWidth(2f);
+        ll.setTextColor(Color.WHITE);
+        ll.setTextSize(12f);
+        ll.setLabelPosition(LimitLine.LimitLabelPosition.LEFT_TOP); // or change when close to xmax
+        xAxis.addLimitLine(ll);
+    }
+
+    private static long getStartOfHourMillis() {
+        Calendar today = Calendar.getInstance();
+        today.set(Calendar.MILLISECOND, 0);
+        today.set(Calendar.SECOND, 0);
+        today.set(Calendar.MINUTE, 0);
+        return today.getTimeInMillis();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.monitor.databases;
+
+import com.example.monitor.backgroundutil.ExecutorHelper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/* Entry point for database work off the main thread. Writes are serialized on the single writer
+ * thread; reads run concurrently on the reader pool, each on its own WAL snapshot, so they
+ * neither wait behind queued inserts nor block them. A read started before a queued write
+ * commits doesn't see that write; chain the read on the write's future when that matters. */
+public class DatabaseAccess {
+
+    public static <T> CompletableFuture<T> read(Callable<T> query, Integer priority) {
+        return ExecutorHelper.supplyAsync(query,
+                ExecutorHelper.getDatabaseReaderPoolInstance().withPriority(priority));
+    }
+
+    public static <T> CompletableFuture<T> write(Callable<T> statement, Integer priority) {
+        return ExecutorHelper.supplyAsync(statement,
+                ExecutorHelper.getDatabaseExecutorInstance().withPriority(priority));
+    }
+}
@@ -35,6 +35,7 @@ public abstract class LocationDatabase extends RoomDatabase {
         if (instance == null) {
             instance = Room.databaseBuilder(context.getApplicationContext(),
                     LocationDatabase.class,"location_database")
+                    .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)/* readers don't block the writer */
                     .fallbackToDestructiveMigration()/* deletes previous version db content */
                     .addCallback(roomCallback)/* call right after creating the instance for setup,but in which thread  */
                     .build();
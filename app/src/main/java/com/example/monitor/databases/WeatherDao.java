@@ -1,13 +1,18 @@
 package com.example.monitor.databases;
 
+import android.database.Cursor;
+
 import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
+import com.example.monitor.models.DayHourBitmap;
 import com.example.monitor.models.Weather;
 
 import java.util.List;
@@ -17,8 +22,9 @@ import java.util.List;
 @Dao
 public interface WeatherDao {
 
+    /* returns the generated id */
     @Insert
-    void insert(Weather weatherDataPoint);
+    long insert(Weather weatherDataPoint);
 
     @Update
     void update(Weather weatherDataPoint);
@@ -35,7 +41,51 @@ public interface WeatherDao {
     @Query("SELECT * FROM weather_table ORDER BY id DESC") /* descending order */
     List<Weather> getAllWeatherPointsNonLive();
 
+    /* returns the ids, in list order */
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertWeatherList(List<Weather> weatherList);
+    List<Long> insertWeatherList(List<Weather> weatherList);
+
+    /* the rows after a time, in time order, e.g. to load the recent window into memory */
+    @Query("SELECT * FROM weather_table WHERE timeInMillis > :fromMillis ORDER BY timeInMillis, id")
+    List<Weather> getWeatherPointsAfter(long fromMillis);
+
+    /* id bounds and range statements for chunked maintenance */
+    @Query("SELECT COALESCE(MIN(id), 0) FROM weather_table")
+    int getMinWeatherId();
+
+    @Query("SELECT COALESCE(MAX(id), 0) FROM weather_table")
+    int getMaxWeatherId();
+
+    /* age categories of one id range in a single statement, instead of row-by-row updates */
+    @Query("UPDATE weather_table SET persistence = CASE"
+            + " WHEN timeInMillis > :visibleCutoff THEN :underVisible"
+            + " WHEN timeInMillis > :storedCutoff THEN :underStored"
+            + " ELSE :overStored END"
+            + " WHERE id >= :fromId AND id < :toId")
+    int updateAgeCategoriesInRange(int fromId, int toId, long visibleCutoff, long storedCutoff,
+                                   int underVisible, int underStored, int overStored);
+
+    @Query("DELETE FROM weather_table WHERE id >= :fromId AND id < :toId AND persistence = :persistence")
+    int deleteWeatherPointsInRange(int fromId, int toId, int persistence);
+
+    /* hours already stored for a location and category, e.g. to skip them when importing */
+    @Query("SELECT timeInMillis FROM weather_table WHERE location = :location"
+            + " AND category = :category AND timeInMillis >= :fromMillis AND timeInMillis < :toMillis")
+    List<Long> getTimesInRange(String location, int category, long fromMillis, long toMillis);
+
+    /* the hours stored for a location and category, one bitmap per UTC day with bit h for the
+     * hour from h:00 (SUM of distinct bits is their OR); answered from the index on (location,
+     * category, timeInMillis) without reading the rows. See SeriesGaps */
+    @Query("SELECT timeInMillis / 86400000 AS day,"
+            + " SUM(DISTINCT 1 << ((timeInMillis % 86400000) / 3600000)) AS hours"
+            + " FROM weather_table WHERE location = :location AND category = :category"
+            + " AND timeInMillis >= :fromMillis AND timeInMillis < :toMillis"
+            + " GROUP BY day ORDER BY day")
+    List<DayHourBitmap> getHourBitmaps(String location, int category, long fromMillis,
+                                       long toMillis);
+
+    /* rows are read one cursor window at a time instead of as a list; close the cursor */
+    @RawQuery(observedEntities = Weather.class)
+    Cursor getWeatherCursor(SupportSQLiteQuery query);
 
 }
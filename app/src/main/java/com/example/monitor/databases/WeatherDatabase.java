@@ -8,6 +8,7 @@ import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.example.monitor.models.Weather;
@@ -18,7 +19,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
-@Database(entities = {Weather.class}, version = 1)
+@Database(entities = {Weather.class}, version = 3)
 public abstract class WeatherDatabase extends RoomDatabase {
     private static final String TAG = "WeatherDatabase:";
     private static WeatherDatabase instance;
@@ -32,6 +33,8 @@ public abstract class WeatherDatabase extends RoomDatabase {
         if (instance == null) {
             instance = Room.databaseBuilder(context.getApplicationContext(),
                     WeatherDatabase.class,"weather_database")
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
+                    .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)/* readers don't block the writer */
                     .fallbackToDestructiveMigration()/* deletes previous version db content */
                     .addCallback(roomCallback)/* call right after creating the instance for setup  */
                     .build();
@@ -39,6 +42,27 @@ public abstract class WeatherDatabase extends RoomDatabase {
         return instance;
     }
 
+    /* version 2 adds the hourly extremes of aggregated sensor data; existing rows keep null */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE weather_table ADD COLUMN minCelsius TEXT");
+            database.execSQL("ALTER TABLE weather_table ADD COLUMN maxCelsius TEXT");
+            database.execSQL("ALTER TABLE weather_table ADD COLUMN minHumidity TEXT");
+            database.execSQL("ALTER TABLE weather_table ADD COLUMN maxHumidity TEXT");
+        }
+    };
+
+    /* version 3 indexes each series by time, for gap detection; the name is the one Room derives */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS"
+                    + " index_weather_table_location_category_timeInMillis"
+                    + " ON weather_table (location, category, timeInMillis)");
+        }
+    };
+
     /* could be used to set up dummy database data on a bg thread */
     private static RoomDatabase.Callback roomCallback = new RoomDatabase.Callback() {
         @Override
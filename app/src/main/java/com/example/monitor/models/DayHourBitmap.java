@@ -0,0 +1,13 @@
+package com.example.monitor.models;
+
+/* Query result: the hours stored for a series on one UTC day. Bit h of hours is set if a row
+ * exists for the hour from h:00, so a complete day is 0xFFFFFF. */
+public class DayHourBitmap {
+    public long day; /* days since the epoch */
+    public int hours;
+
+    public DayHourBitmap(long day, int hours) {
+        this.day = day;
+        this.hours = hours;
+    }
+}
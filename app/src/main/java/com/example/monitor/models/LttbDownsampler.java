@@ -0,0 +1,81 @@
+package com.example.monitor.models;
+
+/* Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013) on primitive arrays. The first
+ * and last points are kept; the points in between are split into equal buckets, and from each
+ * bucket the point forming the largest triangle with the previously kept point and the average
+ * of the next bucket is kept. Unlike averaging or taking every n-th point this keeps the peaks
+ * and dips that make the shape of the line. */
+public class LttbDownsampler {
+
+    private LttbDownsampler() {
+    }
+
+    /* Downsamples times/values in [from, to) to at most threshold (3 or more) points, written to
+     * the start of outTimes/outValues, which must hold min(threshold, to - from) points. Times
+     * must be sorted and values must not be NaN. Returns the number of points written; a range
+     * that already fits is copied as is. */
+    public static int downsample(long[] times, float[] values, int from, int to, int threshold,
+                                 long[] outTimes, float[] outValues) {
+        if (threshold < 3) {
+            throw new IllegalArgumentException("threshold " + threshold + " below 3");
+        }
+        int length = to - from;
+        if (length <= threshold) {
+            System.arraycopy(times, from, outTimes, 0, length);
+            System.arraycopy(values, from, outValues, 0, length);
+            return length;
+        }
+
+        /* x is taken relative to the first point, so the areas stay within double precision */
+        long origin = times[from];
+        int buckets = threshold - 2;
+        int out = 0;
+        int kept = from; // the point kept from the previous bucket
+        outTimes[out] = times[kept];
+        outValues[out++] = values[kept];
+
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            /* average of the next bucket; the last point for the final bucket */
+            int nextStart = bucketStart(from, length, buckets, bucket + 1);
+            int nextEnd = bucket + 1 < buckets ? bucketStart(from, length, buckets, bucket + 2) : to;
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += times[i] - origin;
+                averageY += values[i];
+            }
+            int nextLength = nextEnd - nextStart;
+            averageX /= nextLength;
+            averageY /= nextLength;
+
+            /* the point of this bucket with the largest triangle */
+            int start = bucketStart(from, length, buckets, bucket);
+            int end = nextStart;
+            double keptX = times[kept] - origin;
+            double keptY = values[kept];
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((keptX - averageX) * (values[i] - keptY)
+                        - (keptX - (times[i] - origin)) * (averageY - keptY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+            outTimes[out] = times[maxIndex];
+            outValues[out++] = values[maxIndex];
+            kept = maxIndex;
+        }
+
+        outTimes[out] = times[to - 1];
+        outValues[out++] = values[to - 1];
+        return out;
+    }
+
+    /* first index of a bucket of the points between the first and the last; in integer math, so
+     * the buckets end exactly at the last point instead of one short after rounding */
+    private static int bucketStart(int from, int length, int buckets, int bucket) {
+        return from + 1 + (int) ((long) bucket * (length - 2) / buckets);
+    }
+}
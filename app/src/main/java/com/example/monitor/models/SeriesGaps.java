@@ -0,0 +1,125 @@
+package com.example.monitor.models;
+
+import com.example.monitor.MonitorConstants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* The missing hours of one series (location and category) in an hour-aligned window
+ * [fromMillis, toMillis), as ranges of consecutive hours, built from the per-day hour bitmaps
+ * WeatherDao.getHourBitmaps returns for the same window. Backfill asks for what is missing from
+ * the first gap on; the UI shows the completeness. */
+public class SeriesGaps {
+
+    /* consecutive missing hours [start, end) */
+    public static class Gap {
+        private final long start;
+        private final long end;
+
+        Gap(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public int getHours() {
+            return (int) ((end - start) / MonitorConstants.ONE_HOUR);
+        }
+    }
+
+    private final long fromMillis;
+    private final long toMillis;
+    private final List<Gap> gaps;
+    private final int missingHours;
+
+    private SeriesGaps(long fromMillis, long toMillis, List<Gap> gaps, int missingHours) {
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.gaps = gaps;
+        this.missingHours = missingHours;
+    }
+
+    /* bitmaps in day order; days without a bitmap have no stored hours */
+    public static SeriesGaps fromBitmaps(List<DayHourBitmap> bitmaps, long fromMillis,
+                                         long toMillis) {
+        long hour = MonitorConstants.ONE_HOUR;
+        long day = MonitorConstants.ONE_DAY;
+        fromMillis = fromMillis - Math.floorMod(fromMillis, hour);
+        toMillis = Math.max(fromMillis, toMillis - Math.floorMod(toMillis, hour));
+
+        List<Gap> gaps = new ArrayList<>();
+        int missingHours = 0;
+        int next = 0;
+        long gapStart = -1;
+        for (long time = fromMillis; time < toMillis; time += hour) {
+            long epochDay = Math.floorDiv(time, day);
+            while (next < bitmaps.size() && bitmaps.get(next).day < epochDay) {
+                next++;
+            }
+            int hours = next < bitmaps.size() && bitmaps.get(next).day == epochDay
+                    ? bitmaps.get(next).hours : 0;
+            boolean stored = (hours & (1 << (int) (Math.floorMod(time, day) / hour))) != 0;
+            if (!stored) {
+                missingHours++;
+                if (gapStart < 0) {
+                    gapStart = time;
+                }
+            } else if (gapStart >= 0) {
+                gaps.add(new Gap(gapStart, time));
+                gapStart = -1;
+            }
+        }
+        if (gapStart >= 0) {
+            gaps.add(new Gap(gapStart, toMillis));
+        }
+        return new SeriesGaps(fromMillis, toMillis, Collections.unmodifiableList(gaps),
+                missingHours);
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    /* oldest first */
+    public List<Gap> getGaps() {
+        return gaps;
+    }
+
+    public boolean isComplete() {
+        return gaps.isEmpty();
+    }
+
+    /* start of the oldest missing hour; -1 if none is missing */
+    public long getFirstMissing() {
+        return gaps.isEmpty() ? -1 : gaps.get(0).getStart();
+    }
+
+    public int getExpectedHours() {
+        return (int) ((toMillis - fromMillis) / MonitorConstants.ONE_HOUR);
+    }
+
+    public int getMissingHours() {
+        return missingHours;
+    }
+
+    /* stored share of the expected hours, 0 to 100; 100 for an empty window */
+    public int getCompletenessPercent() {
+        int expected = getExpectedHours();
+        if (expected == 0) {
+            return 100;
+        }
+        return (int) ((expected - missingHours) * 100L / expected);
+    }
+}
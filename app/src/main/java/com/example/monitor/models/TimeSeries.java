@@ -0,0 +1,164 @@
+package com.example.monitor.models;
+
+import java.util.Arrays;
+
+/* One metric over time, in parallel primitive arrays sorted by timestamp: no boxing, no per-point
+ * objects and no sorting when read. Points arriving in order are appended; others are inserted at
+ * their place. Ranges are found by binary search. Not synchronized: build it on one thread and
+ * don't modify it once it is shared. */
+public class TimeSeries {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] times;
+    private float[] values;
+    private int size = 0;
+
+    public TimeSeries() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TimeSeries(int capacity) {
+        times = new long[Math.max(1, capacity)];
+        values = new float[Math.max(1, capacity)];
+    }
+
+    private TimeSeries(long[] times, float[] values, int size) {
+        this.times = times;
+        this.values = values;
+        this.size = size;
+    }
+
+    /* points with an equal timestamp keep their insertion order */
+    public void add(long timeInMillis, float value) {
+        if (size == times.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, times.length * 2); /* slices can be empty */
+            times = Arrays.copyOf(times, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        int index = size == 0 || timeInMillis >= times[size - 1] ? size : upperBound(timeInMillis);
+        if (index < size) {
+            System.arraycopy(times, index, times, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        times[index] = timeInMillis;
+        values[index] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTime(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    public float getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public long getFirstTime() {
+        return getTime(0);
+    }
+
+    public long getLastTime() {
+        return getTime(size - 1);
+    }
+
+    /* index of the first point at or after the time; size() if there is none */
+    public int lowerBound(long timeInMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < timeInMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /* index of the first point after the time; size() if there is none */
+    public int upperBound(long timeInMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= timeInMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public boolean contains(long timeInMillis) {
+        int index = lowerBound(timeInMillis);
+        return index < size && times[index] == timeInMillis;
+    }
+
+    /* copy of the points in [fromMillis, toMillis) */
+    public TimeSeries slice(long fromMillis, long toMillis) {
+        int from = lowerBound(fromMillis);
+        int to = Math.max(from, lowerBound(toMillis));
+        return new TimeSeries(Arrays.copyOfRange(times, from, to),
+                Arrays.copyOfRange(values, from, to), to - from);
+    }
+
+    /* the points in [fromMillis, toMillis) brought down to at most maxPoints (3 or more) with
+     * LTTB, which keeps peaks and dips; NaN values are left out */
+    public TimeSeries downsample(long fromMillis, long toMillis, int maxPoints) {
+        int from = lowerBound(fromMillis);
+        int to = Math.max(from, lowerBound(toMillis));
+        long[] rangeTimes = new long[to - from];
+        float[] rangeValues = new float[to - from];
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            if (!Float.isNaN(values[i])) {
+                rangeTimes[length] = times[i];
+                rangeValues[length++] = values[i];
+            }
+        }
+        int capacity = Math.min(length, maxPoints);
+        long[] outTimes = new long[Math.max(1, capacity)];
+        float[] outValues = new float[Math.max(1, capacity)];
+        int count = LttbDownsampler.downsample(rangeTimes, rangeValues, 0, length, maxPoints,
+                outTimes, outValues);
+        return new TimeSeries(outTimes, outValues, count);
+    }
+
+    /* minimum, maximum and mean of the values in [fromMillis, toMillis), skipping NaN; all NaN
+     * if the range holds no values. Returns {min, max, mean} */
+    public float[] getStats(long fromMillis, long toMillis) {
+        float min = Float.NaN;
+        float max = Float.NaN;
+        double sum = 0;
+        int count = 0;
+        for (int i = lowerBound(fromMillis), to = lowerBound(toMillis); i < to; i++) {
+            float value = values[i];
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            min = count == 0 ? value : Math.min(min, value);
+            max = count == 0 ? value : Math.max(max, value);
+            sum += value;
+            count++;
+        }
+        return new float[] {min, max, count == 0 ? Float.NaN : (float) (sum / count)};
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.monitor.models;
+
+import com.example.monitor.MonitorEnums;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* The rows of the weather table as time series, one per location, category and metric
+ * (MonitorEnums.TEMPERATURE, HUMIDITY); either the visible (under 48h) rows only, or every stored
+ * row for the longer chart ranges. Built once per snapshot of the table, the
+ * string values are parsed a single time; the chart, the analytics and the freshness checks all
+ * read the same series. A value that doesn't parse is kept as NaN, so the timestamp still counts
+ * as present. */
+public class TimeSeriesSet {
+    private static final Integer[] METRICS = {MonitorEnums.TEMPERATURE, MonitorEnums.HUMIDITY};
+
+    private final Map<String, TimeSeries> series = new HashMap<>();
+
+    private TimeSeriesSet() {
+    }
+
+    /* the visible rows */
+    public static TimeSeriesSet build(List<Weather> weathers) {
+        return build(weathers, true);
+    }
+
+    public static TimeSeriesSet build(List<Weather> weathers, boolean visibleOnly) {
+        TimeSeriesSet set = new TimeSeriesSet();
+        if (weathers == null) {
+            return set;
+        }
+        for (Weather weather : weathers) {
+            if ((visibleOnly && !MonitorEnums.UNDER_48H.equals(weather.getPersistence()))
+                    || weather.getLocation() == null || weather.getCategory() == null) {
+                continue;
+            }
+            for (Integer metric : METRICS) {
+                String key = key(weather.getLocation(), weather.getCategory(), metric);
+                TimeSeries timeSeries = set.series.get(key);
+                if (timeSeries == null) {
+                    timeSeries = new TimeSeries();
+                    set.series.put(key, timeSeries);
+                }
+                timeSeries.add(weather.getTimeInMillis(), parse(
+                        MonitorEnums.TEMPERATURE.equals(metric) ? weather.getCelsius()
+                                : weather.getHumidity()));
+            }
+        }
+        return set;
+    }
+
+    /* never null; an empty series if there is no data, or for an unknown metric */
+    public TimeSeries get(String location, Integer category, Integer metric) {
+        TimeSeries timeSeries = series.get(key(location, category, metric));
+        return timeSeries != null ? timeSeries : new TimeSeries(1);
+    }
+
+    /* whether a point of the category exists for the location at exactly this time */
+    public boolean contains(String location, Integer category, long timeInMillis) {
+        return get(location, category, MonitorEnums.TEMPERATURE).contains(timeInMillis);
+    }
+
+    private static String key(String location, Integer category, Integer metric) {
+        return location + '|' + category + '|' + metric;
+    }
+
+    private static float parse(String value) {
+        if (value == null) {
+            return Float.NaN;
+        }
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+}
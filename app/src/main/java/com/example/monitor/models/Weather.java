@@ -5,10 +5,13 @@
 package com.example.monitor.models;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-/* Room creates an SQLite table for Weather */
-@Entity(tableName = "weather_table")
+/* Room creates an SQLite table for Weather; the index serves per-series range queries, e.g. the
+ * hours stored for a location and category */
+@Entity(tableName = "weather_table",
+        indices = {@Index(value = {"location", "category", "timeInMillis"})})
 public class Weather {
 
     @PrimaryKey(autoGenerate = true)
@@ -50,6 +53,22 @@ public class Weather {
         this.timeInMillis = timeInMillis;
     }
 
+    public void setMinCelsius(String minCelsius) {
+        this.minCelsius = minCelsius;
+    }
+
+    public void setMaxCelsius(String maxCelsius) {
+        this.maxCelsius = maxCelsius;
+    }
+
+    public void setMinHumidity(String minHumidity) {
+        this.minHumidity = minHumidity;
+    }
+
+    public void setMaxHumidity(String maxHumidity) {
+        this.maxHumidity = maxHumidity;
+    }
+
     private String celsius;
     private String humidity;
     private String link;
@@ -58,6 +77,12 @@ public class Weather {
     private Integer persistence;
     private Integer category;
     private long timeInMillis;
+
+    /* hourly extremes, only set for data points aggregated on the device from the sensor stream */
+    private String minCelsius;
+    private String maxCelsius;
+    private String minHumidity;
+    private String maxHumidity;
     /* add other parameters... */
 
 
@@ -109,4 +134,20 @@ public class Weather {
         return timeInMillis;
     }
 
+    public String getMinCelsius() {
+        return minCelsius;
+    }
+
+    public String getMaxCelsius() {
+        return maxCelsius;
+    }
+
+    public String getMinHumidity() {
+        return minHumidity;
+    }
+
+    public String getMaxHumidity() {
+        return maxHumidity;
+    }
+
 }
@@ -12,12 +12,25 @@ import com.example.monitor.databases.LocationDatabase;
 import com.example.monitor.databases.WeatherDao;
 import com.example.monitor.databases.WeatherDatabase;
 import com.example.monitor.models.MonitorLocation;
+import com.example.monitor.models.SeriesGaps;
+import com.example.monitor.models.TimeSeriesSet;
 import com.example.monitor.models.Weather;
 import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.repositories.cacheutil.WeatherWindowCache;
+import com.example.monitor.repositories.cacheutil.WriteThroughWeatherDao;
 import com.example.monitor.repositories.execmodel.RemoteDataFetchModel;
+import com.example.monitor.repositories.execmodel.SensorSampleBuffer;
+import com.example.monitor.repositories.execmodel.SensorStreamIngestion;
+import com.example.monitor.repositories.exportutil.WeatherExportOptions;
+import com.example.monitor.repositories.exportutil.WeatherExporter;
+import com.example.monitor.repositories.importutil.SensorHistoryImporter;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -25,9 +38,18 @@ import java.util.concurrent.Future;
 /* single source of truth for weather data */
 public class WeatherRepository {
     private static final String TAG = "WeatherRepository: ";
+    private WeatherDatabase weatherDatabase;
+    private LocationDatabase locationDatabase;
     private WeatherDao weatherDao;
     private LocationDao locationDao;
     private LiveData<List<Weather>> weatherDataEntries;
+
+    /* the recent window of the weather table in memory, written through by weatherDao; both are
+     * shared by the process. Its version is posted on every write until release() */
+    private WeatherWindowCache windowCache;
+    private MutableLiveData<Long> weatherChanges = new MutableLiveData<>();
+    private final Runnable weatherChangeListener =
+            () -> weatherChanges.postValue(windowCache.getVersion());
     private LiveData<List<MonitorLocation>> locationData;
 
     /* for fetching remote data via managed, scheduled execution */
@@ -38,17 +60,44 @@ public class WeatherRepository {
 
     /* potential singleton alternative: return static instance via getInstance(application) */
     public WeatherRepository(Application application) {
-        WeatherDatabase weatherDatabase  = WeatherDatabase.getInstance(application);
-        LocationDatabase locationDatabase = LocationDatabase.getInstance(application);
-        weatherDao = weatherDatabase.weatherDao();
+        /* building the databases doesn't touch the disk; they are opened by openDatabases() */
+        weatherDatabase  = WeatherDatabase.getInstance(application);
+        locationDatabase = LocationDatabase.getInstance(application);
+        WriteThroughWeatherDao writeThroughDao =
+                WriteThroughWeatherDao.getInstance(weatherDatabase.weatherDao());
+        weatherDao = writeThroughDao;
+        windowCache = writeThroughDao.getCache();
+        windowCache.addChangeListener(weatherChangeListener);
         locationDao = locationDatabase.locationDao();
         weatherDataEntries = weatherDao.getAllWeatherPoints();
         locationData = locationDao.getLocationTable();
         instantSensorReading.setValue(MonitorConstants.SENSOR_READING_FORMAT);
 
         /* Instantiate background execution model. Need reference to application for GPS tasks */
-        remoteModel = RemoteDataFetchModel.getInstance(weatherDao, locationDao, application,
-                instantSensorReading);
+        remoteModel = RemoteDataFetchModel.getInstance(weatherDao, windowCache, locationDao,
+                application, instantSensorReading);
+    }
+
+    /*** startup steps; each runs off the main thread, see MainActivityViewModel ***/
+    /* opening runs any migration and the creation callback */
+    public void openWeatherDatabase() {
+        weatherDatabase.getOpenHelper().getWritableDatabase();
+    }
+
+    public void openLocationDatabase() {
+        locationDatabase.getOpenHelper().getWritableDatabase();
+    }
+
+    public CompletableFuture<String> writeDefaultLocation() {
+        return remoteModel.writeDefaultLocation();
+    }
+
+    public void startSensorStreams() {
+        remoteModel.startSensorStreams();
+    }
+
+    public void startScheduledJobs() {
+        remoteModel.startScheduledJobs();
     }
 
     /*** wrapper methods used in the ViewModel ***/
@@ -59,6 +108,26 @@ public class WeatherRepository {
 
     public LiveData<List<MonitorLocation>> getLocationData() {return locationData;}
 
+    /* posted after every write to the weather table; cheaper to observe than the table itself */
+    public LiveData<Long> getWeatherChanges() {
+        return weatherChanges;
+    }
+
+    /* the visible rows as series, from memory unless the window isn't loaded yet; call only from
+     * a database thread */
+    public TimeSeriesSet getVisibleSeries() {
+        return windowCache.getVisibleSeries();
+    }
+
+    public String getWindowCacheReport() {
+        return windowCache.getSummary();
+    }
+
+    /* stops posting weather changes; call when the owner is cleared */
+    public void release() {
+        windowCache.removeChangeListener(weatherChangeListener);
+    }
+
     public void updateLocationOnPrompt() {
         remoteModel.updateLocationOnPrompt();
     }
@@ -71,7 +140,32 @@ public class WeatherRepository {
         return instantSensorReading;
     }
 
-    public List<Weather> getWeatherDataEntriesFromDb() {
-        return remoteModel.getWeatherDataEntriesFromDb();
+    /* raw samples of the continuous sensor stream; null until the sensor streams are started */
+    public SensorSampleBuffer getSensorSampleBuffer() {
+        SensorStreamIngestion ingestion = RemoteDataFetchModel.getSensorStreamIngestion();
+        return ingestion == null ? null : ingestion.getSampleBuffer();
+    }
+
+    /* direct query of the whole table; call only from a database thread (see DatabaseAccess) */
+    public List<Weather> getWeatherDataEntriesNonLive() {
+        return weatherDao.getAllWeatherPointsNonLive();
+    }
+
+    /* missing hours of a series in [fromMillis, toMillis), from one indexed query; call only from
+     * a database thread */
+    public SeriesGaps getSeriesGaps(String location, Integer category, long fromMillis,
+                                    long toMillis) {
+        return SeriesGaps.fromBitmaps(weatherDao.getHourBitmaps(location, category, fromMillis,
+                toMillis), fromMillis, toMillis);
+    }
+
+    /* streams the matching rows to out and closes it; call only from a database thread */
+    public long exportWeather(WeatherExportOptions options, OutputStream out) throws IOException {
+        return WeatherExporter.export(weatherDao, options, out);
+    }
+
+    /* imports into the location's sensor rows; run it on the import executor */
+    public SensorHistoryImporter newSensorHistoryImporter(String locationName) {
+        return new SensorHistoryImporter(weatherDao, locationName, MonitorClock.SYSTEM);
     }
 }
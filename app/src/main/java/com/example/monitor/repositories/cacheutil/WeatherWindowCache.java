@@ -0,0 +1,280 @@
+package com.example.monitor.repositories.cacheutil;
+
+import android.util.Log;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.databases.WeatherDao;
+import com.example.monitor.models.TimeSeriesSet;
+import com.example.monitor.models.Weather;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/* Copies of the weather rows in the recent window, which is the visibility duration plus a
+ * margin for the hour that maintenance may lag behind, and of every forecast ahead of it. It is
+ * kept up to date write-through by WriteThroughWeatherDao, so the visible series, which the
+ * freshness checks and the 48h chart read, come from memory and Room is left to durability and
+ * history queries. Rows age out by time; past maxRows the oldest are dropped, and windows
+ * reaching back to a dropped row are misses until it would have aged out anyway.
+ *
+ * The window is loaded from Room on the first read. Rows inserted or updated while that load runs
+ * are kept; a load overtaken by an age update, a delete or a clear, which change rows the cache
+ * may not hold yet, is thrown away and retried on the next read. One cache serves the process,
+ * see WriteThroughWeatherDao.getInstance. */
+public class WeatherWindowCache {
+    private static final String TAG = "WeatherWindowCache";
+
+    private static final Comparator<Weather> BY_TIME = new Comparator<Weather>() {
+        @Override
+        public int compare(Weather a, Weather b) {
+            int byTime = Long.compare(a.getTimeInMillis(), b.getTimeInMillis());
+            return byTime != 0 ? byTime : Integer.compare(a.getId(), b.getId());
+        }
+    };
+
+    private final WeatherDao roomDao;
+    private final MonitorClock clock;
+    private final long windowMillis;
+    private final int maxRows;
+
+    private final Map<Integer, Weather> rowsById = new HashMap<>();
+    private final TreeSet<Weather> rowsByTime = new TreeSet<>(BY_TIME);
+    private boolean loaded = false;
+    private long invalidations = 0;     /* age updates, deletes and clears, to detect an overtaken load */
+    private long evictedThrough = -1;   /* newest row dropped for size */
+    private TimeSeriesSet visibleSeries; /* built on demand, dropped on every change */
+
+    /* counts the changes of the table; the listeners are told of each, e.g. to refresh what was
+     * built from it. They run on the writing thread, under the cache's lock */
+    private long version = 0;
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long sizeEvictions = 0;
+
+    public WeatherWindowCache(WeatherDao roomDao, MonitorClock clock) {
+        this(roomDao, clock, MonitorConstants.VISIBILITY_DURATION * 1000L
+                + MonitorConstants.WINDOW_CACHE_MARGIN, MonitorConstants.WINDOW_CACHE_MAX_ROWS);
+    }
+
+    public WeatherWindowCache(WeatherDao roomDao, MonitorClock clock, long windowMillis,
+                              int maxRows) {
+        this.roomDao = roomDao;
+        this.clock = clock;
+        this.windowMillis = windowMillis;
+        this.maxRows = maxRows;
+    }
+
+    /*** reads ***/
+    /* the visible series if the window is held, counted as a hit; null otherwise. Never touches
+     * the database, so it can be called on any thread */
+    public synchronized TimeSeriesSet peekVisibleSeries() {
+        long windowStart = trim();
+        if (!loaded || evictedThrough >= windowStart) {
+            return null;
+        }
+        hits++;
+        if (visibleSeries == null) {
+            visibleSeries = TimeSeriesSet.build(new ArrayList<>(rowsByTime));
+        }
+        return visibleSeries;
+    }
+
+    /* The visible series, from memory if possible. Otherwise, a miss, they are built from a Room
+     * query of the window, which also loads the window the first time. Call only from a database
+     * thread (see DatabaseAccess). */
+    public TimeSeriesSet getVisibleSeries() {
+        TimeSeriesSet cached = peekVisibleSeries();
+        if (cached != null) {
+            return cached;
+        }
+        long windowStart;
+        long invalidationsBefore;
+        synchronized (this) {
+            misses++;
+            windowStart = clock.currentTimeMillis() - windowMillis;
+            invalidationsBefore = invalidations;
+        }
+        List<Weather> rows = roomDao.getWeatherPointsAfter(windowStart);
+        synchronized (this) {
+            if (!loaded && invalidationsBefore == invalidations) {
+                for (Weather row : rows) {
+                    if (!rowsById.containsKey(row.getId())) {
+                        add(copyOf(row)); /* a row written meanwhile is newer than the snapshot */
+                    }
+                }
+                loaded = true;
+                visibleSeries = null;
+                trim();
+                Log.d(TAG, "getVisibleSeries: window loaded, " + rowsById.size() + " rows");
+            }
+        }
+        return TimeSeriesSet.build(rows);
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    /*** write-through, after Room has committed ***/
+    public synchronized void onInserted(Weather row) {
+        put(row);
+        changed();
+    }
+
+    public synchronized void onInserted(List<Weather> rows) {
+        for (Weather row : rows) {
+            put(row);
+        }
+        changed();
+    }
+
+    public synchronized void onUpdated(Weather row) {
+        put(row);
+        changed();
+    }
+
+    public synchronized void onDeleted(Weather row) {
+        remove(row.getId());
+        invalidations++;
+        changed();
+    }
+
+    public synchronized void onCleared() {
+        rowsById.clear();
+        rowsByTime.clear();
+        evictedThrough = -1;
+        invalidations++;
+        changed();
+    }
+
+    /* mirrors WeatherDao.updateAgeCategoriesInRange */
+    public synchronized void onAgeCategoriesUpdated(int fromId, int toId, long visibleCutoff,
+                                                    long storedCutoff, int underVisible,
+                                                    int underStored, int overStored) {
+        for (Weather row : rowsById.values()) {
+            if (row.getId() >= fromId && row.getId() < toId) {
+                long time = row.getTimeInMillis();
+                row.setPersistence(time > visibleCutoff ? underVisible
+                        : time > storedCutoff ? underStored : overStored);
+            }
+        }
+        invalidations++;
+        changed();
+    }
+
+    /* mirrors WeatherDao.deleteWeatherPointsInRange */
+    public synchronized void onDeletedInRange(int fromId, int toId, int persistence) {
+        Iterator<Weather> iterator = rowsByTime.iterator();
+        while (iterator.hasNext()) {
+            Weather row = iterator.next();
+            if (row.getId() >= fromId && row.getId() < toId
+                    && Integer.valueOf(persistence).equals(row.getPersistence())) {
+                iterator.remove();
+                rowsById.remove(row.getId());
+            }
+        }
+        invalidations++;
+        changed();
+    }
+
+    /*** metrics ***/
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /* share of reads served from memory, 0 to 1; 0 before the first read */
+    public synchronized double getHitRatio() {
+        long reads = hits + misses;
+        return reads == 0 ? 0 : (double) hits / reads;
+    }
+
+    public synchronized int size() {
+        return rowsById.size();
+    }
+
+    public synchronized String getSummary() {
+        return String.format(Locale.US, "window cache: %d rows%s, hits %d, misses %d, "
+                        + "hit ratio %.2f, size evictions %d", rowsById.size(),
+                loaded ? "" : " (not loaded)", hits, misses, getHitRatio(), sizeEvictions);
+    }
+
+    /*** internals, under the lock ***/
+    /* rows outside the window are kept out, so a load racing the write stays correct */
+    private void put(Weather row) {
+        remove(row.getId());
+        if (row.getTimeInMillis() > clock.currentTimeMillis() - windowMillis) {
+            add(copyOf(row));
+        }
+    }
+
+    private void add(Weather copy) {
+        rowsById.put(copy.getId(), copy);
+        rowsByTime.add(copy);
+        while (rowsByTime.size() > maxRows) {
+            Weather oldest = rowsByTime.pollFirst();
+            rowsById.remove(oldest.getId());
+            evictedThrough = Math.max(evictedThrough, oldest.getTimeInMillis());
+            sizeEvictions++;
+        }
+    }
+
+    private void remove(int id) {
+        Weather previous = rowsById.remove(id);
+        if (previous != null) {
+            rowsByTime.remove(previous);
+        }
+    }
+
+    /* drops rows that left the window; returns its start */
+    private long trim() {
+        long windowStart = clock.currentTimeMillis() - windowMillis;
+        while (!rowsByTime.isEmpty() && rowsByTime.first().getTimeInMillis() <= windowStart) {
+            rowsById.remove(rowsByTime.pollFirst().getId());
+            visibleSeries = null;
+        }
+        return windowStart;
+    }
+
+    private void changed() {
+        visibleSeries = null;
+        version++;
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+
+    /* the cache owns its rows; callers may keep changing theirs */
+    private static Weather copyOf(Weather row) {
+        Weather copy = new Weather(row.getCelsius(), row.getHumidity(), row.getLink(),
+                row.getTime(), row.getLocation(), row.getPersistence(), row.getCategory(),
+                row.getTimeInMillis());
+        copy.setId(row.getId());
+        copy.setMinCelsius(row.getMinCelsius());
+        copy.setMaxCelsius(row.getMaxCelsius());
+        copy.setMinHumidity(row.getMinHumidity());
+        copy.setMaxHumidity(row.getMaxHumidity());
+        return copy;
+    }
+}
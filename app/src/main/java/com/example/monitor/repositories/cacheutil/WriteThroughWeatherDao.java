@@ -0,0 +1,148 @@
+package com.example.monitor.repositories.cacheutil;
+
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.databases.WeatherDao;
+import com.example.monitor.models.DayHourBitmap;
+import com.example.monitor.models.Weather;
+
+import java.util.List;
+
+/* The weather DAO handed out by the repository: every statement goes to Room, and each write is
+ * applied to the WeatherWindowCache once Room has returned, so the cache never holds a row that
+ * isn't stored. Reads pass through; the cached series are read from the cache itself. Generated
+ * ids are set on inserted rows, which the cache is keyed by.
+ *
+ * One instance and cache per process, like the database: the background jobs keep the DAO they were
+ * started with, and every repository must see their writes. */
+public class WriteThroughWeatherDao implements WeatherDao {
+    private static WriteThroughWeatherDao instance;
+
+    private final WeatherDao roomDao;
+    private final WeatherWindowCache cache;
+
+    /* singleton; roomDao is only used the first time */
+    public static synchronized WriteThroughWeatherDao getInstance(WeatherDao roomDao) {
+        if (instance == null) {
+            instance = new WriteThroughWeatherDao(roomDao,
+                    new WeatherWindowCache(roomDao, MonitorClock.SYSTEM));
+        }
+        return instance;
+    }
+
+    /* for tests, which each start from a new table */
+    static synchronized void resetInstance() {
+        instance = null;
+    }
+
+    public WriteThroughWeatherDao(WeatherDao roomDao, WeatherWindowCache cache) {
+        this.roomDao = roomDao;
+        this.cache = cache;
+    }
+
+    public WeatherWindowCache getCache() {
+        return cache;
+    }
+
+    /*** writes ***/
+    @Override
+    public long insert(Weather weatherDataPoint) {
+        long id = roomDao.insert(weatherDataPoint);
+        weatherDataPoint.setId((int) id);
+        cache.onInserted(weatherDataPoint);
+        return id;
+    }
+
+    @Override
+    public void update(Weather weatherDataPoint) {
+        roomDao.update(weatherDataPoint);
+        cache.onUpdated(weatherDataPoint);
+    }
+
+    @Override
+    public void delete(Weather weatherDataPoint) {
+        roomDao.delete(weatherDataPoint);
+        cache.onDeleted(weatherDataPoint);
+    }
+
+    @Override
+    public void deleteAllWeatherPoints() {
+        roomDao.deleteAllWeatherPoints();
+        cache.onCleared();
+    }
+
+    @Override
+    public List<Long> insertWeatherList(List<Weather> weatherList) {
+        List<Long> ids = roomDao.insertWeatherList(weatherList);
+        for (int i = 0; i < ids.size(); i++) {
+            weatherList.get(i).setId(ids.get(i).intValue());
+        }
+        cache.onInserted(weatherList);
+        return ids;
+    }
+
+    @Override
+    public int updateAgeCategoriesInRange(int fromId, int toId, long visibleCutoff,
+                                          long storedCutoff, int underVisible, int underStored,
+                                          int overStored) {
+        int updated = roomDao.updateAgeCategoriesInRange(fromId, toId, visibleCutoff,
+                storedCutoff, underVisible, underStored, overStored);
+        cache.onAgeCategoriesUpdated(fromId, toId, visibleCutoff, storedCutoff, underVisible,
+                underStored, overStored);
+        return updated;
+    }
+
+    @Override
+    public int deleteWeatherPointsInRange(int fromId, int toId, int persistence) {
+        int deleted = roomDao.deleteWeatherPointsInRange(fromId, toId, persistence);
+        cache.onDeletedInRange(fromId, toId, persistence);
+        return deleted;
+    }
+
+    /*** reads ***/
+    @Override
+    public LiveData<List<Weather>> getAllWeatherPoints() {
+        return roomDao.getAllWeatherPoints();
+    }
+
+    @Override
+    public List<Weather> getAllWeatherPointsNonLive() {
+        return roomDao.getAllWeatherPointsNonLive();
+    }
+
+    @Override
+    public List<Weather> getWeatherPointsAfter(long fromMillis) {
+        return roomDao.getWeatherPointsAfter(fromMillis);
+    }
+
+    @Override
+    public int getMinWeatherId() {
+        return roomDao.getMinWeatherId();
+    }
+
+    @Override
+    public int getMaxWeatherId() {
+        return roomDao.getMaxWeatherId();
+    }
+
+    @Override
+    public List<Long> getTimesInRange(String location, int category, long fromMillis,
+                                      long toMillis) {
+        return roomDao.getTimesInRange(location, category, fromMillis, toMillis);
+    }
+
+    @Override
+    public List<DayHourBitmap> getHourBitmaps(String location, int category, long fromMillis,
+                                              long toMillis) {
+        return roomDao.getHourBitmaps(location, category, fromMillis, toMillis);
+    }
+
+    @Override
+    public Cursor getWeatherCursor(SupportSQLiteQuery query) {
+        return roomDao.getWeatherCursor(query);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.monitor.repositories.execmodel;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.BoundedHandoffQueue;
+import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.backgroundutil.HashedTimingWheel;
+import com.example.monitor.repositories.networkutils.MQTTConnection;
+import com.example.monitor.repositories.networkutils.TopicData;
+import com.example.monitor.repositories.parseutils.ParseUtils;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/* Keeps the liveness of every device from its status topic. Each heartbeat pushes the device's
+ * deadline forward in a hashed timing wheel; a device is flipped to OFFLINE when the wheel
+ * reaches its deadline without a newer heartbeat. The UI observes a single map of states. */
+public class DeviceLivenessTracker {
+    private static final String TAG = "DeviceLivenessTracker";
+
+    private static DeviceLivenessTracker instance;
+
+    /* per-device wheel entry, reused for every heartbeat of that device */
+    private static class DeviceTimeout extends HashedTimingWheel.Timeout {
+        final int deviceIndex;
+        long lastHeartbeat;
+        Integer state = MonitorEnums.DEVICE_UNKNOWN;
+
+        DeviceTimeout(int deviceIndex) {
+            this.deviceIndex = deviceIndex;
+        }
+    }
+
+    private final HashedTimingWheel timingWheel;
+    private final Map<Integer, DeviceTimeout> devices = new HashMap<>();
+    private final MutableLiveData<Map<Integer, Integer>> deviceStates = new MutableLiveData<>();
+    private final HashedTimingWheel.ExpiryHandler expiryHandler = timeout -> {
+        DeviceTimeout device = (DeviceTimeout) timeout;
+        Log.d(TAG, "device " + device.deviceIndex + " missed its heartbeat; offline");
+        setState(device, MonitorEnums.DEVICE_OFFLINE);
+    };
+    private volatile boolean subscribed = false;
+
+    /* the callback only enqueues; parsing runs on the ingestion thread */
+    private final BoundedHandoffQueue<Mqtt5Publish> ingestionQueue =
+            ExecutorHelper.getMqttIngestionQueueInstance();
+    private final BoundedHandoffQueue.Handler<Mqtt5Publish> statusHandler = this::onStatusPublish;
+    private boolean started = false;
+
+    public static synchronized DeviceLivenessTracker getInstance() {
+        if (instance == null) {
+            instance = new DeviceLivenessTracker();
+        }
+        return instance;
+    }
+
+    private DeviceLivenessTracker() {
+        timingWheel = new HashedTimingWheel(MonitorConstants.LIVENESS_TICK,
+                MonitorConstants.LIVENESS_WHEEL_SIZE, System.currentTimeMillis());
+        for (int i = 0; i < TopicData.getDeviceCount(); i++) {
+            devices.put(i, new DeviceTimeout(i));
+        }
+        deviceStates.postValue(snapshotStates());
+    }
+
+    /* subscribes to the heartbeats and starts the wheel; heartbeats can also be fed in directly */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        MQTTConnection.addConnectedListener(this::ensureSubscribed);
+        MQTTConnection.addDisconnectedListener(() -> subscribed = false);
+        ensureSubscribed();
+
+        ExecutorHelper.getScheduledPoolInstance().scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                advanceWheel(System.currentTimeMillis());
+            }
+        }, MonitorConstants.LIVENESS_TICK, MonitorConstants.LIVENESS_TICK, TimeUnit.MILLISECONDS);
+    }
+
+    public LiveData<Map<Integer, Integer>> getDeviceStates() {
+        return deviceStates;
+    }
+
+    /* one wildcard subscription covers the status topics of all devices */
+    public synchronized void ensureSubscribed() {
+        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
+        if (subscribed || mqtt5Client == null || !mqtt5Client.getState().isConnected()) {
+            return;
+        }
+        subscribed = true;
+        String topic = TopicData.getDeviceStatusWildcardTopic();
+        mqtt5Client.toAsync().subscribeWith().topicFilter(topic)
+                .callback(publish -> ingestionQueue.offer(publish, statusHandler))
+                .send()
+                .whenComplete((subAck, throwable) -> {
+                    if (throwable != null) {
+                        Log.d(TAG, "ensureSubscribed: subscription failed: " + throwable.getMessage());
+                        subscribed = false;
+                    }
+                });
+    }
+
+    /* handed off from the MQTT callback; a live message is a heartbeat as of now, while a
+     * retained one is only as recent as the timestamp inside it */
+    public void onStatusPublish(Mqtt5Publish publish) {
+        int deviceIndex = TopicData.getDeviceIndexForStatusTopic(publish.getTopic().toString());
+        if (deviceIndex < 0) {
+            return;
+        }
+        long heartbeatTime = System.currentTimeMillis();
+        if (publish.isRetain()) {
+            String payload = new String(publish.getPayloadAsBytes(), StandardCharsets.UTF_8);
+            /* the device and the phone share a timezone; the fixed offset missed DST */
+            heartbeatTime = ParseUtils.localMillisToUtc(
+                    ParseUtils.parseDeviceJsonTimestamp(payload), TimeZone.getDefault());
+        }
+        onHeartbeat(deviceIndex, heartbeatTime, System.currentTimeMillis());
+    }
+
+    public synchronized void onHeartbeat(int deviceIndex, long heartbeatTime, long currentTime) {
+        DeviceTimeout device = devices.get(deviceIndex);
+        if (device == null) {
+            device = new DeviceTimeout(deviceIndex);
+            devices.put(deviceIndex, device);
+        }
+        if (heartbeatTime < device.lastHeartbeat) {
+            return; /* out of order; a newer heartbeat already set the deadline */
+        }
+        device.lastHeartbeat = heartbeatTime;
+
+        long deadline = heartbeatTime + MonitorConstants.DEVICE_HEARTBEAT_TIMEOUT;
+        if (deadline <= currentTime) {
+            timingWheel.cancel(device);
+            setState(device, MonitorEnums.DEVICE_OFFLINE);
+        } else {
+            timingWheel.schedule(device, deadline);
+            setState(device, MonitorEnums.DEVICE_ONLINE);
+        }
+    }
+
+    public synchronized void advanceWheel(long currentTime) {
+        timingWheel.advanceTo(currentTime, expiryHandler);
+    }
+
+    /* LiveData is only touched when a state actually changes, not on every heartbeat */
+    private void setState(DeviceTimeout device, Integer state) {
+        if (device.state.equals(state)) {
+            return;
+        }
+        device.state = state;
+        deviceStates.postValue(snapshotStates());
+    }
+
+    private Map<Integer, Integer> snapshotStates() {
+        Map<Integer, Integer> states = new HashMap<>();
+        for (DeviceTimeout device : devices.values()) {
+            states.put(device.deviceIndex, device.state);
+        }
+        return states;
+    }
+}
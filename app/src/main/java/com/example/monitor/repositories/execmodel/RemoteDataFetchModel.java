@@ -2,25 +2,28 @@ package com.example.monitor.repositories.execmodel;
 
 import android.app.Application;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.location.LocationManager;
-import android.net.ConnectivityManager;
-import android.net.Network;
-import android.net.NetworkCapabilities;
-import android.net.NetworkInfo;
-import android.os.Build;
 import android.util.Log;
 import android.widget.Toast;
 
-import androidx.annotation.RequiresApi;
 import androidx.lifecycle.MutableLiveData;
 
 import com.example.monitor.MonitorConstants;
 import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.AlignedJobScheduler;
+import com.example.monitor.backgroundutil.BoundedHandoffQueue;
 import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.backgroundutil.PriorityDatabaseExecutor;
+import com.example.monitor.databases.DatabaseAccess;
 import com.example.monitor.databases.LocationDao;
 import com.example.monitor.databases.WeatherDao;
 import com.example.monitor.models.MonitorLocation;
+import com.example.monitor.models.TimeSeriesSet;
 import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.cacheutil.WeatherWindowCache;
+import com.example.monitor.repositories.networkutils.ConnectivityMonitor;
 import com.example.monitor.repositories.networkutils.MQTTConnection;
 import com.example.monitor.repositories.networkutils.NetworkUtils;
 import com.example.monitor.repositories.networkutils.TopicData;
@@ -37,11 +40,9 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 
 /* Background execution module. Takes care of:
@@ -57,133 +58,212 @@ public class RemoteDataFetchModel {
 
     private static RemoteDataFetchModel instance;
     private static WeatherDao weatherDaoReference;
+    private static WeatherWindowCache windowCache;
     private static LocationDao locationDaoReference;
     private static Application applicationFromRepository;
     private static MonitorLocation defaultHomeLocation;
     private static List<MonitorLocation> defaultMonitorLocationList;
+    private static CompletableFuture<String> defaultLocationWrite;
     private static LocationManager locationManager;
 
     private static ExecutorService networkExecutor;
-    private static ExecutorService cachingExecutor;
-    private static ExecutorService serviceExecutor;
+    private static PriorityDatabaseExecutor cachingExecutor;
     private static ExecutorService gpsExecutor;
     private static ScheduledExecutorService scheduledExecutor;
+    private static BoundedHandoffQueue<Mqtt5Publish> mqttIngestionQueue;
 
     /* mqtt */
-    private static Mqtt5Client mqtt5Client;
+    private static SensorStreamIngestion sensorStreamIngestion;
+    /* set by the mqttSubscriptions startup step, read on the main thread by a tap */
+    private static volatile SensorReadRequester sensorReadRequester;
+    private static SensorDeltaSync sensorDeltaSync;
+
+    /* wall-clock aligned background jobs */
+    private static final String JOB_HOURLY = "hourly";
+    private static final String JOB_SENSOR_FLUSH = "sensorFlush";
+    private static final String JOB_TWELVE_HOURS = "twelveHours";
+    private static final String JOB_MAINTENANCE = "maintenance";
+    private static AlignedJobScheduler jobScheduler;
+    private static ConnectivityMonitor connectivityMonitor;
+
+    /* wall-clock time for scheduling and data aging; replaceable for simulations */
+    private static volatile MonitorClock clock = MonitorClock.SYSTEM;
 
     /* singleton, instantiated in environment providing DAO and reference to activity  */
-    public static RemoteDataFetchModel getInstance(WeatherDao weatherDao, LocationDao locationDao,
+    public static RemoteDataFetchModel getInstance(WeatherDao weatherDao,
+                                                   WeatherWindowCache weatherWindowCache,
+                                                   LocationDao locationDao,
                                                    Application application,
                                                    MutableLiveData<String> instantSensorReadingObj) {
         if (instance == null) {
             /* set up private members */
             instance = new RemoteDataFetchModel();
-            weatherDaoReference = weatherDao;
-            locationDaoReference = locationDao;
+            setUpDataAccess(weatherDao, weatherWindowCache, locationDao);
             applicationFromRepository = application;
             instantSensorReading = instantSensorReadingObj;
             locationManager = (LocationManager) applicationFromRepository
                     .getSystemService(Context.LOCATION_SERVICE);
 
             /* instantiate all necessary executors; never nest submissions to the same executor. */
-            networkExecutor = ExecutorHelper.getNetworkRequestExecutorInstance(); // weather, loc
-            cachingExecutor = ExecutorHelper.getDatabaseExecutorInstance(); // all caching into db
-            serviceExecutor = ExecutorHelper.getServiceExecutorInstance(); // for user purposes
             scheduledExecutor = ExecutorHelper.getScheduledPoolInstance();
             gpsExecutor = ExecutorHelper.getGpsExecutorInstance();
-
-            /* mqtt reference to client */
-            mqtt5Client = MQTTConnection.getClient();
-
-            /* (blocking) prep the default location data; clears the location database */
-            defaultMonitorLocationList = new ArrayList<>();
-            defaultHomeLocation = new MonitorLocation("298198", "Belgrade",
-                    "44.8125", "20.4612", false, 0);
-            defaultMonitorLocationList.add(0, defaultHomeLocation);
-            Future<String> defaultLocationTask = cachingExecutor
-                    .submit(new CacheDataInDbsTask(defaultHomeLocation, locationDaoReference));
-            try {
-                defaultLocationTask.get();
-            } catch (Exception e) {
-                Log.d(TAG, "defaultLocationTask - FATAL: default location db not set up.");
-                e.printStackTrace();
-            }
+            mqttIngestionQueue = ExecutorHelper.getMqttIngestionQueueInstance(); // mqtt callbacks
 
             /* location network operations may also be done at startup */
             /* updateLocationOnPrompt(); */
+        }
+        return instance;
+    }
+
+    /* what the scheduled jobs need besides the Application; also used by simulations, which then
+     * start the jobs on virtual time (see startScheduledJobs below) */
+    static void setUpDataAccess(WeatherDao weatherDao, WeatherWindowCache weatherWindowCache,
+                                LocationDao locationDao) {
+        weatherDaoReference = weatherDao;
+        windowCache = weatherWindowCache;
+        locationDaoReference = locationDao;
+        networkExecutor = ExecutorHelper.getNetworkRequestExecutorInstance(); // weather, loc
+        cachingExecutor = ExecutorHelper.getDatabaseExecutorInstance(); // all writes into db; reads via DatabaseAccess
+
+        /* default location data; written to the database by writeDefaultLocation() */
+        defaultMonitorLocationList = new ArrayList<>();
+        defaultHomeLocation = new MonitorLocation("298198", "Belgrade",
+                "44.8125", "20.4612", false, 0);
+        defaultMonitorLocationList.add(0, defaultHomeLocation);
+    }
 
-            /* set up the hourly weather query; should cancel if no response */
-            scheduleHourlyTasks();
+    /*** startup steps; run off the main thread by the startup orchestrator ***/
+    /* clears the location database and stores the default location, on the writer; once per
+     * process, as each new ViewModel runs the startup steps again. A failed write is retried */
+    public static synchronized CompletableFuture<String> writeDefaultLocation() {
+        if (defaultLocationWrite == null || defaultLocationWrite.isCompletedExceptionally()) {
+            defaultLocationWrite = DatabaseAccess.write(
+                    new CacheDataInDbsTask(defaultHomeLocation, locationDaoReference),
+                    MonitorEnums.DB_PRIORITY_INTERACTIVE);
+        }
+        return defaultLocationWrite;
+    }
 
-            /* set up the 12 hour weather query; may be done twice a day*/
-            scheduleDailyTasks();
+    /* MQTT subscriptions; they are (re)made whenever the client connects */
+    public static synchronized void startSensorStreams() {
+        /* continuous sensor stream, aggregated hourly on the device */
+        if (MonitorEnums.USE_MQTT_CONTINUOUS && sensorStreamIngestion == null) {
+            sensorStreamIngestion = new SensorStreamIngestion(weatherDaoReference,
+                    cachingExecutor, defaultHomeLocation.getLocalizedName(), clock);
+            sensorStreamIngestion.start();
+        }
 
-            /* set up the daily weather database maintenance (do one for location too?) */
-            scheduleMaintenanceTasks();
+        /* instant readings on request, answered on this client's response topic */
+        if (MonitorEnums.USE_MQTT_REQUEST_RESPONSE && sensorReadRequester == null) {
+            sensorReadRequester = new SensorReadRequester(instantSensorReading);
+            sensorReadRequester.start();
         }
-        return instance;
+    }
+
+    /* hourly and 12 hour weather queries and database maintenance (do one for location too?),
+     * aligned to the clock; jobs missed while the app was dead run right away. The jobs read the
+     * location table, so this runs once the default location is in place */
+    public static synchronized void startScheduledJobs() {
+        if (jobScheduler != null) {
+            return;
+        }
+        startScheduledJobs(scheduledExecutor, applicationFromRepository
+                        .getSharedPreferences(MonitorConstants.JOB_PREFERENCES, Context.MODE_PRIVATE),
+                ConnectivityMonitor.getInstance(applicationFromRepository));
+    }
+
+    /* the executor's delays must follow the clock, see setClock */
+    static synchronized void startScheduledJobs(ScheduledExecutorService executor,
+                                                SharedPreferences preferences,
+                                                ConnectivityMonitor monitor) {
+        jobScheduler = new AlignedJobScheduler(executor, preferences, clock);
+        /* sensor hours missed while offline are requested from the Pi by the hourly job */
+        if (MonitorEnums.USE_MQTT || MonitorEnums.USE_NGROK) {
+            sensorDeltaSync = new SensorDeltaSync(weatherDaoReference,
+                    defaultHomeLocation.getLocalizedName(), clock, MonitorEnums.USE_MQTT);
+            sensorDeltaSync.start();
+        }
+        registerScheduledJobs(jobScheduler);
+
+        /* fetch jobs pause while offline and catch up as soon as the network is back; deferred
+         * bulk fetches also run once an unmetered network comes up */
+        connectivityMonitor = monitor;
+        connectivityMonitor.addListener((online, metered) -> {
+            jobScheduler.setPaused(JOB_HOURLY, !online);
+            jobScheduler.setPaused(JOB_TWELVE_HOURS, !online);
+            if (online && !metered) {
+                jobScheduler.runMissedJobs();
+            }
+        });
+        jobScheduler.start();
     }
 
     /* public method for user-prompted update of instant sensor reading */
     /* (not implemented) offer an option to get instant sensor reading of brightness */
-    public static synchronized void updateSensorReadingOnPrompt(String parameter) {
+    public static void updateSensorReadingOnPrompt(String parameter) {
+        long tapNanos = System.nanoTime();
 
-        /* check MQTT connection */
-        mqtt5Client = MQTTConnection.getClient();
-        if (!mqtt5Client.getState().isConnected()) {
+        /* check MQTT connection; there is no client before its startup step has run */
+        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
+        if (mqtt5Client == null || !mqtt5Client.getState().isConnected()) {
             Toast.makeText(applicationFromRepository, "Client not connected to MQTT", Toast.LENGTH_SHORT).show();
             Log.d(TAG, "updateSensorReadingOnPrompt: NO MQTT CONNECTION");
             instantSensorReading.postValue("V" + "OFFLINE" + ";T" + "OFFLINE"  + "|");
-            MQTTConnection.connectAsync(); // try connecting
+            MQTTConnection.connectInBackground(); // try connecting
             return;
         }
 
-        serviceExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                if (MonitorEnums.USE_NGROK) {
-                    List<Weather> sensorWeatherList = getForecastFromNetwork(MonitorEnums.HOME_SENSOR_INSTANT,
-                            defaultHomeLocation, "instant sensor data from ngrok.");
-                    if (sensorWeatherList != null) {
-                        String hms = sensorWeatherList.get(0).getTime().substring(11, 19);
-                        instantSensorReading.postValue("V" + sensorWeatherList.get(0).getCelsius()
-                                + ";T" + hms + "|");
-                    } else {
-                        Log.i(TAG, "updateSensorReadingOnPrompt: sensor data returns null");
-                        instantSensorReading.postValue(MonitorConstants.SENSOR_READING_FORMAT);
-                    }
+        /* neither path blocks the caller; the reading is posted when it arrives */
+        if (MonitorEnums.USE_NGROK) {
+            getForecastFromNetworkAsync(MonitorEnums.HOME_SENSOR_INSTANT, defaultHomeLocation,
+                    "instant sensor data from ngrok.").thenAccept(sensorWeatherList -> {
+                if (sensorWeatherList != null) {
+                    String hms = sensorWeatherList.get(0).getTime().substring(11, 19);
+                    instantSensorReading.postValue("V" + sensorWeatherList.get(0).getCelsius()
+                            + ";T" + hms + "|");
+                } else {
+                    Log.i(TAG, "updateSensorReadingOnPrompt: sensor data returns null");
+                    instantSensorReading.postValue(MonitorConstants.SENSOR_READING_FORMAT);
                 }
+            });
+        }
 
-                if (MonitorEnums.USE_MQTT) {
-                    String topic = TopicData.getJsonSensorInstantDataTopic();
-                    mqtt5Client.toAsync().subscribeWith().topicFilter(topic)/*.qos(MqttQos.AT_LEAST_ONCE)*/
-                        .callback(publish -> {
-                            String hms;
-                            String sensorValue;
-                            List<Weather> weatherList = getDataListFromPayload(topic, publish);
-                            if (weatherList == null) {
-                                sensorValue = "OFFLINE";
-                                hms = "OFFLINE";
-                            } else {
-                                Weather dataPoint = weatherList.get(0);
-                                hms = dataPoint.getTime().substring(11, 19);
-                                if (parameter.equals("Temperature")){
-                                    sensorValue = dataPoint.getCelsius() + " C";
-                                } else if (parameter.equals("Humidity")) {
-                                    sensorValue = dataPoint.getHumidity()+ " %";
-                                } else {
-                                    Log.d(TAG, "updateSensorReadingOnPrompt: No valid parameter selected.");
-                                    sensorValue = "N/A";
-                                }
-                            }
-
-                            /* modify LiveData visible in MainActivity */
-                            instantSensorReading.postValue("V" + sensorValue + ";T" + hms + "|");
-                        }).send();
-                }
+        if (MonitorEnums.USE_MQTT && MonitorEnums.USE_MQTT_REQUEST_RESPONSE) {
+            SensorReadRequester requester = sensorReadRequester;
+            if (requester == null) {
+                /* connected, but the subscriptions' startup step hasn't run yet */
+                Log.d(TAG, "updateSensorReadingOnPrompt: read requests not ready");
+                instantSensorReading.postValue("V" + "OFFLINE" + ";T" + "OFFLINE"  + "|");
+                return;
             }
-        });
+            requester.requestReading(parameter, tapNanos);
+        } else if (MonitorEnums.USE_MQTT) {
+            String topic = TopicData.getJsonSensorInstantDataTopic();
+            mqtt5Client.toAsync().subscribeWith().topicFilter(topic)/*.qos(MqttQos.AT_LEAST_ONCE)*/
+                .callback(received -> mqttIngestionQueue.offer(received, publish -> {
+                    String hms;
+                    String sensorValue;
+                    List<Weather> weatherList = getDataListFromPayload(topic, publish);
+                    if (weatherList == null) {
+                        sensorValue = "OFFLINE";
+                        hms = "OFFLINE";
+                    } else {
+                        Weather dataPoint = weatherList.get(0);
+                        hms = dataPoint.getTime().substring(11, 19);
+                        if (parameter.equals("Temperature")){
+                            sensorValue = dataPoint.getCelsius() + " C";
+                        } else if (parameter.equals("Humidity")) {
+                            sensorValue = dataPoint.getHumidity()+ " %";
+                        } else {
+                            Log.d(TAG, "updateSensorReadingOnPrompt: No valid parameter selected.");
+                            sensorValue = "N/A";
+                        }
+                    }
+
+                    /* modify LiveData visible in MainActivity */
+                    instantSensorReading.postValue("V" + sensorValue + ";T" + hms + "|");
+                })).send();
+        }
     }
 
     /* criterium for sensors being online is that they are timestamped within the last 10 minutes */
@@ -198,113 +278,80 @@ public class RemoteDataFetchModel {
     }
 
     /*** location routines ***/
-    /* public method for user-prompted location update */
-    public static synchronized void updateLocationOnPrompt() {
+    /* public method for user-prompted location update; GPS, network and caching are chained
+     * stages on their own executors, so no thread waits for another one here */
+    public static void updateLocationOnPrompt() {
         if (!(locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER))) {
             Toast.makeText(applicationFromRepository,
                     "GPS not available", Toast.LENGTH_SHORT).show();
             return;
         }
-        serviceExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                ArrayList<String> gpsLatLon = getGpsLatLon(); // blocking
-                MonitorLocation fetchedMonitorLocation = null;
-                if (gpsLatLon != null) {
-                    fetchedMonitorLocation = getLocationFromNetwork(0, gpsLatLon,
-                            defaultMonitorLocationList); // blocking
-                    if (fetchedMonitorLocation != null) {
-                        cachingExecutor.submit(new CacheDataInDbsTask(fetchedMonitorLocation,
-                                locationDaoReference)); // nonblocking
-                    }
-                }
-            }
-        });
+        getGpsLatLonAsync()
+                .thenCompose(gpsLatLon -> gpsLatLon == null
+                        ? CompletableFuture.<MonitorLocation>completedFuture(null)
+                        : getLocationFromNetworkAsync(0, gpsLatLon, defaultMonitorLocationList))
+                .thenCompose(fetchedMonitorLocation -> fetchedMonitorLocation == null
+                        ? CompletableFuture.<String>completedFuture(null)
+                        : ExecutorHelper.supplyAsync(new CacheDataInDbsTask(fetchedMonitorLocation,
+                                locationDaoReference), cachingExecutor))
+                .exceptionally(throwable -> logPipelineFailure("updateLocationOnPrompt", throwable));
     }
 
     /* GPS latitude and longitude task */
-    public static synchronized ArrayList<String> getGpsLatLon() {
-        ArrayList<String> gpsLatLon = null;
-        Future<ArrayList<String>> gpsLatLonTask = gpsExecutor
-                .submit(new GetGpsTask(applicationFromRepository));
-        try {
-            gpsLatLon = gpsLatLonTask.get(MonitorConstants.STD_TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (Exception e) {
-            Log.i(TAG, "getCurrentLocation() at GPS task: Exception");
-            e.printStackTrace();
-        }
-
-        return gpsLatLon;
+    public static CompletableFuture<ArrayList<String>> getGpsLatLonAsync() {
+        return ExecutorHelper.withTimeout(ExecutorHelper.supplyAsync(
+                new GetGpsTask(applicationFromRepository), gpsExecutor), MonitorConstants.STD_TIMEOUT);
     }
 
-    /* Accuweather API query to get actual location key */
-    public static synchronized MonitorLocation getLocationFromNetwork(Integer locationType,
-                                                                      ArrayList<String> gpsLatLon,
-                                                                      List<MonitorLocation> defaultMonitorLocationList) {
-        MonitorLocation fetchedMonitorLocation = defaultMonitorLocationList.get(locationType);
+    /* Accuweather API query to get actual location key; falls back to the default location */
+    public static CompletableFuture<MonitorLocation> getLocationFromNetworkAsync(Integer locationType,
+                                                                               ArrayList<String> gpsLatLon,
+                                                                               List<MonitorLocation> defaultMonitorLocationList) {
         URL locationUrl = NetworkUtils.buildUrlForLocation(gpsLatLon.get(0), gpsLatLon.get(1));
-        Future<String> initialLocationTask = networkExecutor
-                .submit((Callable<String>) new ContactWeatherApiTask(locationUrl));
-        try {
-            String locationResponse = initialLocationTask.get(MonitorConstants.STD_TIMEOUT,
-                    TimeUnit.MILLISECONDS);
-            fetchedMonitorLocation = ParseUtils.parseLocationJSON(locationResponse);
-            fetchedMonitorLocation.setGpsAvailable(true); // if fetched by gps
-            fetchedMonitorLocation.setLocationType(locationType);
-        } catch (Exception e) {
-            e.printStackTrace();
-            Log.d(TAG, "getCurrentLocation at accuweather query: Exception; default location: "
-                    + defaultMonitorLocationList.get(locationType).getLocalizedName());
-        }
-        return fetchedMonitorLocation;
+        return fetchResponseAsync(locationUrl)
+                .thenApply(locationResponse -> {
+                    MonitorLocation fetchedMonitorLocation = ParseUtils.parseLocationJSON(locationResponse);
+                    fetchedMonitorLocation.setGpsAvailable(true); // if fetched by gps
+                    fetchedMonitorLocation.setLocationType(locationType);
+                    return fetchedMonitorLocation;
+                })
+                .exceptionally(throwable -> {
+                    Log.d(TAG, "getLocationFromNetworkAsync at accuweather query: " + throwable
+                            + "; default location: "
+                            + defaultMonitorLocationList.get(locationType).getLocalizedName());
+                    return defaultMonitorLocationList.get(locationType);
+                });
     }
 
     /*** network forecast tasks ***/
-    /* contact accuweather API */
-    public static synchronized List<Weather> getForecastFromNetwork(Integer forecastType,
-                                                                    MonitorLocation location,
-                                                                    String callerMessage) {
-        String weatherResponse;
-        List<Weather> weatherList = null;
-        URL networkWeatherUrl = NetworkUtils.buildUrlForWeather(forecastType, location.getLocation());
-        Future<String> initialWeatherTask = networkExecutor
-                .submit((Callable<String>) new ContactWeatherApiTask(networkWeatherUrl));
-        try {
-            weatherResponse = initialWeatherTask.get(MonitorConstants.STD_TIMEOUT,
-                    TimeUnit.MILLISECONDS);
-        } catch (Exception e) {
-            Log.d(TAG, "getForecastFromNetwork: exception for " + callerMessage);
-            e.printStackTrace();
-            return null;
-        }
-
-        if (weatherResponse != null) {
-            Log.d(TAG, "getForecastFromNetwork: successfully obtained " + callerMessage);
-            weatherList = ParseUtils.parseWeatherJSON(weatherResponse);
-        } else {
-            return null;
-        }
-
-        return weatherList;
+    /* request stage: the response body, or null if it isn't valid JSON */
+    private static CompletableFuture<String> fetchResponseAsync(URL url) {
+        return ExecutorHelper.withTimeout(ExecutorHelper.supplyAsync(
+                new ContactWeatherApiTask(url), networkExecutor), MonitorConstants.STD_TIMEOUT);
     }
 
-    @RequiresApi(api = Build.VERSION_CODES.N)
-    private static Integer updateDataAge(long weatherTimeInMillis, long currentDateMillis,
-                                         Integer howLongVisible, Integer howLongStored) {
-        /* do time comparison */
-        if (weatherTimeInMillis >= currentDateMillis) {
-            return MonitorEnums.UNDER_48H;
-        }
-
-        if ( (currentDateMillis - weatherTimeInMillis) >= (howLongStored*1000)) {
-            return MonitorEnums.MORE_THAN_A_WEEK;
-        }
-
-        if ( (currentDateMillis - weatherTimeInMillis) >= (howLongVisible*1000)) {
-            return MonitorEnums.BETWEEN_48H_AND_WEEK;
-        }
+    /* contact accuweather API; completes with null if there is nothing usable */
+    public static CompletableFuture<List<Weather>> getForecastFromNetworkAsync(Integer forecastType,
+                                                                             MonitorLocation location,
+                                                                             String callerMessage) {
+        URL networkWeatherUrl = NetworkUtils.buildUrlForWeather(forecastType, location.getLocation());
+        return fetchResponseAsync(networkWeatherUrl)
+                .thenApply(weatherResponse -> {
+                    if (weatherResponse == null) {
+                        return null;
+                    }
+                    Log.d(TAG, "getForecastFromNetworkAsync: successfully obtained " + callerMessage);
+                    return ParseUtils.parseWeatherJSON(weatherResponse);
+                })
+                .exceptionally(throwable -> {
+                    Log.d(TAG, "getForecastFromNetworkAsync: " + throwable + " for " + callerMessage);
+                    return null;
+                });
+    }
 
-        return MonitorEnums.UNDER_48H;
+    private static <T> T logPipelineFailure(String stage, Throwable throwable) {
+        Log.d(TAG, stage + ": pipeline failed: " + throwable);
+        return null;
     }
 
     /* interprets time in format used by Accuweather API */
@@ -329,143 +376,224 @@ public class RemoteDataFetchModel {
 
 
     /*** scheduled tasks in the background ***/
-    public static void fetchDataType(Integer type, MonitorLocation loc, long time, String callerMsg) {
-        if (dataNeedsFetching(type, loc, time)) {
-            List<Weather> dataList = getForecastFromNetwork(type, loc, callerMsg);
-            if (dataList != null) {
-                setAnalyticsToData(dataList, loc.getLocalizedName(), MonitorEnums.UNDER_48H, type);
-                if (fetchedDataMatches(type, dataList, time)) {
-                    if (type == MonitorEnums.TWELVE_HOURS_DATA) {
-                        cachingExecutor.submit(new CacheDataInDbsTask(dataList, null,
-                                weatherDaoReference, false, false));
-                    } else {
-                        cachingExecutor.submit(new CacheDataInDbsTask(null, dataList.get(0),
-                                weatherDaoReference, false, false));
+    /* fetch -> parse -> validate -> persist, each stage on its own executor */
+    public static CompletableFuture<Void> fetchDataTypeAsync(Integer type, MonitorLocation loc,
+                                                             long time, String callerMsg) {
+        return fetchDataTypeAsync(type, loc, time, callerMsg, getSeriesFromDbNonBlocking());
+    }
+
+    /* with the stored series read once for several fetches of the same run */
+    private static CompletableFuture<Void> fetchDataTypeAsync(Integer type, MonitorLocation loc,
+                                                              long time, String callerMsg,
+                                                              CompletableFuture<TimeSeriesSet> stored) {
+        return stored
+                .thenCompose(storedSeries -> {
+                    if (!dataNeedsFetching(type, loc, time, storedSeries)) {
+                        return CompletableFuture.<Void>completedFuture(null);
                     }
-                } else {
-                    Log.d(TAG, "fetchDataType: following data did not match: " + callerMsg);
-                }
-            } else {
-                Log.i(TAG, "fetchDataType: following data is null: " + callerMsg);
-            }
+                    return getForecastFromNetworkAsync(type, loc, callerMsg)
+                            .thenCompose(dataList -> persistFetchedData(type, loc, time, callerMsg,
+                                    dataList));
+                });
+    }
+
+    private static CompletableFuture<Void> persistFetchedData(Integer type, MonitorLocation loc,
+                                                              long time, String callerMsg,
+                                                              List<Weather> dataList) {
+        if (dataList == null) {
+            Log.i(TAG, "fetchDataType: following data is null: " + callerMsg);
+            return failedStage("no data: " + callerMsg);
+        }
+        setAnalyticsToData(dataList, loc.getLocalizedName(), MonitorEnums.UNDER_48H, type);
+        if (!fetchedDataMatches(type, dataList, time)) {
+            Log.d(TAG, "fetchDataType: following data did not match: " + callerMsg);
+            return failedStage("data did not match: " + callerMsg);
+        }
+        CacheDataInDbsTask cacheTask;
+        if (type == MonitorEnums.TWELVE_HOURS_DATA) {
+            cacheTask = new CacheDataInDbsTask(dataList, null, weatherDaoReference, false, false);
+        } else {
+            cacheTask = new CacheDataInDbsTask(null, dataList.get(0), weatherDaoReference,
+                    false, false);
         }
+        return ExecutorHelper.supplyAsync(cacheTask, cachingExecutor).thenAccept(result -> {});
+    }
 
+    /* jobs only start pipelines and hand back their result; a failed or skipped run leaves its
+     * slot open, so it is retried and not marked as done */
+    private static void registerScheduledJobs(AlignedJobScheduler scheduler) {
+        scheduler.register(JOB_HOURLY, MonitorConstants.JOB_PERIOD_HOURLY,
+                MonitorConstants.JOB_OFFSET_HOURLY, MonitorConstants.JOB_RETRY_DELAY,
+                slotTime -> runHourlyJob());
+        scheduler.register(JOB_TWELVE_HOURS, MonitorConstants.JOB_PERIOD_TWELVE_HOURS,
+                MonitorConstants.JOB_OFFSET_TWELVE_HOURS, MonitorConstants.JOB_RETRY_DELAY,
+                slotTime -> runTwelveHoursJob(slotTime));
+
+        /* hourly aggregate of the continuous sensor stream, MQTT; local, needs no connection */
+        if (MonitorEnums.USE_MQTT_CONTINUOUS) {
+            scheduler.register(JOB_SENSOR_FLUSH, MonitorConstants.JOB_PERIOD_HOURLY,
+                    MonitorConstants.JOB_OFFSET_HOURLY, MonitorConstants.JOB_RETRY_DELAY,
+                    slotTime -> {
+                        sensorStreamIngestion.ensureSubscribed();
+                        sensorStreamIngestion.flushIfHourElapsed(clock.currentTimeMillis());
+                        return CompletableFuture.completedFuture(null);
+                    });
+        }
+        scheduler.register(JOB_MAINTENANCE, MonitorConstants.JOB_PERIOD_MAINTENANCE,
+                MonitorConstants.JOB_OFFSET_MAINTENANCE, MonitorConstants.JOB_RETRY_DELAY,
+                slotTime -> {
+                    Log.d(TAG, "executor diagnostics:\n" + ExecutorHelper.getDiagnosticsReport());
+                    Log.d(TAG, windowCache.getSummary());
+                    return maintainWeatherDatabase(MonitorConstants.VISIBILITY_DURATION,
+                            MonitorConstants.STORAGE_DURATION);
+                });
     }
 
-    private static synchronized void scheduleMaintenanceTasks() {
-        scheduledExecutor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                maintainWeatherDatabase(MonitorConstants.VISIBILITY_DURATION, MonitorConstants.STORAGE_DURATION);
-                clearOldWeatherData(); /* maybe just do this once a week */
-            }
-        }, MonitorConstants.INITIAL_DELAY_MAINTENANCE, MonitorConstants.PERIODIC_DELAY_MAINTENANCE, TimeUnit.SECONDS);
+    /* bulk fetch: on a metered network it waits for an unmetered one, up to a limit */
+    private static CompletableFuture<Void> runTwelveHoursJob(long slotTime) {
+        long startOfHour = getCurrentMillis();
+
+        /* paused while offline; this covers a run that raced the network going down */
+        if (!connectivityMonitor.isOnline()) {
+            return failedStage("no internet connection");
+        }
+        if (connectivityMonitor.isMetered() && clock.currentTimeMillis() - slotTime
+                < MonitorConstants.JOB_METERED_MAX_DEFERRAL) {
+            return failedStage("deferred on a metered network");
+        }
+
+        return getLocationFromDbNonBlocking()
+                .exceptionally(throwable -> defaultHomeLocation)
+                .thenCompose(fetchedLocation -> fetchDataTypeAsync(MonitorEnums.TWELVE_HOURS_DATA,
+                        fetchedLocation, startOfHour, "API 12hr forecast."));
     }
 
-    private static synchronized void scheduleDailyTasks() {
-        scheduledExecutor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                MonitorLocation fetchedLocation = defaultHomeLocation;
-                long startOfHour = getCurrentMillis();
-
-                /* if no internet connection verifiable, skip all scheduled tasks */
-                if (applicationFromRepository != null) {
-                    if (!isConnectingToInternet(applicationFromRepository.getApplicationContext())) {
-                        return;
-                    }
-                } else {return;}
-
-                /* (blocking) query the location db for relevant location */
-                Future<MonitorLocation> getLocationFromDbTaskMethod = getLocationFromDbNonBlocking();
-                try {
-                    fetchedLocation = getLocationFromDbTaskMethod.get();
-                } catch (Exception e) {
-                    e.printStackTrace();
+    private static CompletableFuture<Void> runHourlyJob() {
+        long startOfHour = getCurrentMillis();
+
+        /* paused while offline; this covers a run that raced the network going down */
+        if (!connectivityMonitor.isOnline()) {
+            return failedStage("no internet connection");
+        }
+
+        /* one read of the stored series serves every check of this run */
+        CompletableFuture<TimeSeriesSet> storedSeries = getSeriesFromDbNonBlocking();
+
+        /* single hour from Accuweather API, for the location in the db */
+        CompletableFuture<Void> apiStage = getLocationFromDbNonBlocking()
+                .exceptionally(throwable -> defaultHomeLocation) // default if nothing in db
+                .thenCompose(fetchedLocation -> fetchDataTypeAsync(MonitorEnums.SINGLE_HOUR_DATA,
+                        fetchedLocation, startOfHour, "API single hr forecast.", storedSeries));
+
+        /* single hour from sensors, ngrok home server */
+        CompletableFuture<Void> sensorStage = CompletableFuture.completedFuture(null);
+        if (MonitorEnums.USE_NGROK) {
+            sensorStage = fetchDataTypeAsync(MonitorEnums.HOME_SENSOR, defaultHomeLocation,
+                    startOfHour, "1hr sensor temperature from ngrok.", storedSeries);
+        }
+
+        /* single hour from sensors, MQTT */
+        if (MonitorEnums.USE_MQTT && !MonitorEnums.USE_MQTT_CONTINUOUS) {
+            sensorStage = storedSeries.thenAccept(series -> {
+                if (dataNeedsFetching(MonitorEnums.HOME_SENSOR, defaultHomeLocation,
+                        startOfHour, series)) {
+                    subscribeToHourlySensorData(startOfHour);
                 }
+            });
+        }
 
-                fetchDataType(MonitorEnums.TWELVE_HOURS_DATA, fetchedLocation, startOfHour,
-                        "API 12hr forecast.");
+        /* hours missed while offline, up to those the stages above or the stream flush write;
+         * a failed sync is not retried within the slot, the next hourly run asks again */
+        CompletableFuture<Void> syncStage = CompletableFuture.completedFuture(null);
+        if (sensorDeltaSync != null) {
+            long untilMillis = MonitorEnums.USE_MQTT_CONTINUOUS
+                    ? startOfHour - MonitorConstants.ONE_HOUR : startOfHour;
+            syncStage = sensorDeltaSync.syncIfBehind(untilMillis)
+                    .exceptionally(throwable -> logPipelineFailure("sensor delta sync", throwable))
+                    .thenAccept(hoursFilled -> {});
+        }
 
-            }
-        }, MonitorConstants.INITIAL_DELAY_TWELVE_HOURS, MonitorConstants.PERIODIC_DELAY_TWELVE_HOURS, TimeUnit.SECONDS);
+        return CompletableFuture.allOf(apiStage, sensorStage, syncStage);
     }
 
-    private static synchronized void scheduleHourlyTasks() {
-        scheduledExecutor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                MonitorLocation fetchedLocation = defaultHomeLocation; // default if nothing in db
-                long startOfHour = getCurrentMillis();
-
-                /* if no internet connection verifiable, skip all scheduled tasks */
-                if (applicationFromRepository != null) {
-                    if (!isConnectingToInternet(applicationFromRepository.getApplicationContext())) {
-                        return;
-                    }
-                } else {return;}
-
-                /* (blocking) query the location db for relevant location */
-                Future<MonitorLocation> getLocationFromDbTaskMethod = getLocationFromDbNonBlocking();
-                try {
-                    fetchedLocation = getLocationFromDbTaskMethod.get();
-                } catch (ExecutionException | InterruptedException e) {
-                    e.printStackTrace();
-                }
+    private static <T> CompletableFuture<T> failedStage(String reason) {
+        CompletableFuture<T> stage = new CompletableFuture<>();
+        stage.completeExceptionally(new IllegalStateException(reason));
+        return stage;
+    }
 
-                /* single hour from Accuweather API */
-                fetchDataType(MonitorEnums.SINGLE_HOUR_DATA, fetchedLocation, startOfHour,
-                        "API single hr forecast.");
+    /* must be set before startScheduledJobs(); the scheduled executor should follow the same clock */
+    public static synchronized void setClock(MonitorClock monitorClock) {
+        clock = monitorClock;
+    }
 
-                /* single hour from sensors, ngrok home server */
-                if (MonitorEnums.USE_NGROK) {
-                    fetchDataType(MonitorEnums.HOME_SENSOR, defaultHomeLocation, startOfHour,
-                            "1hr sensor temperature from ngrok.");
-                }
+    public static MonitorClock getClock() {
+        return clock;
+    }
 
-                /* single hour from sensors, MQTT */
-                if (MonitorEnums.USE_MQTT) {
-                    if (dataNeedsFetching(MonitorEnums.HOME_SENSOR, defaultHomeLocation, startOfHour)) {
-                        // issue: if the last retained is hours ago, it will still be added; should be for current hour
-                        String topic = TopicData.getJsonSensorHourlyDataTopic();
-                        mqtt5Client = MQTTConnection.getClient();
-                        mqtt5Client.toAsync().subscribeWith().topicFilter(topic)/*.qos(MqttQos.AT_LEAST_ONCE)*/
-                            .callback(publish -> {
-                                List<Weather> sensorWeatherList = getDataListFromPayload(topic, publish);
-                                if (sensorWeatherList != null) {
-                                    setAnalyticsToData(sensorWeatherList,
-                                            defaultHomeLocation.getLocalizedName(),
-                                            MonitorEnums.UNDER_48H, MonitorEnums.HOME_SENSOR);
-                                    if (fetchedDataMatches(MonitorEnums.HOME_SENSOR, sensorWeatherList, startOfHour)) {
-                                        cachingExecutor.submit(new CacheDataInDbsTask(null, sensorWeatherList.get(0),
-                                                weatherDaoReference, false, false));
-                                    }
-                                } else {
-                                    Log.i(TAG, "task in mqtt callback: sensor data null");
-                                }
-                            }).send();
+    /* null until startScheduledJobs() has run */
+    public static synchronized AlignedJobScheduler getJobScheduler() {
+        return jobScheduler;
+    }
+
+    /* for simulations of a restart: the next startScheduledJobs() builds a new scheduler from
+     * the persisted slots; the old one's executor must be shut down by the caller */
+    static synchronized void stopScheduledJobs() {
+        jobScheduler = null;
+    }
+
+    // issue: if the last retained is hours ago, it will still be added; should be for current hour
+    private static void subscribeToHourlySensorData(long startOfHour) {
+        String topic = TopicData.getJsonSensorHourlyDataTopic();
+        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
+        mqtt5Client.toAsync().subscribeWith().topicFilter(topic)/*.qos(MqttQos.AT_LEAST_ONCE)*/
+            .callback(received -> mqttIngestionQueue.offer(received, publish -> {
+                List<Weather> sensorWeatherList = getDataListFromPayload(topic, publish);
+                if (sensorWeatherList != null) {
+                    setAnalyticsToData(sensorWeatherList,
+                            defaultHomeLocation.getLocalizedName(),
+                            MonitorEnums.UNDER_48H, MonitorEnums.HOME_SENSOR);
+                    if (fetchedDataMatches(MonitorEnums.HOME_SENSOR, sensorWeatherList, startOfHour)) {
+                        cachingExecutor.submit(new CacheDataInDbsTask(null, sensorWeatherList.get(0),
+                                weatherDaoReference, false, false));
                     }
+                } else {
+                    Log.i(TAG, "task in mqtt callback: sensor data null");
                 }
-
-            }
-        }, MonitorConstants.INITIAL_DELAY_HOURLY, MonitorConstants.PERIODIC_DELAY_HOURLY, TimeUnit.SECONDS);
+            })).send();
     }
 
+    /* runs on the ingestion thread, never on the MQTT client's I/O threads */
     private static List<Weather> getDataListFromPayload(String topic, Mqtt5Publish publish) {
         String payloadString = new String(publish.getPayloadAsBytes(), StandardCharsets.UTF_8);
-        System.out.println("Successfully obtained mqtt data in callback;" +
-                " topic: " + topic + ", payload: " + payloadString);
-        mqtt5Client.toBlocking().unsubscribeWith().topicFilter(topic).send();
+        Log.d(TAG, "getDataListFromPayload: topic: " + topic + ", payload: " + payloadString);
+        MQTTConnection.getClient().toAsync().unsubscribeWith().topicFilter(topic).send();
         List<Weather> list = ParseUtils.parseWeatherJSON(payloadString);
+        if (list == null || list.isEmpty()) {
+            return null;
+        }
 
         // check if sensor timestamp matches current time in UTC+02:00
-        if (!areSensorsOnline(System.currentTimeMillis()
+        if (!areSensorsOnline(clock.currentTimeMillis()
                 + MonitorConstants.TWO_HOURS, list.get(0).getTimeInMillis())) {
             return null;
         }
         return list;
     }
 
+    public static SensorStreamIngestion getSensorStreamIngestion() {
+        return sensorStreamIngestion;
+    }
+
+    public static SensorReadRequester getSensorReadRequester() {
+        return sensorReadRequester;
+    }
+
+    /* null until startScheduledJobs() has run, or without a sensor connection */
+    public static SensorDeltaSync getSensorDeltaSync() {
+        return sensorDeltaSync;
+    }
+
     /*  for 12-hr API fetch, will need to check first hour.
      * for 1-hr API fetch, check the hour against the "startOfNextHour" */
     private static boolean fetchedDataMatches(Integer type, List<Weather> list, long startOfHour) {
@@ -477,9 +605,9 @@ public class RemoteDataFetchModel {
     }
 
     /*** data maintenance methods ***/
-    public static Future<MonitorLocation> getLocationFromDbNonBlocking() {
-        Future<MonitorLocation> getLocationFromDbTask = cachingExecutor
-                .submit(new Callable<MonitorLocation>() {
+    public static CompletableFuture<MonitorLocation> getLocationFromDbNonBlocking() {
+        CompletableFuture<MonitorLocation> getLocationFromDbTask = DatabaseAccess
+                .read(new Callable<MonitorLocation>() {
             @Override
             public MonitorLocation call() throws Exception {
                 List<MonitorLocation> locationListNonLive =
@@ -494,121 +622,41 @@ public class RemoteDataFetchModel {
                 }
                 return locationListNonLive.get(0);
             }
-        });
+        }, MonitorEnums.DB_PRIORITY_INGEST);
 
         return getLocationFromDbTask;
     }
 
-    /* database maintenance to be called in a runnable object as a background task */
-    private static void maintainWeatherDatabase(Integer howLongVisible, Integer howLongStored) {
-        /* (blocking) query the weather db for entire list by submitting to caching thread */
-        List<Weather> weatherList = null;
-        Future<List<Weather>> getWeatherListFromDbTaskMethod = getForecastFromDbNonBlocking();
-        try {
-            weatherList = getWeatherListFromDbTaskMethod.get();
-        } catch (Exception e) {
-            Log.d(TAG, "maintainWeatherDatabase: exception; weather data not fetched. ");
-            e.printStackTrace();
-        }
-        if (weatherList == null) {
-            Log.d(TAG, "maintainWeatherDatabase: data not fetched; no maintenance done. ");
-            return;
-        }
-
-        Log.d(TAG, "maintainWeatherDatabase: running..");
-
-        /* examine each data point's DateTime, formulate Date object, compare to current, modify age
-         * category, and mark old data for deletion if older than howLongStored */
-        List<Weather> modifiedWeatherList = new ArrayList<>();
-        Integer ageCategory = MonitorEnums.UNDER_48H;
-        long currentDateMillis = (new Date(System.currentTimeMillis())).getTime();
-
-        Iterator iter = weatherList.iterator();
-        while (iter.hasNext()) {
-            Weather weatherEntryInIter = (Weather) iter.next();
-            Integer elementIndex = weatherList.indexOf(weatherEntryInIter);
-
-            /* set the persistence and the time in millis for this point */
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
-                long weatherTimeInMillis = weatherEntryInIter.getTimeInMillis();
-                ageCategory = updateDataAge(weatherTimeInMillis, currentDateMillis, howLongVisible,
-                        howLongStored);
-            }
-            weatherEntryInIter.setPersistence(ageCategory);
-            modifiedWeatherList.add(elementIndex, weatherEntryInIter);
-        }
-        /* store the weather list back into the database by iteratively updating each data point */
-        cachingExecutor.submit(new CacheDataInDbsTask(modifiedWeatherList, null,
-                weatherDaoReference,false, true));
-    }
-
-    public static void clearOldWeatherData() {
-        /* (blocking) query the weather db for entire list, via caching executor */
-        List<Weather> weatherList = getWeatherDataEntriesFromDb();
-        boolean printWeatherInfo = true;
-        Iterator iter = weatherList.iterator();
-        while (iter.hasNext()) {
-            Weather weatherEntryInIter = (Weather) iter.next();
-            Integer elementIndex = weatherList.indexOf(weatherEntryInIter);
-            if (printWeatherInfo) {
-                Log.i(TAG, "\nElement index: " + elementIndex
-                        + "\nPoint type: (0 is 12hr, 1 is 1hr): " + weatherEntryInIter.getCategory()
-                        + "\nDateTime: " + weatherEntryInIter.getTime()
-                        + "\nID: " + weatherEntryInIter.getId()
-                        + "\nPersistence: " + weatherEntryInIter.getPersistence());
-            }
-
-            if (weatherEntryInIter.getPersistence() == MonitorEnums.MORE_THAN_A_WEEK) {
-                Log.d(TAG, "clearOldWeatherData: data to be deleted, age is more than a week");
-                weatherDaoReference.delete(weatherEntryInIter);
-            } else {
-                Log.d(TAG, "clearOldWeatherData: no data to be deleted");
-            }
-        }
+    /* database maintenance in time-sliced chunks at the lowest priority on the database thread */
+    private static CompletableFuture<Void> maintainWeatherDatabase(Integer howLongVisible,
+                                                                   Integer howLongStored) {
+        return new WeatherMaintenanceTask(weatherDaoReference, cachingExecutor, howLongVisible,
+                howLongStored, clock.currentTimeMillis()).start();
     }
 
-    /* checks if forecast of a type, for the time period, in a location, are in the db */
-    private static boolean dataNeedsFetching(Integer dataCategory, MonitorLocation location, long startOfHour) {
+    /* checks if forecast of a type, for the time period, in a location, are in the stored series */
+    private static boolean dataNeedsFetching(Integer dataCategory, MonitorLocation location,
+                                             long startOfHour, TimeSeriesSet storedSeries) {
         Log.d(TAG, "dataNeedsFetching: check if dataCategory: " + dataCategory
                 + "; needs fetching. 2: sensor, 1: hourly, 0: twelve hours.");
-        List<Weather> weatherList = null;
-
-        /* get start of next hour */
-        long startOfHourNext = startOfHour + MonitorConstants.ONE_HOUR;
-
-        Future<List<Weather>> checkDataTask = getForecastFromDbNonBlocking();
-        try {
-            weatherList = checkDataTask.get();
-        } catch (Exception e){
-            e.printStackTrace();
+        if (storedSeries == null) {
             return true;
         }
 
         String locationName = location.getLocalizedName();
-        Iterator iter = weatherList.iterator();
-        while (iter.hasNext()) {
-            Weather weatherEntryInIter = (Weather) iter.next();
-
-            /* for API forecasts, the next hour is checked */
-            if (dataCategory == MonitorEnums.SINGLE_HOUR_DATA
-                    || dataCategory == MonitorEnums.TWELVE_HOURS_DATA) {
-                if ((weatherEntryInIter.getCategory() == dataCategory)
-                        && (weatherEntryInIter.getTimeInMillis() == startOfHourNext)
-                        && (weatherEntryInIter.getLocation().equals(locationName))) {
-                    Log.d(TAG, "dataNeedsFetching for this hour: NO");
-                    return false;
-                }
-
-                /* for the sensor, the current hour is checked */
-            } else if (dataCategory == MonitorEnums.HOME_SENSOR) {
-                if ((weatherEntryInIter.getCategory() == dataCategory)
-                        && (weatherEntryInIter.getTimeInMillis() == startOfHour)
-                        && (weatherEntryInIter.getLocation().equals(locationName))) {
-                    Log.d(TAG, "dataNeedsFetching for this hour: NO");
-                    return false;
-                }
-            } else {} /* other potential options */
+        long checkedHour;
+        if (dataCategory == MonitorEnums.SINGLE_HOUR_DATA
+                || dataCategory == MonitorEnums.TWELVE_HOURS_DATA) {
+            checkedHour = startOfHour + MonitorConstants.ONE_HOUR; /* for API forecasts, the next hour */
+        } else if (dataCategory == MonitorEnums.HOME_SENSOR) {
+            checkedHour = startOfHour; /* for the sensor, the current hour */
+        } else {
+            checkedHour = -1; /* other potential options */
+        }
 
+        if (checkedHour >= 0 && storedSeries.contains(locationName, dataCategory, checkedHour)) {
+            Log.d(TAG, "dataNeedsFetching for this hour: NO");
+            return false;
         }
         Log.d(TAG, "dataNeedsFetching for this hour: YES, for location:"+locationName);
         return true;
@@ -636,9 +684,13 @@ public class RemoteDataFetchModel {
         }
     }
 
-    public static Future<List<Weather>> getForecastFromDbNonBlocking() {
-        Future<List<Weather>> getWeatherListFromDbTask = cachingExecutor
-                .submit(new Callable<List<Weather>>() {
+    public static CompletableFuture<List<Weather>> getForecastFromDbNonBlocking() {
+        return getForecastFromDbNonBlocking(MonitorEnums.DB_PRIORITY_INGEST);
+    }
+
+    public static CompletableFuture<List<Weather>> getForecastFromDbNonBlocking(Integer priority) {
+        CompletableFuture<List<Weather>> getWeatherListFromDbTask = DatabaseAccess
+                .read(new Callable<List<Weather>>() {
                     @Override
                     public List<Weather> call() throws Exception {
                         List<Weather> weatherListNonLive = weatherDaoReference.getAllWeatherPointsNonLive();
@@ -652,70 +704,28 @@ public class RemoteDataFetchModel {
                             return null;
                         }
                     }
-                });
+                }, priority);
 
         return getWeatherListFromDbTask;
     }
 
-    public static List<Weather> getWeatherDataEntriesFromDb() {
-        /* (blocking) query the weather db for entire list, via caching executor */
-        List<Weather> weatherList = null;
-        Future<List<Weather>> getWeatherListFromDbTaskMethod = getForecastFromDbNonBlocking();
-        try {
-            weatherList = getWeatherListFromDbTaskMethod.get();
-        } catch (Exception e) {
-            Log.d(TAG, "getWeatherDataEntriesFromDb: exception; weather data not fetched. ");
-            e.printStackTrace();
+    /* the visible rows as series; from the window cache at once, or on the reader pool while it
+     * isn't loaded */
+    public static CompletableFuture<TimeSeriesSet> getSeriesFromDbNonBlocking() {
+        TimeSeriesSet cached = windowCache.peekVisibleSeries();
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
-        if (weatherList == null) {
-            Log.d(TAG, "getWeatherDataEntriesFromDb: data returns null ");
-        }
-        return weatherList;
+        return DatabaseAccess.read(windowCache::getVisibleSeries, MonitorEnums.DB_PRIORITY_INGEST);
     }
 
     private static long getCurrentMillis() {
         Calendar today = Calendar.getInstance(); // .getInstance(TimeZone.getTimeZone("Belgrade"));
+        today.setTimeInMillis(clock.currentTimeMillis());
         today.set(Calendar.MILLISECOND, 0);
         today.set(Calendar.SECOND, 0);
         today.set(Calendar.MINUTE, 0);
         long startOfHour = today.getTimeInMillis(); // add 1hr for +01:00 ?
         return startOfHour;
     }
-
-    /*** for checking internet connectivity ***/
-    public static boolean isConnectingToInternet(Context mContext) {
-        if (mContext == null) {
-            Log.d(TAG, "isConnectingToInternet: context argument is null; can't check status.");
-            return false;
-        }
-
-        ConnectivityManager connectivityManager = (ConnectivityManager) mContext
-                .getSystemService(Context.CONNECTIVITY_SERVICE);
-        if (connectivityManager != null) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                final Network network = connectivityManager.getActiveNetwork();
-                if (network != null) {
-                    final NetworkCapabilities nc = connectivityManager.getNetworkCapabilities(network);
-                    boolean connxStatus = (nc.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)
-                            || nc.hasTransport(NetworkCapabilities.TRANSPORT_WIFI));
-                    if (connxStatus) {
-                        Log.d(TAG, "CONNECTED TO INTERNET");
-                    } else {
-                        Log.d(TAG, "NOT CONNECTED TO INTERNET");
-                    }
-                    return connxStatus;
-                }
-            } else {
-                NetworkInfo[] networkInfos = connectivityManager.getAllNetworkInfo();
-                for (NetworkInfo tempNetworkInfo : networkInfos) {
-                    if (tempNetworkInfo.isConnected()) {
-                        Log.d(TAG, "CONNECTED TO INTERNET");
-                        return true;
-                    }
-                }
-            }
-        }
-        Log.d(TAG, "NOT CONNECTED TO INTERNET");
-        return false;
-    }
 }
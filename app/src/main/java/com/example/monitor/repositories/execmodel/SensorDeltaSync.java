@@ -0,0 +1,227 @@
+package com.example.monitor.repositories.execmodel;
+
+import android.util.Log;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.BoundedHandoffQueue;
+import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.databases.DatabaseAccess;
+import com.example.monitor.databases.WeatherDao;
+import com.example.monitor.models.SeriesGaps;
+import com.example.monitor.repositories.importutil.ImportProgress;
+import com.example.monitor.repositories.importutil.SensorHistoryImporter;
+import com.example.monitor.repositories.networkutils.MQTTConnection;
+import com.example.monitor.repositories.networkutils.NetworkUtils;
+import com.example.monitor.repositories.networkutils.TopicData;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Fills the sensor hours missed while the phone was offline. The HOME_SENSOR gaps within the
+ * storage duration are found in one indexed query; the start of the hour before the first gap is
+ * sent to the Pi, either as SUBDIR_HOURLY?since= over HTTP or as a history request over MQTT 5
+ * answered on this client's history topic, and the Pi sends back only its raw samples from the
+ * end of that hour on, as a JSON array. They are aggregated hourly and written by a
+ * SensorHistoryImporter at ingest priority; hours already stored are skipped. A sync covers at most
+ * the storage duration, well under IMPORT_BATCH_ROWS hours, so it is written in one transaction.
+ * Each gap is asked for once per process; what the Pi doesn't have stays missing. Syncs run on
+ * the import executor, so never alongside each other or a manual import. */
+public class SensorDeltaSync {
+    private static final String TAG = "SensorDeltaSync";
+
+    private final WeatherDao weatherDao;
+    private final String locationName;
+    private final MonitorClock clock;
+    private final boolean overMqtt;
+
+    /* history answers by correlation id; the callback only enqueues */
+    private final Map<Long, CompletableFuture<byte[]>> pendingAnswers = new ConcurrentHashMap<>();
+    private final AtomicLong nextCorrelationId = new AtomicLong(System.currentTimeMillis());
+    private final BoundedHandoffQueue<Mqtt5Publish> ingestionQueue =
+            ExecutorHelper.getMqttIngestionQueueInstance();
+    private final BoundedHandoffQueue.Handler<Mqtt5Publish> answerHandler = this::onAnswer;
+    /* completes on the SUBACK; null while not subscribed on the current connection */
+    private CompletableFuture<Void> subscription;
+    private volatile String historyTopic;
+
+    /* gaps before this were asked for already and are not requested again */
+    private volatile long coveredUntil = 0;
+
+    private long syncs = 0;
+    private long hoursFilled = 0;
+
+    public SensorDeltaSync(WeatherDao weatherDao, String locationName, MonitorClock clock,
+                           boolean overMqtt) {
+        this.weatherDao = weatherDao;
+        this.locationName = locationName;
+        this.clock = clock;
+        this.overMqtt = overMqtt;
+    }
+
+    /* keeps the history subscription alive across reconnects; only needed over MQTT */
+    public void start() {
+        if (!overMqtt) {
+            return;
+        }
+        MQTTConnection.addConnectedListener(this::ensureSubscribed);
+        MQTTConnection.addDisconnectedListener(this::onDisconnected);
+        ensureSubscribed();
+    }
+
+    /* Subscribes to the history topic once per connection. Returns the subscription, which
+     * completes once the broker has acknowledged it, so that no answer can arrive before it; null
+     * if there is no connection. */
+    public synchronized CompletableFuture<Void> ensureSubscribed() {
+        if (subscription != null) {
+            return subscription;
+        }
+        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
+        if (mqtt5Client == null || !mqtt5Client.getState().isConnected()) {
+            return null;
+        }
+        CompletableFuture<Void> subAcked = new CompletableFuture<>();
+        subscription = subAcked;
+        historyTopic = TopicData.getJsonSensorHistoryTopic(MQTTConnection.getClientId());
+        mqtt5Client.toAsync().subscribeWith().topicFilter(historyTopic)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .callback(publish -> ingestionQueue.offer(publish, answerHandler))
+                .send()
+                .whenComplete((subAck, throwable) -> {
+                    if (throwable != null) {
+                        Log.d(TAG, "ensureSubscribed: subscription failed: " + throwable.getMessage());
+                        dropSubscription(subAcked);
+                        subAcked.completeExceptionally(throwable);
+                    } else {
+                        subAcked.complete(null);
+                    }
+                });
+        return subAcked;
+    }
+
+    private synchronized void onDisconnected() {
+        subscription = null;
+    }
+
+    /* a failed subscription is retried by the next sync */
+    private synchronized void dropSubscription(CompletableFuture<Void> failed) {
+        if (subscription == failed) {
+            subscription = null;
+        }
+    }
+
+    /* Requests the hours missing before untilMillis, which belong to the live path, if any are.
+     * Completes with the number of hours written; 0 if the stored series is complete. */
+    public CompletableFuture<Long> syncIfBehind(long untilMillis) {
+        long fromMillis = Math.max(getOldestKeptHour(), coveredUntil);
+        if (fromMillis >= untilMillis) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        return DatabaseAccess.read(() -> SeriesGaps.fromBitmaps(weatherDao.getHourBitmaps(
+                        locationName, MonitorEnums.HOME_SENSOR, fromMillis, untilMillis),
+                        fromMillis, untilMillis), MonitorEnums.DB_PRIORITY_INGEST)
+                .thenCompose(gaps -> {
+                    if (gaps.isComplete()) {
+                        return CompletableFuture.completedFuture(0L);
+                    }
+                    /* the hour before the first gap; stored hours after it are skipped */
+                    long since = gaps.getFirstMissing() - MonitorConstants.ONE_HOUR;
+                    Log.d(TAG, "syncIfBehind: " + gaps.getMissingHours() + " hours missing in "
+                            + gaps.getGaps().size() + " gaps; requesting since " + since);
+                    if (overMqtt) {
+                        return requestOverMqtt(since).thenCompose(answer -> ExecutorHelper
+                                .supplyAsync(() -> ingest(new ByteArrayInputStream(answer),
+                                        answer.length, untilMillis),
+                                        ExecutorHelper.getImportExecutorInstance()));
+                    }
+                    return ExecutorHelper.supplyAsync(() -> ingest(NetworkUtils
+                                    .openStreamFromHttpUrl(NetworkUtils.buildUrlForSensorHistory(since)),
+                            -1, untilMillis), ExecutorHelper.getImportExecutorInstance());
+                })
+                .thenApply(hoursWritten -> {
+                    /* the Pi has sent what it has; hours still missing are missing there too */
+                    coveredUntil = Math.max(coveredUntil, untilMillis);
+                    return hoursWritten;
+                });
+    }
+
+    /* the first hour that maintenance won't delete right away */
+    private long getOldestKeptHour() {
+        long expiryCutoff = clock.currentTimeMillis() - MonitorConstants.STORAGE_DURATION * 1000L;
+        return expiryCutoff - expiryCutoff % MonitorConstants.ONE_HOUR + MonitorConstants.ONE_HOUR;
+    }
+
+    /* on the import executor; closes the input */
+    private long ingest(InputStream answer, long length, long untilMillis)
+            throws IOException, InterruptedException {
+        SensorHistoryImporter importer = new SensorHistoryImporter(weatherDao, locationName, clock,
+                untilMillis, MonitorEnums.DB_PRIORITY_INGEST);
+        ImportProgress result = importer.run(answer, length, progress -> {});
+        synchronized (this) {
+            syncs++;
+            hoursFilled += result.getHoursWritten();
+        }
+        Log.d(TAG, "ingest: " + result.getHoursWritten() + " hours filled from "
+                + result.getSamplesParsed() + " samples");
+        return result.getHoursWritten();
+    }
+
+    /* sent once the history subscription is acknowledged; the timeout includes that wait */
+    private CompletableFuture<byte[]> requestOverMqtt(long since) {
+        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
+        CompletableFuture<Void> subAcked = ensureSubscribed();
+        CompletableFuture<byte[]> answer = new CompletableFuture<>();
+        if (subAcked == null) {
+            answer.completeExceptionally(new IOException("not connected to the broker"));
+            return answer;
+        }
+
+        long correlationId = nextCorrelationId.getAndIncrement();
+        pendingAnswers.put(correlationId, answer);
+        answer.whenComplete((payload, throwable) -> pendingAnswers.remove(correlationId));
+
+        String payload = "{\"Request\":\"history\",\"Since\":" + since + "}";
+        subAcked.thenCompose(subscribed -> mqtt5Client.toAsync().publishWith()
+                        .topic(TopicData.getJsonSensorRequestTopic())
+                        .qos(MqttQos.AT_LEAST_ONCE)
+                        .responseTopic(historyTopic)
+                        .correlationData(ByteBuffer.allocate(8).putLong(0, correlationId).array())
+                        .payload(payload.getBytes(StandardCharsets.UTF_8))
+                        .send())
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        answer.completeExceptionally(throwable);
+                    }
+                });
+        return ExecutorHelper.withTimeout(answer, MonitorConstants.SENSOR_SYNC_TIMEOUT);
+    }
+
+    /* handed off from the MQTT callback */
+    private void onAnswer(Mqtt5Publish publish) {
+        ByteBuffer correlationData = publish.getCorrelationData().orElse(null);
+        CompletableFuture<byte[]> answer = null;
+        if (correlationData != null && correlationData.remaining() == 8) {
+            answer = pendingAnswers.get(correlationData.getLong(correlationData.position()));
+        }
+        if (answer == null) {
+            Log.d(TAG, "onAnswer: no pending history request for this answer; ignored");
+            return;
+        }
+        answer.complete(publish.getPayloadAsBytes());
+    }
+
+    public synchronized String getSummary() {
+        return "syncs " + syncs + ", hours filled " + hoursFilled;
+    }
+}
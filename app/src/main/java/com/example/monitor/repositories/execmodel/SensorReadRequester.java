@@ -0,0 +1,220 @@
+package com.example.monitor.repositories.execmodel;
+
+import android.util.Log;
+
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.backgroundutil.BoundedHandoffQueue;
+import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.networkutils.MQTTConnection;
+import com.example.monitor.repositories.networkutils.TopicData;
+import com.example.monitor.repositories.parseutils.ParseUtils;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* On-demand instant readings over MQTT 5 request/response. Each tap publishes a read request
+ * carrying this client's response topic and a fresh correlation id; the Pi answers with a new
+ * sample on that topic, echoing the correlation data. Answers are matched to their pending
+ * request, and a request that is not answered within the timeout shows the sensors as offline. */
+public class SensorReadRequester {
+    private static final String TAG = "SensorReadRequester";
+    private static final String OFFLINE_READING = "V" + "OFFLINE" + ";T" + "OFFLINE" + "|";
+
+    private static class PendingRead {
+        final String parameter;
+        final long tapNanos;
+        ScheduledFuture<?> timeout;
+
+        PendingRead(String parameter, long tapNanos) {
+            this.parameter = parameter;
+            this.tapNanos = tapNanos;
+        }
+    }
+
+    private final MutableLiveData<String> instantSensorReading;
+    private final Map<Long, PendingRead> pendingReads = new ConcurrentHashMap<>();
+    private final AtomicLong nextCorrelationId = new AtomicLong(System.currentTimeMillis());
+    /* completes on the SUBACK; null while not subscribed on the current connection */
+    private CompletableFuture<Void> subscription;
+    private volatile String responseTopic;
+
+    /* the callback only enqueues; parsing runs on the ingestion thread */
+    private final BoundedHandoffQueue<Mqtt5Publish> ingestionQueue =
+            ExecutorHelper.getMqttIngestionQueueInstance();
+    private final BoundedHandoffQueue.Handler<Mqtt5Publish> responseHandler = this::onResponse;
+
+    /* tap-to-value latency of answered requests */
+    private long answered = 0;
+    private long timedOut = 0;
+    private long lateOrUnknown = 0;
+    private long totalLatencyMillis = 0;
+    private long maxLatencyMillis = 0;
+    private long lastLatencyMillis = -1;
+
+    public SensorReadRequester(MutableLiveData<String> instantSensorReading) {
+        this.instantSensorReading = instantSensorReading;
+    }
+
+    /* keeps the response subscription alive across reconnects */
+    public void start() {
+        MQTTConnection.addConnectedListener(this::ensureSubscribed);
+        MQTTConnection.addDisconnectedListener(this::onDisconnected);
+        ensureSubscribed();
+    }
+
+    /* Subscribes to the response topic once per connection. Returns the subscription, which
+     * completes once the broker has acknowledged it, so that no answer can arrive before it; null
+     * if there is no connection. */
+    public synchronized CompletableFuture<Void> ensureSubscribed() {
+        if (subscription != null) {
+            return subscription;
+        }
+        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
+        if (mqtt5Client == null || !mqtt5Client.getState().isConnected()) {
+            return null;
+        }
+        CompletableFuture<Void> subAcked = new CompletableFuture<>();
+        subscription = subAcked;
+        responseTopic = TopicData.getJsonSensorResponseTopic(MQTTConnection.getClientId());
+        mqtt5Client.toAsync().subscribeWith().topicFilter(responseTopic)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .callback(publish -> ingestionQueue.offer(publish, responseHandler))
+                .send()
+                .whenComplete((subAck, throwable) -> {
+                    if (throwable != null) {
+                        Log.d(TAG, "ensureSubscribed: subscription failed: " + throwable.getMessage());
+                        dropSubscription(subAcked);
+                        subAcked.completeExceptionally(throwable);
+                    } else {
+                        subAcked.complete(null);
+                    }
+                });
+        return subAcked;
+    }
+
+    private synchronized void onDisconnected() {
+        subscription = null;
+    }
+
+    /* a failed subscription is retried by the next request */
+    private synchronized void dropSubscription(CompletableFuture<Void> failed) {
+        if (subscription == failed) {
+            subscription = null;
+        }
+    }
+
+    /* publishes a read request once the response subscription is acknowledged; the answer (or
+     * the timeout, which includes the wait for the SUBACK) is posted to the instant reading */
+    public void requestReading(String parameter, long tapNanos) {
+        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
+        CompletableFuture<Void> subAcked = ensureSubscribed();
+        if (subAcked == null) {
+            instantSensorReading.postValue(OFFLINE_READING);
+            return;
+        }
+
+        long correlationId = nextCorrelationId.getAndIncrement();
+        PendingRead pendingRead = new PendingRead(parameter, tapNanos);
+        pendingRead.timeout = ExecutorHelper.getScheduledPoolInstance().schedule(new Runnable() {
+            @Override
+            public void run() {
+                onTimeout(correlationId);
+            }
+        }, MonitorConstants.STD_TIMEOUT, TimeUnit.MILLISECONDS);
+        pendingReads.put(correlationId, pendingRead);
+
+        String payload = "{\"Request\":\"instant\",\"Parameter\":\"" + parameter + "\"}";
+        subAcked.thenCompose(subscribed -> mqtt5Client.toAsync().publishWith()
+                        .topic(TopicData.getJsonSensorRequestTopic())
+                        .qos(MqttQos.AT_LEAST_ONCE)
+                        .responseTopic(responseTopic)
+                        .correlationData(ByteBuffer.allocate(8).putLong(0, correlationId).array())
+                        .payload(payload.getBytes(StandardCharsets.UTF_8))
+                        .send())
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        Log.d(TAG, "requestReading: not sent: " + throwable.getMessage());
+                        onTimeout(correlationId);
+                    }
+                });
+    }
+
+    /* handed off from the MQTT callback */
+    public void onResponse(Mqtt5Publish publish) {
+        ByteBuffer correlationData = publish.getCorrelationData().orElse(null);
+        PendingRead pendingRead = null;
+        if (correlationData != null && correlationData.remaining() == 8) {
+            pendingRead = pendingReads.remove(correlationData.getLong(correlationData.position()));
+        }
+        if (pendingRead == null) {
+            synchronized (this) {
+                lateOrUnknown++;
+            }
+            Log.d(TAG, "onResponse: no pending request for this answer; ignored");
+            return;
+        }
+        pendingRead.timeout.cancel(false);
+
+        String payload = new String(publish.getPayloadAsBytes(), StandardCharsets.UTF_8);
+        List<Weather> weatherList = ParseUtils.parseWeatherJSON(payload);
+        if (weatherList == null || weatherList.isEmpty()) {
+            instantSensorReading.postValue(OFFLINE_READING);
+            return;
+        }
+        Weather dataPoint = weatherList.get(0);
+        String sensorValue;
+        if (pendingRead.parameter.equals("Temperature")) {
+            sensorValue = dataPoint.getCelsius() + " C";
+        } else if (pendingRead.parameter.equals("Humidity")) {
+            sensorValue = dataPoint.getHumidity() + " %";
+        } else {
+            Log.d(TAG, "onResponse: No valid parameter selected.");
+            sensorValue = "N/A";
+        }
+        String hms = dataPoint.getTime().substring(11, 19);
+        instantSensorReading.postValue("V" + sensorValue + ";T" + hms + "|");
+        recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pendingRead.tapNanos));
+    }
+
+    private void onTimeout(long correlationId) {
+        if (pendingReads.remove(correlationId) == null) {
+            return; /* already answered */
+        }
+        synchronized (this) {
+            timedOut++;
+        }
+        Log.d(TAG, "onTimeout: no answer to read request " + correlationId + "; sensors offline");
+        instantSensorReading.postValue(OFFLINE_READING);
+    }
+
+    private synchronized void recordLatency(long latencyMillis) {
+        answered++;
+        totalLatencyMillis += latencyMillis;
+        maxLatencyMillis = Math.max(maxLatencyMillis, latencyMillis);
+        lastLatencyMillis = latencyMillis;
+        Log.d(TAG, "tap-to-value: " + latencyMillis + " ms; " + getLatencySummary());
+    }
+
+    public synchronized long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    public synchronized String getLatencySummary() {
+        long mean = answered == 0 ? 0 : totalLatencyMillis / answered;
+        return "answered " + answered + ", timed out " + timedOut + ", late/unknown "
+                + lateOrUnknown + ", mean " + mean + " ms, max " + maxLatencyMillis + " ms";
+    }
+}
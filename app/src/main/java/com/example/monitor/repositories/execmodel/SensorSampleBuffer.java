@@ -0,0 +1,74 @@
+package com.example.monitor.repositories.execmodel;
+
+/* fixed-capacity ring buffer of raw sensor samples, kept in parallel primitive arrays so that
+ * adding a sample never allocates; the oldest sample is overwritten once the buffer is full */
+public class SensorSampleBuffer {
+
+    private final long[] timesInMillis;
+    private final float[] celsiusValues;
+    private final float[] humidityValues;
+    private final int capacity;
+
+    private int head = 0; /* index of the next write */
+    private int size = 0;
+
+    public SensorSampleBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.timesInMillis = new long[capacity];
+        this.celsiusValues = new float[capacity];
+        this.humidityValues = new float[capacity];
+    }
+
+    public synchronized void add(long timeInMillis, float celsius, float humidity) {
+        timesInMillis[head] = timeInMillis;
+        celsiusValues[head] = celsius;
+        humidityValues[head] = humidity;
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /* time of the most recent sample, or 0 if the buffer is empty */
+    public synchronized long getLatestTime() {
+        if (size == 0) {
+            return 0;
+        }
+        return timesInMillis[(head - 1 + capacity) % capacity];
+    }
+
+    /* copies the buffered samples, oldest first, into caller-owned arrays; returns the number of
+     * samples copied, bounded by the length of the smallest destination array */
+    public synchronized int copyInto(long[] timesOut, float[] celsiusOut, float[] humidityOut) {
+        int count = Math.min(size, Math.min(timesOut.length,
+                Math.min(celsiusOut.length, humidityOut.length)));
+        int start = (head - count + capacity) % capacity;
+        int firstPart = Math.min(count, capacity - start);
+
+        System.arraycopy(timesInMillis, start, timesOut, 0, firstPart);
+        System.arraycopy(celsiusValues, start, celsiusOut, 0, firstPart);
+        System.arraycopy(humidityValues, start, humidityOut, 0, firstPart);
+        if (firstPart < count) {
+            System.arraycopy(timesInMillis, 0, timesOut, firstPart, count - firstPart);
+            System.arraycopy(celsiusValues, 0, celsiusOut, firstPart, count - firstPart);
+            System.arraycopy(humidityValues, 0, humidityOut, firstPart, count - firstPart);
+        }
+        return count;
+    }
+}
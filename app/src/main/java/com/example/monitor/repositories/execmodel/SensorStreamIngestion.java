@@ -0,0 +1,218 @@
+package com.example.monitor.repositories.execmodel;
+
+import android.util.Log;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.BoundedHandoffQueue;
+import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.databases.WeatherDao;
+import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.networkutils.MQTTConnection;
+import com.example.monitor.repositories.networkutils.TopicData;
+import com.example.monitor.repositories.parseutils.ParseUtils;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+/* Continuous ingestion of the instant sensor stream. Every sample lands in a primitive ring
+ * buffer, and a running mean/min/max is kept for the current hour; when a sample from a later
+ * hour arrives (or the hour elapses), the finished hour is written to weather_table as a single
+ * HOME_SENSOR data point. The per-sample path does not allocate. */
+public class SensorStreamIngestion {
+    private static final String TAG = "SensorStreamIngestion";
+
+    private final SensorSampleBuffer sampleBuffer;
+    private final WeatherDao weatherDaoReference;
+    private final ExecutorService cachingExecutor;
+    private final String locationName;
+    private final MonitorClock clock;
+
+    /* scratch space for the payload parser; only touched under the instance lock */
+    private final double[] parsedSample = new double[3];
+
+    /* running aggregate for the hour currently being filled */
+    private long currentHourStart = 0;
+    private int hourSampleCount = 0;
+    private double celsiusSum, humiditySum;
+    private float celsiusMin, celsiusMax, humidityMin, humidityMax;
+
+    private long samplesAccepted = 0;
+    private long samplesRejected = 0;
+    private long hoursWritten = 0;
+
+    private volatile boolean subscribed = false;
+
+    /* the callback only enqueues; parsing runs on the ingestion thread */
+    private final BoundedHandoffQueue<Mqtt5Publish> ingestionQueue =
+            ExecutorHelper.getMqttIngestionQueueInstance();
+    private final BoundedHandoffQueue.Handler<Mqtt5Publish> sensorHandler = this::onSensorPublish;
+
+    public SensorStreamIngestion(WeatherDao weatherDao, ExecutorService cachingExecutor,
+                                 String locationName) {
+        this(weatherDao, cachingExecutor, locationName, MonitorClock.SYSTEM);
+    }
+
+    /* the clock judges how old a retained sample is, see RemoteDataFetchModel.setClock */
+    public SensorStreamIngestion(WeatherDao weatherDao, ExecutorService cachingExecutor,
+                                 String locationName, MonitorClock clock) {
+        this.clock = clock;
+        this.sampleBuffer = new SensorSampleBuffer(MonitorConstants.SENSOR_BUFFER_CAPACITY);
+        this.weatherDaoReference = weatherDao;
+        this.cachingExecutor = cachingExecutor;
+        this.locationName = locationName;
+    }
+
+    /* ties the ingestion to the app's MQTT connection; a clean session drops subscriptions, so
+     * resubscribe on each (re)connect. Without start(), samples can be fed in directly. */
+    public void start() {
+        MQTTConnection.addConnectedListener(this::ensureSubscribed);
+        MQTTConnection.addDisconnectedListener(() -> subscribed = false);
+        ensureSubscribed();
+    }
+
+    /* subscribe to the instant topic once per connection */
+    public synchronized void ensureSubscribed() {
+        Mqtt5Client mqtt5Client = MQTTConnection.getClient();
+        if (subscribed || mqtt5Client == null || !mqtt5Client.getState().isConnected()) {
+            return;
+        }
+        subscribed = true;
+        String topic = TopicData.getJsonSensorInstantDataTopic();
+        mqtt5Client.toAsync().subscribeWith().topicFilter(topic)
+                .callback(publish -> ingestionQueue.offer(publish, sensorHandler))
+                .send()
+                .whenComplete((subAck, throwable) -> {
+                    if (throwable != null) {
+                        Log.d(TAG, "ensureSubscribed: subscription failed: " + throwable.getMessage());
+                        subscribed = false;
+                    } else {
+                        Log.d(TAG, "ensureSubscribed: subscribed to " + topic);
+                    }
+                });
+    }
+
+    /* runs on the ingestion thread, handed off from the MQTT callback */
+    public void onSensorPublish(Mqtt5Publish publish) {
+        ByteBuffer payload = publish.getPayload().orElse(null);
+        synchronized (this) {
+            if (!ParseUtils.parseSensorSampleBytes(payload, parsedSample)) {
+                samplesRejected++;
+                return;
+            }
+            /* sensor timestamps are in local time, like the device status timestamps */
+            long sampleTime = (long) (parsedSample[0] * 1000) - MonitorConstants.TIMEZONE_OFFSET;
+
+            /* a retained sample delivered on subscribe may be far older than the stream */
+            if (clock.currentTimeMillis() - sampleTime > MonitorConstants.TEN_MINUTES) {
+                samplesRejected++;
+                return;
+            }
+            addSample(sampleTime, (float) parsedSample[1], (float) parsedSample[2]);
+        }
+    }
+
+    /* buffers one sample and folds it into the hourly aggregate */
+    public synchronized void addSample(long sampleTime, float celsius, float humidity) {
+        sampleBuffer.add(sampleTime, celsius, humidity);
+        samplesAccepted++;
+
+        long hourStart = sampleTime - (sampleTime % MonitorConstants.ONE_HOUR);
+        if (hourStart > currentHourStart) {
+            flushCurrentHour();
+            currentHourStart = hourStart;
+        } else if (hourStart < currentHourStart) {
+            return; /* late sample for an hour already written; keep it in the buffer only */
+        }
+
+        if (hourSampleCount == 0) {
+            celsiusMin = celsiusMax = celsius;
+            humidityMin = humidityMax = humidity;
+        } else {
+            celsiusMin = Math.min(celsiusMin, celsius);
+            celsiusMax = Math.max(celsiusMax, celsius);
+            humidityMin = Math.min(humidityMin, humidity);
+            humidityMax = Math.max(humidityMax, humidity);
+        }
+        celsiusSum += celsius;
+        humiditySum += humidity;
+        hourSampleCount++;
+    }
+
+    /* called periodically so the last hour is written even if the stream goes quiet; the hour is
+     * then closed, and late samples from it are only buffered, like after a rollover */
+    public synchronized void flushIfHourElapsed(long currentTimeMillis) {
+        if (hourSampleCount > 0 && currentTimeMillis >= currentHourStart + MonitorConstants.ONE_HOUR) {
+            flushCurrentHour();
+            currentHourStart += MonitorConstants.ONE_HOUR;
+        }
+    }
+
+    private void flushCurrentHour() {
+        if (hourSampleCount == 0) {
+            return;
+        }
+        Weather hourlyPoint = newHourlyPoint(currentHourStart, locationName,
+                MonitorEnums.UNDER_48H, celsiusSum / hourSampleCount,
+                humiditySum / hourSampleCount, celsiusMin, celsiusMax, humidityMin, humidityMax);
+
+        Log.d(TAG, "flushCurrentHour: " + hourSampleCount + " samples aggregated for "
+                + hourlyPoint.getTime());
+        cachingExecutor.submit(new CacheDataInDbsTask(null, hourlyPoint,
+                weatherDaoReference, false, false));
+
+        hoursWritten++;
+        hourSampleCount = 0;
+        celsiusSum = 0;
+        humiditySum = 0;
+    }
+
+    /* HOME_SENSOR data point for one aggregated hour; also used by the history import */
+    public static Weather newHourlyPoint(long hourStart, String locationName, Integer persistence,
+                                         double celsiusMean, double humidityMean,
+                                         float celsiusMin, float celsiusMax,
+                                         float humidityMin, float humidityMax) {
+        Weather hourlyPoint = new Weather(formatValue(celsiusMean), formatValue(humidityMean),
+                null, formatHour(hourStart), locationName, persistence, MonitorEnums.HOME_SENSOR,
+                hourStart);
+        hourlyPoint.setMinCelsius(formatValue(celsiusMin));
+        hourlyPoint.setMaxCelsius(formatValue(celsiusMax));
+        hourlyPoint.setMinHumidity(formatValue(humidityMin));
+        hourlyPoint.setMaxHumidity(formatValue(humidityMax));
+        return hourlyPoint;
+    }
+
+    private static String formatValue(double value) {
+        return String.format(Locale.US, "%.1f", value);
+    }
+
+    private static String formatHour(long hourStart) {
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
+            return new SimpleDateFormat(MonitorConstants.DATE_TIME_PATTERN, Locale.US)
+                    .format(new Date(hourStart));
+        }
+        return String.valueOf(hourStart);
+    }
+
+    public SensorSampleBuffer getSampleBuffer() {
+        return sampleBuffer;
+    }
+
+    public synchronized long getSamplesAccepted() {
+        return samplesAccepted;
+    }
+
+    public synchronized long getSamplesRejected() {
+        return samplesRejected;
+    }
+
+    public synchronized long getHoursWritten() {
+        return hoursWritten;
+    }
+}
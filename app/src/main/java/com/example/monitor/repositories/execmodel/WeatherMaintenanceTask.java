@@ -0,0 +1,74 @@
+package com.example.monitor.repositories.execmodel;
+
+import android.util.Log;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.PriorityDatabaseExecutor;
+import com.example.monitor.databases.WeatherDao;
+
+import java.util.concurrent.CompletableFuture;
+
+/* Ages and prunes the weather table in id-range chunks at maintenance priority. Each run on the
+ * database thread processes chunks until its time slice is used up, then requeues itself, so
+ * interactive reads and ingest writes queued in the meantime run first. Ages are set per range
+ * with one UPDATE and old rows removed with one DELETE, instead of reading every row. */
+public class WeatherMaintenanceTask implements Runnable {
+    private static final String TAG = "WeatherMaintenanceTask";
+
+    private final WeatherDao weatherDao;
+    private final PriorityDatabaseExecutor databaseExecutor;
+    private final long visibleCutoff;
+    private final long storedCutoff;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private int nextId = -1;
+    private int maxId;
+    private int slices = 0;
+    private int rowsDeleted = 0;
+
+    /* durations in seconds, like MonitorConstants.VISIBILITY_DURATION / STORAGE_DURATION */
+    public WeatherMaintenanceTask(WeatherDao weatherDao, PriorityDatabaseExecutor databaseExecutor,
+                                  Integer howLongVisible, Integer howLongStored, long currentTime) {
+        this.weatherDao = weatherDao;
+        this.databaseExecutor = databaseExecutor;
+        this.visibleCutoff = currentTime - howLongVisible * 1000L;
+        this.storedCutoff = currentTime - howLongStored * 1000L;
+    }
+
+    public CompletableFuture<Void> start() {
+        databaseExecutor.execute(this, MonitorEnums.DB_PRIORITY_MAINTENANCE);
+        return done;
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (nextId < 0) {
+                /* rows inserted after this point are new, so they need no aging */
+                nextId = weatherDao.getMinWeatherId();
+                maxId = weatherDao.getMaxWeatherId();
+            }
+            slices++;
+            long sliceEnd = System.nanoTime() + MonitorConstants.MAINTENANCE_SLICE_MILLIS * 1000000L;
+            while (nextId <= maxId) {
+                int toId = nextId + MonitorConstants.MAINTENANCE_CHUNK_ROWS;
+                weatherDao.updateAgeCategoriesInRange(nextId, toId, visibleCutoff, storedCutoff,
+                        MonitorEnums.UNDER_48H, MonitorEnums.BETWEEN_48H_AND_WEEK,
+                        MonitorEnums.MORE_THAN_A_WEEK);
+                rowsDeleted += weatherDao.deleteWeatherPointsInRange(nextId, toId,
+                        MonitorEnums.MORE_THAN_A_WEEK);
+                nextId = toId;
+                if (System.nanoTime() >= sliceEnd && nextId <= maxId) {
+                    databaseExecutor.execute(this, MonitorEnums.DB_PRIORITY_MAINTENANCE); // yield
+                    return;
+                }
+            }
+            Log.d(TAG, "maintenance done in " + slices + " slice(s); deleted " + rowsDeleted
+                    + " point(s) older than the storage duration");
+            done.complete(null);
+        } catch (RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.monitor.repositories.exportutil;
+
+import com.example.monitor.MonitorEnums;
+
+/* What to export and how: the format (MonitorEnums.EXPORT_FORMAT_CSV or EXPORT_FORMAT_NDJSON),
+ * whether to gzip, and the filters. A null filter matches every row; the time range is
+ * [fromMillis, toMillis) on timeInMillis. */
+public class WeatherExportOptions {
+    private final Integer format;
+    private final boolean gzip;
+    private final Long fromMillis;
+    private final Long toMillis;
+    private final String location;
+    private final Integer category;
+
+    public WeatherExportOptions(Integer format, boolean gzip, Long fromMillis, Long toMillis,
+                                String location, Integer category) {
+        if (!MonitorEnums.EXPORT_FORMAT_CSV.equals(format)
+                && !MonitorEnums.EXPORT_FORMAT_NDJSON.equals(format)) {
+            throw new IllegalArgumentException("unknown export format: " + format);
+        }
+        this.format = format;
+        this.gzip = gzip;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.location = location;
+        this.category = category;
+    }
+
+    public Integer getFormat() {
+        return format;
+    }
+
+    public boolean isCsv() {
+        return MonitorEnums.EXPORT_FORMAT_CSV.equals(format);
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public Long getFromMillis() {
+        return fromMillis;
+    }
+
+    public Long getToMillis() {
+        return toMillis;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public Integer getCategory() {
+        return category;
+    }
+
+    /* suggested file name, e.g. weather_export.ndjson.gz */
+    public String getFileName() {
+        return "weather_export" + (isCsv() ? ".csv" : ".ndjson") + (gzip ? ".gz" : "");
+    }
+
+    public String getMimeType() {
+        if (gzip) {
+            return "application/gzip";
+        }
+        return isCsv() ? "text/csv" : "application/x-ndjson";
+    }
+}
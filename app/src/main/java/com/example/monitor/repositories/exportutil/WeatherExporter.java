@@ -0,0 +1,193 @@
+package com.example.monitor.repositories.exportutil;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.databases.WeatherDao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/* Streams weather_table rows, in timeInMillis order, from a cursor through a buffered writer as
+ * CSV or NDJSON, optionally gzipped. Only the cursor window and the writer buffer are held, so
+ * memory use doesn't depend on the size of the table. Run on a database reader thread. */
+public class WeatherExporter {
+    private static final String TAG = "WeatherExporter";
+
+    /* exported columns, in order, and which of them are integers; the rest are strings */
+    private static final String[] COLUMNS = {"id", "timeInMillis", "time", "location", "category",
+            "persistence", "celsius", "humidity", "minCelsius", "maxCelsius", "minHumidity",
+            "maxHumidity", "link"};
+    private static final boolean[] NUMERIC = {true, true, false, false, true,
+            true, false, false, false, false, false,
+            false, false};
+
+    /* writes the matching rows to out and closes it; returns the number of rows written */
+    public static long export(WeatherDao weatherDao, WeatherExportOptions options, OutputStream out)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        long rows;
+        try (OutputStream closedOnError = out;
+             Cursor cursor = weatherDao.getWeatherCursor(buildQuery(options))) {
+            rows = write(cursor, options, out);
+        }
+        Log.d(TAG, "export: " + rows + " rows as " + options.getFileName() + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return rows;
+    }
+
+    static SimpleSQLiteQuery buildQuery(WeatherExportOptions options) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(COLUMNS[i]);
+        }
+        sql.append(" FROM weather_table");
+
+        List<Object> args = new ArrayList<>();
+        String joiner = " WHERE ";
+        if (options.getFromMillis() != null) {
+            sql.append(joiner).append("timeInMillis >= ?");
+            args.add(options.getFromMillis());
+            joiner = " AND ";
+        }
+        if (options.getToMillis() != null) {
+            sql.append(joiner).append("timeInMillis < ?");
+            args.add(options.getToMillis());
+            joiner = " AND ";
+        }
+        if (options.getLocation() != null) {
+            sql.append(joiner).append("location = ?");
+            args.add(options.getLocation());
+            joiner = " AND ";
+        }
+        if (options.getCategory() != null) {
+            sql.append(joiner).append("category = ?");
+            args.add(options.getCategory());
+        }
+        sql.append(" ORDER BY timeInMillis, id");
+        return new SimpleSQLiteQuery(sql.toString(), args.toArray());
+    }
+
+    /* the cursor must hold COLUMNS; out is closed, which also finishes the gzip stream */
+    static long write(Cursor cursor, WeatherExportOptions options, OutputStream out)
+            throws IOException {
+        int[] indexes = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            indexes[i] = cursor.getColumnIndexOrThrow(COLUMNS[i]);
+        }
+
+        OutputStream target = options.isGzip()
+                ? new GZIPOutputStream(out, MonitorConstants.EXPORT_BUFFER_SIZE) : out;
+        long rows = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(target,
+                StandardCharsets.UTF_8), MonitorConstants.EXPORT_BUFFER_SIZE)) {
+            if (options.isCsv()) {
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    writer.write(i == 0 ? "" : ",");
+                    writer.write(COLUMNS[i]);
+                }
+                writer.write('\n');
+            }
+            while (cursor.moveToNext()) {
+                if (options.isCsv()) {
+                    writeCsvRow(writer, cursor, indexes);
+                } else {
+                    writeJsonRow(writer, cursor, indexes);
+                }
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static void writeCsvRow(Writer writer, Cursor cursor, int[] indexes)
+            throws IOException {
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (cursor.isNull(indexes[i])) {
+                continue;
+            }
+            if (NUMERIC[i]) {
+                writer.write(Long.toString(cursor.getLong(indexes[i])));
+            } else {
+                writeCsvField(writer, cursor.getString(indexes[i]));
+            }
+        }
+        writer.write('\n');
+    }
+
+    /* quoted only when it holds a separator, quote or line break; quotes are doubled */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static void writeJsonRow(Writer writer, Cursor cursor, int[] indexes)
+            throws IOException {
+        writer.write('{');
+        for (int i = 0; i < indexes.length; i++) {
+            writer.write(i == 0 ? "\"" : ",\"");
+            writer.write(COLUMNS[i]);
+            writer.write("\":");
+            if (cursor.isNull(indexes[i])) {
+                writer.write("null");
+            } else if (NUMERIC[i]) {
+                writer.write(Long.toString(cursor.getLong(indexes[i])));
+            } else {
+                writeJsonString(writer, cursor.getString(indexes[i]));
+            }
+        }
+        writer.write("}\n");
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c == '\n') {
+                writer.write("\\n");
+            } else if (c == '\r') {
+                writer.write("\\r");
+            } else if (c == '\t') {
+                writer.write("\\t");
+            } else if (c < 0x20) {
+                writer.write(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+}
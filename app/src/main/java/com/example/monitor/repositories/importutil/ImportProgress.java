@@ -0,0 +1,86 @@
+package com.example.monitor.repositories.importutil;
+
+import java.util.Locale;
+
+/* Immutable snapshot of a sensor history import. totalBytes is -1 if the size of the source is
+ * unknown. Samples are parsed records; hours are the hourly points built from them. */
+public class ImportProgress {
+    private final long bytesRead;
+    private final long totalBytes;
+    private final long samplesParsed;
+    private final long samplesRejected;
+    private final long samplesExpired;
+    private final long hoursWritten;
+    private final long hoursDuplicate;
+    private final boolean done;
+    private final boolean cancelled;
+
+    public ImportProgress(long bytesRead, long totalBytes, long samplesParsed,
+                          long samplesRejected, long samplesExpired, long hoursWritten,
+                          long hoursDuplicate, boolean done, boolean cancelled) {
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.samplesParsed = samplesParsed;
+        this.samplesRejected = samplesRejected;
+        this.samplesExpired = samplesExpired;
+        this.hoursWritten = hoursWritten;
+        this.hoursDuplicate = hoursDuplicate;
+        this.done = done;
+        this.cancelled = cancelled;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /* 0 to 100 by bytes read, or -1 if the size is unknown */
+    public int getPercent() {
+        if (totalBytes <= 0) {
+            return -1;
+        }
+        return (int) Math.min(100, bytesRead * 100 / totalBytes);
+    }
+
+    public long getSamplesParsed() {
+        return samplesParsed;
+    }
+
+    /* records that couldn't be parsed, and samples from the current hour on */
+    public long getSamplesRejected() {
+        return samplesRejected;
+    }
+
+    /* samples older than the storage duration; maintenance would delete them right away */
+    public long getSamplesExpired() {
+        return samplesExpired;
+    }
+
+    public long getHoursWritten() {
+        return hoursWritten;
+    }
+
+    /* hours already stored for the location, left as they are */
+    public long getHoursDuplicate() {
+        return hoursDuplicate;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s: %d samples parsed, %d rejected, %d expired; "
+                        + "%d hours written, %d already stored", cancelled ? "cancelled"
+                        : done ? "done" : "importing " + bytesRead + " bytes", samplesParsed,
+                samplesRejected, samplesExpired, hoursWritten, hoursDuplicate);
+    }
+}
@@ -0,0 +1,562 @@
+package com.example.monitor.repositories.importutil;
+
+import android.util.Log;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.databases.DatabaseAccess;
+import com.example.monitor.databases.WeatherDao;
+import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.execmodel.SensorStreamIngestion;
+import com.example.monitor.repositories.parseutils.ParseUtils;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/* Imports sensor history kept by the Pi: a JSON array or NDJSON of the objects the Pi publishes
+ * (EpochDateTime, Temperature.Value, RelativeHumidity), or CSV whose header names EpochDateTime or
+ * timeInMillis, Temperature or celsius, and RelativeHumidity or humidity, as the weather export
+ * writes them. Gzipped input is recognized by its magic bytes.
+ *
+ * The import thread splits the input into records and hands chunks of them to the parser pool,
+ * with a few chunks per parser thread in flight; parsed chunks are folded in input order into
+ * hourly aggregates, as the live stream does. Hours already stored for the location are skipped,
+ * as are samples past the storage duration, which maintenance would delete, and samples from the
+ * current hour on, which belong to the live stream. The rest is inserted in transactions of
+ * IMPORT_BATCH_ROWS rows on the database writer, behind ingest. cancel() stops at the next chunk
+ * or batch; batches already committed stay. One import per instance. */
+public class SensorHistoryImporter {
+    private static final String TAG = "SensorHistoryImporter";
+
+    public interface ProgressListener {
+        /* called on the import thread */
+        void onProgress(ImportProgress progress);
+    }
+
+    private final WeatherDao weatherDao;
+    private final String locationName;
+    private final MonitorClock clock;
+    private final long untilMillis;
+    private final Integer writePriority;
+    private volatile boolean cancelled = false;
+
+    /* only touched by the import thread */
+    private CountingInputStream countingInput;
+    private long totalBytes = -1;
+    private long samplesParsed, samplesRejected, samplesExpired;
+    private long hoursWritten, hoursDuplicate;
+
+    public SensorHistoryImporter(WeatherDao weatherDao, String locationName, MonitorClock clock) {
+        this(weatherDao, locationName, clock, -1, MonitorEnums.DB_PRIORITY_MAINTENANCE);
+    }
+
+    /* samples from untilMillis on are left out, as from the current hour on; -1 for just the
+     * latter. The database is read and written at writePriority */
+    public SensorHistoryImporter(WeatherDao weatherDao, String locationName, MonitorClock clock,
+                                 long untilMillis, Integer writePriority) {
+        this.weatherDao = weatherDao;
+        this.locationName = locationName;
+        this.clock = clock;
+        this.untilMillis = untilMillis;
+        this.writePriority = writePriority;
+    }
+
+    /* may be called from any thread */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /* Blocks; run it on the import executor. Closes the input. totalBytes may be -1 if unknown.
+     * Returns the final progress, cancelled or done. */
+    public ImportProgress run(InputStream input, long totalBytes, ProgressListener listener)
+            throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        this.totalBytes = totalBytes;
+        countingInput = new CountingInputStream(input);
+
+        long now = clock.currentTimeMillis();
+        long currentHour = now - now % MonitorConstants.ONE_HOUR;
+        if (untilMillis >= 0) {
+            currentHour = Math.min(currentHour, untilMillis);
+        }
+        long expiryCutoff = now - MonitorConstants.STORAGE_DURATION * 1000L;
+        TreeMap<Long, HourAggregate> hours = new TreeMap<>();
+
+        try (Reader reader = new InputStreamReader(openDecoded(countingInput),
+                StandardCharsets.UTF_8)) {
+            RecordSplitter splitter = new RecordSplitter(reader);
+            CsvColumns csvColumns = splitter.isJson() ? null : CsvColumns.fromHeader(
+                    splitter.getCsvHeader());
+
+            ExecutorService parsers = ExecutorHelper.getImportParserPoolInstance();
+            int window = Runtime.getRuntime().availableProcessors()
+                    * MonitorConstants.IMPORT_CHUNKS_PER_THREAD;
+            ArrayDeque<Future<SampleChunk>> inFlight = new ArrayDeque<>();
+            List<String> records;
+            while (!cancelled
+                    && (records = splitter.nextChunk(MonitorConstants.IMPORT_CHUNK_RECORDS)) != null) {
+                if (inFlight.size() >= window) {
+                    fold(awaitChunk(inFlight.removeFirst()), hours, expiryCutoff, currentHour);
+                    listener.onProgress(snapshot(false));
+                }
+                inFlight.addLast(parsers.submit(new ParseChunkTask(records, csvColumns)));
+            }
+            while (!inFlight.isEmpty()) {
+                Future<SampleChunk> next = inFlight.removeFirst();
+                if (cancelled) {
+                    next.cancel(false);
+                } else {
+                    fold(awaitChunk(next), hours, expiryCutoff, currentHour);
+                }
+            }
+        }
+        listener.onProgress(snapshot(false));
+
+        if (!cancelled) {
+            writeHours(hours, now, listener);
+        }
+        ImportProgress result = snapshot(!cancelled);
+        Log.d(TAG, "run: " + result + " in " + (System.currentTimeMillis() - start) + " ms");
+        listener.onProgress(result);
+        return result;
+    }
+
+    private ImportProgress snapshot(boolean done) {
+        return new ImportProgress(countingInput.getCount(), totalBytes, samplesParsed,
+                samplesRejected, samplesExpired, hoursWritten, hoursDuplicate, done, cancelled);
+    }
+
+    private static InputStream openDecoded(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input,
+                MonitorConstants.EXPORT_BUFFER_SIZE);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(buffered, MonitorConstants.EXPORT_BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    private static SampleChunk awaitChunk(Future<SampleChunk> future)
+            throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("parsing a chunk failed", e.getCause());
+        }
+    }
+
+    /* in input order, on the import thread */
+    private void fold(SampleChunk chunk, TreeMap<Long, HourAggregate> hours, long expiryCutoff,
+                      long currentHour) {
+        samplesParsed += chunk.count;
+        samplesRejected += chunk.rejected;
+        for (int i = 0; i < chunk.count; i++) {
+            long time = chunk.times[i];
+            long hour = time - Math.floorMod(time, (long) MonitorConstants.ONE_HOUR);
+            if (hour < expiryCutoff) {
+                samplesExpired++;
+                continue;
+            }
+            if (hour >= currentHour) {
+                samplesRejected++;
+                continue;
+            }
+            HourAggregate aggregate = hours.get(hour);
+            if (aggregate == null) {
+                aggregate = new HourAggregate();
+                hours.put(hour, aggregate);
+            }
+            aggregate.add(chunk.celsius[i], chunk.humidity[i]);
+        }
+    }
+
+    private void writeHours(TreeMap<Long, HourAggregate> hours, long now,
+                            ProgressListener listener) throws IOException, InterruptedException {
+        if (hours.isEmpty()) {
+            return;
+        }
+        long fromMillis = hours.firstKey();
+        long toMillis = hours.lastKey() + MonitorConstants.ONE_HOUR;
+        Set<Long> stored = new HashSet<>(await(DatabaseAccess.read(
+                () -> weatherDao.getTimesInRange(locationName, MonitorEnums.HOME_SENSOR,
+                        fromMillis, toMillis), writePriority)));
+
+        long visibleCutoff = now - MonitorConstants.VISIBILITY_DURATION * 1000L;
+        List<Weather> batch = new ArrayList<>(MonitorConstants.IMPORT_BATCH_ROWS);
+        for (Map.Entry<Long, HourAggregate> entry : hours.entrySet()) {
+            if (cancelled) {
+                return;
+            }
+            long hour = entry.getKey();
+            if (stored.contains(hour)) {
+                hoursDuplicate++;
+                continue;
+            }
+            HourAggregate aggregate = entry.getValue();
+            batch.add(SensorStreamIngestion.newHourlyPoint(hour, locationName,
+                    hour > visibleCutoff ? MonitorEnums.UNDER_48H : MonitorEnums.BETWEEN_48H_AND_WEEK,
+                    aggregate.celsiusSum / aggregate.count, aggregate.humiditySum / aggregate.count,
+                    aggregate.celsiusMin, aggregate.celsiusMax, aggregate.humidityMin,
+                    aggregate.humidityMax));
+            if (batch.size() == MonitorConstants.IMPORT_BATCH_ROWS) {
+                writeBatch(batch);
+                batch = new ArrayList<>(MonitorConstants.IMPORT_BATCH_ROWS);
+                listener.onProgress(snapshot(false));
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    /* one transaction: Room runs a list insert inside a single transaction */
+    private void writeBatch(final List<Weather> batch) throws IOException, InterruptedException {
+        await(DatabaseAccess.write(() -> {
+            weatherDao.insertWeatherList(batch);
+            return batch.size();
+        }, writePriority));
+        hoursWritten += batch.size();
+    }
+
+    private static <T> T await(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("database access failed", e.getCause());
+        }
+    }
+
+    /*** records ***/
+    /* Splits the input into records without parsing them: top-level JSON objects, wherever they
+     * are (array elements or NDJSON lines), or CSV lines after the header. */
+    private static class RecordSplitter {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int position = 0;
+        private int limit = 0;
+        private final boolean json;
+        private String csvHeader;
+
+        RecordSplitter(Reader reader) throws IOException {
+            this.reader = reader;
+            int first = peekNonWhitespace();
+            json = first == '[' || first == '{';
+            if (!json) {
+                csvHeader = readLine();
+                if (csvHeader == null) {
+                    throw new IOException("empty input");
+                }
+            }
+        }
+
+        boolean isJson() {
+            return json;
+        }
+
+        String getCsvHeader() {
+            return csvHeader;
+        }
+
+        /* up to maxRecords records, or null at the end of the input */
+        List<String> nextChunk(int maxRecords) throws IOException {
+            List<String> records = new ArrayList<>(maxRecords);
+            String record;
+            while (records.size() < maxRecords
+                    && (record = json ? readJsonObject() : readLine()) != null) {
+                if (!record.isEmpty()) {
+                    records.add(record);
+                }
+            }
+            return records.isEmpty() ? null : records;
+        }
+
+        private boolean fill() throws IOException {
+            if (position < limit) {
+                return true;
+            }
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            return limit > 0;
+        }
+
+        private int peekNonWhitespace() throws IOException {
+            while (fill()) {
+                char c = buffer[position];
+                if (!Character.isWhitespace(c) && c != '\uFEFF') {
+                    return c;
+                }
+                position++;
+            }
+            return -1;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = null;
+            while (fill()) {
+                char c = buffer[position++];
+                if (c == '\n') {
+                    return line == null ? "" : trimCarriageReturn(line);
+                }
+                if (line == null) {
+                    line = new StringBuilder(64);
+                }
+                line.append(c);
+            }
+            return line == null ? null : trimCarriageReturn(line);
+        }
+
+        private static String trimCarriageReturn(StringBuilder line) {
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            return line.toString().trim();
+        }
+
+        /* the next complete top-level {...}; brackets, commas and whitespace between are skipped */
+        private String readJsonObject() throws IOException {
+            StringBuilder object = null;
+            int depth = 0;
+            boolean inString = false;
+            boolean escaped = false;
+            while (fill()) {
+                char c = buffer[position++];
+                if (depth == 0) {
+                    if (c == '{') {
+                        object = new StringBuilder(128);
+                        object.append(c);
+                        depth = 1;
+                    }
+                    continue;
+                }
+                object.append(c);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    return object.toString();
+                }
+            }
+            if (depth > 0) {
+                throw new IOException("input ends inside a JSON object");
+            }
+            return null;
+        }
+    }
+
+    /* where the time, temperature and humidity are in a CSV line */
+    private static class CsvColumns {
+        final int time;
+        final boolean timeInMillis; /* timeInMillis is UTC millis, EpochDateTime local seconds */
+        final int celsius;
+        final int humidity;
+
+        private CsvColumns(int time, boolean timeInMillis, int celsius, int humidity) {
+            this.time = time;
+            this.timeInMillis = timeInMillis;
+            this.celsius = celsius;
+            this.humidity = humidity;
+        }
+
+        static CsvColumns fromHeader(String header) throws IOException {
+            String[] names = header.split(",", -1);
+            int epoch = -1, millis = -1, celsius = -1, humidity = -1;
+            for (int i = 0; i < names.length; i++) {
+                String name = unquote(names[i]);
+                if (name.equalsIgnoreCase("EpochDateTime")) {
+                    epoch = i;
+                } else if (name.equalsIgnoreCase("timeInMillis")) {
+                    millis = i;
+                } else if (name.equalsIgnoreCase("Temperature") || name.equalsIgnoreCase("celsius")) {
+                    celsius = i;
+                } else if (name.equalsIgnoreCase("RelativeHumidity")
+                        || name.equalsIgnoreCase("humidity")) {
+                    humidity = i;
+                }
+            }
+            if ((epoch < 0 && millis < 0) || celsius < 0 || humidity < 0) {
+                throw new IOException("CSV header lacks a time, temperature or humidity column: "
+                        + header);
+            }
+            return new CsvColumns(millis >= 0 ? millis : epoch, millis >= 0, celsius, humidity);
+        }
+    }
+
+    private static String unquote(String field) {
+        String trimmed = field.trim();
+        if (trimmed.length() >= 2 && trimmed.charAt(0) == '"'
+                && trimmed.charAt(trimmed.length() - 1) == '"') {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    /*** parsing, on the parser pool ***/
+    private static class SampleChunk {
+        final long[] times;
+        final float[] celsius;
+        final float[] humidity;
+        int count = 0;
+        int rejected = 0;
+
+        SampleChunk(int capacity) {
+            times = new long[capacity];
+            celsius = new float[capacity];
+            humidity = new float[capacity];
+        }
+    }
+
+    private static class ParseChunkTask implements Callable<SampleChunk> {
+        private final List<String> records;
+        private final CsvColumns csvColumns; /* null for JSON records */
+
+        ParseChunkTask(List<String> records, CsvColumns csvColumns) {
+            this.records = records;
+            this.csvColumns = csvColumns;
+        }
+
+        @Override
+        public SampleChunk call() {
+            SampleChunk chunk = new SampleChunk(records.size());
+            double[] sample = new double[3];
+            for (String record : records) {
+                boolean parsed = csvColumns == null ? parseJson(record, sample)
+                        : parseCsv(record, csvColumns, sample);
+                if (!parsed) {
+                    chunk.rejected++;
+                    continue;
+                }
+                chunk.times[chunk.count] = (long) sample[0];
+                chunk.celsius[chunk.count] = (float) sample[1];
+                chunk.humidity[chunk.count] = (float) sample[2];
+                chunk.count++;
+            }
+            return chunk;
+        }
+
+        /* sample becomes {UTC millis, celsius, humidity} */
+        private static boolean parseJson(String record, double[] sample) {
+            ByteBuffer bytes = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+            if (!ParseUtils.parseSensorSampleBytes(bytes, sample)) {
+                return false;
+            }
+            /* sensor timestamps are in local time, like the live stream's */
+            sample[0] = sample[0] * 1000 - MonitorConstants.TIMEZONE_OFFSET;
+            return true;
+        }
+
+        private static boolean parseCsv(String line, CsvColumns columns, double[] sample) {
+            String[] fields = line.split(",", -1);
+            int needed = Math.max(columns.time, Math.max(columns.celsius, columns.humidity));
+            if (fields.length <= needed) {
+                return false;
+            }
+            try {
+                double time = Double.parseDouble(unquote(fields[columns.time]));
+                sample[0] = columns.timeInMillis ? time
+                        : time * 1000 - MonitorConstants.TIMEZONE_OFFSET;
+                sample[1] = Double.parseDouble(unquote(fields[columns.celsius]));
+                sample[2] = Double.parseDouble(unquote(fields[columns.humidity]));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            return !(Double.isNaN(sample[1]) || Double.isNaN(sample[2]));
+        }
+    }
+
+    /*** hourly aggregation ***/
+    private static class HourAggregate {
+        int count = 0;
+        double celsiusSum, humiditySum;
+        float celsiusMin, celsiusMax, humidityMin, humidityMax;
+
+        void add(float celsius, float humidity) {
+            if (count == 0) {
+                celsiusMin = celsiusMax = celsius;
+                humidityMin = humidityMax = humidity;
+            } else {
+                celsiusMin = Math.min(celsiusMin, celsius);
+                celsiusMax = Math.max(celsiusMax, celsius);
+                humidityMin = Math.min(humidityMin, humidity);
+                humidityMax = Math.max(humidityMax, humidity);
+            }
+            celsiusSum += celsius;
+            humiditySum += humidity;
+            count++;
+        }
+    }
+
+    /* bytes taken from the source, before decompression, for progress */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.monitor.repositories.networkutils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.monitor.MonitorEnums;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/* Keeps the state of the default network from ConnectivityManager callbacks, so checking it is a
+ * field read instead of a query per scheduled run. Listeners are told about every change of
+ * online/metered state, e.g. to pause fetch jobs while offline and catch up when the network
+ * returns. */
+public class ConnectivityMonitor {
+    private static final String TAG = "ConnectivityMonitor";
+    private static ConnectivityMonitor instance;
+
+    /* called on the ConnectivityManager's callback thread; should only hand work off */
+    public interface Listener {
+        void onConnectivityChanged(boolean online, boolean metered);
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final MutableLiveData<Integer> networkState = new MutableLiveData<>();
+    private volatile boolean online = false;
+    private volatile boolean metered = true;
+    private boolean known = false;
+
+    private ConnectivityMonitor(Context context) {
+        connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    private ConnectivityMonitor() {
+        connectivityManager = null;
+    }
+
+    /* registers the network callback on first use */
+    public static synchronized ConnectivityMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new ConnectivityMonitor(context);
+            instance.register();
+        }
+        return instance;
+    }
+
+    /* not registered with the system, e.g. for simulations; stays in the given state */
+    public static ConnectivityMonitor detached(boolean online, boolean metered) {
+        ConnectivityMonitor monitor = new ConnectivityMonitor();
+        monitor.update(online, metered);
+        return monitor;
+    }
+
+    private void register() {
+        if (connectivityManager == null) {
+            Log.d(TAG, "register: no ConnectivityManager; staying offline.");
+            update(false, true);
+            return;
+        }
+        refreshFromActiveNetwork(); // until the first callback arrives
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            connectivityManager.registerDefaultNetworkCallback(
+                    new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onCapabilitiesChanged(Network network,
+                                                  NetworkCapabilities capabilities) {
+                    update(capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                                    && capabilities.hasCapability(
+                                            NetworkCapabilities.NET_CAPABILITY_VALIDATED),
+                            !capabilities.hasCapability(
+                                    NetworkCapabilities.NET_CAPABILITY_NOT_METERED));
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    update(false, metered);
+                }
+            });
+        } else {
+            /* no default-network callback before N; any change re-reads the active network */
+            NetworkRequest request = new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+            connectivityManager.registerNetworkCallback(request,
+                    new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    refreshFromActiveNetwork();
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    refreshFromActiveNetwork();
+                }
+            });
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void refreshFromActiveNetwork() {
+        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+        update(activeNetworkInfo != null && activeNetworkInfo.isConnected(),
+                connectivityManager.isActiveNetworkMetered());
+    }
+
+    private synchronized void update(boolean online, boolean metered) {
+        boolean changed = !known || online != this.online || metered != this.metered;
+        known = true;
+        this.online = online;
+        this.metered = metered;
+        if (!changed) {
+            return;
+        }
+        Log.d(TAG, online ? (metered ? "ONLINE, METERED" : "ONLINE, UNMETERED") : "OFFLINE");
+        networkState.postValue(online ? (metered ? MonitorEnums.NETWORK_METERED
+                : MonitorEnums.NETWORK_UNMETERED) : MonitorEnums.NETWORK_OFFLINE);
+        for (Listener listener : listeners) {
+            listener.onConnectivityChanged(online, metered);
+        }
+    }
+
+    /* the listener is also called right away with the current state */
+    public synchronized void addListener(Listener listener) {
+        listeners.add(listener);
+        listener.onConnectivityChanged(online, metered);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public boolean isMetered() {
+        return metered;
+    }
+
+    /* bulk transfers wait for an unmetered network */
+    public boolean isUnmeteredOnline() {
+        return online && !metered;
+    }
+
+    /* MonitorEnums.NETWORK_OFFLINE, NETWORK_METERED or NETWORK_UNMETERED */
+    public LiveData<Integer> getNetworkState() {
+        return networkState;
+    }
+}
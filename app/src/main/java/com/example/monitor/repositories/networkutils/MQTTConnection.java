@@ -14,6 +14,7 @@ import com.example.monitor.repositories.execmodel.CacheDataInDbsTask;
 import com.example.monitor.repositories.parseutils.ParseUtils;
 import com.hivemq.client.mqtt.datatypes.MqttQos;
 import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5ClientBuilder;
 import com.hivemq.client.mqtt.mqtt5.message.connect.connack.Mqtt5ConnAck;
 import com.hivemq.client.mqtt.mqtt5.message.subscribe.suback.Mqtt5SubAck;
 
@@ -22,41 +23,83 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class MQTTConnection {
     private static final String TAG = "MQTTConnection";
     private static MQTTConnection instance;
-    private static Mqtt5Client client;
+    /* built by the startup's mqttClient step; null until then, which counts as not connected */
+    private static volatile Mqtt5Client client;
+    private static String clientId;
+
+    /* hooks for components holding long-lived subscriptions, which are lost on every disconnect */
+    private static final List<Runnable> connectedListeners = new CopyOnWriteArrayList<>();
+    private static final List<Runnable> disconnectedListeners = new CopyOnWriteArrayList<>();
 
     public static Mqtt5Client getClient() {
         return client;
     }
 
+    public static String getClientId() {
+        return clientId;
+    }
+
     public static MQTTConnection getInstance() {
         if (instance == null) {
-            String MQTTHOST = BrokerData.getMQTTHOST();
-            Integer MQTTPORT = BrokerData.getMQTTPORT();
-            String MQTTUSER = BrokerData.getMQTTUSER();
-            String MQTTPW = BrokerData.getMQTTPW();
+            return getInstance(BrokerData.getMQTTHOST(), BrokerData.getMQTTPORT(),
+                    BrokerData.getMQTTUSER(), BrokerData.getMQTTPW(), true);
+        }
+
+        return instance;
+    }
+
+    /* explicit broker settings, e.g. a local broker without TLS or credentials for testing */
+    public static synchronized MQTTConnection getInstance(String host, Integer port, String user,
+                                                          String password, boolean useSsl) {
+        if (instance == null) {
             instance = new MQTTConnection();
-            client = Mqtt5Client.builder()
-                    .identifier(UUID.randomUUID().toString())
-                    .serverHost(MQTTHOST)
-                    .serverPort(MQTTPORT)
-                    .sslWithDefaultConfig()
-                    .simpleAuth()
-                    .username(MQTTUSER)
-                    .password(MQTTPW.getBytes(StandardCharsets.UTF_8))
-                    .applySimpleAuth()
+            clientId = UUID.randomUUID().toString();
+            Mqtt5ClientBuilder builder = Mqtt5Client.builder()
+                    .identifier(clientId)
+                    .serverHost(host)
+                    .serverPort(port);
+            if (useSsl) {
+                builder = builder.sslWithDefaultConfig();
+            }
+            if (user != null && password != null) {
+                builder = builder.simpleAuth()
+                        .username(user)
+                        .password(password.getBytes(StandardCharsets.UTF_8))
+                        .applySimpleAuth();
+            }
+            client = builder
+                    .addConnectedListener(context -> {
+                        for (Runnable listener : connectedListeners) {
+                            listener.run();
+                        }
+                    })
+                    .addDisconnectedListener(context -> {
+                        for (Runnable listener : disconnectedListeners) {
+                            listener.run();
+                        }
+                    })
                     .build();
-
         }
 
         return instance;
     }
 
+    /* listeners run on the client's I/O thread; they should only hand work off */
+    public static void addConnectedListener(Runnable listener) {
+        connectedListeners.add(listener);
+    }
+
+    public static void addDisconnectedListener(Runnable listener) {
+        disconnectedListeners.add(listener);
+    }
+
     /*** methods to be used across activities and layers ***/
     public static String connectBlocking() {
         try {
@@ -71,13 +114,10 @@ public class MQTTConnection {
         }
     }
 
+    /* (blocking) waits up to 3 s for the connection; use connectInBackground() on the main thread */
     public static int connectAsync() {
         try {
-            client.toAsync().connect().get(3000, TimeUnit.MILLISECONDS);
-            //success
-            /* test publish and test subscription for mqtt from this activity  */
-            MQTTConnection.publishAsync(TAG+"_MonitorApp_connected", TopicData.getGeneralTopic());
-            return MonitorEnums.MQTT_CONNECTED;
+            return connectInBackground().get(3000, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
             //failure
             Log.d(TAG, "Not connected - exception: "+e.getMessage());
@@ -85,6 +125,26 @@ public class MQTTConnection {
         }
     }
 
+    /* returns at once; completes with MQTT_CONNECTED or MQTT_NOT_CONNECTED, never exceptionally */
+    public static CompletableFuture<Integer> connectInBackground() {
+        Mqtt5Client client = MQTTConnection.client;
+        if (client == null) {
+            Log.d(TAG, "connectInBackground: client not built yet");
+            return CompletableFuture.completedFuture(MonitorEnums.MQTT_NOT_CONNECTED);
+        }
+        return client.toAsync().connect().handle((connAck, throwable) -> {
+            if (throwable != null) {
+                //failure
+                Log.d(TAG, "Not connected - exception: "+throwable.getMessage());
+                return MonitorEnums.MQTT_NOT_CONNECTED;
+            }
+            //success
+            /* test publish and test subscription for mqtt from this activity  */
+            MQTTConnection.publishAsync(TAG+"_MonitorApp_connected", TopicData.getGeneralTopic());
+            return MonitorEnums.MQTT_CONNECTED;
+        });
+    }
+
     public static void publishBlocking(String payload, String topic) {
         Log.d(TAG, "publishBlocking, state: "+client.toBlocking().getState());
         client.toBlocking().publishWith()
@@ -95,7 +155,8 @@ public class MQTTConnection {
     }
 
     public static int publishAsync(String payload, String topic) {
-       if (client.getState().isConnected()) {
+       Mqtt5Client client = MQTTConnection.client;
+       if (client != null && client.getState().isConnected()) {
            client.toAsync().publishWith()
                    .topic(topic)
                    .qos(MqttQos.AT_LEAST_ONCE)
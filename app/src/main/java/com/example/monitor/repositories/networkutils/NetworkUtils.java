@@ -1,12 +1,15 @@
 package com.example.monitor.repositories.networkutils;
 
-import android.net.Uri;
+import com.example.monitor.MonitorConstants;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.Scanner;
 
 /* methods need to be called in background threads */
@@ -14,15 +17,13 @@ public class NetworkUtils {
     private static final String TAG = "NetworkUtils";
 
     /* Accuweather API artefacts */
+    private static final String ACCUWEATHER_BASE_URL = "http://dataservice.accuweather.com";
     /* location info to match GPS lat,lon with cities tagged by accuweather */
-    private static final String WEATHERDB_GEOPOSITION =
-            "http://dataservice.accuweather.com/locations/v1/cities/geoposition/search";
+    private static final String WEATHERDB_GEOPOSITION = "/locations/v1/cities/geoposition/search";
 
     /* hourly requests via Accuweather API */
-    private static final String WEATHERDB_BASE_URL_1HOUR =
-            "http://dataservice.accuweather.com/forecasts/v1/hourly/1hour/";
-    private static final String WEATHERDB_BASE_URL_12HOURS =
-            "http://dataservice.accuweather.com/forecasts/v1/hourly/12hour/";
+    private static final String WEATHERDB_BASE_URL_1HOUR = "/forecasts/v1/hourly/1hour/";
+    private static final String WEATHERDB_BASE_URL_12HOURS = "/forecasts/v1/hourly/12hour/";
 
     private static final String API_KEY = "Tw9ezktZFbGcFwPa5DfZ8NjoEs2st0ah";
     private static final String PARAM_API_KEY = "apikey";
@@ -33,89 +34,111 @@ public class NetworkUtils {
     /* hourly requests towards LAN server on Raspberry Pi connected to sensor, tunneled via ngrok */
     private static final String SUBDIR_HOURLY = "/sensordata_hourly.json";
     private static final String SUBDIR_INSTANT = "/sensordata_instant.json";
+    /* delta sync: the start of the newest stored sensor hour, UTC millis; the Pi answers with its
+     * raw samples from the end of that hour on, as a JSON array */
+    private static final String PARAM_SINCE = "since";
 
     /* LAN with static IPs */
     private static final String LAN_IP_PI_ZERO = "192.168.1.157";
     private static final String LAN_IP_PI_4B = "192.168.1.158";
-    private static final String LAN_URL_1HOUR = "http://"+LAN_IP_PI_4B+SUBDIR_HOURLY;
-    private static final String LAN_URL_INSTANT = "http://"+LAN_IP_PI_4B+SUBDIR_INSTANT;
+    private static final String LAN_BASE_URL = "http://"+LAN_IP_PI_4B;
 
     /* Internet via ngrok */
     private static final String NGROK_TUNNEL_LINK_TEMP = "http://8920-178-221-182-107.ngrok.io";
-    private static final String NGROK_URL_1HOUR = NGROK_TUNNEL_LINK_TEMP +SUBDIR_HOURLY;
-    private static final String NGROK_URL_INSTANT = NGROK_TUNNEL_LINK_TEMP +SUBDIR_INSTANT;
 
+    /* base URLs can be pointed elsewhere, e.g. at a local stand-in server in tests */
+    private static volatile String accuweatherBaseUrl = ACCUWEATHER_BASE_URL;
+    private static volatile String sensorBaseUrl = NGROK_TUNNEL_LINK_TEMP; // LAN_BASE_URL
 
-    public static URL buildUrlForLocation(String latitude, String longitude) {
-
-        Uri builtUri = Uri.parse(WEATHERDB_GEOPOSITION).buildUpon()
-                .appendQueryParameter(PARAM_API_KEY, API_KEY)
-                /* obtained from GPS; comma may be %2C  */
-                .appendQueryParameter(PARAM_LOC, latitude+","+longitude)
-                .build();
-
-        URL url = null;
-        try {
-            url = new URL(builtUri.toString());
-        } catch(MalformedURLException e) {
-            e.printStackTrace();
+    /* scheme://host[:port] without a trailing slash; null keeps the current one */
+    public static void setBaseUrls(String accuweather, String sensor) {
+        if (accuweather != null) {
+            accuweatherBaseUrl = accuweather;
+        }
+        if (sensor != null) {
+            sensorBaseUrl = sensor;
         }
+    }
 
-        return url;
+    public static void resetBaseUrls() {
+        accuweatherBaseUrl = ACCUWEATHER_BASE_URL;
+        sensorBaseUrl = NGROK_TUNNEL_LINK_TEMP;
+    }
+
+    public static URL buildUrlForLocation(String latitude, String longitude) {
+        StringBuilder builtUri = new StringBuilder(accuweatherBaseUrl + WEATHERDB_GEOPOSITION);
+        appendQueryParameter(builtUri, PARAM_API_KEY, API_KEY);
+        /* obtained from GPS; comma is encoded as %2C */
+        appendQueryParameter(builtUri, PARAM_LOC, latitude+","+longitude);
+        return toUrl(builtUri.toString());
     }
 
     public static URL buildUrlForWeather(int forecastType, String location) {
-        String requestScheme;
-        Uri builtUri = null;
+        StringBuilder builtUri;
 
         if (forecastType == 0) {
-            requestScheme = WEATHERDB_BASE_URL_12HOURS;
-            builtUri = Uri.parse(requestScheme+location).buildUpon()
-                    .appendQueryParameter(PARAM_API_KEY, API_KEY)
-                    .appendQueryParameter(PARAM_METRIC_KEY, "true") /* request temp. in Celsius */
-                    .appendQueryParameter(PARAM_DETAILS, "true") /* request full details */
-                    .build();
-        } else if (forecastType == 1){
-            requestScheme = WEATHERDB_BASE_URL_1HOUR;
-            builtUri = Uri.parse(requestScheme+location).buildUpon()
-                    .appendQueryParameter(PARAM_API_KEY, API_KEY)
-                    .appendQueryParameter(PARAM_METRIC_KEY, "true")
-                    .appendQueryParameter(PARAM_DETAILS, "true") /* request full details */
-                    .build();
+            builtUri = new StringBuilder(accuweatherBaseUrl + WEATHERDB_BASE_URL_12HOURS + location);
         } else if (forecastType == 2) {
-            requestScheme = NGROK_URL_1HOUR; // LAN_URL_1HOUR
-            builtUri = Uri.parse(requestScheme).buildUpon().build();
+            return toUrl(sensorBaseUrl + SUBDIR_HOURLY);
         } else if (forecastType == 3) {
-            requestScheme = NGROK_URL_INSTANT; // LAN_URL_INSTANT
-            builtUri = Uri.parse(requestScheme).buildUpon().build();
+            return toUrl(sensorBaseUrl + SUBDIR_INSTANT);
         } else {
-            requestScheme = WEATHERDB_BASE_URL_1HOUR; // default
-            builtUri = Uri.parse(requestScheme+location).buildUpon()
-                    .appendQueryParameter(PARAM_API_KEY, API_KEY)
-                    .appendQueryParameter(PARAM_METRIC_KEY, "true")
-                    .appendQueryParameter(PARAM_DETAILS, "true") /* request full details */
-                    .build();
+            /* forecastType 1, and the default */
+            builtUri = new StringBuilder(accuweatherBaseUrl + WEATHERDB_BASE_URL_1HOUR + location);
         }
+        appendQueryParameter(builtUri, PARAM_API_KEY, API_KEY);
+        appendQueryParameter(builtUri, PARAM_METRIC_KEY, "true"); /* request temp. in Celsius */
+        appendQueryParameter(builtUri, PARAM_DETAILS, "true"); /* request full details */
+        return toUrl(builtUri.toString());
+    }
 
+    /* the sensor samples missing after the stored hour starting at sinceMillis */
+    public static URL buildUrlForSensorHistory(long sinceMillis) {
+        StringBuilder builtUri = new StringBuilder(sensorBaseUrl + SUBDIR_HOURLY);
+        appendQueryParameter(builtUri, PARAM_SINCE, Long.toString(sinceMillis));
+        return toUrl(builtUri.toString());
+    }
+
+    private static void appendQueryParameter(StringBuilder builtUri, String key, String value) {
+        builtUri.append(builtUri.indexOf("?") < 0 ? '?' : '&');
+        try {
+            builtUri.append(URLEncoder.encode(key, "UTF-8")).append('=')
+                    .append(URLEncoder.encode(value, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e); // UTF-8 is always supported
+        }
+    }
+
+    private static URL toUrl(String builtUri) {
         URL url = null;
         try {
-            url = new URL(builtUri.toString());
+            url = new URL(builtUri);
         } catch(MalformedURLException e) {
             e.printStackTrace();
         }
-
         return url;
     }
 
-    /* return the entire API response as a string; called in background thread */
+    /* return the entire API response as a string; called in background thread. Fails with an
+     * IOException on timeouts and on any status other than 200, e.g. 429 once the free API
+     * requests for the day are used up */
     public static String getResponseFromHttpUrl(URL url) throws IOException {
         HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setConnectTimeout(MonitorConstants.HTTP_CONNECT_TIMEOUT);
+        urlConnection.setReadTimeout(MonitorConstants.HTTP_READ_TIMEOUT);
         String tempStore = null;
         try {
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + responseCode + " from " + url.getHost());
+            }
             InputStream in = urlConnection.getInputStream();
             Scanner scanner = new Scanner(in);
             scanner.useDelimiter("\\A");
             boolean hasInput = scanner.hasNext();
+            if (scanner.ioException() != null) {
+                throw scanner.ioException(); // e.g. read timeout or connection reset mid-body
+            }
             if (hasInput){
                 tempStore = scanner.next();
                 return tempStore;
@@ -127,4 +150,31 @@ public class NetworkUtils {
         }
     }
 
+    /* the response body as a stream, for answers too long to hold as a string; closing it
+     * disconnects. Fails like getResponseFromHttpUrl on timeouts and on statuses other than 200 */
+    public static InputStream openStreamFromHttpUrl(URL url) throws IOException {
+        final HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setConnectTimeout(MonitorConstants.HTTP_CONNECT_TIMEOUT);
+        urlConnection.setReadTimeout(MonitorConstants.HTTP_READ_TIMEOUT);
+        try {
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + responseCode + " from " + url.getHost());
+            }
+            return new FilterInputStream(urlConnection.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        urlConnection.disconnect();
+                    }
+                }
+            };
+        } catch (IOException e) {
+            urlConnection.disconnect();
+            throw e;
+        }
+    }
+
 }
@@ -1,13 +1,29 @@
 package com.example.monitor.repositories.networkutils;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class TopicData {
     private static String[] deviceTopics= {"devices/LED_0/value"};
     private static String[] deviceModeTopics= {"devices/LED_0/mode"};
     private static String[] deviceStatusTopics= {"devices/LED_0/status"};
+    private static String deviceStatusWildcardTopic = "devices/+/status";
+    private static String deviceStatusTopicPrefix = "devices/";
+    private static String deviceStatusTopicSuffix = "/status";
+    /* the configured devices first, then every other device as its status is first seen */
+    private static final Map<String, Integer> deviceIndexByStatusTopic = new ConcurrentHashMap<>();
+    static {
+        for (int i = 0; i < deviceStatusTopics.length; i++) {
+            deviceIndexByStatusTopic.put(deviceStatusTopics[i], i);
+        }
+    }
     private static String generalTopic = "general";
     private static String jsonSensorData = "sensors/json";
     private static String jsonSensorHourlyDataTopic = "sensors/json/hourly";
     private static String jsonSensorInstantDataTopic = "sensors/json/instant";
+    private static String jsonSensorRequestTopic = "sensors/json/request";
+    private static String jsonSensorResponseTopicPrefix = "sensors/json/response/";
+    private static String jsonSensorHistoryTopicPrefix = "sensors/json/history/";
 
     public static String getDeviceTopics(int index) {
         return deviceTopics[index];
@@ -21,6 +37,53 @@ public class TopicData {
         return deviceStatusTopics[index];
     }
 
+    public static String getDeviceStatusWildcardTopic() {
+        return deviceStatusWildcardTopic;
+    }
+
+    /* maps a concrete status topic back to its device index; a device not seen before gets the
+     * next free index. -1 for topics outside the status wildcard */
+    public static int getDeviceIndexForStatusTopic(String topic) {
+        Integer index = deviceIndexByStatusTopic.get(topic);
+        if (index != null) {
+            return index;
+        }
+        if (!isDeviceStatusTopic(topic)) {
+            return -1;
+        }
+        synchronized (deviceIndexByStatusTopic) {
+            index = deviceIndexByStatusTopic.get(topic);
+            if (index == null) {
+                index = deviceIndexByStatusTopic.size();
+                deviceIndexByStatusTopic.put(topic, index);
+            }
+            return index;
+        }
+    }
+
+    /* devices/<one level>/status, as the wildcard subscription matches it */
+    private static boolean isDeviceStatusTopic(String topic) {
+        if (topic == null || topic.length()
+                <= deviceStatusTopicPrefix.length() + deviceStatusTopicSuffix.length()
+                || !topic.startsWith(deviceStatusTopicPrefix)
+                || !topic.endsWith(deviceStatusTopicSuffix)) {
+            return false;
+        }
+        String device = topic.substring(deviceStatusTopicPrefix.length(),
+                topic.length() - deviceStatusTopicSuffix.length());
+        return device.indexOf('/') < 0;
+    }
+
+    /* the configured devices, which have controls; see getKnownDeviceCount for all of them */
+    public static int getDeviceCount() {
+        return deviceStatusTopics.length;
+    }
+
+    /* the configured devices and the ones seen on the status wildcard since */
+    public static int getKnownDeviceCount() {
+        return deviceIndexByStatusTopic.size();
+    }
+
     public static String getGeneralTopic() {
         return generalTopic;
     }
@@ -37,4 +100,18 @@ public class TopicData {
         return jsonSensorInstantDataTopic;
     }
 
+    public static String getJsonSensorRequestTopic() {
+        return jsonSensorRequestTopic;
+    }
+
+    /* each client gets answers to its read requests on its own topic */
+    public static String getJsonSensorResponseTopic(String clientId) {
+        return jsonSensorResponseTopicPrefix + clientId;
+    }
+
+    /* answers to delta sync requests, apart from the instant readings */
+    public static String getJsonSensorHistoryTopic(String clientId) {
+        return jsonSensorHistoryTopicPrefix + clientId;
+    }
+
 }
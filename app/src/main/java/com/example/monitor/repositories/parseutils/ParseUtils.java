@@ -9,13 +9,22 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TimeZone;
 
 /* JSON key strings specifically for accuweather JSON objects, or local sensors */
 public class ParseUtils {
     private static final String TAG = "ParseUtils: ";
 
+    /* quoted keys for scanning raw sensor payloads without building JSON objects */
+    private static final byte[] KEY_EPOCH_DATE_TIME = "\"EpochDateTime\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_TEMPERATURE = "\"Temperature\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_VALUE = "\"Value\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_RELATIVE_HUMIDITY = "\"RelativeHumidity\"".getBytes(StandardCharsets.US_ASCII);
+
     /* JSON parse for weather, may return one or more data points from accuweather API or sensor */
     public static List<Weather> parseWeatherJSON(String weatherSearchResults) {
         List<Weather> weatherArrayList = new ArrayList<Weather>();
@@ -111,6 +120,90 @@ public class ParseUtils {
         return null;
     }
 
+    /* allocation-free parse of a single sensor sample straight from the MQTT payload bytes, for
+     * the high-rate instant stream; expects the same keys as parseWeatherJSON. On success, fills
+     * sampleOut with {EpochDateTime (seconds), Temperature.Value, RelativeHumidity} */
+    public static boolean parseSensorSampleBytes(ByteBuffer payload, double[] sampleOut) {
+        if (payload == null || sampleOut == null || sampleOut.length < 3) {
+            return false;
+        }
+        int epochIndex = indexOfKey(payload, KEY_EPOCH_DATE_TIME, payload.position());
+        int temperatureIndex = indexOfKey(payload, KEY_TEMPERATURE, payload.position());
+        int humidityIndex = indexOfKey(payload, KEY_RELATIVE_HUMIDITY, payload.position());
+        if (epochIndex < 0 || temperatureIndex < 0 || humidityIndex < 0) {
+            return false;
+        }
+        int valueIndex = indexOfKey(payload, KEY_VALUE, temperatureIndex);
+        if (valueIndex < 0) {
+            return false;
+        }
+
+        sampleOut[0] = parseNumberAfterKey(payload, epochIndex);
+        sampleOut[1] = parseNumberAfterKey(payload, valueIndex);
+        sampleOut[2] = parseNumberAfterKey(payload, humidityIndex);
+        return !(Double.isNaN(sampleOut[0]) || Double.isNaN(sampleOut[1])
+                || Double.isNaN(sampleOut[2]));
+    }
+
+    /* returns the index right after the quoted key, or -1 if not found */
+    private static int indexOfKey(ByteBuffer buffer, byte[] key, int from) {
+        int limit = buffer.limit() - key.length;
+        for (int i = from; i <= limit; i++) {
+            int j = 0;
+            while (j < key.length && buffer.get(i + j) == key[j]) {
+                j++;
+            }
+            if (j == key.length) {
+                return i + key.length;
+            }
+        }
+        return -1;
+    }
+
+    /* parses a plain decimal number (optionally quoted) following "key": */
+    private static double parseNumberAfterKey(ByteBuffer buffer, int index) {
+        int limit = buffer.limit();
+        while (index < limit && (buffer.get(index) == ' ' || buffer.get(index) == ':'
+                || buffer.get(index) == '"')) {
+            index++;
+        }
+        boolean negative = false;
+        if (index < limit && buffer.get(index) == '-') {
+            negative = true;
+            index++;
+        }
+
+        double value = 0;
+        boolean hasDigits = false;
+        while (index < limit && buffer.get(index) >= '0' && buffer.get(index) <= '9') {
+            value = value * 10 + (buffer.get(index) - '0');
+            hasDigits = true;
+            index++;
+        }
+        if (index < limit && buffer.get(index) == '.') {
+            index++;
+            double scale = 0.1;
+            while (index < limit && buffer.get(index) >= '0' && buffer.get(index) <= '9') {
+                value += (buffer.get(index) - '0') * scale;
+                scale /= 10;
+                hasDigits = true;
+                index++;
+            }
+        }
+        if (!hasDigits) {
+            return Double.NaN;
+        }
+        return negative ? -value : value;
+    }
+
+    /* the Pi stamps its payloads with local wall-clock time written as epoch millis; the offset is
+     * the zone's at that wall-clock time, so daylight saving changes are followed. The second
+     * lookup settles the guess made with the raw offset around a transition */
+    public static long localMillisToUtc(long localMillis, TimeZone zone) {
+        long utc = localMillis - zone.getOffset(localMillis - zone.getRawOffset());
+        return localMillis - zone.getOffset(utc);
+    }
+
     public static long parseDeviceJsonTimestamp(String payload) {
         if (payload != null) {
             try {
@@ -0,0 +1,92 @@
+package com.example.monitor.viewmodels;
+
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.models.TimeSeriesSet;
+import com.example.monitor.models.Weather;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/* Memoizes prepared chart states by (parameter, location, day origin, range, point budget),
+ * together with the series sets they are cut from, for one version of the weather rows. Only a
+ * change of the rows drops them; switching parameter, range or location back and forth is a
+ * lookup. States of an earlier day are evicted as soon as one for a later day is stored. */
+public class ChartSeriesCache {
+    private final Map<String, ChartState> states = new HashMap<>();
+    private long rowsVersion = 0;
+    /* built from the rows of rowsVersion: the visible rows for 48h, all rows for longer ranges */
+    private TimeSeriesSet visibleSeriesSet;
+    private TimeSeriesSet allSeriesSet;
+
+    /* the rows changed; returns the new version */
+    public synchronized long onRowsChanged() {
+        rowsVersion++;
+        states.clear();
+        visibleSeriesSet = null;
+        allSeriesSet = null;
+        return rowsVersion;
+    }
+
+    public synchronized long getRowsVersion() {
+        return rowsVersion;
+    }
+
+    /* null if not prepared for the current rows yet */
+    public synchronized ChartState get(Integer parameter, String location, long dailyTimeOrigin,
+                                       Integer range, int pointBudget) {
+        return states.get(key(parameter, location, dailyTimeOrigin, range, pointBudget));
+    }
+
+    /* Runs in the background. The series are only fetched if no set was taken for this version
+     * yet: the visible ones as they are, e.g. from the window cache, and all rows to be built for
+     * the longer ranges. A state prepared from rows that have changed in the meantime is returned,
+     * but not cached. */
+    public ChartState prepare(long version, Callable<TimeSeriesSet> visibleSeries,
+                              Callable<List<Weather>> allRows, Integer parameter, String location,
+                              long dailyTimeOrigin, Integer range, int pointBudget)
+            throws Exception {
+        String key = key(parameter, location, dailyTimeOrigin, range, pointBudget);
+        boolean visibleOnly = MonitorEnums.CHART_RANGE_48H.equals(range);
+        TimeSeriesSet set = null;
+        synchronized (this) {
+            if (version == rowsVersion) {
+                ChartState cached = states.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+                set = visibleOnly ? visibleSeriesSet : allSeriesSet;
+            }
+        }
+        if (set == null) {
+            set = visibleOnly ? visibleSeries.call() : TimeSeriesSet.build(allRows.call(), false);
+        }
+        ChartState state = ChartState.prepare(set, parameter, location, dailyTimeOrigin, range,
+                pointBudget);
+
+        synchronized (this) {
+            if (version == rowsVersion) {
+                if (visibleOnly && visibleSeriesSet == null) {
+                    visibleSeriesSet = set;
+                } else if (!visibleOnly && allSeriesSet == null) {
+                    allSeriesSet = set;
+                }
+                Iterator<ChartState> iterator = states.values().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().getDailyTimeOrigin() < dailyTimeOrigin) {
+                        iterator.remove();
+                    }
+                }
+                states.put(key, state);
+            }
+        }
+        return state;
+    }
+
+    private static String key(Integer parameter, String location, long dailyTimeOrigin,
+                              Integer range, int pointBudget) {
+        return parameter + "|" + location + "|" + dailyTimeOrigin + "|" + range + "|" + pointBudget;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.monitor.viewmodels;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.models.TimeSeries;
+import com.example.monitor.models.TimeSeriesSet;
+import com.github.mikephil.charting.data.Entry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* Immutable, ready-to-bind series for the chart of one parameter at one location over one range
+ * (48h, 7 days or 30 days), taken from a TimeSeriesSet. Each series is downsampled to the point
+ * budget, so the number of points drawn doesn't grow with the range. Built off the main thread;
+ * the activity only reads it, e.g. when a switch toggles a series. */
+public class ChartState {
+    private final Integer parameter;
+    private final String location;
+    private final long dailyTimeOrigin;
+    private final Integer range;
+    private final long windowStart;
+    private final int windowHours;
+    private final List<Entry> twelveHourEntries;
+    private final List<Entry> hourlyEntries;
+    private final List<Entry> sensorEntries;
+
+    private ChartState(Integer parameter, String location, long dailyTimeOrigin, Integer range,
+                       long windowStart, int windowHours, List<Entry> twelveHourEntries,
+                       List<Entry> hourlyEntries, List<Entry> sensorEntries) {
+        this.parameter = parameter;
+        this.location = location;
+        this.dailyTimeOrigin = dailyTimeOrigin;
+        this.range = range;
+        this.windowStart = windowStart;
+        this.windowHours = windowHours;
+        this.twelveHourEntries = Collections.unmodifiableList(twelveHourEntries);
+        this.hourlyEntries = Collections.unmodifiableList(hourlyEntries);
+        this.sensorEntries = Collections.unmodifiableList(sensorEntries);
+    }
+
+    /* the days shown: yesterday and today for 48h, and so on; the window ends with today */
+    public static int getRangeDays(Integer range) {
+        if (MonitorEnums.CHART_RANGE_30D.equals(range)) {
+            return 30;
+        } else if (MonitorEnums.CHART_RANGE_7D.equals(range)) {
+            return 7;
+        }
+        return 2;
+    }
+
+    /* series from the shared set, for the location and parameter, with at most pointBudget
+     * points each; x is hours since the start of the window. The series are already sorted, as
+     * MPAndroidChart requires */
+    public static ChartState prepare(TimeSeriesSet seriesSet, Integer parameter, String location,
+                                     long dailyTimeOrigin, Integer range, int pointBudget) {
+        int days = getRangeDays(range);
+        long windowStart = dailyTimeOrigin - (long) (days - 1) * MonitorConstants.ONE_DAY;
+        long windowEnd = dailyTimeOrigin + MonitorConstants.ONE_DAY;
+        int budget = Math.max(3, pointBudget);
+        return new ChartState(parameter, location, dailyTimeOrigin, range, windowStart, days * 24,
+                toEntries(seriesSet.get(location, MonitorEnums.TWELVE_HOURS_DATA, parameter),
+                        windowStart, windowEnd, budget),
+                toEntries(seriesSet.get(location, MonitorEnums.SINGLE_HOUR_DATA, parameter),
+                        windowStart, windowEnd, budget),
+                toEntries(seriesSet.get(location, MonitorEnums.HOME_SENSOR, parameter),
+                        windowStart, windowEnd, budget));
+    }
+
+    private static List<Entry> toEntries(TimeSeries series, long windowStart, long windowEnd,
+                                         int budget) {
+        TimeSeries shown = series.downsample(windowStart, windowEnd, budget);
+        List<Entry> entries = new ArrayList<>(shown.size());
+        for (int i = 0; i < shown.size(); i++) {
+            float hour = (shown.getTime(i) - windowStart) / (float) MonitorConstants.ONE_HOUR;
+            entries.add(new Entry(hour, shown.getValue(i)));
+        }
+        return entries;
+    }
+
+    public Integer getParameter() {
+        return parameter;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public long getDailyTimeOrigin() {
+        return dailyTimeOrigin;
+    }
+
+    /* MonitorEnums.CHART_RANGE_48H, CHART_RANGE_7D or CHART_RANGE_30D */
+    public Integer getRange() {
+        return range;
+    }
+
+    /* x = 0 on the chart */
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    /* x-axis length */
+    public int getWindowHours() {
+        return windowHours;
+    }
+
+    public List<Entry> getTwelveHourEntries() {
+        return twelveHourEntries;
+    }
+
+    public List<Entry> getHourlyEntries() {
+        return hourlyEntries;
+    }
+
+    public List<Entry> getSensorEntries() {
+        return sensorEntries;
+    }
+}
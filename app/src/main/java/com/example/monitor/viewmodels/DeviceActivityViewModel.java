@@ -1,17 +1,27 @@
 package com.example.monitor.viewmodels;
 
 import android.util.Log;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.example.monitor.repositories.execmodel.DeviceLivenessTracker;
 import com.example.monitor.repositories.networkutils.MQTTConnection;
 import com.example.monitor.repositories.networkutils.TopicData;
 
+import java.util.Map;
+
 public class DeviceActivityViewModel extends ViewModel {
 //    private SavedStateHandle savedStateHandle;
     private static final String TAG = "DeviceActivityViewModel";
     private int LEDIntensity;
 
     public int getLEDIntensity() {return LEDIntensity;}
+
+    /* device index -> MonitorEnums device state, kept up to date from device heartbeats */
+    public LiveData<Map<Integer, Integer>> getDeviceStates() {
+        return DeviceLivenessTracker.getInstance().getDeviceStates();
+    }
+
     public void setLEDIntensity(int LEDIntensity) {
         this.LEDIntensity = LEDIntensity;
     }
@@ -1,6 +1,9 @@
 package com.example.monitor.viewmodels;
 
 import android.app.Application;
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
 import android.nfc.Tag;
 import android.util.Log;
 
@@ -8,25 +11,60 @@ import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+
+import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.backgroundutil.PoolStats;
+import com.example.monitor.backgroundutil.StartupOrchestrator;
+import com.example.monitor.databases.DatabaseAccess;
 import com.example.monitor.models.MonitorLocation;
+import com.example.monitor.models.SeriesGaps;
 import com.example.monitor.models.Weather;
 import com.example.monitor.repositories.WeatherRepository;
+import com.example.monitor.repositories.execmodel.DeviceLivenessTracker;
+import com.example.monitor.repositories.execmodel.RemoteDataFetchModel;
+import com.example.monitor.repositories.execmodel.SensorSampleBuffer;
+import com.example.monitor.repositories.exportutil.WeatherExportOptions;
+import com.example.monitor.repositories.importutil.ImportProgress;
+import com.example.monitor.repositories.importutil.SensorHistoryImporter;
 import com.example.monitor.repositories.networkutils.MQTTConnection;
 import com.example.monitor.repositories.networkutils.TopicData;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /* ViewModel for temperature data */
 public class MainActivityViewModel extends AndroidViewModel {
     private static final String TAG = "MainActivityViewModel";
 
+    /* cold-start steps and milestones */
+    private static final String STEP_WEATHER_DB = "openWeatherDb";
+    private static final String STEP_LOCATION_DB = "openLocationDb";
+    private static final String STEP_DEFAULT_LOCATION = "defaultLocation";
+    private static final String STEP_MQTT_CLIENT = "mqttClient";
+    private static final String STEP_MQTT_CONNECT = "mqttConnect";
+    private static final String STEP_SUBSCRIPTIONS = "mqttSubscriptions";
+    private static final String STEP_SCHEDULED_JOBS = "scheduledJobs";
+    private static final String MILESTONE_FIRST_CHART_FRAME = "firstChartFrame";
+
     /* observable data */
     private LiveData<List<Weather>> immutableWeatherDataEntries;
+    private LiveData<Long> weatherChanges;
     private LiveData<List<MonitorLocation>> locationData;
 
-    /* mqtt */
-    private MQTTConnection MQTTmodule;
+    /* startup work, timed per step; nothing in it runs on the main thread */
+    private final StartupOrchestrator startup = new StartupOrchestrator("coldStart",
+            ExecutorHelper.getStartupExecutorInstance());
 
     /* package instant sensor reading into LiveData, separate from any db updates */
     private MutableLiveData<String> instantSensorReading;
@@ -34,6 +72,43 @@ public class MainActivityViewModel extends AndroidViewModel {
     /* repository module with which the ViewModel communicates */
     private WeatherRepository weatherRepository;
 
+    /* chart-state store: the latest prepared series, rebuilt in the background whenever the
+     * weather table, the location or the selected parameter changes; the UI only reads it. The
+     * 48h series come from the repository's window cache, longer ranges from the whole table */
+    private final MutableLiveData<ChartState> chartState = new MutableLiveData<>();
+    private final ChartSeriesCache seriesCache = new ChartSeriesCache();
+    private final AtomicLong chartGeneration = new AtomicLong();
+    private volatile String selectedLocation;
+    private volatile Integer selectedParameter = MonitorEnums.TEMPERATURE;
+    private volatile Integer selectedRange = MonitorEnums.CHART_RANGE_48H;
+    private volatile int chartPointBudget = MonitorConstants.CHART_DEFAULT_POINT_BUDGET;
+
+    /* stored share of the sensor hours in the selected chart range */
+    private final MutableLiveData<SeriesGaps> sensorCompleteness = new MutableLiveData<>();
+
+    /* sensor history import; at most one runs at a time */
+    private final MutableLiveData<ImportProgress> importProgress = new MutableLiveData<>();
+    private SensorHistoryImporter runningImport;
+    private final Observer<Long> weatherObserver = new Observer<Long>() {
+        @Override
+        public void onChanged(Long version) {
+            seriesCache.onRowsChanged();
+            refreshChartState();
+            refreshSensorCompleteness();
+        }
+    };
+    private final Observer<List<MonitorLocation>> locationObserver =
+            new Observer<List<MonitorLocation>>() {
+        @Override
+        public void onChanged(List<MonitorLocation> monitorLocations) {
+            if (monitorLocations != null && !monitorLocations.isEmpty()) {
+                selectedLocation = monitorLocations.get(0).getLocalizedName();
+                refreshChartState();
+                refreshSensorCompleteness();
+            }
+        }
+    };
+
     /* application context needed in repository, to instantiate database  */
     public MainActivityViewModel(@NonNull Application application) {
         super(application);
@@ -42,12 +117,40 @@ public class MainActivityViewModel extends AndroidViewModel {
         /* set up connecting variables to the repository */
         /* LiveData flow: Database -> Repository -> ViewModel -> MainActivity  */
         immutableWeatherDataEntries = weatherRepository.getWeatherDataEntries();
+        weatherChanges = weatherRepository.getWeatherChanges();
         locationData = weatherRepository.getLocationData();
         instantSensorReading = weatherRepository.getInstantSensorReading();
+        weatherChanges.observeForever(weatherObserver);
+        locationData.observeForever(locationObserver);
 
-        /* initialize MQTT for the entire app */
-        MQTTmodule = MQTTConnection.getInstance(); // no need for the reference at this point
-        MQTTConnection.connectAsync();
+        /* the rest of startup, in dependency order: the databases open in parallel with MQTT
+         * client set-up; connecting doesn't wait for the databases, and the subscriptions are
+         * made whenever the connection comes up */
+        startup.addStep(STEP_WEATHER_DB, () -> {
+                    weatherRepository.openWeatherDatabase();
+                    return null;
+                })
+                .addStep(STEP_LOCATION_DB, () -> {
+                    weatherRepository.openLocationDatabase();
+                    return null;
+                })
+                .addStep(STEP_DEFAULT_LOCATION, () -> weatherRepository.writeDefaultLocation(),
+                        STEP_LOCATION_DB)
+                .addStep(STEP_MQTT_CLIENT, () -> {
+                    MQTTConnection.getInstance(); // initialize MQTT for the entire app
+                    return null;
+                })
+                .addStep(STEP_MQTT_CONNECT, MQTTConnection::connectInBackground, STEP_MQTT_CLIENT)
+                .addStep(STEP_SUBSCRIPTIONS, () -> {
+                    DeviceLivenessTracker.getInstance().start(); // heartbeats, once connected
+                    weatherRepository.startSensorStreams();
+                    return null;
+                }, STEP_MQTT_CLIENT, STEP_WEATHER_DB)
+                .addStep(STEP_SCHEDULED_JOBS, () -> {
+                    weatherRepository.startScheduledJobs(); // the jobs read the location table
+                    return null;
+                }, STEP_DEFAULT_LOCATION, STEP_SUBSCRIPTIONS)
+                .start();
     }
 
     /*** wrapper methods used in the MainActivity ***/
@@ -67,7 +170,224 @@ public class MainActivityViewModel extends AndroidViewModel {
 
     public LiveData<String> getInstantSensorReading() { return instantSensorReading; }
 
-    public List<Weather> getWeatherDataEntriesFromDb() {
-        return weatherRepository.getWeatherDataEntriesFromDb();
+    /* for the live chart; null until the sensor streams are started */
+    public SensorSampleBuffer getSensorSampleBuffer() {
+        return weatherRepository.getSensorSampleBuffer();
+    }
+
+    /*** sensor history import ***/
+    public LiveData<ImportProgress> getImportProgress() {
+        return importProgress;
+    }
+
+    public synchronized boolean isImportRunning() {
+        return runningImport != null;
+    }
+
+    /* Imports a file picked by the user into the home location's sensor rows, on the import
+     * executor, posting progress as it goes; completes with the final progress. Fails at once if
+     * an import is running already, or the location isn't loaded yet. */
+    public synchronized CompletableFuture<ImportProgress> importSensorHistory(Uri source) {
+        if (runningImport != null || selectedLocation == null) {
+            CompletableFuture<ImportProgress> refused = new CompletableFuture<>();
+            refused.completeExceptionally(new IllegalStateException(runningImport != null
+                    ? "an import is running already" : "location not loaded yet"));
+            return refused;
+        }
+        final SensorHistoryImporter importer =
+                weatherRepository.newSensorHistoryImporter(selectedLocation);
+        final ContentResolver contentResolver = getApplication().getContentResolver();
+        runningImport = importer;
+        return ExecutorHelper.supplyAsync(() -> {
+            AssetFileDescriptor descriptor = contentResolver.openAssetFileDescriptor(source, "r");
+            if (descriptor == null) {
+                throw new FileNotFoundException("cannot read " + source);
+            }
+            /* the stream closes the descriptor */
+            return importer.run(descriptor.createInputStream(), descriptor.getLength(),
+                    importProgress::postValue);
+        }, ExecutorHelper.getImportExecutorInstance()).whenComplete((progress, throwable) -> {
+            synchronized (MainActivityViewModel.this) {
+                runningImport = null;
+            }
+        });
+    }
+
+    public synchronized void cancelImport() {
+        if (runningImport != null) {
+            runningImport.cancel();
+        }
+    }
+
+    /*** weather history export ***/
+    /* the selected location over the selected chart range, up to the last forecast */
+    public WeatherExportOptions getExportOptions(Integer format, boolean gzip) {
+        long fromMillis = getStartOfDayMillis()
+                - (long) (ChartState.getRangeDays(selectedRange) - 1) * MonitorConstants.ONE_DAY;
+        return new WeatherExportOptions(format, gzip, fromMillis, null, selectedLocation, null);
+    }
+
+    /* streams the rows to a document picked by the user, on the reader pool behind interactive
+     * reads; completes with the number of rows written */
+    public CompletableFuture<Long> exportWeather(WeatherExportOptions options, Uri destination) {
+        final ContentResolver contentResolver = getApplication().getContentResolver();
+        return DatabaseAccess.read(() -> {
+            OutputStream out = contentResolver.openOutputStream(destination);
+            if (out == null) {
+                throw new FileNotFoundException("cannot write to " + destination);
+            }
+            return weatherRepository.exportWeather(options, out);
+        }, MonitorEnums.DB_PRIORITY_MAINTENANCE);
+    }
+
+    /* streams the rows to a file in the cache directory, to be shared through the FileProvider;
+     * completes with the file, which the next export of the same format replaces */
+    public CompletableFuture<File> exportWeatherForSharing(WeatherExportOptions options) {
+        final File directory = new File(getApplication().getCacheDir(),
+                MonitorConstants.EXPORT_DIRECTORY);
+        return DatabaseAccess.read(() -> {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("cannot create " + directory);
+            }
+            File file = new File(directory, options.getFileName());
+            weatherRepository.exportWeather(options, new FileOutputStream(file));
+            return file;
+        }, MonitorEnums.DB_PRIORITY_MAINTENANCE);
+    }
+
+    public LiveData<ChartState> getChartState() {
+        return chartState;
+    }
+
+    /* e.g. from the parameter dropdown; a state prepared before for the same rows is set at once,
+     * otherwise the new series are posted once prepared */
+    public void selectChartParameter(Integer parameter) {
+        selectedParameter = parameter;
+        refreshChartState();
+    }
+
+    /* MonitorEnums.CHART_RANGE_48H, CHART_RANGE_7D or CHART_RANGE_30D */
+    public void selectChartRange(Integer range) {
+        selectedRange = range;
+        refreshChartState();
+        refreshSensorCompleteness();
+    }
+
+    public LiveData<SeriesGaps> getSensorCompleteness() {
+        return sensorCompleteness;
+    }
+
+    /* the chart's width in pixels sets how many points each series is downsampled to */
+    public void setChartWidth(int widthPixels) {
+        int budget = Math.max(3, widthPixels / MonitorConstants.CHART_PIXELS_PER_POINT);
+        if (widthPixels > 0 && budget != chartPointBudget) {
+            chartPointBudget = budget;
+            refreshChartState();
+        }
+    }
+
+    /* Called on the main thread. A cached state for the current rows, location, parameter and day
+     * is set right away. Otherwise the series are prepared on the reader pool, ahead of queued
+     * ingest and maintenance reads; the 48h range from the window cache, which is only read from
+     * Room until it is loaded. A preparation overtaken by a newer request is not posted. */
+    private void refreshChartState() {
+        final long generation = chartGeneration.incrementAndGet();
+        final Integer parameter = selectedParameter;
+        final String location = selectedLocation;
+        final long dailyTimeOrigin = getStartOfDayMillis();
+        final Integer range = selectedRange;
+        final int pointBudget = chartPointBudget;
+
+        ChartState cached = seriesCache.get(parameter, location, dailyTimeOrigin, range,
+                pointBudget);
+        if (cached != null) {
+            chartState.setValue(cached);
+            return;
+        }
+        final long rowsVersion = seriesCache.getRowsVersion();
+        DatabaseAccess.read(() -> seriesCache.prepare(rowsVersion,
+                weatherRepository::getVisibleSeries,
+                weatherRepository::getWeatherDataEntriesNonLive,
+                parameter, location, dailyTimeOrigin, range, pointBudget),
+                MonitorEnums.DB_PRIORITY_INTERACTIVE)
+                .whenComplete((state, throwable) -> {
+                    if (throwable != null) {
+                        Log.d(TAG, "refreshChartState: series not prepared: " + throwable);
+                    } else if (generation == chartGeneration.get()) {
+                        chartState.postValue(state);
+                    }
+                });
+    }
+
+    /* The hours of the chart window up to the current one, and within the storage duration, as
+     * older rows are deleted anyway. One indexed query on the reader pool; nothing is posted for
+     * a window no longer selected. */
+    private void refreshSensorCompleteness() {
+        final String location = selectedLocation;
+        final Integer range = selectedRange;
+        if (location == null) {
+            return;
+        }
+        long now = RemoteDataFetchModel.getClock().currentTimeMillis();
+        long toMillis = now - now % MonitorConstants.ONE_HOUR;
+        long expiryCutoff = now - MonitorConstants.STORAGE_DURATION * 1000L;
+        long fromMillis = Math.max(getStartOfDayMillis()
+                        - (ChartState.getRangeDays(range) - 1) * (long) MonitorConstants.ONE_DAY,
+                expiryCutoff - expiryCutoff % MonitorConstants.ONE_HOUR + MonitorConstants.ONE_HOUR);
+        DatabaseAccess.read(() -> weatherRepository.getSeriesGaps(location,
+                        MonitorEnums.HOME_SENSOR, fromMillis, toMillis),
+                MonitorEnums.DB_PRIORITY_INTERACTIVE)
+                .whenComplete((gaps, throwable) -> {
+                    if (throwable != null) {
+                        Log.d(TAG, "refreshSensorCompleteness: " + throwable);
+                    } else if (range.equals(selectedRange) && location.equals(selectedLocation)) {
+                        sensorCompleteness.postValue(gaps);
+                    }
+                });
+    }
+
+    private static long getStartOfDayMillis() {
+        Calendar today = Calendar.getInstance();
+        today.setTimeInMillis(RemoteDataFetchModel.getClock().currentTimeMillis());
+        today.set(Calendar.MILLISECOND, 0);
+        today.set(Calendar.SECOND, 0);
+        today.set(Calendar.MINUTE, 0);
+        today.set(Calendar.HOUR_OF_DAY, 0);
+        return today.getTimeInMillis();
+    }
+
+    /* called by the activity after each chart bind; only the first one is recorded */
+    public void onChartFrameDrawn() {
+        if (startup.mark(MILESTONE_FIRST_CHART_FRAME)) {
+            Log.d(TAG, "time to first chart frame: "
+                    + startup.getMilestoneMillis(MILESTONE_FIRST_CHART_FRAME) + " ms");
+        }
+    }
+
+    /* per-step startup timings, in ms since this ViewModel was created */
+    public String getStartupReport() {
+        return startup.getReport();
+    }
+
+    /* queue depth, wait/run times and rejections of every background pool */
+    public List<PoolStats> getExecutorStats() {
+        return ExecutorHelper.getPoolStats();
+    }
+
+    public String getExecutorDiagnosticsReport() {
+        return ExecutorHelper.getDiagnosticsReport();
+    }
+
+    /* rows held and hit ratio of the in-memory window of the weather table */
+    public String getWindowCacheReport() {
+        return weatherRepository.getWindowCacheReport();
+    }
+
+    @Override
+    protected void onCleared() {
+        weatherChanges.removeObserver(weatherObserver);
+        weatherRepository.release();
+        locationData.removeObserver(locationObserver);
+        super.onCleared();
     }
 }
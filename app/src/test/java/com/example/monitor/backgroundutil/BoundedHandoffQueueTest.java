@@ -0,0 +1,148 @@
+package com.example.monitor.backgroundutil;
+
+import com.example.monitor.MonitorEnums;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/* the ring's full policies and metrics; the consumer is started only once the ring is set up */
+public class BoundedHandoffQueueTest {
+
+    private static final long WAIT_MILLIS = 5000;
+
+    private final List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+    private final BoundedHandoffQueue.Handler<Integer> record = handled::add;
+    private final List<Thread> threads = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewestAndCountsTheDrops() throws Exception {
+        BoundedHandoffQueue<Integer> queue = new BoundedHandoffQueue<>("test", 3,
+                MonitorEnums.QUEUE_DROP_OLDEST);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(queue.offer(i, record));
+        }
+        assertEquals(3, queue.getDepth());
+        assertEquals(3, queue.getMaxDepth());
+        assertEquals(5, queue.getEnqueued());
+        assertEquals(2, queue.getDropped());
+
+        startConsumer(queue);
+        awaitProcessed(queue, 3);
+        assertEquals(Arrays.asList(3, 4, 5), handled);
+        assertEquals(0, queue.getDepth());
+    }
+
+    /* after drops the head is mid-ring; items still come out in offer order across the end */
+    @Test
+    public void ringWrapsAroundInOrder() throws Exception {
+        BoundedHandoffQueue<Integer> queue = new BoundedHandoffQueue<>("test", 3,
+                MonitorEnums.QUEUE_DROP_OLDEST);
+        for (int i = 1; i <= 7; i++) {
+            queue.offer(i, record);
+        }
+        startConsumer(queue);
+        awaitProcessed(queue, 3);
+        for (int i = 8; i <= 12; i++) {
+            queue.offer(i, record);
+            awaitProcessed(queue, i - 4);
+        }
+        assertEquals(Arrays.asList(5, 6, 7, 8, 9, 10, 11, 12), handled);
+        assertEquals(4, queue.getDropped());
+    }
+
+    @Test
+    public void blockWaitsUntilTheConsumerDrains() throws Exception {
+        BoundedHandoffQueue<Integer> queue = new BoundedHandoffQueue<>("test", 2,
+                MonitorEnums.QUEUE_BLOCK);
+        queue.offer(1, record);
+        queue.offer(2, record);
+
+        CountDownLatch offered = new CountDownLatch(1);
+        AtomicBoolean accepted = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            accepted.set(queue.offer(3, record));
+            offered.countDown();
+        }, "test-producer");
+        threads.add(producer);
+        producer.start();
+
+        assertFalse("offer returned on a full ring", offered.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, queue.getDepth());
+
+        startConsumer(queue);
+        assertTrue(offered.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(accepted.get());
+        awaitProcessed(queue, 3);
+        assertEquals(Arrays.asList(1, 2, 3), handled);
+        assertEquals(0, queue.getDropped());
+        assertEquals(2, queue.getMaxDepth());
+    }
+
+    /* a producer interrupted while blocked gives up; the item counts as dropped */
+    @Test
+    public void interruptedBlockedOfferIsDropped() throws Exception {
+        BoundedHandoffQueue<Integer> queue = new BoundedHandoffQueue<>("test", 1,
+                MonitorEnums.QUEUE_BLOCK);
+        queue.offer(1, record);
+
+        AtomicBoolean accepted = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> accepted.set(queue.offer(2, record)), "test-producer");
+        producer.start();
+        Thread.sleep(100);
+        producer.interrupt();
+        producer.join(WAIT_MILLIS);
+
+        assertFalse(accepted.get());
+        assertEquals(1, queue.getDropped());
+        assertEquals(1, queue.getDepth());
+    }
+
+    @Test
+    public void aFailingHandlerIsCountedAndTheConsumerGoesOn() throws Exception {
+        BoundedHandoffQueue<Integer> queue = new BoundedHandoffQueue<>("test", 4,
+                MonitorEnums.QUEUE_DROP_OLDEST);
+        queue.offer(1, item -> {
+            throw new IllegalStateException("bad payload");
+        });
+        queue.offer(2, record);
+        startConsumer(queue);
+        awaitProcessed(queue, 2);
+        assertEquals(1, queue.getFailed());
+        assertEquals(Collections.singletonList(2), handled);
+    }
+
+    private void startConsumer(BoundedHandoffQueue<Integer> queue) {
+        Thread consumer = new Thread(queue::runConsumer, "test-consumer");
+        threads.add(consumer);
+        consumer.start();
+    }
+
+    private static void awaitProcessed(BoundedHandoffQueue<?> queue, long processed)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + WAIT_MILLIS;
+        while (queue.getProcessed() < processed) {
+            assertTrue("processed " + queue.getProcessed() + " of " + processed,
+                    System.currentTimeMillis() < end);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.monitor.backgroundutil;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/* ticks of 10 ms on a ring of 8 buckets, starting at 1000 ms; a revolution is 80 ms */
+public class HashedTimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final int SIZE = 8;
+    private static final long START = 1000;
+
+    private final HashedTimingWheel wheel = new HashedTimingWheel(TICK, SIZE, START);
+    private final List<HashedTimingWheel.Timeout> expired = new ArrayList<>();
+    private final HashedTimingWheel.ExpiryHandler handler = expired::add;
+
+    /* a deadline between ticks rounds up; one a revolution later shares the bucket but waits */
+    @Test
+    public void deadlinesHashToTheirTickAndRound() {
+        HashedTimingWheel.Timeout first = new HashedTimingWheel.Timeout();
+        HashedTimingWheel.Timeout nextRound = new HashedTimingWheel.Timeout();
+        wheel.schedule(first, START + 25);                  // tick 3
+        wheel.schedule(nextRound, START + (3 + SIZE) * TICK); // tick 11, the same bucket
+        assertEquals(2, wheel.getScheduledCount());
+
+        wheel.advanceTo(START + 29, handler);
+        assertTrue(expired.isEmpty());
+
+        wheel.advanceTo(START + 30, handler);
+        assertEquals(1, expired.size());
+        assertSame(first, expired.get(0));
+        assertFalse(first.isScheduled());
+        assertTrue(nextRound.isScheduled());
+
+        wheel.advanceTo(START + 109, handler);
+        assertEquals(1, expired.size());
+        wheel.advanceTo(START + 110, handler);
+        assertEquals(2, expired.size());
+        assertSame(nextRound, expired.get(1));
+        assertEquals(0, wheel.getScheduledCount());
+    }
+
+    @Test
+    public void deadlineOnATickExpiresOnThatTick() {
+        HashedTimingWheel.Timeout timeout = new HashedTimingWheel.Timeout();
+        wheel.schedule(timeout, START + 3 * TICK);
+
+        wheel.advanceTo(START + 3 * TICK - 1, handler);
+        assertTrue(expired.isEmpty());
+        wheel.advanceTo(START + 3 * TICK, handler);
+        assertEquals(1, expired.size());
+
+        /* a deadline already passed expires on the next tick processed */
+        wheel.schedule(timeout, START);
+        wheel.advanceTo(START + 4 * TICK, handler);
+        assertEquals(2, expired.size());
+    }
+
+    /* a repeat heartbeat moves the one entry; it neither expires early nor twice */
+    @Test
+    public void reschedulingMovesTheDeadline() {
+        HashedTimingWheel.Timeout heartbeat = new HashedTimingWheel.Timeout();
+        wheel.schedule(heartbeat, START + 50);
+        wheel.advanceTo(START + 40, handler);
+        wheel.schedule(heartbeat, START + 100);
+        assertEquals(1, wheel.getScheduledCount());
+
+        wheel.advanceTo(START + 99, handler);
+        assertTrue(expired.isEmpty());
+        wheel.advanceTo(START + 200, handler);
+        assertEquals(1, expired.size());
+
+        /* cancelled, it never expires */
+        wheel.schedule(heartbeat, START + 250);
+        wheel.cancel(heartbeat);
+        wheel.cancel(heartbeat);
+        assertEquals(0, wheel.getScheduledCount());
+        wheel.advanceTo(START + 400, handler);
+        assertEquals(1, expired.size());
+    }
+
+    /* three revolutions pass the bucket before the deadline comes round, stepwise or at once */
+    @Test
+    public void expiresAfterFullRevolutions() {
+        long deadline = START + 3 * SIZE * TICK + 5; // tick 25
+        HashedTimingWheel.Timeout stepwise = new HashedTimingWheel.Timeout();
+        wheel.schedule(stepwise, deadline);
+        for (long time = START; time < START + 25 * TICK; time += TICK) {
+            wheel.advanceTo(time, handler);
+            assertTrue("expired at " + time, expired.isEmpty());
+        }
+        wheel.advanceTo(START + 25 * TICK, handler);
+        assertEquals(1, expired.size());
+
+        HashedTimingWheel atOnce = new HashedTimingWheel(TICK, SIZE, START);
+        HashedTimingWheel.Timeout timeout = new HashedTimingWheel.Timeout();
+        atOnce.schedule(timeout, deadline);
+        atOnce.advanceTo(START + 10 * SIZE * TICK, handler);
+        assertEquals(2, expired.size());
+        assertSame(timeout, expired.get(1));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.monitor.backgroundutil;
+
+import com.example.monitor.MonitorEnums;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/* queue order on the single writer thread: priority class first, then submission order. The
+ * thread is held by a first task while the others queue up, so they all compete at once */
+public class PriorityDatabaseExecutorTest {
+
+    private PriorityDatabaseExecutor executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch holding = new CountDownLatch(1);
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws Exception {
+        executor = new PriorityDatabaseExecutor("test-writer", 1);
+        executor.execute(() -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, MonitorEnums.DB_PRIORITY_INTERACTIVE);
+        holding.await(5, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void interactiveGoesAheadOfQueuedIngestAndMaintenance() throws Exception {
+        executor.execute(record("maintenance 1"), MonitorEnums.DB_PRIORITY_MAINTENANCE);
+        executor.execute(record("ingest 1"), MonitorEnums.DB_PRIORITY_INGEST);
+        executor.execute(record("maintenance 2"), MonitorEnums.DB_PRIORITY_MAINTENANCE);
+        executor.execute(record("interactive 1"), MonitorEnums.DB_PRIORITY_INTERACTIVE);
+        /* plain execute and CompletableFuture stages count as ingest */
+        executor.execute(record("ingest 2"));
+        Future<String> read = executor.submit(() -> {
+            order.add("interactive 2");
+            return "read";
+        }, MonitorEnums.DB_PRIORITY_INTERACTIVE);
+
+        release.countDown();
+        assertEquals("read", read.get(5, TimeUnit.SECONDS));
+        drain();
+        assertEquals(Arrays.asList("interactive 1", "interactive 2", "ingest 1", "ingest 2",
+                "maintenance 1", "maintenance 2"), order);
+    }
+
+    @Test
+    public void equalPrioritiesKeepSubmissionOrder() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            executor.execute(record("ingest " + i), MonitorEnums.DB_PRIORITY_INGEST);
+        }
+        CompletableFuture.runAsync(record("stage"), executor.withPriority(
+                MonitorEnums.DB_PRIORITY_INGEST));
+
+        release.countDown();
+        drain();
+        assertEquals(51, order.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("ingest " + i, order.get(i));
+        }
+        assertEquals("stage", order.get(50));
+    }
+
+    private Runnable record(String name) {
+        return () -> order.add(name);
+    }
+
+    /* one class below maintenance, so it runs after everything already queued */
+    private void drain() throws Exception {
+        executor.submit(() -> null, MonitorEnums.DB_PRIORITY_MAINTENANCE + 1)
+                .get(5, TimeUnit.SECONDS);
+    }
+}
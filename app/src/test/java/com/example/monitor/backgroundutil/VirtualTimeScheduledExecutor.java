@@ -0,0 +1,212 @@
+package com.example.monitor.backgroundutil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/* ScheduledExecutorService on a virtual timeline, which is also the clock. Nothing runs until the
+ * test advances time; tasks then run on the advancing thread in time order, with the clock set
+ * to each task's due time, so a week of hourly schedules passes in milliseconds. Tasks may be
+ * scheduled from other threads. */
+public class VirtualTimeScheduledExecutor extends AbstractExecutorService
+        implements ScheduledExecutorService, MonitorClock {
+
+    private final PriorityQueue<VirtualTask<?>> queue = new PriorityQueue<>();
+    private long now;
+    private long nextSequence = 0;
+    private long tasksRun = 0;
+    private boolean shutdown = false;
+
+    public VirtualTimeScheduledExecutor(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    /* runs everything due up to the target time, including tasks scheduled along the way */
+    public void advanceTo(long targetMillis) {
+        while (true) {
+            VirtualTask<?> task;
+            synchronized (this) {
+                task = queue.peek();
+                if (task == null || task.time > targetMillis) {
+                    now = Math.max(now, targetMillis);
+                    return;
+                }
+                queue.poll();
+                if (task.isCancelled()) {
+                    continue;
+                }
+                now = Math.max(now, task.time);
+                tasksRun++;
+            }
+            task.run();
+        }
+    }
+
+    public void advanceBy(long millis) {
+        advanceTo(currentTimeMillis() + millis);
+    }
+
+    public synchronized int getPendingCount() {
+        int pending = 0;
+        for (VirtualTask<?> task : queue) {
+            if (!task.isCancelled()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /* due time of the earliest pending task; Long.MAX_VALUE if there is none */
+    public synchronized long getNextTaskTime() {
+        long next = Long.MAX_VALUE;
+        for (VirtualTask<?> task : queue) {
+            if (!task.isCancelled()) {
+                next = Math.min(next, task.time);
+            }
+        }
+        return next;
+    }
+
+    public synchronized long getTasksRun() {
+        return tasksRun;
+    }
+
+    private synchronized <V> VirtualTask<V> enqueue(VirtualTask<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("shut down");
+        }
+        queue.add(task);
+        return task;
+    }
+
+    private synchronized void requeue(VirtualTask<?> task) {
+        if (!shutdown && !task.isCancelled()) {
+            queue.add(task);
+        }
+    }
+
+    private synchronized long nextSequence() {
+        return nextSequence++;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return enqueue(new VirtualTask<Void>(Executors.callable(command, (Void) null),
+                dueTime(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new VirtualTask<V>(callable, dueTime(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay,
+                                                  long period, TimeUnit unit) {
+        return enqueue(new VirtualTask<Void>(Executors.callable(command, (Void) null),
+                dueTime(initialDelay, unit), unit.toMillis(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay,
+                                                     long delay, TimeUnit unit) {
+        return enqueue(new VirtualTask<Void>(Executors.callable(command, (Void) null),
+                dueTime(initialDelay, unit), -unit.toMillis(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private long dueTime(long delay, TimeUnit unit) {
+        return currentTimeMillis() + Math.max(0, unit.toMillis(delay));
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<Runnable>(queue);
+        queue.clear();
+        return pending;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && queue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+
+    /* period 0: one-shot; positive: fixed rate; negative: fixed delay */
+    private class VirtualTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        private final long sequence = nextSequence();
+        private final long period;
+        private long time;
+
+        VirtualTask(Callable<V> callable, long time, long period) {
+            super(callable);
+            this.time = time;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset()) {
+                time = period > 0 ? time + period : currentTimeMillis() - period;
+                requeue(this);
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof VirtualTask) {
+                VirtualTask<?> task = (VirtualTask<?>) other;
+                int byTime = Long.compare(time, task.time);
+                return byTime != 0 ? byTime : Long.compare(sequence, task.sequence);
+            }
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS),
+                    other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.monitor.databases;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.monitor.models.MonitorLocation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* list-backed LocationDao for JVM tests; newest first, like the table's queries */
+public class InMemoryLocationDao implements LocationDao {
+    private final List<MonitorLocation> rows = new ArrayList<>();
+    private int nextId = 1;
+
+    @Override
+    public synchronized void insert(MonitorLocation monitorLocation) {
+        if (monitorLocation.getId() == 0) {
+            monitorLocation.setId(nextId++);
+        }
+        rows.add(0, monitorLocation);
+    }
+
+    @Override
+    public synchronized void update(MonitorLocation monitorLocation) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getId() == monitorLocation.getId()) {
+                rows.set(i, monitorLocation);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void delete(MonitorLocation monitorLocation) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getId() == monitorLocation.getId()) {
+                rows.remove(i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public LiveData<List<MonitorLocation>> getLocationTable() {
+        return null;
+    }
+
+    @Override
+    public synchronized void deleteLocationTable() {
+        rows.clear();
+    }
+
+    @Override
+    public synchronized void insertLocationList(List<MonitorLocation> monitorLocationList) {
+        for (MonitorLocation monitorLocation : monitorLocationList) {
+            insert(monitorLocation);
+        }
+    }
+
+    @Override
+    public synchronized List<MonitorLocation> getLocationTableNonLive() {
+        return new ArrayList<>(rows);
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.monitor.databases;
+
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.models.DayHourBitmap;
+import com.example.monitor.models.Weather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* list-backed WeatherDao for JVM tests; ids are assigned on insert like Room's autoGenerate */
+public class InMemoryWeatherDao implements WeatherDao {
+    private final List<Weather> rows = new ArrayList<>();
+    private int nextId = 1;
+    private int listInserts = 0;
+
+    @Override
+    public synchronized long insert(Weather weatherDataPoint) {
+        if (weatherDataPoint.getId() == 0) {
+            weatherDataPoint.setId(nextId++);
+        }
+        rows.add(weatherDataPoint);
+        return weatherDataPoint.getId();
+    }
+
+    @Override
+    public synchronized void update(Weather weatherDataPoint) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getId() == weatherDataPoint.getId()) {
+                rows.set(i, weatherDataPoint);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void delete(Weather weatherDataPoint) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getId() == weatherDataPoint.getId()) {
+                rows.remove(i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void deleteAllWeatherPoints() {
+        rows.clear();
+    }
+
+    @Override
+    public LiveData<List<Weather>> getAllWeatherPoints() {
+        return null;
+    }
+
+    @Override
+    public synchronized List<Weather> getAllWeatherPointsNonLive() {
+        List<Weather> descending = new ArrayList<>(rows);
+        Collections.reverse(descending);
+        return descending;
+    }
+
+    @Override
+    public synchronized List<Long> insertWeatherList(List<Weather> weatherList) {
+        listInserts++;
+        List<Long> ids = new ArrayList<>();
+        for (Weather weather : weatherList) {
+            ids.add(insert(weather));
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized List<Weather> getWeatherPointsAfter(long fromMillis) {
+        List<Weather> after = new ArrayList<>();
+        for (Weather weather : rows) {
+            if (weather.getTimeInMillis() > fromMillis) {
+                after.add(weather);
+            }
+        }
+        after.sort((a, b) -> a.getTimeInMillis() != b.getTimeInMillis()
+                ? Long.compare(a.getTimeInMillis(), b.getTimeInMillis())
+                : Integer.compare(a.getId(), b.getId()));
+        return after;
+    }
+
+    @Override
+    public synchronized int getMinWeatherId() {
+        int min = 0;
+        for (Weather weather : rows) {
+            min = min == 0 ? weather.getId() : Math.min(min, weather.getId());
+        }
+        return min;
+    }
+
+    @Override
+    public synchronized int getMaxWeatherId() {
+        int max = 0;
+        for (Weather weather : rows) {
+            max = Math.max(max, weather.getId());
+        }
+        return max;
+    }
+
+    @Override
+    public synchronized int updateAgeCategoriesInRange(int fromId, int toId, long visibleCutoff,
+                                                       long storedCutoff, int underVisible,
+                                                       int underStored, int overStored) {
+        int updated = 0;
+        for (Weather weather : rows) {
+            if (weather.getId() >= fromId && weather.getId() < toId) {
+                long time = weather.getTimeInMillis();
+                weather.setPersistence(time > visibleCutoff ? underVisible
+                        : time > storedCutoff ? underStored : overStored);
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public synchronized int deleteWeatherPointsInRange(int fromId, int toId, int persistence) {
+        int before = rows.size();
+        rows.removeIf(weather -> weather.getId() >= fromId && weather.getId() < toId
+                && Integer.valueOf(persistence).equals(weather.getPersistence()));
+        return before - rows.size();
+    }
+
+    @Override
+    public synchronized List<Long> getTimesInRange(String location, int category, long fromMillis,
+                                                   long toMillis) {
+        List<Long> times = new ArrayList<>();
+        for (Weather weather : rows) {
+            if (location.equals(weather.getLocation())
+                    && Integer.valueOf(category).equals(weather.getCategory())
+                    && weather.getTimeInMillis() >= fromMillis
+                    && weather.getTimeInMillis() < toMillis) {
+                times.add(weather.getTimeInMillis());
+            }
+        }
+        return times;
+    }
+
+    @Override
+    public synchronized List<DayHourBitmap> getHourBitmaps(String location, int category,
+                                                         long fromMillis, long toMillis) {
+        TreeMap<Long, Integer> hoursByDay = new TreeMap<>();
+        for (Long time : getTimesInRange(location, category, fromMillis, toMillis)) {
+            long day = time / MonitorConstants.ONE_DAY;
+            int bit = 1 << (int) ((time % MonitorConstants.ONE_DAY) / MonitorConstants.ONE_HOUR);
+            Integer hours = hoursByDay.get(day);
+            hoursByDay.put(day, hours == null ? bit : hours | bit);
+        }
+        List<DayHourBitmap> bitmaps = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : hoursByDay.entrySet()) {
+            bitmaps.add(new DayHourBitmap(entry.getKey(), entry.getValue()));
+        }
+        return bitmaps;
+    }
+
+    @Override
+    public Cursor getWeatherCursor(SupportSQLiteQuery query) {
+        throw new UnsupportedOperationException("no SQL on the in-memory dao");
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    /* insertWeatherList calls, each a transaction in Room */
+    public synchronized int getListInserts() {
+        return listInserts;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.monitor.models;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/* bucket bounds at the edges of the threshold, and the peaks LTTB is there to keep */
+public class LttbDownsamplerTest {
+
+    private static final long STEP = 60000L;
+
+    /* every size and threshold up to 200 points: at most threshold points, the ends kept, and
+     * the rest picked from the input in order */
+    @Test
+    public void outputFitsTheThresholdAndKeepsTheEnds() {
+        for (int length = 1; length <= 200; length++) {
+            long[] times = times(length);
+            float[] values = wave(length);
+            for (int threshold = 3; threshold <= length + 1; threshold++) {
+                int capacity = Math.min(length, threshold);
+                long[] outTimes = new long[capacity];
+                float[] outValues = new float[capacity];
+                int count = LttbDownsampler.downsample(times, values, 0, length, threshold,
+                        outTimes, outValues);
+
+                String at = length + " points to " + threshold;
+                assertEquals(at, capacity, count);
+                assertEquals(at, times[0], outTimes[0]);
+                assertEquals(at, times[length - 1], outTimes[count - 1]);
+                for (int i = 0; i < count; i++) {
+                    int index = (int) (outTimes[i] / STEP);
+                    assertEquals(at, values[index], outValues[i], 0);
+                    assertTrue(at, i == 0 || outTimes[i] > outTimes[i - 1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rangeThatFitsIsCopiedAsIs() {
+        long[] times = times(5);
+        float[] values = wave(5);
+        long[] outTimes = new long[5];
+        float[] outValues = new float[5];
+        assertEquals(5, LttbDownsampler.downsample(times, values, 0, 5, 5, outTimes, outValues));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(times[i], outTimes[i]);
+            assertEquals(values[i], outValues[i], 0);
+        }
+    }
+
+    /* with one bucket, the point kept between the ends is the spike */
+    @Test
+    public void thresholdOfThreeKeepsTheSpike() {
+        float[] values = new float[50];
+        values[31] = 40f;
+        long[] outTimes = new long[3];
+        float[] outValues = new float[3];
+        assertEquals(3, LttbDownsampler.downsample(times(50), values, 0, 50, 3, outTimes,
+                outValues));
+        assertEquals(31 * STEP, outTimes[1]);
+        assertEquals(40f, outValues[1], 0);
+    }
+
+    /* a single spike survives anywhere between the ends, including the last point before the
+     * end, which rounding used to leave out of every bucket (17 points to 13) */
+    @Test
+    public void aSingleSpikeSurvivesWherever() {
+        int[][] cases = {{17, 13}, {100, 10}, {1000, 50}, {1000, 999}, {203, 7}};
+        for (int[] sizes : cases) {
+            int length = sizes[0];
+            int threshold = sizes[1];
+            for (int spike = 1; spike < length - 1; spike++) {
+                float[] values = new float[length];
+                values[spike] = spike % 2 == 0 ? 25f : -25f;
+                long[] outTimes = new long[threshold];
+                float[] outValues = new float[threshold];
+                int count = LttbDownsampler.downsample(times(length), values, 0, length,
+                        threshold, outTimes, outValues);
+                boolean kept = false;
+                for (int i = 0; i < count; i++) {
+                    kept |= outTimes[i] == spike * STEP;
+                }
+                assertTrue("spike at " + spike + " of " + length + " to " + threshold, kept);
+            }
+        }
+    }
+
+    @Test
+    public void onlyTheGivenRangeIsRead() {
+        float[] values = new float[30];
+        values[2] = 99f;  // before the range
+        values[15] = 50f;
+        values[27] = 99f; // after it
+        long[] outTimes = new long[3];
+        float[] outValues = new float[3];
+        assertEquals(3, LttbDownsampler.downsample(times(30), values, 10, 20, 3, outTimes,
+                outValues));
+        assertEquals(10 * STEP, outTimes[0]);
+        assertEquals(15 * STEP, outTimes[1]);
+        assertEquals(19 * STEP, outTimes[2]);
+    }
+
+    @Test
+    public void thresholdBelowThreeIsRefused() {
+        try {
+            LttbDownsampler.downsample(times(10), wave(10), 0, 10, 2, new long[2], new float[2]);
+            fail("downsampled to 2 points");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("2"));
+        }
+    }
+
+    /* one point per minute from 0 */
+    private static long[] times(int length) {
+        long[] times = new long[length];
+        for (int i = 0; i < length; i++) {
+            times[i] = i * STEP;
+        }
+        return times;
+    }
+
+    private static float[] wave(int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) (20 + 5 * Math.sin(i / 7.0));
+        }
+        return values;
+    }
+}
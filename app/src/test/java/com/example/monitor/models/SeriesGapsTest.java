@@ -0,0 +1,134 @@
+package com.example.monitor.models;
+
+import com.example.monitor.MonitorConstants;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/* Gaps from the per-day hour bitmaps, for windows that cross UTC midnight, don't start or end on
+ * the hour, or are empty. */
+public class SeriesGapsTest {
+
+    private static final long HOUR = MonitorConstants.ONE_HOUR;
+    private static final long DAY = MonitorConstants.ONE_DAY;
+    private static final long EPOCH_DAY = 19000; // 2022-01-08
+    private static final long MIDNIGHT = EPOCH_DAY * DAY;
+    private static final int ALL_HOURS = (1 << 24) - 1;
+
+    /* 20:00 to 04:00 the next day, stored at both ends: one gap over midnight, 22:00 to 02:00 */
+    @Test
+    public void gapAcrossMidnightUsesBothDaysBitmaps() {
+        List<DayHourBitmap> bitmaps = Arrays.asList(
+                new DayHourBitmap(EPOCH_DAY, bits(20, 21)),
+                new DayHourBitmap(EPOCH_DAY + 1, bits(2, 3)));
+        SeriesGaps gaps = SeriesGaps.fromBitmaps(bitmaps, MIDNIGHT - 4 * HOUR + DAY,
+                MIDNIGHT + DAY + 4 * HOUR);
+
+        assertEquals(1, gaps.getGaps().size());
+        assertGap(gaps.getGaps().get(0), MIDNIGHT + 22 * HOUR, MIDNIGHT + DAY + 2 * HOUR);
+        assertEquals(4, gaps.getGaps().get(0).getHours());
+        assertEquals(8, gaps.getExpectedHours());
+        assertEquals(4, gaps.getMissingHours());
+        assertEquals(50, gaps.getCompletenessPercent());
+        assertEquals(MIDNIGHT + 22 * HOUR, gaps.getFirstMissing());
+    }
+
+    /* a day the query returned no bitmap for has nothing stored */
+    @Test
+    public void dayWithoutABitmapIsMissingWhole() {
+        List<DayHourBitmap> bitmaps = Arrays.asList(
+                new DayHourBitmap(EPOCH_DAY - 3, ALL_HOURS),
+                new DayHourBitmap(EPOCH_DAY, ALL_HOURS),
+                new DayHourBitmap(EPOCH_DAY + 2, ALL_HOURS & ~bits(23)));
+        SeriesGaps gaps = SeriesGaps.fromBitmaps(bitmaps, MIDNIGHT, MIDNIGHT + 3 * DAY);
+
+        assertEquals(2, gaps.getGaps().size());
+        assertGap(gaps.getGaps().get(0), MIDNIGHT + DAY, MIDNIGHT + 2 * DAY);
+        assertEquals(24, gaps.getGaps().get(0).getHours());
+        assertGap(gaps.getGaps().get(1), MIDNIGHT + 2 * DAY + 23 * HOUR, MIDNIGHT + 3 * DAY);
+        assertEquals(72, gaps.getExpectedHours());
+        assertEquals(25, gaps.getMissingHours());
+        /* 47 of 72, rounded down */
+        assertEquals(65, gaps.getCompletenessPercent());
+    }
+
+    /* 10:30 to 13:15 is 10:00 to 13:00; the last gap ends with the window, not at 13:15 */
+    @Test
+    public void windowNotOnTheHourIsFlooredToIt() {
+        List<DayHourBitmap> bitmaps = Collections.singletonList(
+                new DayHourBitmap(EPOCH_DAY, bits(10, 13)));
+        SeriesGaps gaps = SeriesGaps.fromBitmaps(bitmaps, MIDNIGHT + 10 * HOUR + HOUR / 2,
+                MIDNIGHT + 13 * HOUR + HOUR / 4);
+
+        assertEquals(MIDNIGHT + 10 * HOUR, gaps.getFromMillis());
+        assertEquals(MIDNIGHT + 13 * HOUR, gaps.getToMillis());
+        assertEquals(3, gaps.getExpectedHours());
+        assertEquals(1, gaps.getGaps().size());
+        assertGap(gaps.getGaps().get(0), MIDNIGHT + 11 * HOUR, MIDNIGHT + 13 * HOUR);
+        assertEquals(33, gaps.getCompletenessPercent());
+    }
+
+    @Test
+    public void everyHourStoredIsComplete() {
+        List<DayHourBitmap> bitmaps = Arrays.asList(
+                new DayHourBitmap(EPOCH_DAY, ALL_HOURS),
+                new DayHourBitmap(EPOCH_DAY + 1, ALL_HOURS));
+        SeriesGaps gaps = SeriesGaps.fromBitmaps(bitmaps, MIDNIGHT + 5 * HOUR,
+                MIDNIGHT + DAY + 24 * HOUR);
+
+        assertTrue(gaps.isComplete());
+        assertEquals(43, gaps.getExpectedHours());
+        assertEquals(0, gaps.getMissingHours());
+        assertEquals(100, gaps.getCompletenessPercent());
+        assertEquals(-1, gaps.getFirstMissing());
+    }
+
+    /* within one hour, or reversed: nothing is expected, so nothing is missing */
+    @Test
+    public void emptyWindowIsComplete() {
+        List<DayHourBitmap> none = Collections.emptyList();
+        SeriesGaps sameHour = SeriesGaps.fromBitmaps(none, MIDNIGHT + 10 * HOUR + 60000L,
+                MIDNIGHT + 10 * HOUR + 50 * 60000L);
+        assertEmpty(sameHour, MIDNIGHT + 10 * HOUR);
+
+        SeriesGaps reversed = SeriesGaps.fromBitmaps(none, MIDNIGHT + 10 * HOUR,
+                MIDNIGHT + 2 * HOUR);
+        assertEmpty(reversed, MIDNIGHT + 10 * HOUR);
+
+        /* and one empty hour is all missing */
+        SeriesGaps oneHour = SeriesGaps.fromBitmaps(none, MIDNIGHT, MIDNIGHT + HOUR);
+        assertFalse(oneHour.isComplete());
+        assertEquals(0, oneHour.getCompletenessPercent());
+        assertEquals(MIDNIGHT, oneHour.getFirstMissing());
+    }
+
+    private static void assertEmpty(SeriesGaps gaps, long hour) {
+        assertEquals(hour, gaps.getFromMillis());
+        assertEquals(hour, gaps.getToMillis());
+        assertEquals(0, gaps.getExpectedHours());
+        assertEquals(0, gaps.getMissingHours());
+        assertTrue(gaps.isComplete());
+        assertEquals(100, gaps.getCompletenessPercent());
+        assertEquals(-1, gaps.getFirstMissing());
+    }
+
+    private static void assertGap(SeriesGaps.Gap gap, long start, long end) {
+        assertEquals(start, gap.getStart());
+        assertEquals(end, gap.getEnd());
+    }
+
+    private static int bits(int... hours) {
+        int bitmap = 0;
+        for (int hour : hours) {
+            bitmap |= 1 << hour;
+        }
+        return bitmap;
+    }
+}
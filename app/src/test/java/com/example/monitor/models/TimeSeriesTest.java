@@ -0,0 +1,141 @@
+package com.example.monitor.models;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/* ordering on add, the binary searches around repeated timestamps, half-open slices and stats */
+public class TimeSeriesTest {
+
+    @Test
+    public void outOfOrderPointsAreShiftedIntoPlace() {
+        TimeSeries series = new TimeSeries(1);
+        series.add(10, 1f);
+        series.add(30, 3f);
+        series.add(20, 2f);
+        series.add(5, 0.5f);
+        series.add(40, 4f);
+
+        assertSeries(series, new long[] {5, 10, 20, 30, 40},
+                new float[] {0.5f, 1f, 2f, 3f, 4f});
+        assertEquals(5, series.getFirstTime());
+        assertEquals(40, series.getLastTime());
+    }
+
+    @Test
+    public void equalTimestampsKeepInsertionOrder() {
+        TimeSeries series = new TimeSeries();
+        series.add(10, 1f);
+        series.add(20, 2f);
+        series.add(10, 3f); // out of order: after the earlier 10
+        series.add(20, 4f); // in order: appended
+
+        assertSeries(series, new long[] {10, 10, 20, 20}, new float[] {1f, 3f, 2f, 4f});
+    }
+
+    @Test
+    public void boundsAroundRepeatedTimestamps() {
+        TimeSeries series = series(new long[] {10, 20, 20, 20, 30});
+
+        assertEquals(1, series.lowerBound(20));
+        assertEquals(4, series.upperBound(20));
+        assertEquals(4, series.lowerBound(25));
+        assertEquals(4, series.upperBound(25));
+        assertEquals(0, series.lowerBound(5));
+        assertEquals(0, series.upperBound(5));
+        assertEquals(4, series.lowerBound(30));
+        assertEquals(5, series.upperBound(30));
+        assertEquals(5, series.lowerBound(40));
+        assertTrue(series.contains(20));
+        assertFalse(series.contains(25));
+
+        TimeSeries empty = new TimeSeries();
+        assertEquals(0, empty.lowerBound(10));
+        assertEquals(0, empty.upperBound(10));
+        assertFalse(empty.contains(10));
+    }
+
+    /* [from, to): every point at from, none at to */
+    @Test
+    public void slicesAreHalfOpen() {
+        TimeSeries series = series(new long[] {10, 20, 20, 20, 30});
+
+        assertSeries(series.slice(20, 30), new long[] {20, 20, 20}, new float[] {1f, 2f, 3f});
+        assertSeries(series.slice(10, 20), new long[] {10}, new float[] {0f});
+        assertSeries(series.slice(0, 100), new long[] {10, 20, 20, 20, 30},
+                new float[] {0f, 1f, 2f, 3f, 4f});
+        assertEquals(0, series.slice(21, 30).size());
+        assertEquals(0, series.slice(30, 10).size());
+
+        /* a slice is a copy, and an empty one can still grow */
+        TimeSeries slice = series.slice(21, 30);
+        slice.add(25, 9f);
+        assertSeries(slice, new long[] {25}, new float[] {9f});
+        assertEquals(5, series.size());
+    }
+
+    @Test
+    public void statsSkipNaN() {
+        TimeSeries series = new TimeSeries();
+        series.add(10, 1f);
+        series.add(20, Float.NaN);
+        series.add(30, 3f);
+        series.add(40, 5f);
+        series.add(50, Float.NaN);
+
+        float[] stats = series.getStats(0, 100);
+        assertEquals(1f, stats[0], 0);
+        assertEquals(5f, stats[1], 0);
+        assertEquals(3f, stats[2], 1e-6);
+
+        /* 40 is excluded by the half-open range */
+        stats = series.getStats(10, 40);
+        assertEquals(1f, stats[0], 0);
+        assertEquals(3f, stats[1], 0);
+        assertEquals(2f, stats[2], 1e-6);
+
+        for (float value : series.getStats(45, 60)) {
+            assertTrue(Float.isNaN(value));
+        }
+        for (float value : series.getStats(60, 70)) {
+            assertTrue(Float.isNaN(value));
+        }
+    }
+
+    @Test
+    public void indexesOutsideTheSeriesAreRefused() {
+        TimeSeries series = series(new long[] {10});
+        try {
+            series.getTime(1);
+            fail("read past the last point");
+        } catch (IndexOutOfBoundsException expected) {
+            assertEquals(10, series.getTime(0));
+        }
+        try {
+            new TimeSeries().getFirstTime();
+            fail("read the first point of an empty series");
+        } catch (IndexOutOfBoundsException expected) {
+            assertTrue(new TimeSeries().isEmpty());
+        }
+    }
+
+    /* values count up from 0 in time order */
+    private static TimeSeries series(long[] times) {
+        TimeSeries series = new TimeSeries();
+        for (int i = 0; i < times.length; i++) {
+            series.add(times[i], i);
+        }
+        return series;
+    }
+
+    private static void assertSeries(TimeSeries series, long[] times, float[] values) {
+        assertEquals(times.length, series.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i], series.getTime(i));
+            assertEquals(values[i], series.getValue(i), 0);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.monitor.repositories.cacheutil;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.PriorityDatabaseExecutor;
+import com.example.monitor.databases.InMemoryWeatherDao;
+import com.example.monitor.models.TimeSeries;
+import com.example.monitor.models.TimeSeriesSet;
+import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.execmodel.WeatherMaintenanceTask;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/* The window cache in front of an in-memory weather table, through days of hourly ingest and
+ * maintenance runs: its visible series must always equal the ones built from the whole table. */
+public class WeatherWindowCacheTest {
+
+    private static final long START_MILLIS = 1640995200000L; // 2022-01-01T00:00:00Z
+    private static final long HOUR = MonitorConstants.ONE_HOUR;
+    private static final String LOCATION = "Belgrade";
+    private static final Integer[] CATEGORIES = {MonitorEnums.SINGLE_HOUR_DATA,
+            MonitorEnums.HOME_SENSOR, MonitorEnums.TWELVE_HOURS_DATA};
+
+    private long now = START_MILLIS;
+    private InMemoryWeatherDao roomDao;
+    private WeatherWindowCache cache;
+    private WriteThroughWeatherDao weatherDao;
+    private PriorityDatabaseExecutor databaseExecutor;
+
+    @Before
+    public void setUp() {
+        roomDao = new InMemoryWeatherDao();
+        cache = new WeatherWindowCache(roomDao, () -> now);
+        weatherDao = new WriteThroughWeatherDao(roomDao, cache);
+        databaseExecutor = new PriorityDatabaseExecutor("cache-test-db", 1);
+    }
+
+    @After
+    public void tearDown() {
+        databaseExecutor.shutdownNow();
+        WriteThroughWeatherDao.resetInstance();
+    }
+
+    @Test
+    public void visibleSeriesMatchTheTableThroughIngestAndMaintenance() {
+        assertNull(cache.peekVisibleSeries());
+        assertEquivalent(TimeSeriesSet.build(roomDao.getAllWeatherPointsNonLive()),
+                cache.getVisibleSeries());
+
+        for (int hour = 0; hour < 24 * 10; hour++) {
+            now = START_MILLIS + hour * HOUR;
+            weatherDao.insert(newPoint(now, MonitorEnums.SINGLE_HOUR_DATA));
+            weatherDao.insert(newPoint(now, MonitorEnums.HOME_SENSOR));
+            if (hour % 12 == 0) {
+                List<Weather> forecast = new ArrayList<>();
+                for (int i = 1; i <= 12; i++) {
+                    forecast.add(newPoint(now + i * HOUR, MonitorEnums.TWELVE_HOURS_DATA));
+                }
+                weatherDao.insertWeatherList(forecast);
+            }
+            now += MonitorConstants.JOB_OFFSET_MAINTENANCE;
+            new WeatherMaintenanceTask(weatherDao, databaseExecutor,
+                    MonitorConstants.VISIBILITY_DURATION, MonitorConstants.STORAGE_DURATION, now)
+                    .start().join();
+
+            TimeSeriesSet cached = cache.peekVisibleSeries();
+            assertNotNull("window dropped at hour " + hour, cached);
+            assertEquivalent(TimeSeriesSet.build(roomDao.getAllWeatherPointsNonLive()), cached);
+        }
+
+        /* one miss for the load, every check after it from memory */
+        assertEquals(1, cache.getMisses());
+        assertEquals(24 * 10, cache.getHits());
+        assertTrue(cache.getHitRatio() > 0.99);
+        /* the window of hourly, sensor and forecast rows, and the forecasts ahead; nothing older */
+        assertTrue(cache.getSummary(), cache.size() <= 3 * 50 + 12);
+    }
+
+    @Test
+    public void updatesAndDeletesAreWrittenThrough() {
+        Weather point = newPoint(now, MonitorEnums.HOME_SENSOR);
+        weatherDao.insert(point);
+        cache.getVisibleSeries();
+        long version = cache.getVersion();
+
+        point.setCelsius("30.5");
+        weatherDao.update(point);
+        assertEquals(30.5f, sensorSeries(cache.peekVisibleSeries()).getValue(0), 0f);
+        point.setCelsius("99"); /* the cache holds its own copy */
+        assertEquals(30.5f, sensorSeries(cache.peekVisibleSeries()).getValue(0), 0f);
+
+        weatherDao.delete(point);
+        assertEquals(0, sensorSeries(cache.peekVisibleSeries()).size());
+        assertEquals(version + 2, cache.getVersion());
+
+        weatherDao.insertWeatherList(Arrays.asList(newPoint(now, MonitorEnums.HOME_SENSOR),
+                newPoint(now + HOUR, MonitorEnums.HOME_SENSOR)));
+        assertEquals(2, sensorSeries(cache.peekVisibleSeries()).size());
+        weatherDao.deleteAllWeatherPoints();
+        assertEquals(0, cache.size());
+        assertEquals(0, sensorSeries(cache.peekVisibleSeries()).size());
+    }
+
+    @Test
+    public void seriesAreMemoizedUntilTheNextWrite() {
+        weatherDao.insert(newPoint(now, MonitorEnums.HOME_SENSOR));
+        cache.getVisibleSeries();
+        TimeSeriesSet first = cache.peekVisibleSeries();
+        assertSame(first, cache.peekVisibleSeries());
+
+        weatherDao.insert(newPoint(now + HOUR, MonitorEnums.HOME_SENSOR));
+        TimeSeriesSet second = cache.peekVisibleSeries();
+        assertTrue(first != second);
+        assertEquals(2, sensorSeries(second).size());
+    }
+
+    @Test
+    public void windowsBeyondTheSizeBoundAreReadFromTheTable() {
+        WeatherWindowCache small = new WeatherWindowCache(roomDao, () -> now,
+                MonitorConstants.VISIBILITY_DURATION * 1000L, 10);
+        WriteThroughWeatherDao smallDao = new WriteThroughWeatherDao(roomDao, small);
+        small.getVisibleSeries();
+        for (int hour = 0; hour < 20; hour++) {
+            smallDao.insert(newPoint(now + hour * HOUR, MonitorEnums.HOME_SENSOR));
+        }
+        assertEquals(10, small.size());
+
+        /* the dropped rows are still in the window: a miss, answered from the table */
+        assertNull(small.peekVisibleSeries());
+        assertEquals(20, sensorSeries(small.getVisibleSeries()).size());
+
+        /* once the newest dropped row has aged out, the rows held are the whole window again */
+        now += MonitorConstants.VISIBILITY_DURATION * 1000L + 9 * HOUR;
+        assertNull(small.peekVisibleSeries());
+        now += HOUR;
+        assertEquals(9, sensorSeries(small.peekVisibleSeries()).size());
+    }
+
+    @Test
+    public void loadOvertakenByAnAgeUpdateIsDropped() {
+        weatherDao.insert(newPoint(now - 47 * HOUR, MonitorEnums.HOME_SENSOR));
+        weatherDao.insert(newPoint(now, MonitorEnums.HOME_SENSOR));
+
+        /* maintenance ages the old row while the window query runs; the query still sees it as
+         * visible */
+        InMemoryWeatherDao racingDao = new InMemoryWeatherDao() {
+            @Override
+            public List<Weather> getWeatherPointsAfter(long fromMillis) {
+                List<Weather> snapshot = new ArrayList<>();
+                for (Weather row : roomDao.getWeatherPointsAfter(fromMillis)) {
+                    Weather copy = newPoint(row.getTimeInMillis(), row.getCategory());
+                    copy.setId(row.getId());
+                    snapshot.add(copy);
+                }
+                weatherDao.updateAgeCategoriesInRange(0, Integer.MAX_VALUE, now - 46 * HOUR,
+                        now - 100 * HOUR, MonitorEnums.UNDER_48H,
+                        MonitorEnums.BETWEEN_48H_AND_WEEK, MonitorEnums.MORE_THAN_A_WEEK);
+                return snapshot;
+            }
+        };
+        cache = new WeatherWindowCache(racingDao, () -> now);
+        weatherDao = new WriteThroughWeatherDao(roomDao, cache);
+
+        assertEquals(2, sensorSeries(cache.getVisibleSeries()).size());
+        assertNull(cache.peekVisibleSeries());
+
+        cache = new WeatherWindowCache(roomDao, () -> now);
+        cache.getVisibleSeries();
+        assertEquals(1, sensorSeries(cache.peekVisibleSeries()).size());
+    }
+
+    @Test
+    public void repositoriesCreatedInARowShareTheCache() {
+        /* the shared cache runs on the system clock */
+        now = System.currentTimeMillis();
+        /* the first repository starts the background jobs, which keep its DAO */
+        WriteThroughWeatherDao jobsDao = WriteThroughWeatherDao.getInstance(roomDao);
+        int[] firstChanges = {0};
+        Runnable firstListener = () -> firstChanges[0]++;
+        jobsDao.getCache().addChangeListener(firstListener);
+        jobsDao.getCache().getVisibleSeries();
+        jobsDao.insert(newPoint(now, MonitorEnums.HOME_SENSOR));
+        jobsDao.getCache().removeChangeListener(firstListener);
+
+        /* the activity is relaunched: a new repository, same process */
+        WriteThroughWeatherDao secondDao = WriteThroughWeatherDao.getInstance(roomDao);
+        assertSame(jobsDao, secondDao);
+        int[] secondChanges = {0};
+        secondDao.getCache().addChangeListener(() -> secondChanges[0]++);
+
+        jobsDao.insert(newPoint(now + HOUR, MonitorEnums.HOME_SENSOR));
+        assertEquals(1, firstChanges[0]);
+        assertEquals(1, secondChanges[0]);
+        assertEquals(2, sensorSeries(secondDao.getCache().peekVisibleSeries()).size());
+    }
+
+    private static Weather newPoint(long timeInMillis, Integer category) {
+        return new Weather(String.valueOf(timeInMillis % 40), "45", "test",
+                String.valueOf(timeInMillis), LOCATION, MonitorEnums.UNDER_48H, category,
+                timeInMillis);
+    }
+
+    private static TimeSeries sensorSeries(TimeSeriesSet set) {
+        return set.get(LOCATION, MonitorEnums.HOME_SENSOR, MonitorEnums.TEMPERATURE);
+    }
+
+    private static void assertEquivalent(TimeSeriesSet expected, TimeSeriesSet actual) {
+        for (Integer category : CATEGORIES) {
+            for (Integer metric : new Integer[]{MonitorEnums.TEMPERATURE, MonitorEnums.HUMIDITY}) {
+                TimeSeries want = expected.get(LOCATION, category, metric);
+                TimeSeries got = actual.get(LOCATION, category, metric);
+                assertEquals("points of " + category, want.size(), got.size());
+                for (int i = 0; i < want.size(); i++) {
+                    assertEquals(want.getTime(i), got.getTime(i));
+                    assertEquals(want.getValue(i), got.getValue(i), 0f);
+                }
+            }
+        }
+    }
+}
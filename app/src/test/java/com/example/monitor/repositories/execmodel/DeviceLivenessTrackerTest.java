@@ -0,0 +1,66 @@
+package com.example.monitor.repositories.execmodel;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.repositories.networkutils.TopicData;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/* every device publishing on the status wildcard is tracked, not only the configured ones */
+public class DeviceLivenessTrackerTest {
+
+    private static final int DEVICES = 300;
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    @Test
+    public void statusTopicsGetAnIndexWhenFirstSeen() {
+        assertEquals(0, TopicData.getDeviceIndexForStatusTopic(TopicData.getDeviceStatusTopics(0)));
+
+        int first = TopicData.getDeviceIndexForStatusTopic("devices/INDEX_A/status");
+        int second = TopicData.getDeviceIndexForStatusTopic("devices/INDEX_B/status");
+        assertTrue(first >= TopicData.getDeviceCount());
+        assertEquals(first + 1, second);
+        assertEquals(first, TopicData.getDeviceIndexForStatusTopic("devices/INDEX_A/status"));
+        assertTrue(TopicData.getKnownDeviceCount() > second);
+
+        /* only one level between the prefix and the suffix, as the wildcard matches */
+        assertEquals(-1, TopicData.getDeviceIndexForStatusTopic("devices/status"));
+        assertEquals(-1, TopicData.getDeviceIndexForStatusTopic("devices/a/b/status"));
+        assertEquals(-1, TopicData.getDeviceIndexForStatusTopic("devices/LED_0/mode"));
+        assertEquals(-1, TopicData.getDeviceIndexForStatusTopic("sensors/json"));
+    }
+
+    @Test
+    public void hundredsOfDevicesGoOnlineAndExpire() {
+        DeviceLivenessTracker tracker = DeviceLivenessTracker.getInstance();
+        long now = System.currentTimeMillis();
+        int[] indices = new int[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            indices[i] = TopicData.getDeviceIndexForStatusTopic("devices/TRACKED_" + i + "/status");
+            tracker.onHeartbeat(indices[i], now, now);
+        }
+
+        Map<Integer, Integer> states = tracker.getDeviceStates().getValue();
+        assertTrue(states.size() >= DEVICES);
+        for (int index : indices) {
+            assertEquals(MonitorEnums.DEVICE_ONLINE, states.get(index));
+        }
+
+        tracker.advanceWheel(now + MonitorConstants.DEVICE_HEARTBEAT_TIMEOUT
+                + MonitorConstants.LIVENESS_TICK);
+        states = tracker.getDeviceStates().getValue();
+        for (int index : indices) {
+            assertEquals(MonitorEnums.DEVICE_OFFLINE, states.get(index));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.monitor.repositories.execmodel;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.models.MonitorLocation;
+import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.networkutils.NetworkUtils;
+import com.example.monitor.repositories.networkutils.RecordedApiServer;
+import com.example.monitor.repositories.parseutils.ParseUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/* Runs the request stage of the fetch pipeline (ContactWeatherApiTask on the network executor,
+ * with the caller's timeout) against a local stand-in for Accuweather and the Pi, offline. The
+ * benchmark's request count and added latency are configurable:
+ * ./gradlew test -Dmonitor.bench.fetches=500 -Dmonitor.bench.latencyMillis=50 */
+public class FetchPipelineTest {
+
+    private static final int FETCHES = Integer.parseInt(
+            System.getProperty("monitor.bench.fetches", "200"));
+    private static final long LATENCY_MILLIS = Long.parseLong(
+            System.getProperty("monitor.bench.latencyMillis", "5"));
+    private static final String LOCATION_KEY = "298198";
+
+    private RecordedApiServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RecordedApiServer();
+        server.start();
+        NetworkUtils.setBaseUrls(server.getBaseUrl(), server.getBaseUrl());
+    }
+
+    @After
+    public void tearDown() {
+        NetworkUtils.resetBaseUrls();
+        server.close();
+    }
+
+    @Test
+    public void recordedPayloadsParseLikeTheLiveOnes() {
+        MonitorLocation location = ParseUtils.parseLocationJSON(
+                new ContactWeatherApiTask(NetworkUtils.buildUrlForLocation("44.818", "20.468")).call());
+        assertNotNull(location);
+        assertEquals(LOCATION_KEY, location.getLocation());
+        assertEquals("Belgrade", location.getLocalizedName());
+        assertTrue(server.getLastRequestUri(), server.getLastRequestUri().contains("q=44.818%2C20.468"));
+
+        List<Weather> twelveHours = fetch(0);
+        assertEquals(12, twelveHours.size());
+        assertEquals(1634238000000L, twelveHours.get(0).getTimeInMillis());
+        assertTrue(server.getLastRequestUri().startsWith("/forecasts/v1/hourly/12hour/" + LOCATION_KEY));
+        assertTrue(server.getLastRequestUri().contains("metric=true"));
+
+        assertEquals(1, fetch(1).size());
+        assertEquals("21.4", fetch(2).get(0).getCelsius());
+        assertEquals("21.6", fetch(3).get(0).getCelsius());
+        assertEquals(5, server.getRequestCount());
+    }
+
+    @Test
+    public void errorsAndTruncatedBodiesYieldNoResponse() {
+        server.failNext(500);
+        server.failNext(404);
+        server.truncateNext(0.5);
+        assertNull(request(1));
+        assertNull(request(1));
+        assertNull(request(1));
+        assertNotNull(request(1)); // faults are one-shot
+    }
+
+    @Test
+    public void requestsPastTheQuotaAreRateLimited() {
+        server.setAccuweatherQuota(2);
+        assertNotNull(request(1));
+        assertNotNull(request(0));
+        assertNull(request(1));
+        assertNotNull(request(2)); // the Pi has no quota
+    }
+
+    /* a stalled request must give up its network thread before the next caller's timeout
+     * expires, or one hung connection fails every fetch queued behind it */
+    @Test
+    public void stalledRequestReleasesTheNetworkThreadInTime() {
+        server.stallNext(MonitorConstants.STD_TIMEOUT * 3L);
+        long start = System.nanoTime();
+        CompletableFuture<String> stalled = fetchAsync(1);
+        CompletableFuture<String> queued = fetchAsync(1);
+
+        assertNull(stalled.handle((response, throwable) -> response).join());
+        assertNotNull("queued fetch timed out behind the stalled one", queued.join());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < MonitorConstants.STD_TIMEOUT);
+    }
+
+    @Test
+    public void fetchThroughputWithLatency() {
+        server.setLatencyMillis(LATENCY_MILLIS);
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> fetches = new ArrayList<>();
+        long[] doneNanos = new long[FETCHES];
+        for (int i = 0; i < FETCHES; i++) {
+            final int index = i;
+            fetches.add(fetchAsync(i % 4).whenComplete(
+                    (response, throwable) -> doneNanos[index] = System.nanoTime()));
+        }
+        int succeeded = 0;
+        for (CompletableFuture<String> fetch : fetches) {
+            if (fetch.handle((response, throwable) -> response).join() != null) {
+                succeeded++;
+            }
+        }
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+        long[] latencies = new long[FETCHES];
+        for (int i = 0; i < FETCHES; i++) {
+            latencies[i] = (doneNanos[i] - start) / 1000000;
+        }
+        Arrays.sort(latencies);
+        String summary = String.format(Locale.US, "%d fetches with %d ms server latency in "
+                        + "%.2f s: %.0f fetches/s, %d succeeded; completion p50 %d ms, max %d ms",
+                FETCHES, LATENCY_MILLIS, wallSeconds, FETCHES / wallSeconds, succeeded,
+                latencies[FETCHES / 2], latencies[FETCHES - 1]);
+        /* each fetch waits at least for the server */
+        assertTrue(summary, latencies[0] >= LATENCY_MILLIS);
+        /* the network executor is single-threaded, so fetches queued behind many slow ones time
+         * out; only assert on what a fast server guarantees: all of them, within the timeout */
+        if (LATENCY_MILLIS * FETCHES < MonitorConstants.STD_TIMEOUT / 2) {
+            assertEquals(summary, FETCHES, succeeded);
+            assertTrue(summary, latencies[FETCHES - 1] < MonitorConstants.STD_TIMEOUT);
+        }
+    }
+
+    /* the same stages as RemoteDataFetchModel.fetchResponseAsync */
+    private static CompletableFuture<String> fetchAsync(int forecastType) {
+        URL url = NetworkUtils.buildUrlForWeather(forecastType, LOCATION_KEY);
+        return ExecutorHelper.withTimeout(ExecutorHelper.supplyAsync(new ContactWeatherApiTask(url),
+                ExecutorHelper.getNetworkRequestExecutorInstance()), MonitorConstants.STD_TIMEOUT);
+    }
+
+    private static String request(int forecastType) {
+        return new ContactWeatherApiTask(
+                NetworkUtils.buildUrlForWeather(forecastType, LOCATION_KEY)).call();
+    }
+
+    private static List<Weather> fetch(int forecastType) {
+        return ParseUtils.parseWeatherJSON(request(forecastType));
+    }
+}
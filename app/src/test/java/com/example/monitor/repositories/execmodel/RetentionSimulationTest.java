@@ -0,0 +1,257 @@
+package com.example.monitor.repositories.execmodel;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.AlignedJobScheduler;
+import com.example.monitor.backgroundutil.InMemorySharedPreferences;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.backgroundutil.VirtualTimeScheduledExecutor;
+import com.example.monitor.databases.InMemoryLocationDao;
+import com.example.monitor.databases.InMemoryWeatherDao;
+import com.example.monitor.models.MonitorLocation;
+import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.cacheutil.WeatherWindowCache;
+import com.example.monitor.repositories.cacheutil.WriteThroughWeatherDao;
+import com.example.monitor.repositories.networkutils.ConnectivityMonitor;
+import com.example.monitor.repositories.networkutils.NetworkUtils;
+import com.example.monitor.repositories.networkutils.RecordedApiServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/* Runs RemoteDataFetchModel's scheduled jobs, as registered by startScheduledJobs, on virtual
+ * time: the fetches go to a local stand-in for Accuweather that forecasts the virtual hours, the
+ * rows to an in-memory weather table behind the window cache, with the production periods,
+ * offsets and retention durations. Time only moves on once every job run has completed, so weeks
+ * of hourly ingest pass in seconds. The sensor paths are switched off; they need a broker or the
+ * Pi. ./gradlew test -Dmonitor.bench.weeks=8 */
+public class RetentionSimulationTest {
+
+    private static final int WEEKS = Integer.parseInt(
+            System.getProperty("monitor.bench.weeks", "4"));
+    private static final long START_MILLIS = 1640995200000L; // 2022-01-01T00:00:00Z
+    private static final String LOCATION = "Belgrade";
+    private static final String ONE_HOUR_ROUTE = "/forecasts/v1/hourly/1hour/";
+    private static final String TWELVE_HOURS_ROUTE = "/forecasts/v1/hourly/12hour/";
+    private static final String[] JOBS = {"hourly", "twelveHours", "maintenance"};
+
+    private final boolean useMqtt = MonitorEnums.USE_MQTT;
+    private final boolean useNgrok = MonitorEnums.USE_NGROK;
+    private final boolean useMqttContinuous = MonitorEnums.USE_MQTT_CONTINUOUS;
+
+    /* replaced on a simulated restart; the clock below always reads the current one */
+    private volatile VirtualTimeScheduledExecutor virtualTime;
+    private final MonitorClock clock = () -> virtualTime.currentTimeMillis();
+
+    private RecordedApiServer server;
+    private InMemorySharedPreferences preferences;
+    private InMemoryWeatherDao weatherDao;
+
+    @Before
+    public void setUp() throws Exception {
+        MonitorEnums.USE_MQTT = false;
+        MonitorEnums.USE_NGROK = false;
+        MonitorEnums.USE_MQTT_CONTINUOUS = false;
+
+        virtualTime = new VirtualTimeScheduledExecutor(START_MILLIS);
+        RemoteDataFetchModel.setClock(clock);
+        server = new RecordedApiServer();
+        server.setForecastClock(clock);
+        server.start();
+        NetworkUtils.setBaseUrls(server.getBaseUrl(), server.getBaseUrl());
+
+        preferences = new InMemorySharedPreferences();
+        weatherDao = new InMemoryWeatherDao();
+        WeatherWindowCache windowCache = new WeatherWindowCache(weatherDao, clock);
+        InMemoryLocationDao locationDao = new InMemoryLocationDao();
+        locationDao.insert(new MonitorLocation("298198", LOCATION, "44.8125", "20.4612",
+                false, 0));
+        RemoteDataFetchModel.setUpDataAccess(new WriteThroughWeatherDao(weatherDao, windowCache),
+                windowCache, locationDao);
+    }
+
+    @After
+    public void tearDown() {
+        RemoteDataFetchModel.stopScheduledJobs();
+        virtualTime.shutdownNow();
+        RemoteDataFetchModel.setClock(MonitorClock.SYSTEM);
+        NetworkUtils.resetBaseUrls();
+        server.close();
+        MonitorEnums.USE_MQTT = useMqtt;
+        MonitorEnums.USE_NGROK = useNgrok;
+        MonitorEnums.USE_MQTT_CONTINUOUS = useMqttContinuous;
+    }
+
+    @Test
+    public void retentionHoldsSteadyOverWeeksOfHourlyIngest() {
+        startJobs();
+
+        /* an hourly and a twelve hour forecast per day, kept for the storage duration */
+        int rowsPerDay = 24 + 2 * 12;
+        int storedDays = MonitorConstants.STORAGE_DURATION / (MonitorConstants.ONE_DAY / 1000) + 2;
+        int visibleHours = MonitorConstants.VISIBILITY_DURATION / 3600 + 2;
+        long days = WEEKS * 7L;
+        for (long day = 1; day <= days; day++) {
+            advanceBy(MonitorConstants.ONE_DAY);
+            assertTrue("day " + day + ": table keeps growing, " + weatherDao.size() + " rows",
+                    weatherDao.size() <= rowsPerDay * storedDays);
+            assertTrue("day " + day + ": " + countVisible() + " visible rows",
+                    countVisible() <= visibleHours * 2 + 12);
+        }
+
+        /* every hour fetched exactly once; the catch-up run at the first start fetched the hour
+         * that its own slot, two minutes later, then finds stored */
+        assertEquals(days * 24, server.getRequestCount(ONE_HOUR_ROUTE));
+        assertEquals(days * 2, server.getRequestCount(TWELVE_HOURS_ROUTE));
+        assertAllSlotsDone();
+
+        /* the forecast of the current hour, fetched by the last slot, is stored once */
+        assertEquals(1, countRows(MonitorEnums.SINGLE_HOUR_DATA,
+                virtualTime.currentTimeMillis()));
+
+        /* nothing outlives the storage duration by more than one maintenance period */
+        long oldestAllowed = virtualTime.currentTimeMillis()
+                - MonitorConstants.STORAGE_DURATION * 1000L
+                - MonitorConstants.JOB_PERIOD_MAINTENANCE;
+        for (Weather weather : weatherDao.getAllWeatherPointsNonLive()) {
+            assertTrue("row at " + weather.getTimeInMillis() + " outlived its storage",
+                    weather.getTimeInMillis() >= oldestAllowed);
+        }
+    }
+
+    /* the hourly job checks the stored series for the next hour of the virtual clock */
+    @Test
+    public void hourlyJobSkipsTheHourAlreadyStored() {
+        weatherDao.insert(newPoint(START_MILLIS + MonitorConstants.ONE_HOUR,
+                MonitorEnums.SINGLE_HOUR_DATA));
+        startJobs();
+
+        assertEquals(0, server.getRequestCount(ONE_HOUR_ROUTE));
+        assertAllSlotsDone();
+
+        advanceBy(MonitorConstants.ONE_HOUR + MonitorConstants.JOB_OFFSET_HOURLY);
+        assertEquals(1, server.getRequestCount(ONE_HOUR_ROUTE));
+        assertEquals(1, countRows(MonitorEnums.SINGLE_HOUR_DATA,
+                START_MILLIS + 2L * MonitorConstants.ONE_HOUR));
+    }
+
+    @Test
+    public void jobsCatchUpOnceAfterTheAppWasDead() {
+        startJobs();
+        advanceBy(MonitorConstants.ONE_DAY);
+        int hourlyBefore = server.getRequestCount(ONE_HOUR_ROUTE);
+        int twelveHoursBefore = server.getRequestCount(TWELVE_HOURS_ROUTE);
+
+        /* the process dies; 30 hours later new jobs start from the persisted slots */
+        long restart = virtualTime.currentTimeMillis() + MonitorConstants.ONE_HOUR * 30L;
+        RemoteDataFetchModel.stopScheduledJobs();
+        virtualTime.shutdownNow();
+        virtualTime = new VirtualTimeScheduledExecutor(restart);
+        startJobs();
+
+        assertEquals(hourlyBefore + 1, server.getRequestCount(ONE_HOUR_ROUTE));
+        assertEquals(twelveHoursBefore + 1, server.getRequestCount(TWELVE_HOURS_ROUTE));
+        assertAllSlotsDone();
+
+        /* then back on the regular boundaries, the first of which finds its hour stored */
+        advanceBy(MonitorConstants.ONE_HOUR * 3L);
+        assertEquals(hourlyBefore + 3, server.getRequestCount(ONE_HOUR_ROUTE));
+    }
+
+    @Test
+    public void pausedFetchJobCatchesUpWhenResumed() {
+        startJobs();
+        advanceBy(MonitorConstants.ONE_HOUR * 2L);
+        int hourlyBefore = server.getRequestCount(ONE_HOUR_ROUTE);
+
+        /* offline for five hours: no runs and no retries, then one catch-up run */
+        AlignedJobScheduler scheduler = RemoteDataFetchModel.getJobScheduler();
+        scheduler.setPaused("hourly", true);
+        advanceBy(MonitorConstants.ONE_HOUR * 5L);
+        assertEquals(hourlyBefore, server.getRequestCount(ONE_HOUR_ROUTE));
+        scheduler.setPaused("hourly", false);
+        awaitJobsIdle();
+        assertEquals(hourlyBefore + 1, server.getRequestCount(ONE_HOUR_ROUTE));
+    }
+
+    /* online and unmetered; the slots missed at start run right away */
+    private void startJobs() {
+        RemoteDataFetchModel.startScheduledJobs(virtualTime, preferences,
+                ConnectivityMonitor.detached(true, false));
+        awaitJobsIdle();
+    }
+
+    /* runs the due tasks in time order, letting the jobs they start finish before moving on */
+    private void advanceBy(long millis) {
+        long target = virtualTime.currentTimeMillis() + millis;
+        while (virtualTime.getNextTaskTime() <= target) {
+            virtualTime.advanceTo(virtualTime.getNextTaskTime());
+            awaitJobsIdle();
+        }
+        virtualTime.advanceTo(target);
+    }
+
+    /* a job arms its next trigger once its run has completed; until then, or while paused, it
+     * has none pending */
+    private void awaitJobsIdle() {
+        AlignedJobScheduler scheduler = RemoteDataFetchModel.getJobScheduler();
+        int armed = 0;
+        for (String job : JOBS) {
+            armed += scheduler.isPaused(job) ? 0 : 1;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (virtualTime.getPendingCount() < armed) {
+            assertTrue("jobs still running at " + virtualTime.currentTimeMillis(),
+                    System.nanoTime() < deadline);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private void assertAllSlotsDone() {
+        AlignedJobScheduler scheduler = RemoteDataFetchModel.getJobScheduler();
+        long now = virtualTime.currentTimeMillis();
+        assertEquals(currentSlot(now, MonitorConstants.JOB_PERIOD_HOURLY,
+                MonitorConstants.JOB_OFFSET_HOURLY), scheduler.getLastSuccessSlot(JOBS[0]));
+        assertEquals(currentSlot(now, MonitorConstants.JOB_PERIOD_TWELVE_HOURS,
+                MonitorConstants.JOB_OFFSET_TWELVE_HOURS), scheduler.getLastSuccessSlot(JOBS[1]));
+        assertEquals(currentSlot(now, MonitorConstants.JOB_PERIOD_MAINTENANCE,
+                MonitorConstants.JOB_OFFSET_MAINTENANCE), scheduler.getLastSuccessSlot(JOBS[2]));
+    }
+
+    private static long currentSlot(long now, long period, long offset) {
+        return Math.floorDiv(now - offset, period) * period + offset;
+    }
+
+    private static Weather newPoint(long timeInMillis, Integer category) {
+        return new Weather("21.5", "45", "simulation", String.valueOf(timeInMillis), LOCATION,
+                MonitorEnums.UNDER_48H, category, timeInMillis);
+    }
+
+    private int countRows(Integer category, long timeInMillis) {
+        int rows = 0;
+        for (Weather weather : weatherDao.getAllWeatherPointsNonLive()) {
+            if (category.equals(weather.getCategory())
+                    && weather.getTimeInMillis() == timeInMillis) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private int countVisible() {
+        int visible = 0;
+        for (Weather weather : weatherDao.getAllWeatherPointsNonLive()) {
+            if (MonitorEnums.UNDER_48H.equals(weather.getPersistence())) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+}
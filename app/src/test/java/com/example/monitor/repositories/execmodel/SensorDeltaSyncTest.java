@@ -0,0 +1,161 @@
+package com.example.monitor.repositories.execmodel;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.databases.InMemoryWeatherDao;
+import com.example.monitor.models.SeriesGaps;
+import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.networkutils.NetworkUtils;
+import com.example.monitor.repositories.networkutils.RecordedApiServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/* Delta sync over HTTP against the local stand-in for the Pi, which keeps three days of raw
+ * samples, one every ten minutes; the weather table is in memory. Gaps are found from its hour
+ * bitmaps, as from the indexed query. */
+public class SensorDeltaSyncTest {
+
+    private static final String LOCATION = "Belgrade";
+    private static final long CURRENT_HOUR = 1641816000000L; // 2022-01-10T12:00:00Z
+    private static final long NOW = CURRENT_HOUR + 20 * 60 * 1000L;
+    private static final long HOUR = MonitorConstants.ONE_HOUR;
+    private static final long HISTORY_START = CURRENT_HOUR - 72 * HOUR;
+    private static final long UNTIL = CURRENT_HOUR - HOUR; // the stream flush owns the last hour
+    private static final long EXPIRY_CUTOFF = NOW - MonitorConstants.STORAGE_DURATION * 1000L;
+    private static final long OLDEST_KEPT = EXPIRY_CUTOFF - EXPIRY_CUTOFF % HOUR + HOUR;
+
+    private RecordedApiServer server;
+    private InMemoryWeatherDao weatherDao;
+    private SensorDeltaSync deltaSync;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RecordedApiServer();
+        for (long time = HISTORY_START; time <= NOW; time += 10 * 60 * 1000L) {
+            long minute = (time % HOUR) / 60000;
+            server.addSensorSample(time, 20 + minute / 10, 40);
+        }
+        server.start();
+        NetworkUtils.setBaseUrls(server.getBaseUrl(), server.getBaseUrl());
+
+        weatherDao = new InMemoryWeatherDao();
+        MonitorClock clock = () -> NOW;
+        deltaSync = new SensorDeltaSync(weatherDao, LOCATION, clock, false);
+    }
+
+    @After
+    public void tearDown() {
+        NetworkUtils.resetBaseUrls();
+        server.close();
+    }
+
+    @Test
+    public void onlyTheMissingHoursAreRequestedAndWrittenInOneBatch() {
+        for (long hour = OLDEST_KEPT; hour <= CURRENT_HOUR - 10 * HOUR; hour += HOUR) {
+            weatherDao.insert(storedHour(hour));
+        }
+        int storedRows = weatherDao.size();
+
+        assertEquals(8L, (long) deltaSync.syncIfBehind(UNTIL).join());
+
+        assertTrue(server.getLastRequestUri(), server.getLastRequestUri()
+                .endsWith("since=" + (CURRENT_HOUR - 10 * HOUR)));
+        /* nine hours of six samples, and the three of the current hour so far */
+        assertEquals(9 * 6 + 3, server.getSensorSamplesSent());
+        assertEquals(storedRows + 8, weatherDao.size());
+        assertEquals(1, weatherDao.getListInserts());
+
+        Map<Long, Weather> byHour = sensorRowsByHour();
+        for (long hour = CURRENT_HOUR - 9 * HOUR; hour < UNTIL; hour += HOUR) {
+            Weather filled = byHour.get(hour);
+            assertEquals("22.5", filled.getCelsius());
+            assertEquals("20.0", filled.getMinCelsius());
+            assertEquals("25.0", filled.getMaxCelsius());
+            assertEquals("40.0", filled.getHumidity());
+        }
+        assertTrue(!byHour.containsKey(UNTIL) && !byHour.containsKey(CURRENT_HOUR));
+    }
+
+    @Test
+    public void interiorGapsAreFilledFromTheFirstOne() {
+        for (long hour = OLDEST_KEPT; hour < UNTIL; hour += HOUR) {
+            boolean missing = hour == CURRENT_HOUR - 50 * HOUR
+                    || (hour >= CURRENT_HOUR - 30 * HOUR && hour < CURRENT_HOUR - 27 * HOUR);
+            if (!missing) {
+                weatherDao.insert(storedHour(hour));
+            }
+        }
+        SeriesGaps gaps = SeriesGaps.fromBitmaps(weatherDao.getHourBitmaps(LOCATION,
+                MonitorEnums.HOME_SENSOR, OLDEST_KEPT, UNTIL), OLDEST_KEPT, UNTIL);
+        assertEquals(2, gaps.getGaps().size());
+        assertEquals(4, gaps.getMissingHours());
+        assertEquals(3, gaps.getGaps().get(1).getHours());
+
+        assertEquals(4L, (long) deltaSync.syncIfBehind(UNTIL).join());
+        assertTrue(server.getLastRequestUri(), server.getLastRequestUri()
+                .endsWith("since=" + (CURRENT_HOUR - 51 * HOUR)));
+        assertEquals(1, weatherDao.getListInserts());
+        assertTrue(SeriesGaps.fromBitmaps(weatherDao.getHourBitmaps(LOCATION,
+                MonitorEnums.HOME_SENSOR, OLDEST_KEPT, UNTIL), OLDEST_KEPT, UNTIL).isComplete());
+    }
+
+    @Test
+    public void upToDateSeriesSendsNoRequest() {
+        for (long hour = OLDEST_KEPT; hour < UNTIL; hour += HOUR) {
+            weatherDao.insert(storedHour(hour));
+        }
+
+        assertEquals(0L, (long) deltaSync.syncIfBehind(UNTIL).join());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void emptyTableIsFilledFromTheStoredHistory() {
+        assertEquals(71L, (long) deltaSync.syncIfBehind(UNTIL).join());
+        assertEquals(71, weatherDao.size());
+        assertEquals(1, weatherDao.getListInserts());
+
+        /* the hours before the Pi's history stay missing, and are not asked for again */
+        assertEquals(0L, (long) deltaSync.syncIfBehind(UNTIL).join());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void failedRequestWritesNothing() {
+        server.failNext(500);
+        try {
+            deltaSync.syncIfBehind(UNTIL).join();
+            fail("sync should have failed");
+        } catch (CompletionException expected) {
+            // the next hourly run asks again
+        }
+        assertEquals(0, weatherDao.size());
+        assertEquals(71L, (long) deltaSync.syncIfBehind(UNTIL).join());
+    }
+
+    private static Weather storedHour(long hour) {
+        return SensorStreamIngestion.newHourlyPoint(hour, LOCATION, MonitorEnums.UNDER_48H,
+                21, 40, 20, 22, 40, 40);
+    }
+
+    private Map<Long, Weather> sensorRowsByHour() {
+        Map<Long, Weather> byHour = new HashMap<>();
+        for (Weather weather : weatherDao.getAllWeatherPointsNonLive()) {
+            if (MonitorEnums.HOME_SENSOR.equals(weather.getCategory())) {
+                byHour.put(weather.getTimeInMillis(), weather);
+            }
+        }
+        return byHour;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.monitor.repositories.execmodel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SensorSampleBufferTest {
+
+    @Test
+    public void copiesOldestFirstBeforeWrapping() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(4);
+        assertEquals(0, buffer.getLatestTime());
+        buffer.add(1000, 20.5f, 40f);
+        buffer.add(2000, 21.5f, 41f);
+
+        long[] times = new long[4];
+        float[] celsius = new float[4];
+        float[] humidity = new float[4];
+        assertEquals(2, buffer.copyInto(times, celsius, humidity));
+        assertEquals(1000, times[0]);
+        assertEquals(2000, times[1]);
+        assertEquals(21.5f, celsius[1], 0f);
+        assertEquals(41f, humidity[1], 0f);
+        assertEquals(2000, buffer.getLatestTime());
+    }
+
+    @Test
+    public void overwritesTheOldestOnceFull() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i * 1000L, i, i * 10);
+        }
+        assertEquals(3, buffer.size());
+        assertEquals(5000, buffer.getLatestTime());
+
+        long[] times = new long[3];
+        float[] celsius = new float[3];
+        float[] humidity = new float[3];
+        assertEquals(3, buffer.copyInto(times, celsius, humidity));
+        assertEquals(3000, times[0]);
+        assertEquals(4000, times[1]);
+        assertEquals(5000, times[2]);
+        assertEquals(50f, humidity[2], 0f);
+    }
+
+    @Test
+    public void shortDestinationsGetTheNewestSamples() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(4);
+        for (int i = 1; i <= 6; i++) {
+            buffer.add(i * 1000L, i, i);
+        }
+        long[] times = new long[2];
+        assertEquals(2, buffer.copyInto(times, new float[2], new float[5]));
+        assertEquals(5000, times[0]);
+        assertEquals(6000, times[1]);
+    }
+
+    @Test
+    public void clearEmptiesTheBuffer() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(2);
+        buffer.add(1000, 1, 1);
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getLatestTime());
+        assertEquals(0, buffer.copyInto(new long[2], new float[2], new float[2]));
+    }
+
+    @Test
+    public void capacityMustBePositive() {
+        try {
+            new SensorSampleBuffer(0);
+            fail("a buffer without capacity was created");
+        } catch (IllegalArgumentException expected) {
+            // nothing to buffer into
+        }
+    }
+}
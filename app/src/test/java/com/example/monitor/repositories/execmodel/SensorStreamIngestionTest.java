@@ -0,0 +1,146 @@
+package com.example.monitor.repositories.execmodel;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.example.monitor.databases.InMemoryWeatherDao;
+import com.example.monitor.models.Weather;
+import com.example.monitor.repositories.networkutils.TopicData;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/* hourly aggregation of the instant stream into an in-memory weather table */
+public class SensorStreamIngestionTest {
+
+    private static final String LOCATION = "Belgrade";
+    private static final long HOUR = MonitorConstants.ONE_HOUR;
+    private static final long START_HOUR = 1641816000000L; // 2022-01-10T12:00:00Z
+
+    private InMemoryWeatherDao weatherDao;
+    private ExecutorService writer;
+    private SensorStreamIngestion ingestion;
+
+    @Before
+    public void setUp() {
+        weatherDao = new InMemoryWeatherDao();
+        writer = Executors.newSingleThreadExecutor();
+        ingestion = new SensorStreamIngestion(weatherDao, writer, LOCATION);
+    }
+
+    @After
+    public void tearDown() {
+        writer.shutdownNow();
+    }
+
+    @Test
+    public void aSampleFromTheNextHourWritesTheFinishedOne() throws Exception {
+        ingestion.addSample(START_HOUR + 60000, 20, 40);
+        ingestion.addSample(START_HOUR + 120000, 22, 50);
+        ingestion.addSample(START_HOUR + 180000, 24, 60);
+        drainWrites();
+        assertEquals(0, weatherDao.size());
+
+        ingestion.addSample(START_HOUR + HOUR + 60000, 30, 30);
+        drainWrites();
+        List<Weather> rows = sensorRows();
+        assertEquals(1, rows.size());
+        Weather hour = rows.get(0);
+        assertEquals(START_HOUR, hour.getTimeInMillis());
+        assertEquals("22.0", hour.getCelsius());
+        assertEquals("20.0", hour.getMinCelsius());
+        assertEquals("24.0", hour.getMaxCelsius());
+        assertEquals("50.0", hour.getHumidity());
+        assertEquals("40.0", hour.getMinHumidity());
+        assertEquals("60.0", hour.getMaxHumidity());
+        assertEquals(MonitorEnums.UNDER_48H, hour.getPersistence());
+        assertEquals(4, ingestion.getSampleBuffer().size());
+    }
+
+    @Test
+    public void lateSampleAfterATimedFlushWritesNoSecondRow() throws Exception {
+        ingestion.addSample(START_HOUR + 60000, 20, 40);
+        ingestion.flushIfHourElapsed(START_HOUR + HOUR - 1);
+        drainWrites();
+        assertEquals(0, weatherDao.size());
+
+        ingestion.flushIfHourElapsed(START_HOUR + HOUR + MonitorConstants.JOB_OFFSET_HOURLY);
+        /* delivered late, e.g. from the ingestion queue; buffered only */
+        ingestion.addSample(START_HOUR + HOUR - 1000, 25, 45);
+        ingestion.flushIfHourElapsed(START_HOUR + 2 * HOUR + MonitorConstants.JOB_OFFSET_HOURLY);
+        ingestion.addSample(START_HOUR + 2 * HOUR + 60000, 21, 41);
+        drainWrites();
+
+        List<Weather> rows = sensorRows();
+        assertEquals(1, rows.size());
+        assertEquals(START_HOUR, rows.get(0).getTimeInMillis());
+        assertEquals("20.0", rows.get(0).getCelsius());
+        assertEquals(1, ingestion.getHoursWritten());
+        assertEquals(3, ingestion.getSampleBuffer().size());
+    }
+
+    @Test
+    public void theHourAfterATimedFlushIsStillAggregated() throws Exception {
+        ingestion.addSample(START_HOUR + 60000, 20, 40);
+        ingestion.flushIfHourElapsed(START_HOUR + HOUR + MonitorConstants.JOB_OFFSET_HOURLY);
+        ingestion.addSample(START_HOUR + HOUR + 120000, 23, 43);
+        ingestion.flushIfHourElapsed(START_HOUR + 2 * HOUR + MonitorConstants.JOB_OFFSET_HOURLY);
+        drainWrites();
+
+        List<Weather> rows = sensorRows();
+        assertEquals(2, rows.size());
+        assertEquals(START_HOUR, rows.get(0).getTimeInMillis());
+        assertEquals(START_HOUR + HOUR, rows.get(1).getTimeInMillis());
+        assertEquals("23.0", rows.get(1).getCelsius());
+    }
+
+    /* a retained sample is judged against the injected clock: on virtual time in 2022, five
+     * minutes old is fresh and twenty-five minutes old is stale */
+    @Test
+    public void retainedSampleAgeFollowsTheClock() throws Exception {
+        MonitorClock clock = () -> START_HOUR + 30 * 60000L;
+        ingestion = new SensorStreamIngestion(weatherDao, writer, LOCATION, clock);
+
+        ingestion.onSensorPublish(publish(START_HOUR + 25 * 60000L, 21.5));
+        assertEquals(1, ingestion.getSamplesAccepted());
+        ingestion.onSensorPublish(publish(START_HOUR + 5 * 60000L, 30));
+        assertEquals(1, ingestion.getSamplesAccepted());
+        assertEquals(1, ingestion.getSamplesRejected());
+    }
+
+    /* as the Pi publishes it, with local time */
+    private static Mqtt5Publish publish(long utcMillis, double celsius) {
+        long localSeconds = (utcMillis + MonitorConstants.TIMEZONE_OFFSET) / 1000;
+        String payload = String.format(Locale.US, "{\"EpochDateTime\":%d,"
+                + "\"Temperature\":{\"Value\":%.1f,\"Unit\":\"C\"},\"RelativeHumidity\":45}",
+                localSeconds, celsius);
+        return Mqtt5Publish.builder().topic(TopicData.getJsonSensorInstantDataTopic())
+                .payload(payload.getBytes(StandardCharsets.UTF_8)).build();
+    }
+
+    private void drainWrites() throws Exception {
+        writer.submit(() -> { }).get();
+    }
+
+    /* oldest first */
+    private List<Weather> sensorRows() {
+        List<Weather> rows = new ArrayList<>();
+        for (Weather weather : weatherDao.getAllWeatherPointsNonLive()) {
+            if (MonitorEnums.HOME_SENSOR.equals(weather.getCategory())) {
+                rows.add(0, weather);
+            }
+        }
+        return rows;
+    }
+}
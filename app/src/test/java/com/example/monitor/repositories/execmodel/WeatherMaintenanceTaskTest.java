@@ -0,0 +1,123 @@
+package com.example.monitor.repositories.execmodel;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.PriorityDatabaseExecutor;
+import com.example.monitor.databases.InMemoryWeatherDao;
+import com.example.monitor.models.Weather;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/* the id-range pass on the writer thread: it yields after each time slice so interactive work
+ * runs in between, and it ends once the last range is done */
+public class WeatherMaintenanceTaskTest {
+
+    private static final long NOW = 1641816000000L; // 2022-01-10T12:00:00Z
+    private static final long HOUR = MonitorConstants.ONE_HOUR;
+    private static final int CHUNKS = 12;
+    /* a few chunks fit in one slice, so the pass takes several */
+    private static final long CHUNK_MILLIS = MonitorConstants.MAINTENANCE_SLICE_MILLIS / 3 + 1;
+
+    /* each range update takes a while, as on a large table; every range is logged */
+    private static class SlowWeatherDao extends InMemoryWeatherDao {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public int updateAgeCategoriesInRange(int fromId, int toId, long visibleCutoff,
+                                              long storedCutoff, int underVisible,
+                                              int underStored, int overStored) {
+            events.add("range " + fromId);
+            try {
+                Thread.sleep(CHUNK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.updateAgeCategoriesInRange(fromId, toId, visibleCutoff, storedCutoff,
+                    underVisible, underStored, overStored);
+        }
+    }
+
+    private SlowWeatherDao weatherDao;
+    private PriorityDatabaseExecutor writer;
+
+    @Before
+    public void setUp() {
+        weatherDao = new SlowWeatherDao();
+        writer = new PriorityDatabaseExecutor("test-writer", 1);
+    }
+
+    @After
+    public void tearDown() {
+        writer.shutdownNow();
+    }
+
+    @Test
+    public void rangesAreAgedAndOldRowsDeleted() throws Exception {
+        List<Weather> rows = new ArrayList<>();
+        int rowCount = CHUNKS * MonitorConstants.MAINTENANCE_CHUNK_ROWS;
+        for (int i = 0; i < rowCount; i++) {
+            /* three ages in turn: visible, stored, past the storage duration */
+            long age = i % 3 == 0 ? HOUR
+                    : i % 3 == 1 ? MonitorConstants.VISIBILITY_DURATION * 1000L + HOUR
+                    : MonitorConstants.STORAGE_DURATION * 1000L + HOUR;
+            rows.add(new Weather("21.5", "45", null, "", "Belgrade", MonitorEnums.UNDER_48H,
+                    MonitorEnums.HOME_SENSOR, NOW - age));
+        }
+        weatherDao.insertWeatherList(rows);
+
+        new WeatherMaintenanceTask(weatherDao, writer, MonitorConstants.VISIBILITY_DURATION,
+                MonitorConstants.STORAGE_DURATION, NOW).start().get(10, TimeUnit.SECONDS);
+
+        assertEquals(CHUNKS, weatherDao.events.size());
+        assertEquals(rowCount - rowCount / 3, weatherDao.size());
+        for (Weather weather : weatherDao.getAllWeatherPointsNonLive()) {
+            long age = NOW - weather.getTimeInMillis();
+            assertEquals(age == HOUR ? MonitorEnums.UNDER_48H
+                    : MonitorEnums.BETWEEN_48H_AND_WEEK, weather.getPersistence());
+        }
+    }
+
+    /* queued once the pass is under way, the read runs at the next yield, not at the end */
+    @Test
+    public void interactiveWorkRunsBetweenSlices() throws Exception {
+        List<Weather> rows = new ArrayList<>();
+        for (int i = 0; i < CHUNKS * MonitorConstants.MAINTENANCE_CHUNK_ROWS; i++) {
+            rows.add(new Weather("21.5", "45", null, "", "Belgrade", MonitorEnums.UNDER_48H,
+                    MonitorEnums.HOME_SENSOR, NOW - HOUR));
+        }
+        weatherDao.insertWeatherList(rows);
+
+        WeatherMaintenanceTask task = new WeatherMaintenanceTask(weatherDao, writer,
+                MonitorConstants.VISIBILITY_DURATION, MonitorConstants.STORAGE_DURATION, NOW);
+        CompletableFuture<Void> done = task.start();
+        while (weatherDao.events.isEmpty()) {
+            Thread.sleep(1);
+        }
+        writer.submit(() -> weatherDao.events.add("read"), MonitorEnums.DB_PRIORITY_INTERACTIVE)
+                .get(10, TimeUnit.SECONDS);
+        done.get(10, TimeUnit.SECONDS);
+
+        int read = weatherDao.events.indexOf("read");
+        assertTrue("read ran after the pass: " + weatherDao.events,
+                read > 0 && read < weatherDao.events.size() - 1);
+        assertEquals(CHUNKS + 1, weatherDao.events.size());
+    }
+
+    @Test
+    public void anEmptyTableEndsAtOnce() throws Exception {
+        new WeatherMaintenanceTask(weatherDao, writer, MonitorConstants.VISIBILITY_DURATION,
+                MonitorConstants.STORAGE_DURATION, NOW).start().get(10, TimeUnit.SECONDS);
+        assertEquals(0, weatherDao.size());
+    }
+}
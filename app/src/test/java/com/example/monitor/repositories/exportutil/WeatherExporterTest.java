@@ -0,0 +1,173 @@
+package com.example.monitor.repositories.exportutil;
+
+import com.example.monitor.MonitorEnums;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/* CSV and NDJSON rows written from a cursor built in the test, so no database is needed */
+public class WeatherExporterTest {
+
+    private static final long TIME = 1641645000000L; // 2022-01-08T12:30:00Z
+    private static final String[] COLUMNS = {"id", "timeInMillis", "time", "location",
+            "category", "persistence", "celsius", "humidity", "minCelsius", "maxCelsius",
+            "minHumidity", "maxHumidity", "link"};
+    private static final String HEADER = "id,timeInMillis,time,location,category,persistence,"
+            + "celsius,humidity,minCelsius,maxCelsius,minHumidity,maxHumidity,link\n";
+
+    /* only fields holding a separator, quote or line break are quoted, with quotes doubled */
+    @Test
+    public void csvQuotesOnlyWhatNeedsIt() throws Exception {
+        RowCursor cursor = new RowCursor(COLUMNS)
+                .addRow(row(1, "Novi Sad, \"Liman\"", "http://x/?a=1;b=2"))
+                .addRow(row(2, "Belgrade", "line\nbreak"))
+                .addRow(row(3, "'single' quotes", "carriage\rreturn"));
+
+        assertEquals(HEADER
+                + "1," + TIME + ",12:30,\"Novi Sad, \"\"Liman\"\"\",2,0,21.5,45,,,,,"
+                + "http://x/?a=1;b=2\n"
+                + "2," + TIME + ",12:30,Belgrade,2,0,21.5,45,,,,,\"line\nbreak\"\n"
+                + "3," + TIME + ",12:30,'single' quotes,2,0,21.5,45,,,,,\"carriage\rreturn\"\n",
+                export(cursor, MonitorEnums.EXPORT_FORMAT_CSV));
+    }
+
+    /* NULL is an empty field, in string and integer columns alike */
+    @Test
+    public void csvNullColumnsAreEmpty() throws Exception {
+        RowCursor cursor = new RowCursor(COLUMNS).addRow(7L, TIME, null, "Belgrade", null,
+                null, "21.5", null, null, null, null, null, null);
+
+        assertEquals(HEADER + "7," + TIME + ",,Belgrade,,,21.5,,,,,,\n",
+                export(cursor, MonitorEnums.EXPORT_FORMAT_CSV));
+    }
+
+    /* one object per line: quotes and backslashes are escaped and control characters written
+     * as escapes, so no row spans two lines and every string reads back as it was */
+    @Test
+    public void ndjsonEscapesQuotesBackslashesAndControlCharacters() throws Exception {
+        String location = "Novi Sad \"Liman\" C:\\sensors";
+        String link = "tab\tnewline\ncr\rbell\u0007unit\u001fend";
+        RowCursor cursor = new RowCursor(COLUMNS)
+                .addRow(row(1, location, link))
+                .addRow(row(2, "Belgrade", "\u0000"));
+
+        String ndjson = export(cursor, MonitorEnums.EXPORT_FORMAT_NDJSON);
+        String[] lines = ndjson.split("\n", -1);
+        assertEquals(3, lines.length);
+        assertEquals("", lines[2]);
+        for (int i = 0; i < 2; i++) {
+            for (char c : lines[i].toCharArray()) {
+                assertTrue("raw control character " + (int) c, c >= 0x20);
+            }
+        }
+        assertTrue(lines[0], lines[0].contains(
+                "\"location\":\"Novi Sad \\\"Liman\\\" C:\\\\sensors\""));
+        assertTrue(lines[0], lines[0].contains(
+                "\"link\":\"tab\\tnewline\\ncr\\rbell\\u0007unit\\u001fend\""));
+        assertTrue(lines[1], lines[1].contains("\"link\":\"\\u0000\""));
+
+        JSONObject first = new JSONObject(lines[0]);
+        assertEquals(location, first.getString("location"));
+        assertEquals(link, first.getString("link"));
+        assertEquals("\u0000", new JSONObject(lines[1]).getString("link"));
+    }
+
+    /* NULL is null, integer columns are numbers and the rest strings, even when numeric */
+    @Test
+    public void ndjsonNullColumnsAreJsonNull() throws Exception {
+        RowCursor cursor = new RowCursor(COLUMNS).addRow(7L, TIME, null, "Belgrade", null,
+                null, "21.5", null, null, null, null, null, null);
+
+        String line = export(cursor, MonitorEnums.EXPORT_FORMAT_NDJSON);
+        assertEquals("{\"id\":7,\"timeInMillis\":" + TIME + ",\"time\":null,"
+                + "\"location\":\"Belgrade\",\"category\":null,\"persistence\":null,"
+                + "\"celsius\":\"21.5\",\"humidity\":null,\"minCelsius\":null,"
+                + "\"maxCelsius\":null,\"minHumidity\":null,\"maxHumidity\":null,"
+                + "\"link\":null}\n", line);
+        JSONObject row = new JSONObject(line);
+        assertTrue(row.isNull("category"));
+        assertEquals(TIME, row.getLong("timeInMillis"));
+    }
+
+    /* more rows than fit in the buffers; the gzip stream is finished when write closes it and
+     * unpacks to the same bytes as the plain export */
+    @Test
+    public void gzipUnpacksToThePlainExport() throws Exception {
+        for (Integer format : new Integer[] {MonitorEnums.EXPORT_FORMAT_CSV,
+                MonitorEnums.EXPORT_FORMAT_NDJSON}) {
+            ByteArrayOutputStream plain = new ByteArrayOutputStream();
+            assertEquals(5000, WeatherExporter.write(manyRows(5000),
+                    new WeatherExportOptions(format, false, null, null, null, null), plain));
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+            assertEquals(5000, WeatherExporter.write(manyRows(5000),
+                    new WeatherExportOptions(format, true, null, null, null, null), gzipped));
+
+            byte[] packed = gzipped.toByteArray();
+            assertEquals(0x1f, packed[0] & 0xff);
+            assertEquals(0x8b, packed[1] & 0xff);
+            assertTrue(packed.length < plain.size());
+            assertArrayEquals(plain.toByteArray(), gunzip(packed));
+        }
+    }
+
+    @Test
+    public void anEmptyCursorWritesOnlyTheCsvHeader() throws Exception {
+        assertEquals(HEADER, export(new RowCursor(COLUMNS), MonitorEnums.EXPORT_FORMAT_CSV));
+        assertEquals("", export(new RowCursor(COLUMNS), MonitorEnums.EXPORT_FORMAT_NDJSON));
+    }
+
+    @Test
+    public void aMissingColumnIsRefused() throws Exception {
+        RowCursor cursor = new RowCursor("id", "timeInMillis");
+        try {
+            export(cursor, MonitorEnums.EXPORT_FORMAT_CSV);
+            fail("exported without the time column");
+        } catch (IllegalArgumentException expected) {
+            assertFalse(cursor.isClosed());
+        }
+    }
+
+    private static Object[] row(long id, String location, String link) {
+        return new Object[] {id, TIME, "12:30", location, (long) MonitorEnums.HOME_SENSOR,
+                (long) MonitorEnums.UNDER_48H, "21.5", "45", null, null, null, null, link};
+    }
+
+    private static RowCursor manyRows(int count) {
+        RowCursor cursor = new RowCursor(COLUMNS);
+        for (int i = 0; i < count; i++) {
+            cursor.addRow(row(i, i % 2 == 0 ? "Belgrade" : "Novi Sad, \"Liman\"", null));
+        }
+        return cursor;
+    }
+
+    private static String export(RowCursor cursor, Integer format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WeatherExporter.write(cursor, new WeatherExportOptions(format, false, null, null, null,
+                null), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gunzip(byte[] packed) throws IOException {
+        ByteArrayOutputStream unpacked = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(packed))) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                unpacked.write(buffer, 0, read);
+            }
+        }
+        return unpacked.toByteArray();
+    }
+}
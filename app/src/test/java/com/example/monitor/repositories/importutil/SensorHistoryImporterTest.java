@@ -0,0 +1,246 @@
+package com.example.monitor.repositories.importutil;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.databases.InMemoryWeatherDao;
+import com.example.monitor.models.Weather;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/* The history import end to end, against an in-memory weather table: each input format is split,
+ * parsed and folded into the same hourly points. */
+public class SensorHistoryImporterTest {
+
+    private static final long NOW = 1641645000000L; // 2022-01-08T12:30:00Z
+    private static final long HOUR = MonitorConstants.ONE_HOUR;
+    private static final long FIRST_HOUR = NOW - NOW % HOUR - 5 * HOUR;
+    private static final String LOCATION = "Belgrade";
+
+    /* two hours: three samples in the first, one in the second */
+    private static final long[] TIMES = {FIRST_HOUR, FIRST_HOUR + 20 * 60000L,
+            FIRST_HOUR + 59 * 60000L, FIRST_HOUR + HOUR + 60000L};
+    private static final double[] CELSIUS = {20.0, 22.0, 24.5, 18.0};
+    private static final double[] HUMIDITY = {40.0, 50.0, 45.0, 60.0};
+
+    private InMemoryWeatherDao weatherDao;
+    private SensorHistoryImporter importer;
+    private final List<ImportProgress> progress = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        weatherDao = new InMemoryWeatherDao();
+        importer = new SensorHistoryImporter(weatherDao, LOCATION, () -> NOW);
+    }
+
+    @Test
+    public void jsonArrayWithNestedObjectsAndEscapedQuotes() throws Exception {
+        StringBuilder json = new StringBuilder("[\r\n");
+        for (int i = 0; i < TIMES.length; i++) {
+            /* braces and escaped quotes inside strings don't end the record */
+            json.append(i == 0 ? "  " : ",\r\n  ").append(record(i, "pi \\\"4b\\\" {}}"));
+        }
+        json.append("\r\n]\r\n");
+
+        ImportProgress result = run(bytes(json.toString()));
+        assertEquals(4, result.getSamplesParsed());
+        assertEquals(0, result.getSamplesRejected());
+        assertTwoHoursWritten(result);
+    }
+
+    @Test
+    public void ndjsonWithByteOrderMarkAndCarriageReturns() throws Exception {
+        StringBuilder ndjson = new StringBuilder("\uFEFF");
+        for (int i = 0; i < TIMES.length; i++) {
+            ndjson.append(record(i, "pi4b")).append("\r\n");
+        }
+        ndjson.append("\r\n");
+
+        assertTwoHoursWritten(run(bytes(ndjson.toString())));
+    }
+
+    @Test
+    public void gzippedInputIsRecognized() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < TIMES.length; i++) {
+            ndjson.append(record(i, "pi4b")).append('\n');
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes(ndjson.toString()));
+        }
+
+        ImportProgress result = run(compressed.toByteArray());
+        assertEquals(compressed.size(), result.getBytesRead());
+        assertTwoHoursWritten(result);
+    }
+
+    @Test
+    public void csvColumnsAreFoundByTheirHeaderNames() throws Exception {
+        /* the weather export's names, quoted and in another order, with UTC millis */
+        StringBuilder export = new StringBuilder("\"humidity\",\"location\",\"timeInMillis\",\"celsius\"\r\n");
+        for (int i = 0; i < TIMES.length; i++) {
+            export.append(String.format(Locale.US, "\"%.1f\",\"%s\",\"%d\",\"%.1f\"\r\n",
+                    HUMIDITY[i], LOCATION, TIMES[i], CELSIUS[i]));
+        }
+        export.append("not,a,sample,line\r\n");
+        ImportProgress result = run(bytes(export.toString()));
+        assertEquals(1, result.getSamplesRejected());
+        assertTwoHoursWritten(result);
+
+        /* the Pi's names, with local epoch seconds */
+        setUp();
+        StringBuilder pi = new StringBuilder("EpochDateTime,Temperature,RelativeHumidity\n");
+        for (int i = 0; i < TIMES.length; i++) {
+            pi.append(String.format(Locale.US, "%d,%.1f,%.1f\n", localSeconds(TIMES[i]),
+                    CELSIUS[i], HUMIDITY[i]));
+        }
+        assertTwoHoursWritten(run(bytes(pi.toString())));
+    }
+
+    @Test
+    public void csvWithoutATimeColumnIsRefused() throws Exception {
+        try {
+            run(bytes("celsius,humidity\n21.5,40\n"));
+            fail("a CSV without a time column was imported");
+        } catch (IOException expected) {
+            assertEquals(0, weatherDao.size());
+        }
+    }
+
+    /* samples past the storage duration are expired, those of the current hour are the live
+     * stream's; the rest fold into one point per hour */
+    @Test
+    public void samplesAreFoldedHourlyWithinTheStoredRange() throws Exception {
+        long expired = NOW - MonitorConstants.STORAGE_DURATION * 1000L - HOUR;
+        long currentHour = NOW - NOW % HOUR;
+        StringBuilder csv = new StringBuilder("timeInMillis,celsius,humidity\n");
+        csv.append(expired).append(",10,10\n");
+        for (int i = 0; i < TIMES.length; i++) {
+            csv.append(TIMES[i]).append(',').append(CELSIUS[i]).append(',').append(HUMIDITY[i])
+                    .append('\n');
+        }
+        csv.append(currentHour + 60000L).append(",30,30\n");
+
+        ImportProgress result = run(bytes(csv.toString()));
+        assertEquals(6, result.getSamplesParsed());
+        assertEquals(1, result.getSamplesExpired());
+        assertEquals(1, result.getSamplesRejected());
+        assertTwoHoursWritten(result);
+    }
+
+    @Test
+    public void hoursAlreadyStoredAreLeftAsTheyAre() throws Exception {
+        Weather stored = new Weather("99.0", "99.0", null, "", LOCATION, MonitorEnums.UNDER_48H,
+                MonitorEnums.HOME_SENSOR, FIRST_HOUR);
+        weatherDao.insert(stored);
+        /* the same hour at another location doesn't count */
+        weatherDao.insert(new Weather("99.0", "99.0", null, "", "Novi Sad",
+                MonitorEnums.UNDER_48H, MonitorEnums.HOME_SENSOR, FIRST_HOUR + HOUR));
+
+        StringBuilder csv = new StringBuilder("timeInMillis,celsius,humidity\n");
+        for (int i = 0; i < TIMES.length; i++) {
+            csv.append(TIMES[i]).append(',').append(CELSIUS[i]).append(',').append(HUMIDITY[i])
+                    .append('\n');
+        }
+        ImportProgress result = run(bytes(csv.toString()));
+
+        assertEquals(1, result.getHoursDuplicate());
+        assertEquals(1, result.getHoursWritten());
+        assertEquals("99.0", hourAt(LOCATION, FIRST_HOUR).getCelsius());
+        assertEquals("18.0", hourAt(LOCATION, FIRST_HOUR + HOUR).getCelsius());
+    }
+
+    /* cancelled from the first progress report, which comes once the parsers' window is full:
+     * reading stops at the next chunk and nothing is written */
+    @Test
+    public void cancelStopsBetweenChunksAndWritesNothing() throws Exception {
+        int window = Runtime.getRuntime().availableProcessors()
+                * MonitorConstants.IMPORT_CHUNKS_PER_THREAD;
+        int records = (window + 4) * MonitorConstants.IMPORT_CHUNK_RECORDS;
+        StringBuilder csv = new StringBuilder("timeInMillis,celsius,humidity\n");
+        for (int i = 0; i < records; i++) {
+            csv.append(FIRST_HOUR + i % (4 * HOUR)).append(",21.5,40\n");
+        }
+        byte[] input = bytes(csv.toString());
+
+        ImportProgress result = importer.run(new ByteArrayInputStream(input), input.length,
+                update -> {
+                    progress.add(update);
+                    importer.cancel();
+                });
+
+        assertTrue(result.isCancelled());
+        assertFalse(result.isDone());
+        assertTrue(result.getSamplesParsed() < records);
+        assertTrue(result.getBytesRead() < input.length);
+        assertEquals(0, result.getHoursWritten());
+        assertEquals(0, weatherDao.size());
+    }
+
+    private ImportProgress run(byte[] input) throws Exception {
+        ImportProgress result = importer.run(new ByteArrayInputStream(input), input.length,
+                progress::add);
+        assertTrue(result.isDone());
+        assertEquals(100, result.getPercent());
+        return result;
+    }
+
+    /* 20, 22 and 24.5 C, 40 to 50 % in the first hour, 18 C and 60 % alone in the second */
+    private void assertTwoHoursWritten(ImportProgress result) {
+        assertEquals(2, result.getHoursWritten());
+        assertEquals(2, weatherDao.size());
+        Weather first = hourAt(LOCATION, FIRST_HOUR);
+        assertEquals("22.2", first.getCelsius());
+        assertEquals("45.0", first.getHumidity());
+        assertEquals("20.0", first.getMinCelsius());
+        assertEquals("24.5", first.getMaxCelsius());
+        assertEquals("40.0", first.getMinHumidity());
+        assertEquals("50.0", first.getMaxHumidity());
+        assertEquals(MonitorEnums.HOME_SENSOR, first.getCategory());
+        assertEquals(MonitorEnums.UNDER_48H, first.getPersistence());
+        Weather second = hourAt(LOCATION, FIRST_HOUR + HOUR);
+        assertEquals("18.0", second.getCelsius());
+        assertEquals("60.0", second.getMaxHumidity());
+    }
+
+    private Weather hourAt(String location, long hour) {
+        for (Weather weather : weatherDao.getAllWeatherPointsNonLive()) {
+            if (location.equals(weather.getLocation()) && weather.getTimeInMillis() == hour) {
+                return weather;
+            }
+        }
+        throw new AssertionError("no point at " + hour + " for " + location);
+    }
+
+    /* as the Pi publishes it, with local time */
+    private static String record(int i, String link) {
+        long seconds = localSeconds(TIMES[i]);
+        return String.format(Locale.US, "{\"DateTime\":\"%d\",\"EpochDateTime\":%d,"
+                        + "\"Temperature\":{\"Value\":%.1f,\"Unit\":\"C\"},"
+                        + "\"RelativeHumidity\":%.1f,\"Link\":\"%s\"}", seconds, seconds,
+                CELSIUS[i], HUMIDITY[i], link);
+    }
+
+    private static long localSeconds(long utcMillis) {
+        return (utcMillis + MonitorConstants.TIMEZONE_OFFSET) / 1000;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
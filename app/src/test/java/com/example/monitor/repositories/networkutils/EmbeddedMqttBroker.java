@@ -0,0 +1,100 @@
+package com.example.monitor.repositories.networkutils;
+
+import com.hivemq.embedded.EmbeddedExtension;
+import com.hivemq.embedded.EmbeddedHiveMQ;
+import com.hivemq.extension.sdk.api.ExtensionMain;
+import com.hivemq.extension.sdk.api.auth.SimpleAuthenticator;
+import com.hivemq.extension.sdk.api.parameter.ExtensionStartInput;
+import com.hivemq.extension.sdk.api.parameter.ExtensionStartOutput;
+import com.hivemq.extension.sdk.api.parameter.ExtensionStopInput;
+import com.hivemq.extension.sdk.api.parameter.ExtensionStopOutput;
+import com.hivemq.extension.sdk.api.services.Services;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+
+/* in-process MQTT 5 broker on localhost, listening on a free TCP port without TLS */
+public class EmbeddedMqttBroker implements AutoCloseable {
+    public static final String HOST = "127.0.0.1";
+
+    private final int port;
+    private final File baseFolder;
+    private EmbeddedHiveMQ hiveMQ;
+
+    public EmbeddedMqttBroker() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        baseFolder = Files.createTempDirectory("embedded-mqtt").toFile();
+    }
+
+    public void start() throws IOException {
+        File configFolder = new File(baseFolder, "conf");
+        File dataFolder = new File(baseFolder, "data");
+        File extensionsFolder = new File(baseFolder, "extensions");
+        configFolder.mkdirs();
+        dataFolder.mkdirs();
+        extensionsFolder.mkdirs();
+
+        try (Writer writer = new FileWriter(new File(configFolder, "config.xml"))) {
+            writer.write("<?xml version=\"1.0\"?>\n"
+                    + "<hivemq>\n"
+                    + "  <listeners>\n"
+                    + "    <tcp-listener>\n"
+                    + "      <port>" + port + "</port>\n"
+                    + "      <bind-address>" + HOST + "</bind-address>\n"
+                    + "    </tcp-listener>\n"
+                    + "  </listeners>\n"
+                    + "  <anonymous-usage-statistics><enabled>false</enabled></anonymous-usage-statistics>\n"
+                    + "</hivemq>\n");
+        }
+
+        hiveMQ = EmbeddedHiveMQ.builder()
+                .withConfigurationFolder(configFolder.toPath())
+                .withDataFolder(dataFolder.toPath())
+                .withExtensionsFolder(extensionsFolder.toPath())
+                .withEmbeddedExtension(allowAllExtension())
+                .build();
+        hiveMQ.start().join();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (hiveMQ != null) {
+            hiveMQ.stop().join();
+            hiveMQ.close();
+        }
+    }
+
+    /* the broker denies every client unless an authenticator is registered */
+    private static EmbeddedExtension allowAllExtension() {
+        return EmbeddedExtension.builder()
+                .withId("allow-all")
+                .withName("Allow all clients")
+                .withVersion("1.0")
+                .withAuthor("Monitor tests")
+                .withPriority(0)
+                .withStartPriority(1000)
+                .withExtensionMain(new ExtensionMain() {
+                    @Override
+                    public void extensionStart(ExtensionStartInput input, ExtensionStartOutput output) {
+                        Services.securityRegistry().setAuthenticatorProvider(providerInput ->
+                                (SimpleAuthenticator) (authInput, authOutput) ->
+                                        authOutput.authenticateSuccessfully());
+                    }
+
+                    @Override
+                    public void extensionStop(ExtensionStopInput input, ExtensionStopOutput output) {
+                    }
+                })
+                .build();
+    }
+}
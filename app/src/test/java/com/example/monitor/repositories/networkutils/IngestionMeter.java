@@ -0,0 +1,59 @@
+package com.example.monitor.repositories.networkutils;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/* counts deliveries and records end-to-end latencies (publish to end of callback) */
+public class IngestionMeter {
+    private final String name;
+    private long[] latenciesNanos = new long[1024];
+    private int count = 0;
+    private long firstNanos = 0;
+    private long lastNanos = 0;
+
+    public IngestionMeter(String name) {
+        this.name = name;
+    }
+
+    public synchronized void record(long sendNanos, long doneNanos) {
+        if (count == latenciesNanos.length) {
+            latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+        }
+        latenciesNanos[count++] = doneNanos - sendNanos;
+        if (firstNanos == 0) {
+            firstNanos = doneNanos;
+        }
+        lastNanos = doneNanos;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /* messages per second between the first and the last delivery */
+    public synchronized double getThroughput() {
+        if (count < 2) {
+            return 0;
+        }
+        return (count - 1) / ((lastNanos - firstNanos) / 1e9);
+    }
+
+    public synchronized double getLatencyPercentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latenciesNanos, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(count - 1, Math.ceil(percentile / 100.0 * count) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    public synchronized String report(long published) {
+        return String.format(Locale.US,
+                "%s: published %d, received %d, dropped %d, throughput %.1f msg/s, "
+                        + "latency p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                name, published, count, published - count, getThroughput(),
+                getLatencyPercentileMillis(50), getLatencyPercentileMillis(99),
+                getLatencyPercentileMillis(100));
+    }
+}
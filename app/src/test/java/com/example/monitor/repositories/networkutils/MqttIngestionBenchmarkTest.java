@@ -0,0 +1,144 @@
+package com.example.monitor.repositories.networkutils;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.MonitorEnums;
+import com.example.monitor.backgroundutil.BoundedHandoffQueue;
+import com.example.monitor.backgroundutil.ExecutorHelper;
+import com.example.monitor.databases.InMemoryWeatherDao;
+import com.example.monitor.repositories.execmodel.DeviceLivenessTracker;
+import com.example.monitor.repositories.execmodel.SensorStreamIngestion;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+
+/* Drives the app's MQTT client and ingestion callbacks against an in-process broker, so
+ * ingestion changes can be benchmarked offline. It runs for seconds, needs Java 11 for the broker
+ * and shares the DeviceLivenessTracker singleton, so it is skipped unless asked for; the latency
+ * reports are logged. Rates and duration are configurable:
+ * ./gradlew test -Dmonitor.bench=true -Dmonitor.bench.sensorRate=500
+ *     -Dmonitor.bench.deviceRate=50 -Dmonitor.bench.devices=200 -Dmonitor.bench.durationMs=10000 */
+public class MqttIngestionBenchmarkTest {
+    private static final Logger LOG = Logger.getLogger("MqttIngestionBenchmarkTest");
+
+    private static final double SENSOR_RATE = Double.parseDouble(
+            System.getProperty("monitor.bench.sensorRate", "100"));
+    private static final double DEVICE_RATE = Double.parseDouble(
+            System.getProperty("monitor.bench.deviceRate", "20"));
+    private static final int DEVICE_COUNT = Integer.parseInt(
+            System.getProperty("monitor.bench.devices", "10"));
+    private static final long DURATION_MILLIS = Long.parseLong(
+            System.getProperty("monitor.bench.durationMs", "3000"));
+
+    private static EmbeddedMqttBroker broker;
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    @BeforeClass
+    public static void startBroker() throws Exception {
+        Assume.assumeTrue("benchmark; run with -Dmonitor.bench=true",
+                Boolean.getBoolean("monitor.bench"));
+        broker = new EmbeddedMqttBroker();
+        broker.start();
+        MQTTConnection.getInstance(EmbeddedMqttBroker.HOST, broker.getPort(), null, null, false);
+        assertEquals(MonitorEnums.MQTT_CONNECTED, (Integer) MQTTConnection.connectAsync());
+    }
+
+    @AfterClass
+    public static void stopBroker() throws Exception {
+        if (broker == null) {
+            return;
+        }
+        MQTTConnection.getClient().toAsync().disconnect().get(MonitorConstants.STD_TIMEOUT,
+                TimeUnit.MILLISECONDS);
+        broker.close();
+    }
+
+    @Test
+    public void ingestsSensorAndDeviceTrafficWithoutDrops() throws Exception {
+        ExecutorService cachingExecutor = Executors.newSingleThreadExecutor();
+        InMemoryWeatherDao weatherDao = new InMemoryWeatherDao();
+        SensorStreamIngestion ingestion = new SensorStreamIngestion(weatherDao, cachingExecutor,
+                "Belgrade");
+        DeviceLivenessTracker tracker = DeviceLivenessTracker.getInstance();
+
+        MqttLoadGenerator generator = new MqttLoadGenerator(EmbeddedMqttBroker.HOST,
+                broker.getPort(), SENSOR_RATE, DEVICE_RATE, DEVICE_COUNT);
+        IngestionMeter sensorMeter = new IngestionMeter("sensor");
+        IngestionMeter deviceMeter = new IngestionMeter("device");
+
+        /* the production handlers, wrapped to time each message once it has been handled on the
+         * ingestion thread; the client's callbacks only hand off, as in the app */
+        BoundedHandoffQueue<Mqtt5Publish> ingestionQueue =
+                ExecutorHelper.getMqttIngestionQueueInstance();
+        BoundedHandoffQueue.Handler<Mqtt5Publish> sensorHandler = publish -> {
+            ingestion.onSensorPublish(publish);
+            record(sensorMeter, generator, publish);
+        };
+        BoundedHandoffQueue.Handler<Mqtt5Publish> deviceHandler = publish -> {
+            tracker.onStatusPublish(publish);
+            record(deviceMeter, generator, publish);
+        };
+        Mqtt5Client client = MQTTConnection.getClient();
+        client.toAsync().subscribeWith()
+                .topicFilter(TopicData.getJsonSensorInstantDataTopic())
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .callback(publish -> ingestionQueue.offer(publish, sensorHandler))
+                .send().get(MonitorConstants.STD_TIMEOUT, TimeUnit.MILLISECONDS);
+        client.toAsync().subscribeWith()
+                .topicFilter(TopicData.getDeviceStatusWildcardTopic())
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .callback(publish -> ingestionQueue.offer(publish, deviceHandler))
+                .send().get(MonitorConstants.STD_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        generator.run(DURATION_MILLIS);
+        awaitDelivery(sensorMeter, generator.getSensorPublished());
+        awaitDelivery(deviceMeter, generator.getDevicePublished());
+
+        LOG.info(sensorMeter.report(generator.getSensorPublished()));
+        LOG.info(deviceMeter.report(generator.getDevicePublished()));
+        LOG.info(ingestionQueue.toString());
+
+        assertEquals(generator.getSensorPublished(), sensorMeter.getCount());
+        assertEquals(generator.getDevicePublished(), deviceMeter.getCount());
+        assertEquals(sensorMeter.getCount(), ingestion.getSamplesAccepted());
+        assertEquals(0, ingestionQueue.getDropped());
+        assertEquals(0, ingestionQueue.getFailed());
+
+        Map<Integer, Integer> states = tracker.getDeviceStates().getValue();
+        assertEquals(MonitorEnums.DEVICE_ONLINE, states.get(MonitorEnums.LED_DEVICE));
+        cachingExecutor.shutdown();
+    }
+
+    private static void record(IngestionMeter meter, MqttLoadGenerator generator,
+                               Mqtt5Publish publish) {
+        long sendNanos = generator.getSendNanos(publish.getCorrelationData().orElse(null));
+        if (sendNanos > 0) {
+            meter.record(sendNanos, System.nanoTime());
+        }
+    }
+
+    /* QoS 1 on a local broker should deliver everything; give stragglers a moment */
+    private static void awaitDelivery(IngestionMeter meter, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + MonitorConstants.STD_TIMEOUT;
+        while (meter.getCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
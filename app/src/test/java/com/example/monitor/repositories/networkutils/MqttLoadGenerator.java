@@ -0,0 +1,141 @@
+package com.example.monitor.repositories.networkutils;
+
+import com.example.monitor.MonitorConstants;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Publishes sensor samples and device heartbeats from its own client at fixed rates, the way the
+ * Pi does. Every message carries its sequence number as MQTT 5 correlation data, and the send
+ * time of each sequence number is kept so receivers can compute end-to-end latency. */
+public class MqttLoadGenerator {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Mqtt5Client publisher;
+    private final double sensorRatePerSecond;
+    private final double deviceRatePerSecond;
+    private final String[] deviceTopics;
+
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong sensorPublished = new AtomicLong();
+    private final AtomicLong devicePublished = new AtomicLong();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private long[] sendNanos = new long[0];
+
+    /* devices beyond the app's known status topics exercise the callback but stay untracked */
+    public MqttLoadGenerator(String host, int port, double sensorRatePerSecond,
+                             double deviceRatePerSecond, int deviceCount) {
+        this.publisher = Mqtt5Client.builder()
+                .identifier("load-generator-" + UUID.randomUUID())
+                .serverHost(host)
+                .serverPort(port)
+                .build();
+        this.sensorRatePerSecond = sensorRatePerSecond;
+        this.deviceRatePerSecond = deviceRatePerSecond;
+        this.deviceTopics = new String[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            deviceTopics[i] = i < TopicData.getDeviceCount()
+                    ? TopicData.getDeviceStatusTopics(i) : "devices/SIM_" + i + "/status";
+        }
+    }
+
+    /* publishes for the given duration, in 10 ms batches, and returns when done */
+    public void run(long durationMillis) throws Exception {
+        int expected = (int) ((sensorRatePerSecond + deviceRatePerSecond)
+                * (durationMillis / 1000.0) * 1.1) + 16;
+        sendNanos = new long[expected];
+        publisher.toAsync().connect().get(MonitorConstants.STD_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        double sensorCredit = 0;
+        double deviceCredit = 0;
+        int deviceCursor = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long nextTick = start;
+        while (System.nanoTime() < end) {
+            sensorCredit += sensorRatePerSecond * TICK_NANOS / 1e9;
+            deviceCredit += deviceRatePerSecond * TICK_NANOS / 1e9;
+            for (; sensorCredit >= 1; sensorCredit--) {
+                if (publish(TopicData.getJsonSensorInstantDataTopic(), sensorPayload())) {
+                    sensorPublished.incrementAndGet();
+                }
+            }
+            for (; deviceCredit >= 1; deviceCredit--) {
+                if (publish(deviceTopics[deviceCursor], devicePayload())) {
+                    devicePublished.incrementAndGet();
+                }
+                deviceCursor = (deviceCursor + 1) % deviceTopics.length;
+            }
+            nextTick += TICK_NANOS;
+            long sleepNanos = nextTick - System.nanoTime();
+            if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+        }
+
+        /* QoS 1 publishes still in flight would be lost on disconnect */
+        long published = sensorPublished.get() + devicePublished.get();
+        long deadline = System.currentTimeMillis() + MonitorConstants.STD_TIMEOUT;
+        while (acknowledged.get() < published && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        publisher.toAsync().disconnect().get(MonitorConstants.STD_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean publish(String topic, String payload) {
+        long sequence = nextSequence.getAndIncrement();
+        if (sequence >= sendNanos.length) {
+            return false; /* outside the planned budget; not sent */
+        }
+        sendNanos[(int) sequence] = System.nanoTime();
+        publisher.toAsync().publishWith()
+                .topic(topic)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .correlationData(ByteBuffer.allocate(8).putLong(0, sequence).array())
+                .payload(payload.getBytes(StandardCharsets.UTF_8))
+                .send()
+                .whenComplete((result, throwable) -> acknowledged.incrementAndGet());
+        return true;
+    }
+
+    /* same shape as the Pi's payloads; timestamps are in the Pi's local time */
+    private static String sensorPayload() {
+        long localSeconds = (System.currentTimeMillis() + MonitorConstants.TIMEZONE_OFFSET) / 1000;
+        double celsius = 20 + (localSeconds % 50) / 10.0;
+        return String.format(Locale.US, "[{\"DateTime\":\"%d\",\"EpochDateTime\":%d,"
+                        + "\"Temperature\":{\"Value\":%.1f,\"Unit\":\"C\"},"
+                        + "\"RelativeHumidity\":45,\"Link\":\"loadgen\"}]",
+                localSeconds, localSeconds, celsius);
+    }
+
+    private static String devicePayload() {
+        long localSeconds = (System.currentTimeMillis() + MonitorConstants.TIMEZONE_OFFSET) / 1000;
+        return "{\"EpochDateTime\":" + localSeconds + "}";
+    }
+
+    /* send time of a message, or -1 if the correlation data isn't one of ours */
+    public long getSendNanos(ByteBuffer correlationData) {
+        if (correlationData == null || correlationData.remaining() != 8) {
+            return -1;
+        }
+        long sequence = correlationData.getLong(correlationData.position());
+        if (sequence < 0 || sequence >= sendNanos.length) {
+            return -1;
+        }
+        return sendNanos[(int) sequence];
+    }
+
+    public long getSensorPublished() {
+        return sensorPublished.get();
+    }
+
+    public long getDevicePublished() {
+        return devicePublished.get();
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.monitor.repositories.networkutils;
+
+import com.example.monitor.MonitorConstants;
+import com.example.monitor.backgroundutil.MonitorClock;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Stand-in for the Accuweather API and the Pi's HTTP server on localhost, replaying the recorded
+ * payloads under test resources/recorded. Latency can be added to every response, and single
+ * responses can be made to fail, stall or arrive truncated; Accuweather requests past a quota get
+ * the API's 429 answer. Point NetworkUtils at it with setBaseUrls(getBaseUrl(), getBaseUrl()).
+ *
+ * Like the Pi, it keeps a sensor history, filled with addSensorSample; a delta sync request
+ * (SUBDIR_HOURLY?since=) is answered by streaming the samples from the end of that hour on.
+ *
+ * With a forecast clock set, the hourly forecasts are made up for the hours after the clock's
+ * current one instead of replayed, so scheduled fetches on virtual time get the hours they ask
+ * for. */
+public class RecordedApiServer implements AutoCloseable {
+    public static final String HOST = "127.0.0.1";
+    private static final String RESOURCE_DIR = "recorded/";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final String SENSOR_HISTORY_PATH = "/sensordata_hourly.json";
+    private static final String PARAM_SINCE = "since=";
+    private static final String ONE_HOUR_PATH = "/forecasts/v1/hourly/1hour/";
+    private static final String TWELVE_HOURS_PATH = "/forecasts/v1/hourly/12hour/";
+
+    private static final class Fault {
+        final int status;       // 0: answer normally
+        final long stallMillis;
+        final double truncateTo; // fraction of the body that is sent; 1 for all of it
+
+        Fault(int status, long stallMillis, double truncateTo) {
+            this.status = status;
+            this.stallMillis = stallMillis;
+            this.truncateTo = truncateTo;
+        }
+    }
+
+    /* path prefix to payload; the first match wins */
+    private final Map<String, byte[]> routes = new LinkedHashMap<>();
+    private final byte[] rateLimitedBody;
+    private final Queue<Fault> nextFaults = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger accuweatherCount = new AtomicInteger();
+    private final AtomicInteger samplesSent = new AtomicInteger();
+    private final Map<String, AtomicInteger> countsByRoute = new ConcurrentHashMap<>();
+    /* UTC millis to {celsius, humidity} */
+    private final NavigableMap<Long, double[]> sensorHistory = new ConcurrentSkipListMap<>();
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final HttpServer server;
+
+    private volatile long latencyMillis = 0;
+    private volatile int accuweatherQuota = Integer.MAX_VALUE;
+    private volatile String lastRequestUri;
+    private volatile MonitorClock forecastClock; // null: the recorded forecasts
+
+    public RecordedApiServer() throws IOException {
+        routes.put("/locations/v1/cities/geoposition/search", load("geoposition.json"));
+        routes.put(ONE_HOUR_PATH, load("forecast_1hour.json"));
+        routes.put(TWELVE_HOURS_PATH, load("forecast_12hour.json"));
+        routes.put("/sensordata_hourly.json", load("sensordata_hourly.json"));
+        routes.put("/sensordata_instant.json", load("sensordata_instant.json"));
+        rateLimitedBody = load("rate_limited.json");
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(HOST), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(handlers); // stalled responses don't hold up the others
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /* scheme://host:port, as NetworkUtils.setBaseUrls expects it */
+    public String getBaseUrl() {
+        return "http://" + HOST + ":" + server.getAddress().getPort();
+    }
+
+    /* added before every response */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /* Accuweather requests beyond this many are answered with 429, like an exhausted free tier */
+    public void setAccuweatherQuota(int requests) {
+        this.accuweatherQuota = requests;
+    }
+
+    /* one-shot faults, applied to the next requests in the order they were added */
+    public void failNext(int status) {
+        nextFaults.add(new Fault(status, 0, 1));
+    }
+
+    public void stallNext(long millis) {
+        nextFaults.add(new Fault(0, millis, 1));
+    }
+
+    public void truncateNext(double fraction) {
+        nextFaults.add(new Fault(0, 0, fraction));
+    }
+
+    /* forecasts for the hours after the clock's current one; null for the recorded ones */
+    public void setForecastClock(MonitorClock clock) {
+        this.forecastClock = clock;
+    }
+
+    /* a raw sample the Pi took at utcMillis */
+    public void addSensorSample(long utcMillis, double celsius, double humidity) {
+        sensorHistory.put(utcMillis, new double[]{celsius, humidity});
+    }
+
+    /* samples sent in answer to delta sync requests */
+    public int getSensorSamplesSent() {
+        return samplesSent.get();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /* requests to the route of this path prefix, e.g. "/forecasts/v1/hourly/1hour/" */
+    public int getRequestCount(String routePrefix) {
+        AtomicInteger count = countsByRoute.get(routePrefix);
+        return count == null ? 0 : count.get();
+    }
+
+    public String getLastRequestUri() {
+        return lastRequestUri;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requestCount.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            lastRequestUri = exchange.getRequestURI().toString();
+            Fault fault = nextFaults.poll();
+
+            long delay = latencyMillis + (fault != null ? fault.stallMillis : 0);
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+
+            String query = exchange.getRequestURI().getQuery();
+            String route = route(path);
+            byte[] body = route == null ? null : routes.get(route);
+            if (route != null) {
+                countsByRoute.computeIfAbsent(route, key -> new AtomicInteger()).incrementAndGet();
+            }
+            MonitorClock clock = forecastClock;
+            if (clock != null && ONE_HOUR_PATH.equals(route)) {
+                body = forecast(clock.currentTimeMillis(), 1);
+            } else if (clock != null && TWELVE_HOURS_PATH.equals(route)) {
+                body = forecast(clock.currentTimeMillis(), 12);
+            }
+            if (body != null && (fault == null || fault.status == 0)
+                    && path.equals(SENSOR_HISTORY_PATH) && query != null
+                    && query.startsWith(PARAM_SINCE)) {
+                streamSensorHistory(exchange, Long.parseLong(query.substring(PARAM_SINCE.length())));
+            } else if (body == null) {
+                respond(exchange, 404, new byte[0], 1);
+            } else if (fault != null && fault.status != 0) {
+                respond(exchange, fault.status, new byte[0], 1);
+            } else if (!path.startsWith("/sensordata")
+                    && accuweatherCount.incrementAndGet() > accuweatherQuota) {
+                respond(exchange, HTTP_TOO_MANY_REQUESTS, rateLimitedBody, 1);
+            } else {
+                respond(exchange, 200, body, fault != null ? fault.truncateTo : 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the client gave up, e.g. after its read timeout
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /* chunked, one sample at a time, in the Pi's format: local epoch seconds */
+    private void streamSensorHistory(HttpExchange exchange, long sinceMillis) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write('[');
+            String separator = "";
+            for (Map.Entry<Long, double[]> sample
+                    : sensorHistory.tailMap(sinceMillis + MonitorConstants.ONE_HOUR, true).entrySet()) {
+                long epochSeconds = (sample.getKey() + MonitorConstants.TIMEZONE_OFFSET) / 1000;
+                String record = String.format(Locale.US, "%s{\"DateTime\":\"%d\","
+                                + "\"EpochDateTime\":%d,\"Temperature\":{\"Value\":%.1f,"
+                                + "\"Unit\":\"C\"},\"RelativeHumidity\":%.1f,\"Link\":\"pi4b\"}",
+                        separator, epochSeconds, epochSeconds, sample.getValue()[0],
+                        sample.getValue()[1]);
+                out.write(record.getBytes(StandardCharsets.UTF_8));
+                separator = ",";
+                samplesSent.incrementAndGet();
+            }
+            out.write(']');
+        }
+    }
+
+    /* the prefix of the matching route, or null */
+    private String route(String path) {
+        for (String prefix : routes.keySet()) {
+            if (path.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    /* in the recorded format, local time at UTC+02:00, starting with the next full hour */
+    private static byte[] forecast(long nowMillis, int hours) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(MonitorConstants.DATE_TIME_PATTERN,
+                Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT+02:00"));
+        long firstHour = Math.floorDiv(nowMillis, (long) MonitorConstants.ONE_HOUR)
+                * MonitorConstants.ONE_HOUR + MonitorConstants.ONE_HOUR;
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < hours; i++) {
+            long hour = firstHour + i * (long) MonitorConstants.ONE_HOUR;
+            body.append(i == 0 ? "" : ",").append(String.format(Locale.US, "{\"DateTime\":\"%s\","
+                            + "\"EpochDateTime\":%d,\"Temperature\":{\"Value\":%.1f,\"Unit\":\"C\","
+                            + "\"UnitType\":17},\"RelativeHumidity\":%d,\"Link\":\"recorded\"}",
+                    dateFormat.format(new Date(hour)), hour / 1000, 10 + i * 0.5, 60 + i));
+        }
+        return body.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /* a truncated body is sent chunked and ends cleanly, so the client sees a short document
+     * rather than a connection error */
+    private static void respond(HttpExchange exchange, int status, byte[] body, double fraction)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        int length = (int) Math.round(body.length * Math.max(0, Math.min(1, fraction)));
+        /* -1: no body, 0: chunked */
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length < body.length ? 0 : length);
+        if (length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, 0, length);
+            }
+        }
+    }
+
+    private static byte[] load(String name) throws IOException {
+        try (InputStream in = RecordedApiServer.class.getClassLoader()
+                .getResourceAsStream(RESOURCE_DIR + name)) {
+            if (in == null) {
+                throw new IOException("missing test resource " + RESOURCE_DIR + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
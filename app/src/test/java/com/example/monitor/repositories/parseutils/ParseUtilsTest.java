@@ -0,0 +1,100 @@
+package com.example.monitor.repositories.parseutils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/* the allocation-free parser of the instant sensor stream, and the Pi's local timestamps */
+public class ParseUtilsTest {
+
+    @Test
+    public void recordedInstantSampleParses() throws IOException {
+        double[] sample = new double[3];
+        assertTrue(ParseUtils.parseSensorSampleBytes(
+                ByteBuffer.wrap(readResource("recorded/sensordata_instant.json")), sample));
+        assertEquals(1634211045, sample[0], 0);
+        assertEquals(21.6, sample[1], 1e-9);
+        assertEquals(45, sample[2], 0);
+    }
+
+    @Test
+    public void quotedAndNegativeValuesParse() {
+        double[] sample = new double[3];
+        assertTrue(parse("{\"EpochDateTime\": \"1634211045\", \"Temperature\": {\"Value\": -3.25},"
+                + " \"RelativeHumidity\": \"87.5\"}", sample));
+        assertEquals(1634211045, sample[0], 0);
+        assertEquals(-3.25, sample[1], 1e-9);
+        assertEquals(87.5, sample[2], 1e-9);
+    }
+
+    @Test
+    public void theBufferPositionIsRespected() {
+        byte[] bytes = ("{\"EpochDateTime\":1,\"Temperature\":{\"Value\":1},\"RelativeHumidity\":1}"
+                + "{\"EpochDateTime\":2,\"Temperature\":{\"Value\":2.5},\"RelativeHumidity\":30}")
+                .getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer payload = ByteBuffer.wrap(bytes);
+        payload.position(bytes.length / 2);
+        double[] sample = new double[3];
+        assertTrue(ParseUtils.parseSensorSampleBytes(payload, sample));
+        assertEquals(2, sample[0], 0);
+        assertEquals(2.5, sample[1], 1e-9);
+        assertEquals(bytes.length / 2, payload.position());
+    }
+
+    @Test
+    public void incompleteSamplesAreRejected() {
+        double[] sample = new double[3];
+        assertFalse(parse("{\"EpochDateTime\":1,\"Temperature\":{\"Value\":2}}", sample));
+        assertFalse(parse("{\"EpochDateTime\":1,\"Temperature\":{\"Unit\":\"C\"},"
+                + "\"RelativeHumidity\":3}", sample));
+        assertFalse(parse("{\"EpochDateTime\":\"n/a\",\"Temperature\":{\"Value\":2},"
+                + "\"RelativeHumidity\":3}", sample));
+        assertFalse(parse("", sample));
+        assertFalse(ParseUtils.parseSensorSampleBytes(null, sample));
+        assertFalse(parse("{\"EpochDateTime\":1,\"Temperature\":{\"Value\":2},"
+                + "\"RelativeHumidity\":3}", new double[2]));
+    }
+
+    /* Belgrade is UTC+1 in winter and UTC+2 in summer; a fixed offset gets one of them wrong */
+    @Test
+    public void localTimestampsFollowTheZonesDaylightSaving() {
+        TimeZone belgrade = TimeZone.getTimeZone("Europe/Belgrade");
+        long hour = 3600000L;
+        long winterUtc = 1641643200000L; // 2022-01-08T12:00:00Z
+        long summerUtc = 1657281600000L; // 2022-07-08T12:00:00Z
+        assertEquals(winterUtc, ParseUtils.localMillisToUtc(winterUtc + hour, belgrade));
+        assertEquals(summerUtc, ParseUtils.localMillisToUtc(summerUtc + 2 * hour, belgrade));
+
+        /* an hour after the spring change, 2022-03-27T01:00:00Z, local 03:00 */
+        long afterChangeUtc = 1648342800000L;
+        assertEquals(afterChangeUtc,
+                ParseUtils.localMillisToUtc(afterChangeUtc + 2 * hour, belgrade));
+        assertEquals(winterUtc, ParseUtils.localMillisToUtc(winterUtc,
+                TimeZone.getTimeZone("UTC")));
+    }
+
+    private static boolean parse(String payload, double[] sample) {
+        return ParseUtils.parseSensorSampleBytes(
+                ByteBuffer.wrap(payload.getBytes(StandardCharsets.US_ASCII)), sample);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = ParseUtilsTest.class.getClassLoader().getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            for (int read; (read = in.read(chunk)) > 0; ) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}